@@ -0,0 +1,331 @@
+/*
+ * Instrumentation.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+
+package presto.android;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Nested, named phase spans. A span records wall time, CPU time and bytes
+ * allocated by the thread that opened it, and the heap in use after GC and
+ * the peak heap so far when it is closed. Spans opened while another span
+ * is open on the same thread become its children; spans of other threads
+ * are roots.
+ * <p>
+ * Typical use:
+ * <pre>
+ *   Instrumentation.run("Flowgraph", () -> { ... });
+ *   T result = Instrumentation.call("Flowgraph", () -> ...);
+ * </pre>
+ * begin() opens a span directly, for the phases that read their own span,
+ * e.g., its wall time.
+ * If a report file is set, a JSON report of all spans is written at exit.
+ * Spans still open at that point (e.g., System.exit() from inside a phase)
+ * are reported with "open": true.
+ */
+public class Instrumentation {
+  private static final String TAG = Instrumentation.class.getSimpleName();
+
+  private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+  private static final long startWallTime = System.currentTimeMillis();
+
+  private static final List<Span> roots = new ArrayList<>();
+  private static final Map<String, String> attributes = new LinkedHashMap<>();
+  private static final ThreadLocal<Deque<Span>> openSpans = new ThreadLocal<Deque<Span>>() {
+    @Override
+    protected Deque<Span> initialValue() {
+      return new ArrayDeque<>();
+    }
+  };
+
+  private static String reportFile;
+  private static boolean forceGC = false;
+
+  /**
+   * Writes the JSON report to the given file at exit.
+   */
+  public static synchronized void setReportFile(String path) {
+    if (reportFile == null) {
+      Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          writeReport();
+        }
+      }));
+    }
+    reportFile = path;
+  }
+
+  /**
+   * When set, the heap is measured after an explicit System.gc() at the end
+   * of each span. Otherwise, the usage after the last collection is reported.
+   */
+  public static void setForceGC(boolean force) {
+    forceGC = force;
+  }
+
+  /**
+   * Top-level key/value pairs of the report, e.g., the benchmark name.
+   */
+  public static synchronized void setAttribute(String key, Object value) {
+    attributes.put(key, String.valueOf(value));
+  }
+
+  /**
+   * Runs the phase in a span of the given name.
+   */
+  public static void run(String name, Runnable phase) {
+    Span span = begin(name);
+    try {
+      phase.run();
+    } finally {
+      span.close();
+    }
+  }
+
+  /**
+   * Runs the phase in a span of the given name, and returns its result.
+   */
+  public static <T> T call(String name, Supplier<T> phase) {
+    Span span = begin(name);
+    try {
+      return phase.get();
+    } finally {
+      span.close();
+    }
+  }
+
+  public static Span begin(String name) {
+    Deque<Span> stack = openSpans.get();
+    Span parent = stack.peek();
+    Span span = new Span(name);
+    if (parent != null) {
+      synchronized (parent.children) {
+        parent.children.add(span);
+      }
+    } else {
+      synchronized (Instrumentation.class) {
+        roots.add(span);
+      }
+    }
+    stack.push(span);
+    return span;
+  }
+
+  public static class Span implements AutoCloseable {
+    private final String name;
+    private final String thread;
+    private final long threadId;
+    private final long startNanos;
+    private final long startCpuNanos;
+    private final long startAllocatedBytes;
+    private final List<Span> children = new ArrayList<>();
+
+    private volatile boolean closed = false;
+    private long wallNanos;
+    private long cpuNanos;
+    private long allocatedBytes;
+    private long heapAfterGcBytes;
+    private long peakHeapBytes;
+
+    private Span(String name) {
+      this.name = name;
+      Thread current = Thread.currentThread();
+      this.thread = current.getName();
+      this.threadId = current.getId();
+      this.startCpuNanos = threadCpuTime();
+      this.startAllocatedBytes = allocatedBytes(threadId);
+      this.startNanos = System.nanoTime();
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getWallNanos() {
+      return closed ? wallNanos : System.nanoTime() - startNanos;
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      wallNanos = System.nanoTime() - startNanos;
+      cpuNanos = threadCpuTime() - startCpuNanos;
+      allocatedBytes = allocatedBytes(threadId) - startAllocatedBytes;
+      heapAfterGcBytes = heapAfterGc();
+      peakHeapBytes = peakHeapBytes();
+      closed = true;
+      // Also close children left open by an exception
+      Deque<Span> stack = openSpans.get();
+      while (!stack.isEmpty()) {
+        Span top = stack.pop();
+        if (top == this) {
+          break;
+        }
+        top.close();
+      }
+      Logger.trace(TAG, "{}: {} sec", name, wallNanos * 1.0e-09);
+    }
+
+    private void toJson(StringBuilder sb, String indent) {
+      sb.append(indent).append("{\"name\": ").append(quote(name))
+              .append(", \"thread\": ").append(quote(thread))
+              .append(", \"open\": ").append(!closed)
+              .append(", \"wallNanos\": ").append(getWallNanos());
+      if (closed) {
+        sb.append(", \"cpuNanos\": ").append(cpuNanos)
+                .append(", \"allocatedBytes\": ").append(allocatedBytes)
+                .append(", \"heapAfterGcBytes\": ").append(heapAfterGcBytes)
+                .append(", \"peakHeapBytes\": ").append(peakHeapBytes);
+      }
+      List<Span> snapshot;
+      synchronized (children) {
+        snapshot = new ArrayList<>(children);
+      }
+      if (!snapshot.isEmpty()) {
+        sb.append(", \"children\": [\n");
+        spansToJson(sb, snapshot, indent + "  ");
+        sb.append(indent).append("]");
+      }
+      sb.append("}");
+    }
+  }
+
+  private static long threadCpuTime() {
+    return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : -1;
+  }
+
+  private static long allocatedBytes(long threadId) {
+    if (threadBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+      if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+        return bean.getThreadAllocatedBytes(threadId);
+      }
+    }
+    return -1;
+  }
+
+  private static long heapAfterGc() {
+    if (forceGC) {
+      System.gc();
+      Runtime runtime = Runtime.getRuntime();
+      return runtime.totalMemory() - runtime.freeMemory();
+    }
+    long used = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() != MemoryType.HEAP) {
+        continue;
+      }
+      MemoryUsage usage = pool.getCollectionUsage();
+      if (usage != null) {
+        used += usage.getUsed();
+      }
+    }
+    return used;
+  }
+
+  /**
+   * Peak heap usage since the JVM started: the sum of the peak usage of the
+   * heap memory pools, which may have peaked at different times.
+   */
+  public static long peakHeapBytes() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  // Report
+
+  public static synchronized String toJson() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\n");
+    for (Map.Entry<String, String> e : attributes.entrySet()) {
+      sb.append("  ").append(quote(e.getKey())).append(": ").append(quote(e.getValue())).append(",\n");
+    }
+    sb.append("  \"startTimeMillis\": ").append(startWallTime).append(",\n");
+    sb.append("  \"totalWallMillis\": ").append(System.currentTimeMillis() - startWallTime).append(",\n");
+    sb.append("  \"maxHeapBytes\": ").append(Runtime.getRuntime().maxMemory()).append(",\n");
+    sb.append("  \"peakHeapBytes\": ").append(peakHeapBytes()).append(",\n");
+    sb.append("  \"spans\": [\n");
+    spansToJson(sb, roots, "    ");
+    sb.append("  ]\n");
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  private static void spansToJson(StringBuilder sb, List<Span> spans, String indent) {
+    for (int i = 0; i < spans.size(); i++) {
+      spans.get(i).toJson(sb, indent);
+      sb.append(i + 1 < spans.size() ? ",\n" : "\n");
+    }
+  }
+
+  public static synchronized void writeReport() {
+    if (reportFile == null) {
+      return;
+    }
+    try (Writer out = new FileWriter(reportFile)) {
+      out.write(toJson());
+    } catch (IOException e) {
+      System.err.println("[" + TAG + "] Cannot write phase report to " + reportFile + ": " + e);
+    }
+  }
+
+  private static String quote(String s) {
+    StringBuilder sb = new StringBuilder(s.length() + 2);
+    sb.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '"':
+          sb.append("\\\"");
+          break;
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            sb.append(String.format("\\u%04x", (int) c));
+          } else {
+            sb.append(c);
+          }
+      }
+    }
+    return sb.append('"').toString();
+  }
+}
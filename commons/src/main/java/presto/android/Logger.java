@@ -9,34 +9,297 @@
 
 package presto.android;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Level-gated logging. Each tag may have its own level (see configure());
+ * other tags use the global level, VERB by default.
+ * <p>
+ * Messages of disabled levels cost one comparison: use the parameterized
+ * ("{}" placeholders) or Supplier forms so that no string is built, or guard
+ * expensive messages with isTraceEnabled()/isVerbEnabled(). Enabled messages
+ * are formatted by the caller and printed to System.out by a background
+ * writer, in batches. Errors are printed synchronously to System.err, after
+ * pending messages.
+ */
 public class Logger {
-  private static boolean enableTrace = false;
+  public enum Level {
+    TRACE, VERB, WARN, ERROR, OFF
+  }
+
   private static final String TAG = Logger.class.getSimpleName();
 
+  private static volatile Level globalLevel = Level.VERB;
+  // Copy-on-write, read without locking
+  private static volatile Map<String, Level> tagLevels = new HashMap<>();
+  // Lowest level enabled for some tag
+  private static volatile int minLevel = Level.VERB.ordinal();
+
   public static void setTracing(boolean verbose) {
-    enableTrace = verbose;
+    setLevel(verbose ? Level.TRACE : Level.VERB);
+  }
+
+  public static synchronized void setLevel(Level level) {
+    globalLevel = level;
+    updateMinLevel();
+  }
+
+  public static synchronized void setLevel(String tag, Level level) {
+    Map<String, Level> levels = new HashMap<>(tagLevels);
+    levels.put(tag, level);
+    tagLevels = levels;
+    updateMinLevel();
+  }
+
+  /**
+   * Parses a comma-separated level specification, e.g., "warn" or
+   * "warn,Flowgraph=trace,FixpointSolver=verb". An entry without a tag sets
+   * the global level.
+   */
+  public static void configure(String spec) {
+    for (String entry : spec.split(",")) {
+      entry = entry.trim();
+      if (entry.isEmpty()) {
+        continue;
+      }
+      int eq = entry.indexOf('=');
+      if (eq < 0) {
+        setLevel(parseLevel(entry));
+      } else {
+        setLevel(entry.substring(0, eq).trim(), parseLevel(entry.substring(eq + 1)));
+      }
+    }
+  }
+
+  private static Level parseLevel(String name) {
+    String s = name.trim().toUpperCase();
+    if ("VERBOSE".equals(s)) {
+      return Level.VERB;
+    }
+    try {
+      return Level.valueOf(s);
+    } catch (IllegalArgumentException e) {
+      throw new RuntimeException("Unknown log level: " + name);
+    }
+  }
+
+  private static void updateMinLevel() {
+    int min = globalLevel.ordinal();
+    for (Level level : tagLevels.values()) {
+      min = Math.min(min, level.ordinal());
+    }
+    minLevel = min;
   }
 
+  public static boolean isEnabled(String tag, Level level) {
+    if (level.ordinal() < minLevel) {
+      return false;
+    }
+    Map<String, Level> levels = tagLevels;
+    Level tagLevel = levels.isEmpty() ? null : levels.get(tag);
+    return level.ordinal() >= (tagLevel != null ? tagLevel : globalLevel).ordinal();
+  }
+
+  public static boolean isTraceEnabled(String tag) {
+    return isEnabled(tag, Level.TRACE);
+  }
+
+  public static boolean isVerbEnabled(String tag) {
+    return isEnabled(tag, Level.VERB);
+  }
+
+  // VERB
+
   public static void verb(String tag, String msg) {
-    System.out.println("[" + tag + "] " + ANSI.GREEN + "VERBOSE" + ANSI.RESET + " " + msg);
+    if (isEnabled(tag, Level.VERB)) {
+      print(tag, ANSI.GREEN + "VERBOSE" + ANSI.RESET, msg);
+    }
+  }
+
+  public static void verb(String tag, String format, Object arg) {
+    if (isEnabled(tag, Level.VERB)) {
+      print(tag, ANSI.GREEN + "VERBOSE" + ANSI.RESET, format(format, arg));
+    }
+  }
+
+  public static void verb(String tag, String format, Object arg1, Object arg2) {
+    if (isEnabled(tag, Level.VERB)) {
+      print(tag, ANSI.GREEN + "VERBOSE" + ANSI.RESET, format(format, arg1, arg2));
+    }
+  }
+
+  public static void verb(String tag, String format, Object arg1, Object arg2, Object arg3) {
+    if (isEnabled(tag, Level.VERB)) {
+      print(tag, ANSI.GREEN + "VERBOSE" + ANSI.RESET, format(format, arg1, arg2, arg3));
+    }
+  }
+
+  public static void verb(String tag, Supplier<String> msg) {
+    if (isEnabled(tag, Level.VERB)) {
+      print(tag, ANSI.GREEN + "VERBOSE" + ANSI.RESET, msg.get());
+    }
   }
 
+  // TRACE
+
   public static void trace(String tag, String msg) {
-    if (enableTrace) {
-      System.out.println("[" + tag + "] " + ANSI.CYAN + "TRACE" + ANSI.RESET + " " + msg);
+    if (isEnabled(tag, Level.TRACE)) {
+      print(tag, ANSI.CYAN + "TRACE" + ANSI.RESET, msg);
+    }
+  }
+
+  public static void trace(String tag, String format, Object arg) {
+    if (isEnabled(tag, Level.TRACE)) {
+      print(tag, ANSI.CYAN + "TRACE" + ANSI.RESET, format(format, arg));
     }
   }
 
+  public static void trace(String tag, String format, Object arg1, Object arg2) {
+    if (isEnabled(tag, Level.TRACE)) {
+      print(tag, ANSI.CYAN + "TRACE" + ANSI.RESET, format(format, arg1, arg2));
+    }
+  }
+
+  public static void trace(String tag, String format, Object arg1, Object arg2, Object arg3) {
+    if (isEnabled(tag, Level.TRACE)) {
+      print(tag, ANSI.CYAN + "TRACE" + ANSI.RESET, format(format, arg1, arg2, arg3));
+    }
+  }
+
+  public static void trace(String tag, Supplier<String> msg) {
+    if (isEnabled(tag, Level.TRACE)) {
+      print(tag, ANSI.CYAN + "TRACE" + ANSI.RESET, msg.get());
+    }
+  }
+
+  // WARN, ERROR, STAT
+
   public static void warn(String tag, String msg) {
-    System.out.println("[" + tag + "] " + ANSI.RED + "WARN" + ANSI.RESET + " " + msg);
+    if (isEnabled(tag, Level.WARN)) {
+      print(tag, ANSI.RED + "WARN" + ANSI.RESET, msg);
+    }
   }
 
   public static void err(String tag, String msg) {
-    System.err.println("[" + tag + "] " + ANSI.RED_BACKGROUND + "ERROR " + msg + ANSI.RESET);
+    if (isEnabled(tag, Level.ERROR)) {
+      flush();
+      System.err.println("[" + tag + "] " + ANSI.RED_BACKGROUND + "ERROR " + msg + ANSI.RESET);
+    }
   }
 
   public static void stat(String msg) {
-    System.out.println(ANSI.WHITE_BACKGROUND + ANSI.BLACK + "[STAT]" + " " + msg + ANSI.RESET);
+    Writer.enqueue(ANSI.WHITE_BACKGROUND + ANSI.BLACK + "[STAT]" + " " + msg + ANSI.RESET);
+  }
+
+  /**
+   * Blocks until all pending messages are printed.
+   */
+  public static void flush() {
+    Writer.flush();
+  }
+
+  private static void print(String tag, String level, String msg) {
+    Writer.enqueue("[" + tag + "] " + level + " " + msg);
+  }
+
+  // Replaces each "{}" with the next argument.
+  static String format(String format, Object... args) {
+    StringBuilder sb = new StringBuilder(format.length() + 16 * args.length);
+    int from = 0;
+    for (Object arg : args) {
+      int at = format.indexOf("{}", from);
+      if (at < 0) {
+        break;
+      }
+      sb.append(format, from, at).append(arg);
+      from = at + 2;
+    }
+    sb.append(format, from, format.length());
+    return sb.toString();
+  }
+
+  // Background writer of System.out messages.
+  private static class Writer implements Runnable {
+    private static final int CAPACITY = 1 << 14;
+    private static final int BATCH = 256;
+
+    private static final BlockingQueue<String> queue = new ArrayBlockingQueue<>(CAPACITY);
+    private static final Object lock = new Object();
+    // Enqueued but not yet printed; guarded by lock
+    private static long pending = 0;
+
+    static {
+      Thread thread = new Thread(new Writer(), TAG + "-writer");
+      thread.setDaemon(true);
+      thread.start();
+      Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          flush();
+        }
+      }));
+    }
+
+    static void enqueue(String line) {
+      synchronized (lock) {
+        pending++;
+      }
+      try {
+        queue.put(line);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        System.out.println(line);
+        done(1);
+      }
+    }
+
+    static void flush() {
+      synchronized (lock) {
+        while (pending > 0) {
+          try {
+            lock.wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+      }
+    }
+
+    private static void done(int count) {
+      synchronized (lock) {
+        pending -= count;
+        if (pending == 0) {
+          lock.notifyAll();
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      StringBuilder batch = new StringBuilder();
+      while (true) {
+        String line;
+        try {
+          line = queue.take();
+        } catch (InterruptedException e) {
+          return;
+        }
+        int count = 0;
+        batch.setLength(0);
+        do {
+          batch.append(line).append(System.lineSeparator());
+          count++;
+        } while (count < BATCH && (line = queue.poll()) != null);
+        System.out.print(batch);
+        System.out.flush();
+        done(count);
+      }
+    }
   }
 
   private class ANSI {
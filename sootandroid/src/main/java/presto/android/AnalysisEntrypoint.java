@@ -11,6 +11,7 @@ package presto.android;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import presto.android.gui.GUIAnalysis;
+import presto.android.xml.XMLParser;
 import soot.Scene;
 import soot.SootClass;
 import soot.SootMethod;
@@ -120,8 +121,11 @@ public class AnalysisEntrypoint {
     // Analysis
     // TODO: use reflection to allow nice little extensions.
     if (Configs.guiAnalysis) {
+      // Both are built on first use
+      Instrumentation.run("Hierarchy", Hierarchy::v);
+      Instrumentation.run("XMLParser", XMLParser.Factory::getXMLParser);
       GUIAnalysis guiAnalysis = GUIAnalysis.v();
-      guiAnalysis.run();
+      Instrumentation.run("GUIAnalysis", guiAnalysis::run);
       Date endTime = new Date();
       Logger.verb(this.getClass().getSimpleName(),
               "Soot stopped on " + endTime);
@@ -87,6 +87,15 @@ public class Configs {
   // [wtg analysis] number of threads building wtg edges
   public static int workerNum = 16;
 
+  // [wtg analysis] stream edges from stage to stage where the stages allow it
+  public static boolean pipelineStages = false;
+
+  // [wtg analysis] capacity of the queues between pipelined stages
+  public static int pipelineQueueSize = 1024;
+
+  // [wtg analysis] max number of memoized variable value queries
+  public static int queryCacheSize = 200000;
+
   // [wtg analysis] detect resource leak
   public static int detectLeak = -1;
 
@@ -140,6 +149,14 @@ public class Configs {
   // dump flow graph
   public static String flowgraphOutput = "";
 
+  // load/save the platform R ids and strings under sootAndroidDir/platform-cache
+  public static boolean platformCache = false;
+
+  // save the solved flowgraph to this file, or run the clients on the
+  // flowgraph loaded from it instead of building one
+  public static String saveSnapshot = "";
+  public static String loadSnapshot = "";
+
   // hailong: enable StringBuilder.append(string) analysis
   public static boolean enableStringAppendAnalysis = false;
 
@@ -42,6 +42,8 @@ public class Debug {
   public static final String FRAGMENT_DEBUG = "fragment_debug";
 
   public static final String WINDOW_REACHABILITY_DEBUG = "windowReachability_debug";
+
+  public static final String REACHABILITY_INDEX_DEBUG = "reachabilityIndex_debug";
   private String debugFileName;
 
   private File debugFile;
@@ -8,6 +8,8 @@
  */
 package presto.android;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -16,10 +18,15 @@ import soot.jimple.AssignStmt;
 import soot.jimple.NewExpr;
 import soot.jimple.Stmt;
 
-import java.util.HashSet;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 public class Hierarchy {
   private final SootClass viewClass;
@@ -39,11 +46,19 @@ public class Hierarchy {
   }
 
   public boolean isSubclassOf(final SootClass child, final SootClass parent) {
-    Set<SootClass> superTypes = getSupertypes(child);
-    if (superTypes != null) {
-      return superTypes.contains(parent);
+    int childId = idOf(child);
+    if (childId < 0) {
+      return isSubclassOfOnDemand(child, parent);
     }
-    return isSubclassOfOnDemand(child, parent);
+    int parentId = idOf(parent);
+    if (parentId < 0) {
+      return false;
+    }
+    if (implementors.containsKey(parent)) {
+      return subtypeBits(parent).get(childId);
+    }
+    // only reachable through superclasses: child is in the subtree of parent
+    return parentId <= childId && childId <= lastInSubtree[parentId];
   }
 
   public boolean isSubclassOfOnDemand(
@@ -114,23 +129,26 @@ public class Hierarchy {
 
   // -----------------------------------------
   // Returns a set of SootClasses: all transitive subtypes of c,
-  // including c
+  // including c. The set is a read-only view of the hierarchy, null
+  // if c is not a known class
   public Set<SootClass> getSubtypes(SootClass c) {
-    return classAndItsSubTypes.get(c);
+    return idOf(c) < 0 ? null : new TypeSet(TypeSetKind.SUBTYPES, c);
   }
 
   // -----------------------------------------
   // Returns a set of SootClasses: all transitive SUPERtypes of c,
-  // including c
+  // including c. The set is a read-only view of the hierarchy, null
+  // if c is not a known class
   public Set<SootClass> getSupertypes(SootClass c) {
-    return classAndItsSuperTypes.get(c);
+    return idOf(c) < 0 ? null : new TypeSet(TypeSetKind.SUPERTYPES, c);
   }
 
   // ----------------------------------------------------------
   // Returns a set of SootClasses: all transitive subtypes of c
-  // (including c) for which SootClass.isConcrete() is true
+  // (including c) for which SootClass.isConcrete() is true. The set
+  // is a read-only view of the hierarchy, null if c is not a known class
   public Set<SootClass> getConcreteSubtypes(SootClass c) {
-    return classAndItsConcreteSubTypes.get(c);
+    return idOf(c) < 0 ? null : new TypeSet(TypeSetKind.CONCRETE_SUBTYPES, c);
   }
 
   // ---------------------------------------------------------
@@ -286,11 +304,8 @@ public class Hierarchy {
 
     simpleClassStatistics();
 
-    // next, for each class/interface C, recursively traverse
-    // all supertypes of C and add C to the appropriate sets
-    for (SootClass c : scene.getClasses()) {
-      traverse(c, c);
-    }
+    // next, number the classes/interfaces and index their supertypes
+    buildIndex();
 
     // Look at activities
     activityClasses();
@@ -315,9 +330,6 @@ public class Hierarchy {
       if (c.isApplicationClass()) {
         appClasses.add(c);
       }
-      classAndItsConcreteSubTypes.put(c, new HashSet<SootClass>());
-      classAndItsSubTypes.put(c, new HashSet<SootClass>());
-      classAndItsSuperTypes.put(c, new HashSet<SootClass>());
     }
     Logger.verb(this.getClass().getSimpleName(),
             "[HIER] All classes: " + numClasses);
@@ -437,12 +449,12 @@ public class Hierarchy {
       throw new Error("[HIER] Did not find Activity");
     }
     for (SootClass c : appClasses) {
-      if (getSupertypes(c).contains(act)) {
+      if (isSubclassOf(c, act)) {
         applicationActivityClasses.add(c);
       }
     }
     for (SootClass c : Scene.v().getLibraryClasses()) {
-      if (getSupertypes(c).contains(act)) {
+      if (isSubclassOf(c, act)) {
         libActivityClasses.add(c);
       }
     }
@@ -459,12 +471,12 @@ public class Hierarchy {
       throw new Error("[HIER] Did not find Fragment");
     }
     for (SootClass c: appClasses) {
-      if (getSupertypes(c).contains(frag1) || getSupertypes(c).contains(frag2) || getSupertypes(c).contains(frag3) ){
+      if (isSubclassOf(c, frag1) || isSubclassOf(c, frag2) || isSubclassOf(c, frag3)){
         applicationFragmentClasses.add(c);
       }
     }
     for (SootClass c: Scene.v().getLibraryClasses()){
-      if (getSupertypes(c).contains(frag1) || getSupertypes(c).contains(frag2) || getSupertypes(c).contains(frag3)){
+      if (isSubclassOf(c, frag1) || isSubclassOf(c, frag2) || isSubclassOf(c, frag3)){
         libFragmentClasses.add(c);
       }
     }
@@ -485,29 +497,27 @@ public class Hierarchy {
 
     int numAppViews = 0;
     for (SootClass c : appClasses) {
-      Set<SootClass> superClzSet = getSupertypes(c);
-      if (superClzSet.contains(view) || superClzSet.contains(viewHolder)) {
+      if (isSubclassOf(c, view) || isSubclassOf(c, viewHolder)) {
         numAppViews++;
         viewClasses.add(c);
       }
-      if (superClzSet.contains(menuItem)) {
+      if (isSubclassOf(c, menuItem)) {
         menuItemClasses.add(c);
       }
-      if (superClzSet.contains(menu)) {
+      if (isSubclassOf(c, menu)) {
         menuClasses.add(c);
       }
     }
     int numLibViews = 0;
     for (SootClass c : scene.getLibraryClasses()) {
-      Set<SootClass> superClzSet = getSupertypes(c);
-      if (superClzSet.contains(view) || superClzSet.contains(viewHolder)) {
+      if (isSubclassOf(c, view) || isSubclassOf(c, viewHolder)) {
         numLibViews++;
         viewClasses.add(c);
       }
-      if (superClzSet.contains(menuItem)) {
+      if (isSubclassOf(c, menuItem)) {
         menuItemClasses.add(c);
       }
-      if (superClzSet.contains(menu)) {
+      if (isSubclassOf(c, menu)) {
         menuClasses.add(c);
       }
     }
@@ -596,77 +606,237 @@ public class Hierarchy {
   }
 
   // -------------------------------------------------------
-  // recursive traversal of superclasses and superinterfaces
-  private void traverse(SootClass sub, SootClass supr) {
+  // Numbers the classes by a depth first traversal of the class tree
+  // (the superclass links), so that the subclasses of a class are the
+  // classes numbered from it to lastInSubtree of it. Superinterfaces
+  // are indexed by their direct implementors.
+  private void buildIndex() {
+    Scene scene = Scene.v();
+    Set<SootClass> known = Sets.newHashSet(scene.getClasses());
+    ListMultimap<SootClass, SootClass> subclasses = ArrayListMultimap.create();
+    List<SootClass> roots = Lists.newArrayList();
+    for (SootClass c : scene.getClasses()) {
+      if (c.hasSuperclass() && known.contains(c.getSuperclass())) {
+        subclasses.put(c.getSuperclass(), c);
+      } else {
+        roots.add(c);
+      }
+      for (SootClass i : c.getInterfaces()) {
+        implementors.put(i, c);
+      }
+    }
 
-    // sub is a subtype of supr (or possibly supr == sub)
+    List<SootClass> worklist = Lists.newArrayList(Lists.reverse(roots));
+    while (!worklist.isEmpty()) {
+      SootClass c = worklist.remove(worklist.size() - 1);
+      addClass(c);
+      worklist.addAll(Lists.reverse(subclasses.get(c)));
+    }
+    // subtrees end at the last of their subclasses, which are numbered
+    // after them
+    for (int id = classes.size() - 1; id >= 0; id--) {
+      SootClass c = classes.get(id);
+      int parentId = c.hasSuperclass() ? idOf(c.getSuperclass()) : -1;
+      if (parentId >= 0) {
+        lastInSubtree[parentId] = Math.max(lastInSubtree[parentId], lastInSubtree[id]);
+      }
+    }
+    Logger.verb(this.getClass().getSimpleName(),
+            "[HIER] Indexed classes: " + classes.size() + ", roots: " + roots.size()
+            + ", implemented interfaces: " + implementors.keySet().size());
+  }
 
-    // first, add sub to the all_tbl set for supr
-    classAndItsSubTypes.get(supr).add(sub);
+  private int addClass(SootClass c) {
+    int id = classes.size();
+    classes.add(c);
+    classIds.put(c, id);
+    if (id >= lastInSubtree.length) {
+      lastInSubtree = Arrays.copyOf(lastInSubtree, Math.max(16, 2 * lastInSubtree.length));
+    }
+    lastInSubtree[id] = id;
+    if (c.isConcrete()) {
+      concreteClasses.set(id);
+    }
+    return id;
+  }
 
-    // also, add supr to the all_super_tbl set for sub
-    classAndItsSuperTypes.get(sub).add(supr);
+  private int idOf(SootClass c) {
+    Integer id = classIds.get(c);
+    return id == null ? -1 : id;
+  }
 
-    // next, if sub is a non-interface non-abstract class, add it
-    // to the tbl set for supr
-    if (sub.isConcrete()) {
-      classAndItsConcreteSubTypes.get(supr).add(sub);
+  // the subtypes of a class, as the range of its subclasses and the
+  // subtypes of its direct implementors
+  private BitSet subtypeBits(SootClass c) {
+    if (!implementors.containsKey(c)) {
+      int id = idOf(c);
+      BitSet bits = new BitSet(lastInSubtree[id] + 1);
+      bits.set(id, lastInSubtree[id] + 1);
+      return bits;
     }
+    BitSet bits = subtypeCache.get(c);
+    if (bits == null) {
+      int id = idOf(c);
+      bits = new BitSet();
+      bits.set(id, lastInSubtree[id] + 1);
+      for (SootClass sub : implementors.get(c)) {
+        bits.or(subtypeBits(sub));
+      }
+      BitSet existing = subtypeCache.putIfAbsent(c, bits);
+      if (existing != null) {
+        bits = existing;
+      }
+    }
+    return bits;
+  }
 
-    // traverse parent classes/interfaces of supr
-
-    if (supr.hasSuperclass()) {
-      traverse(sub, supr.getSuperclass());
+  private BitSet supertypeBits(SootClass c) {
+    BitSet bits = supertypeCache.get(c);
+    if (bits == null) {
+      bits = new BitSet();
+      bits.set(idOf(c));
+      if (c.hasSuperclass() && idOf(c.getSuperclass()) >= 0) {
+        bits.or(supertypeBits(c.getSuperclass()));
+      }
+      for (SootClass i : c.getInterfaces()) {
+        if (idOf(i) >= 0) {
+          bits.or(supertypeBits(i));
+        }
+      }
+      BitSet existing = supertypeCache.putIfAbsent(c, bits);
+      if (existing != null) {
+        bits = existing;
+      }
     }
+    return bits;
+  }
 
-    for (Iterator<SootClass> it = supr.getInterfaces().iterator(); it.hasNext(); ) {
-      traverse(sub, it.next());
+  private BitSet concreteSubtypeBits(SootClass c) {
+    BitSet bits = subtypeBits(c);
+    if (implementors.containsKey(c)) {
+      // the cached bits are shared
+      bits = (BitSet) bits.clone();
     }
+    bits.and(concreteClasses);
+    return bits;
   }
 
   public void addFakeListenerClass(SootClass listenerClass,
                                    SootClass listenerInterface) {
-    classAndItsSuperTypes.put(
-            listenerClass,
-            Sets.newHashSet(listenerClass, listenerInterface));
+    // the fake class has no superclass: it is a root of the class tree
+    addClass(listenerClass);
+    // it is instantiated as a listener, even though it has no body
+    concreteClasses.set(idOf(listenerClass));
+    implementors.put(listenerInterface, listenerClass);
+    // subtypes of the interface and its superinterfaces are recomputed
+    subtypeCache.clear();
+    supertypeCache.remove(listenerClass);
+  }
 
-    classAndItsSubTypes.put(listenerClass, Sets.newHashSet(listenerClass));
-    classAndItsConcreteSubTypes.put(listenerClass, Sets.newHashSet(listenerClass));
+  private enum TypeSetKind {
+    SUBTYPES, SUPERTYPES, CONCRETE_SUBTYPES
+  }
 
-    classAndItsSubTypes.get(listenerInterface).add(listenerClass);
-    classAndItsConcreteSubTypes.get(listenerInterface).add(listenerClass);
+  // -------------------------------------------------------------
+  // A read-only view of the subtypes, supertypes or concrete subtypes
+  // of a class. Membership tests use the class numbering directly, other
+  // operations use the bitset of the current hierarchy, so the view
+  // reflects fake classes added later.
+  private class TypeSet extends AbstractSet<SootClass> {
+    private final TypeSetKind kind;
+    private final SootClass c;
+
+    TypeSet(TypeSetKind kind, SootClass c) {
+      this.kind = kind;
+      this.c = c;
+    }
+
+    private BitSet bits() {
+      switch (kind) {
+        case SUBTYPES:
+          return subtypeBits(c);
+        case SUPERTYPES:
+          return supertypeBits(c);
+        default:
+          return concreteSubtypeBits(c);
+      }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof SootClass) || idOf((SootClass) o) < 0) {
+        return false;
+      }
+      SootClass other = (SootClass) o;
+      switch (kind) {
+        case SUBTYPES:
+          return isSubclassOf(other, c);
+        case SUPERTYPES:
+          return supertypeBits(c).get(idOf(other));
+        default:
+          return concreteClasses.get(idOf(other)) && isSubclassOf(other, c);
+      }
+    }
+
+    @Override
+    public Iterator<SootClass> iterator() {
+      final BitSet bits = bits();
+      return new Iterator<SootClass>() {
+        private int next = bits.nextSetBit(0);
+
+        @Override
+        public boolean hasNext() {
+          return next >= 0;
+        }
+
+        @Override
+        public SootClass next() {
+          if (next < 0) {
+            throw new NoSuchElementException();
+          }
+          SootClass result = classes.get(next);
+          next = bits.nextSetBit(next + 1);
+          return result;
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return bits().cardinality();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      // a class is its own subtype and supertype
+      return kind == TypeSetKind.CONCRETE_SUBTYPES && bits().isEmpty();
+    }
   }
 
   // -------------------------------------------------------------
-  // this hash table contains a pair (C,X) for each class C in the
-  // program. Here by "class" we mean SootClass, which could be a
-  // Java class or a Java interface. The set of possible values of C
-  // covers all SootClasses that are application classes or library
-  // classes. X is a HashSet that contains SootClasses for all
-  // elements of the set { C } union { D | D is a direct or
-  // transitive subtype of C }, **excluding** all D that are
-  // interfaces or abstract classes.
-  private final Map<SootClass, Set<SootClass>> classAndItsConcreteSubTypes = Maps.newHashMap();
+  // Every class/interface of the program gets a dense id. Here by
+  // "class" we mean SootClass, which could be a Java class or a Java
+  // interface. Ids are assigned in depth first order of the class tree
+  // (superclass links): the direct or transitive subclasses of the
+  // class with id C have the ids C + 1 ... lastInSubtree[C]. Fake
+  // listener classes are added afterwards as roots of the tree.
+  private final List<SootClass> classes = Lists.newArrayList();
+  private final Map<SootClass, Integer> classIds = Maps.newHashMap();
+  private int[] lastInSubtree = new int[0];
+  private final BitSet concreteClasses = new BitSet();
 
   // -------------------------------------------------------------
-  // this hash table contains a pair (C,X) for each class C in the
-  // program. Here by "class" we mean SootClass, which could be a
-  // Java class or a Java interface. The set of possible values of C
-  // covers all SootClasses that are application classes or library
-  // classes. X is a HashSet that contains SootClasses for all
-  // elements of the set { C } union { D | D is a direct or
-  // transitive subtype of C }.
-  private final Map<SootClass, Set<SootClass>> classAndItsSubTypes = Maps.newHashMap();
+  // direct implementors (classes) and direct subinterfaces of each
+  // interface. The subtypes of a class with no implementors are its
+  // subclasses, other subtypes are found through this map.
+  private final ListMultimap<SootClass, SootClass> implementors = ArrayListMultimap.create();
 
   // -------------------------------------------------------------
-  // this hash table contains a pair (C,X) for each class C in the
-  // program. Here by "class" we mean SootClass, which could be a
-  // Java class or a Java interface. The set of possible values of C
-  // covers all SootClasses that are application classes or library
-  // classes. X is a HashSet that contains SootClasses for all
-  // elements of the set { C } union { D | D is a direct or
-  // transitive SUPERtype of C }.
-  private final Map<SootClass, Set<SootClass>> classAndItsSuperTypes = Maps.newHashMap();
+  // bitsets of the direct or transitive subtypes of the classes and
+  // interfaces with implementors, and of the supertypes of the
+  // classes whose supertypes were queried, computed on demand
+  private final ConcurrentMap<SootClass, BitSet> subtypeCache = Maps.newConcurrentMap();
+  private final ConcurrentMap<SootClass, BitSet> supertypeCache = Maps.newConcurrentMap();
 
   public Set<SootClass> applicationActivityClasses = Sets.newHashSet();
   public Set<SootClass> libActivityClasses = Sets.newHashSet(); // not in app
@@ -36,6 +36,9 @@ public class Main {
     Logger.trace("TIMECOST", "Main starting at " + System.currentTimeMillis());
     Debug.v().setStartTime();
     parseArgs(args);
+    Instrumentation.setAttribute("benchmark", Configs.benchmarkName);
+    Instrumentation.setAttribute("project", Configs.project);
+    Instrumentation.setAttribute("workers", Configs.workerNum);
 
     checkAndPrintEnvironmentInformation(args);
     setupAndInvokeSoot();
@@ -67,6 +70,13 @@ public class Main {
       } else if ("-verbose".equals(s)) {
         Configs.verbose = true;
         Logger.setTracing(true);
+      } else if ("-logLevel".equals(s)) {
+        // e.g., "warn" or "warn,Flowgraph=trace"
+        Logger.configure(args[++i]);
+      } else if ("-phaseReport".equals(s)) {
+        Instrumentation.setReportFile(args[++i]);
+      } else if ("-phaseGC".equals(s)) {
+        Instrumentation.setForceGC(true);
       } else if ("-debugCode".equals(s)) {
         Configs.debugCodes.add(args[++i]);
       } else if ("-client".equals(s)) {
@@ -86,6 +96,14 @@ public class Main {
       } else if ("-worker".equals(s)) {
         Configs.workerNum = Integer.parseInt(args[++i]);
         Assert.assertTrue("[Error]: number of workers should be >= 1", Configs.workerNum > 0);
+      } else if ("-pipelineStages".equals(s)) {
+        Configs.pipelineStages = true;
+      } else if ("-pipelineQueueSize".equals(s)) {
+        Configs.pipelineQueueSize = Integer.parseInt(args[++i]);
+        Assert.assertTrue("[Error]: pipeline queue size should be >= 1", Configs.pipelineQueueSize > 0);
+      } else if ("-queryCacheSize".equals(s)) {
+        Configs.queryCacheSize = Integer.parseInt(args[++i]);
+        Assert.assertTrue("[Error]: query cache size should be >= 0", Configs.queryCacheSize >= 0);
       } else if ("-mockScene".equals(s)) {
         Configs.mockScene = true;
       } else if ("-hardwareEvent".equals(s)) {
@@ -127,6 +145,12 @@ public class Main {
         Configs.sootAndroidDir = args[++i];
       } else if ("-flowgraphOutput".equals(s)) {
         Configs.flowgraphOutput = args[++i];
+      } else if ("-platformCache".equals(s)) {
+        Configs.platformCache = true;
+      } else if ("-saveSnapshot".equals(s)) {
+        Configs.saveSnapshot = args[++i];
+      } else if ("-loadSnapshot".equals(s)) {
+        Configs.loadSnapshot = args[++i];
       } else if ("-enableStringAppendAnalysis".equals(s)
               || "-sa".equals(s)) {
         Configs.enableStringAppendAnalysis = true;
@@ -285,16 +309,12 @@ public class Main {
       Logger.trace("MAIN", "  [SOOT-ARG] " + s);
     }
 
-    // Added for Experiment
-    Timer.reset();
-
-
     // Finally, invoke Soot
 
     //readAndApplySignatureList();
     Options.v().set_whole_program(true);
 
-    soot.Main.main(sootArgs);
+    Instrumentation.run("Soot", () -> soot.Main.main(sootArgs));
   }
 
   static void readWidgetMap() {
@@ -0,0 +1,298 @@
+/*
+ * AnalysisSnapshot.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import presto.android.Configs;
+import presto.android.Logger;
+import presto.android.gui.graph.NActivityNode;
+import presto.android.gui.graph.NAddFragmentOpNode;
+import presto.android.gui.graph.NAddView1OpNode;
+import presto.android.gui.graph.NAddView2OpNode;
+import presto.android.gui.graph.NAllocNode;
+import presto.android.gui.graph.NAnonymousIdNode;
+import presto.android.gui.graph.NContextMenuNode;
+import presto.android.gui.graph.NDialogNode;
+import presto.android.gui.graph.NFieldNode;
+import presto.android.gui.graph.NFindView1OpNode;
+import presto.android.gui.graph.NFindView2OpNode;
+import presto.android.gui.graph.NFindView3OpNode;
+import presto.android.gui.graph.NFragmentNode;
+import presto.android.gui.graph.NInflNode;
+import presto.android.gui.graph.NInflate1OpNode;
+import presto.android.gui.graph.NInflate2OpNode;
+import presto.android.gui.graph.NIntConstantNode;
+import presto.android.gui.graph.NLayoutIdNode;
+import presto.android.gui.graph.NListenerAllocNode;
+import presto.android.gui.graph.NLongConstantNode;
+import presto.android.gui.graph.NMenuIdNode;
+import presto.android.gui.graph.NMenuInflateOpNode;
+import presto.android.gui.graph.NMenuItemInflNode;
+import presto.android.gui.graph.NNode;
+import presto.android.gui.graph.NNullNode;
+import presto.android.gui.graph.NOpNode;
+import presto.android.gui.graph.NOptionsMenuNode;
+import presto.android.gui.graph.NReplaceFragmentOpNode;
+import presto.android.gui.graph.NSetIdOpNode;
+import presto.android.gui.graph.NSetListenerOpNode;
+import presto.android.gui.graph.NSetTextOpNode;
+import presto.android.gui.graph.NStringBuilderAppendOpNode;
+import presto.android.gui.graph.NStringBuilderNode;
+import presto.android.gui.graph.NStringConstantNode;
+import presto.android.gui.graph.NStringIdNode;
+import presto.android.gui.graph.NTabSpecNode;
+import presto.android.gui.graph.NVarNode;
+import presto.android.gui.graph.NViewAllocNode;
+import presto.android.gui.graph.NWidgetIdNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A snapshot of the solved flowgraph: its nodes and edges, the maps of the
+ * flowgraph and the solution of the fixpoint solver. A run with
+ * -saveSnapshot writes it once the flowgraph is solved. A run with
+ * -loadSnapshot reads it instead of building and solving the flowgraph,
+ * and runs the clients on it.
+ * <p>
+ * Soot objects are written as references, resolved when they are read:
+ * classes, methods and fields by name, statements by their method and
+ * position in the body, locals by their method and position in the locals
+ * of the body, and expressions by their statement and use box. The
+ * listener classes made up by the flowgraph are written in full.
+ * <p>
+ * The snapshot is only valid for the bytecode and the options it was
+ * written with; a mismatch is an error. The call graph is still built in
+ * the runs that load a snapshot, as the clients query it.
+ */
+class AnalysisSnapshot {
+  private static final String TAG = AnalysisSnapshot.class.getSimpleName();
+
+  static final int MAGIC = 0x47534e50;
+  // bump when the layout of the file changes
+  static final int VERSION = 1;
+
+  // tags of the values
+  static final byte NULL = 0;
+  static final byte NODE = 1;
+  static final byte CLASS = 2;
+  static final byte METHOD = 3;
+  static final byte FIELD = 4;
+  static final byte TYPE = 5;
+  static final byte STMT = 6;
+  static final byte LOCAL = 7;
+  static final byte EXPR = 8;
+  static final byte INT = 9;
+  static final byte LONG = 10;
+  static final byte STRING = 11;
+  static final byte BOOLEAN = 12;
+  static final byte SET = 13;
+  static final byte LIST = 14;
+  static final byte MAP = 15;
+
+  // references to statements, locals and expressions that are not in a
+  // body, e.g. the locals made up by the flowgraph
+  static final int DETACHED = -1;
+
+  enum NodeKind {
+    NULL_NODE(null),
+    NULL_OP(null),
+    VAR(NVarNode.class),
+    FIELD(NFieldNode.class),
+    ALLOC(NAllocNode.class),
+    VIEW_ALLOC(NViewAllocNode.class),
+    LISTENER_ALLOC(NListenerAllocNode.class),
+    STRING_BUILDER(NStringBuilderNode.class),
+    ACTIVITY(NActivityNode.class),
+    FRAGMENT(NFragmentNode.class),
+    DIALOG(NDialogNode.class),
+    TAB_SPEC(NTabSpecNode.class),
+    INFL(NInflNode.class),
+    MENU_ITEM_INFL(NMenuItemInflNode.class),
+    OPTIONS_MENU(NOptionsMenuNode.class),
+    CONTEXT_MENU(NContextMenuNode.class),
+    STRING_CONSTANT(NStringConstantNode.class),
+    INT_CONSTANT(NIntConstantNode.class),
+    LONG_CONSTANT(NLongConstantNode.class),
+    LAYOUT_ID(NLayoutIdNode.class),
+    MENU_ID(NMenuIdNode.class),
+    WIDGET_ID(NWidgetIdNode.class),
+    STRING_ID(NStringIdNode.class),
+    ANONYMOUS_ID(NAnonymousIdNode.class),
+    INFLATE1(NInflate1OpNode.class),
+    INFLATE2(NInflate2OpNode.class),
+    FIND_VIEW1(NFindView1OpNode.class),
+    FIND_VIEW2(NFindView2OpNode.class),
+    FIND_VIEW3(NFindView3OpNode.class),
+    ADD_VIEW1(NAddView1OpNode.class),
+    ADD_VIEW2(NAddView2OpNode.class),
+    SET_ID(NSetIdOpNode.class),
+    SET_LISTENER(NSetListenerOpNode.class),
+    SET_TEXT(NSetTextOpNode.class),
+    MENU_INFLATE(NMenuInflateOpNode.class),
+    STRING_BUILDER_APPEND(NStringBuilderAppendOpNode.class),
+    ADD_FRAGMENT(NAddFragmentOpNode.class),
+    REPLACE_FRAGMENT(NReplaceFragmentOpNode.class);
+
+    private static final Map<Class<?>, NodeKind> byClass = Maps.newHashMap();
+
+    static {
+      for (NodeKind kind : values()) {
+        if (kind.nodeClass != null) {
+          byClass.put(kind.nodeClass, kind);
+        }
+      }
+    }
+
+    private final Class<? extends NNode> nodeClass;
+
+    NodeKind(Class<? extends NNode> nodeClass) {
+      this.nodeClass = nodeClass;
+    }
+
+    static NodeKind of(NNode node) {
+      if (node == NNullNode.NullNode) {
+        return NULL_NODE;
+      }
+      if (node == NOpNode.NullOpNode) {
+        return NULL_OP;
+      }
+      NodeKind kind = byClass.get(node.getClass());
+      if (kind == null) {
+        throw new IllegalStateException(
+                "[Error]: " + node.getClass().getName() + " cannot be written to a snapshot");
+      }
+      return kind;
+    }
+  }
+
+  /**
+   * Writes the flowgraph and the solution of the analysis to the file. The
+   * file is written aside and then moved, so a failed or concurrent save
+   * never leaves a partial snapshot. A failure is reported, and does not
+   * stop the analysis.
+   */
+  static void save(GUIAnalysis analysis, String fileName) {
+    File file = new File(fileName).getAbsoluteFile();
+    File tmp = null;
+    try {
+      tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+      new SnapshotWriter(analysis.flowgraph, analysis.fixpointSolver).write(tmp);
+      Files.move(tmp.toPath(), file.toPath(),
+              StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      Logger.verb(TAG, "saved " + file);
+    } catch (IOException | RuntimeException e) {
+      Logger.warn(TAG, "cannot write " + file + ": " + e);
+      if (tmp != null) {
+        tmp.delete();
+      }
+    }
+  }
+
+  /**
+   * Reads the flowgraph and the solution of the analysis from the file.
+   */
+  static void load(GUIAnalysis analysis, String fileName) {
+    File file = new File(fileName);
+    Preconditions.checkState(file.isFile(), "[Error]: no snapshot at " + file);
+    Flowgraph flowgraph = new Flowgraph(analysis.hier, analysis.allLayoutIds,
+            analysis.allMenuIds, analysis.allWidgetIds, analysis.allStringIds);
+    FixpointSolver solver = new FixpointSolver(flowgraph);
+    // allocates the maps of the solution
+    solver.preSolveInit();
+    try {
+      new SnapshotReader(flowgraph, solver).read(file);
+    } catch (IOException e) {
+      throw new RuntimeException("[Error]: cannot read snapshot " + file, e);
+    }
+    // the other statements are recorded when their bodies are retrieved
+    flowgraph.jimpleUtil.recordOnDemand();
+    analysis.flowgraph = flowgraph;
+    analysis.fixpointSolver = solver;
+    Logger.verb(TAG, "loaded " + file);
+  }
+
+  /**
+   * Identifies the input and the options the flowgraph depends on.
+   */
+  static String fingerprint() {
+    File bytecodes = new File(Configs.bytecodes);
+    return bytecodes.getAbsolutePath() + ":" + bytecodes.length() + ":" + bytecodes.lastModified()
+            + ";api=" + Configs.apiLevel
+            + ";sa=" + Configs.enableStringAppendAnalysis
+            + ";sp=" + Configs.enableStringPropertyAnalysis;
+  }
+
+  /**
+   * The state of the flowgraph and of the solver besides the nodes, in the
+   * order it is written. Maps are read into the empty maps of a new
+   * flowgraph and solver, and so are the sets and multimaps.
+   */
+  static List<Object> state(Flowgraph g, FixpointSolver s) {
+    return Arrays.<Object>asList(
+            g.fakeHandlerToRealHandler,
+            g.allNNodes,
+            g.allNVarNodes,
+            g.allNFieldNodes,
+            g.allNAllocNodes,
+            g.allNActivityNodes,
+            g.allNFragmentNodes,
+            g.allNLayoutIdNodes,
+            g.allNMenuIdNodes,
+            g.allNWidgetIdNodes,
+            g.allNStringIdNodes,
+            g.allNDialogNodes,
+            g.allNStringConstantNodes,
+            g.allNIntegerConstantNodes,
+            g.allNLongConstantNodes,
+            g.allMenuItems,
+            g.allStringBuilderAllocNodes,
+            g.activityClassToOptionsMenu,
+            g.menuVarNodeToContextMenus,
+            g.contextMenuToOnCreateContextMenus,
+            g.anonymousIdNodes,
+            g.allAddFragmentNodes,
+            g.allReplaceFragmentNodes,
+            g.butterKnifeActivityRootBinding,
+            g.allDialogAndShows,
+            g.allDialogAndDismisses,
+            g.allDialogLifecycleMethods,
+            g.allDialogNonLifecycleMethods,
+            g.explicitShowContextMenuCallAndViewLocals,
+            g.explicitShowOptionsMenuCallAndActivityLocals,
+            g.alreadyProcessedSetListeners,
+            s.reachingLayoutIds,
+            s.reachingMenuIds,
+            s.reachingViewIds,
+            s.reachingParameterViews,
+            s.reachingReceiverViews,
+            s.reachingWindows,
+            s.reachingOptionsMenus,
+            s.reachingContextMenus,
+            s.reachedParameterViews,
+            s.reachedReceiverViews,
+            s.reachingListeners,
+            s.reachedListeners,
+            s.solutionParameters,
+            s.solutionReceivers,
+            s.solutionResults,
+            s.solutionListeners,
+            s.activityRoots,
+            s.dialogRoots,
+            s.viewProducers,
+            s.strbldReachingStrings,
+            s.inflateProducer);
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * ClassStatementPlan.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import presto.android.Configs;
+import presto.android.Hierarchy;
+import presto.android.Logger;
+import presto.android.gui.wtg.util.WTGUtil;
+import soot.*;
+import soot.jimple.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The read-only part of Flowgraph.processApplicationClasses() for one
+ * application class: method bodies, the statements worth looking at, resolved
+ * call targets, propagation calls and virtual dispatch targets.
+ * <p>
+ * Soot is not thread-safe, so bodies are retrieved and call targets resolved
+ * on the calling thread. Only the virtual dispatch, which reads the class
+ * hierarchy and adds nothing to it, is computed concurrently, one class per
+ * task, with Configs.workerNum threads. Plans do not touch the flowgraph.
+ * Flowgraph then replays them in the original class/method/statement order,
+ * so nodes, ids and edges are created exactly as in a sequential build.
+ */
+class ClassStatementPlan {
+  final SootClass clazz;
+  final List<MethodPlan> methods = Lists.newArrayList();
+
+  static class MethodPlan {
+    final SootMethod method;
+    // Statements that are not trivially skipped, in body order
+    final List<Stmt> stmts = Lists.newArrayList();
+    // Number of units in the body
+    int numberOfUnits;
+    // Invoke statement -> static target; absent if it cannot be resolved
+    final Map<Stmt, SootMethod> staticTargets = Maps.newHashMap();
+    // Invoke statements modeled by createPropagation(), i.e., those for which
+    // it adds an edge
+    final Set<Stmt> propagationCalls = Sets.newHashSet();
+    // Virtual invoke statement -> receiver class, dispatched by dispatch()
+    private final Map<Stmt, SootClass> virtualCalls = Maps.newLinkedHashMap();
+    // Virtual invoke statement -> application targets, in dispatch order
+    final Map<Stmt, List<SootMethod>> virtualTargets = Maps.newHashMap();
+
+    MethodPlan(SootMethod method) {
+      this.method = method;
+    }
+
+    List<SootMethod> getVirtualTargets(Stmt s) {
+      List<SootMethod> targets = virtualTargets.get(s);
+      return (targets == null ? Collections.<SootMethod>emptyList() : targets);
+    }
+  }
+
+  private ClassStatementPlan(SootClass clazz) {
+    this.clazz = clazz;
+  }
+
+  /**
+   * Plans the given classes, preserving their order.
+   */
+  static List<ClassStatementPlan> planAll(List<SootClass> classes, final Hierarchy hier) {
+    List<ClassStatementPlan> plans = Lists.newArrayListWithCapacity(classes.size());
+    for (SootClass c : classes) {
+      plans.add(plan(c));
+    }
+    if (Configs.workerNum <= 1) {
+      for (ClassStatementPlan plan : plans) {
+        plan.dispatch(hier);
+      }
+      return plans;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Configs.workerNum);
+    try {
+      List<Future<?>> futures = Lists.newArrayListWithCapacity(plans.size());
+      for (final ClassStatementPlan plan : plans) {
+        futures.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            plan.dispatch(hier);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+    return plans;
+  }
+
+  // Retrieves the bodies and resolves the calls of the class; this may load
+  // classes and add phantom methods, so it runs on the calling thread
+  private static ClassStatementPlan plan(SootClass c) {
+    ClassStatementPlan plan = new ClassStatementPlan(c);
+    for (SootMethod m : Lists.newArrayList(c.getMethods())) {
+      if (!m.isConcrete()) {
+        continue;
+      }
+      MethodPlan methodPlan = new MethodPlan(m);
+      for (Unit u : m.retrieveActiveBody().getUnits()) {
+        methodPlan.numberOfUnits++;
+        Stmt s = (Stmt) u;
+        if (isSkipped(s)) {
+          continue;
+        }
+        methodPlan.stmts.add(s);
+        if (s.containsInvokeExpr()) {
+          planCall(methodPlan, s);
+        }
+      }
+      plan.methods.add(methodPlan);
+    }
+    return plan;
+  }
+
+  // Statements that never contribute to the flowgraph
+  private static boolean isSkipped(Stmt s) {
+    return s instanceof ReturnVoidStmt
+            || s instanceof ThrowStmt
+            || s instanceof GotoStmt
+            || s instanceof BreakpointStmt
+            || s instanceof NopStmt
+            || s instanceof RetStmt
+            || s instanceof IfStmt
+            || s instanceof TableSwitchStmt
+            || s instanceof LookupSwitchStmt
+            || s instanceof MonitorStmt;
+  }
+
+  private static void planCall(MethodPlan methodPlan, Stmt s) {
+    InvokeExpr ie = s.getInvokeExpr();
+    SootMethod stm;
+    try {
+      stm = ie.getMethod();
+    } catch (Exception e) {
+      Logger.trace("ClassStatementPlan", "Failed to resolve method for InvokeExpr " + ie);
+      return;
+    }
+    methodPlan.staticTargets.put(s, stm);
+
+    // The conditions under which Flowgraph.createPropagation() adds an edge;
+    // it does nothing for the other statements
+    if (s instanceof DefinitionStmt
+            && (WTGUtil.v().isIntentPropagationCall(s) || WTGUtil.v().isValuePropagationCall(s))) {
+      methodPlan.propagationCalls.add(s);
+    }
+
+    if (!(ie instanceof InstanceInvokeExpr) || ie instanceof SpecialInvokeExpr) {
+      return;
+    }
+    Type rcvType = ((InstanceInvokeExpr) ie).getBase().getType();
+    // could be ArrayType, for clone() calls
+    if (!(rcvType instanceof RefType)) {
+      return;
+    }
+    // computed once here, as virtualDispatch() looks it up
+    stm.getSubSignature();
+    methodPlan.virtualCalls.put(s, ((RefType) rcvType).getSootClass());
+  }
+
+  // Computes the application targets of the virtual calls of the class
+  private void dispatch(Hierarchy hier) {
+    for (MethodPlan methodPlan : methods) {
+      for (Map.Entry<Stmt, SootClass> call : methodPlan.virtualCalls.entrySet()) {
+        Set<SootClass> subtypes = hier.getConcreteSubtypes(call.getValue());
+        if (subtypes == null) {
+          continue;
+        }
+        SootMethod stm = methodPlan.staticTargets.get(call.getKey());
+        List<SootMethod> targets = null;
+        for (SootClass sub : subtypes) {
+          SootMethod trg = hier.virtualDispatch(stm, sub);
+          if (trg != null && trg.getDeclaringClass().isApplicationClass()) {
+            if (targets == null) {
+              targets = Lists.newArrayList();
+            }
+            targets.add(trg);
+          }
+        }
+        if (targets != null) {
+          methodPlan.virtualTargets.put(call.getKey(), targets);
+        }
+      }
+    }
+  }
+}
@@ -28,6 +28,7 @@ import soot.SootMethod;
 import soot.jimple.Stmt;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DefaultGUIAnalysisOutput implements GUIAnalysisOutput {
   // Objects that may store analysis results or help with retrieval of result.
@@ -39,6 +40,15 @@ public class DefaultGUIAnalysisOutput implements GUIAnalysisOutput {
   Hierarchy hier;
   ListenerSpecification listenerSpec;
 
+  // Statement indexes of the per-dialog (and per-SetListener) results, for
+  // the statement queries issued while traversing callbacks.
+  private final Map<Stmt, Set<NDialogNode>> stmtToShownDialogs;
+  private final Map<Stmt, Set<NDialogNode>> stmtToDismissedDialogs;
+  private final Set<Stmt> callbackRegistrationStmts;
+  // Computed on first request
+  private final Map<Stmt, Set<NContextMenuNode>> stmtToContextMenus = new ConcurrentHashMap<>();
+  private final Map<Stmt, Set<NOptionsMenuNode>> stmtToOptionsMenus = new ConcurrentHashMap<>();
+
   // Some simple filters to help with easy implementation of variants of query
   // API methods.
   class EqualityEventTypeFilter implements Predicate<EventType> {
@@ -74,6 +84,24 @@ public class DefaultGUIAnalysisOutput implements GUIAnalysisOutput {
     this.jimpleUtil = JimpleUtil.v();
     this.hier = Hierarchy.v();
     this.listenerSpec = ListenerSpecification.v();
+    this.stmtToShownDialogs = invert(flowgraph.allDialogAndShows);
+    this.stmtToDismissedDialogs = invert(flowgraph.allDialogAndDismisses);
+    this.callbackRegistrationStmts = Sets.newHashSet();
+    for (NOpNode setListener : NOpNode.getNodes(NSetListenerOpNode.class)) {
+      if (setListener.callSite != null) {
+        callbackRegistrationStmts.add(setListener.callSite.getO1());
+      }
+    }
+  }
+
+  private static Map<Stmt, Set<NDialogNode>> invert(Map<NDialogNode, Set<Stmt>> dialogAndStmts) {
+    Map<Stmt, Set<NDialogNode>> stmtAndDialogs = Maps.newHashMap();
+    for (Map.Entry<NDialogNode, Set<Stmt>> entry : dialogAndStmts.entrySet()) {
+      for (Stmt s : entry.getValue()) {
+        MultiMapUtil.addKeyAndHashSetElement(stmtAndDialogs, s, entry.getKey());
+      }
+    }
+    return stmtAndDialogs;
   }
 
   @Override
@@ -114,12 +142,7 @@ public class DefaultGUIAnalysisOutput implements GUIAnalysisOutput {
    */
   @Override
   public boolean isDialogShow(Stmt s) {
-    for (Set<Stmt> shows : flowgraph.allDialogAndShows.values()) {
-      if (shows.contains(s)) {
-        return true;
-      }
-    }
-    return false;
+    return stmtToShownDialogs.containsKey(s);
   }
 
   /*
@@ -128,15 +151,7 @@ public class DefaultGUIAnalysisOutput implements GUIAnalysisOutput {
    */
   @Override
   public Set<NDialogNode> dialogsShownBy(Stmt s) {
-    Set<NDialogNode> dialogs = Sets.newHashSet();
-    for (Map.Entry<NDialogNode, Set<Stmt>> entry : flowgraph.allDialogAndShows.entrySet()) {
-      NDialogNode dialog = entry.getKey();
-      Set<Stmt> shows = entry.getValue();
-      if (shows.contains(s)) {
-        dialogs.add(dialog);
-      }
-    }
-    return dialogs;
+    return Collections.unmodifiableSet(MultiMapUtil.getNonNullHashSetByKey(stmtToShownDialogs, s));
   }
 
   /*
@@ -154,25 +169,12 @@ public class DefaultGUIAnalysisOutput implements GUIAnalysisOutput {
 
   @Override
   public boolean isDialogDismiss(Stmt s) {
-    for (Set<Stmt> dismisses : flowgraph.allDialogAndDismisses.values()) {
-      if (dismisses.contains(s)) {
-        return true;
-      }
-    }
-    return false;
+    return stmtToDismissedDialogs.containsKey(s);
   }
 
   @Override
   public Set<NDialogNode> dialogsDismissedBy(Stmt s) {
-    Set<NDialogNode> dialogs = Sets.newHashSet();
-    for (Map.Entry<NDialogNode, Set<Stmt>> entry : flowgraph.allDialogAndDismisses.entrySet()) {
-      NDialogNode dialog = entry.getKey();
-      Set<Stmt> dismisses = entry.getValue();
-      if (dismisses.contains(s)) {
-        dialogs.add(dialog);
-      }
-    }
-    return dialogs;
+    return Collections.unmodifiableSet(MultiMapUtil.getNonNullHashSetByKey(stmtToDismissedDialogs, s));
   }
 
   @Override
@@ -512,9 +514,18 @@ public class DefaultGUIAnalysisOutput implements GUIAnalysisOutput {
    */
   @Override
   public Set<NContextMenuNode> explicitlyTriggeredContextMenus(Stmt s) {
+    Set<NContextMenuNode> contextMenus = stmtToContextMenus.get(s);
+    if (contextMenus == null) {
+      contextMenus = Collections.unmodifiableSet(computeExplicitlyTriggeredContextMenus(s));
+      stmtToContextMenus.put(s, contextMenus);
+    }
+    return contextMenus;
+  }
+
+  private Set<NContextMenuNode> computeExplicitlyTriggeredContextMenus(Stmt s) {
     Local view = flowgraph.explicitShowContextMenuCallAndViewLocals.get(s);
     if (view == null) {
-      Collections.emptySet();
+      return Collections.emptySet();
     }
     VariableValueQueryInterface variableValues =
             getVariableValueQueryInterface();
@@ -532,6 +543,15 @@ public class DefaultGUIAnalysisOutput implements GUIAnalysisOutput {
 
   @Override
   public Set<NOptionsMenuNode> explicitlyTriggeredOptionsMenus(Stmt s) {
+    Set<NOptionsMenuNode> optionsMenus = stmtToOptionsMenus.get(s);
+    if (optionsMenus == null) {
+      optionsMenus = Collections.unmodifiableSet(computeExplicitlyTriggeredOptionsMenus(s));
+      stmtToOptionsMenus.put(s, optionsMenus);
+    }
+    return optionsMenus;
+  }
+
+  private Set<NOptionsMenuNode> computeExplicitlyTriggeredOptionsMenus(Stmt s) {
     Local activity = flowgraph.explicitShowOptionsMenuCallAndActivityLocals.get(s);
     if (activity == null) {
       return Collections.emptySet();
@@ -569,6 +589,11 @@ public class DefaultGUIAnalysisOutput implements GUIAnalysisOutput {
   // callback registration.
   @Override
   public boolean isCallbackRegistration(Stmt s) {
+    if (!callbackRegistrationStmts.contains(s)) {
+      return false;
+    }
+    // NOpNode keeps the last op node created for a call site, which may be
+    // another op node than the set listener node of s
     NOpNode node = NOpNode.lookupByStmt(s);
     return node instanceof NSetListenerOpNode;
   }
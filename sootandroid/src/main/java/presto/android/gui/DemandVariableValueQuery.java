@@ -11,7 +11,6 @@ package presto.android.gui;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Sets;
 import presto.android.Hierarchy;
-import presto.android.gui.FixpointSolver.VarExtractor;
 import presto.android.gui.graph.*;
 import presto.android.gui.listener.ListenerSpecification;
 import soot.IntType;
@@ -20,7 +19,6 @@ import soot.RefType;
 import soot.SootClass;
 
 import java.util.Collections;
-import java.util.Map;
 import java.util.Set;
 
 public class DemandVariableValueQuery implements VariableValueQueryInterface {
@@ -49,7 +47,18 @@ public class DemandVariableValueQuery implements VariableValueQueryInterface {
     return theInstance;
   }
 
+  // Memoized; see VariableValueCache
   Set<NObjectNode> valueSetForRefTypes(Local local) {
+    VariableValueCache cache = VariableValueCache.v();
+    Set<NObjectNode> values = cache.get(VariableValueCache.Kind.REF_VALUES, local);
+    if (values == null) {
+      long version = NNode.getGraphVersion();
+      values = cache.put(VariableValueCache.Kind.REF_VALUES, local, computeValueSetForRefTypes(local), version);
+    }
+    return values;
+  }
+
+  private Set<NObjectNode> computeValueSetForRefTypes(Local local) {
     NVarNode varNode = flowgraph.lookupVarNode(local);
     if (varNode == null) {
       return Collections.emptySet();
@@ -66,28 +75,24 @@ public class DemandVariableValueQuery implements VariableValueQueryInterface {
       }
     }
     // fixpoint results
-    extractFixpointSolution(solver.resultExtractor, pts, locals);
+    solver.getSolutionIndex().addSolutions(SolutionIndex.Kind.RESULT, locals, pts);
 
     return pts;
   }
 
-  void extractFixpointSolution(VarExtractor extractor,
-                               Set<NObjectNode> resultSet, Set<NVarNode> locals) {
-    Map<NOpNode, Set<NNode>> solutionMap = solver.solutionResults;
-    for (Map.Entry<NOpNode, Set<NNode>> entry : solutionMap.entrySet()) {
-      NOpNode opNode = entry.getKey();
-      NVarNode local = extractor.extract(opNode);
-      if (locals.contains(local)) {
-        for (NNode resultNode : entry.getValue()) {
-          resultSet.add((NObjectNode) resultNode);
-        }
-      }
-    }
-  }
-
   @Override
   public Set<NIdNode> idVariableValues(Local local) {
     Preconditions.checkArgument(local.getType() instanceof IntType);
+    VariableValueCache cache = VariableValueCache.v();
+    Set<NIdNode> values = cache.get(VariableValueCache.Kind.ID_VALUES, local);
+    if (values == null) {
+      long version = NNode.getGraphVersion();
+      values = cache.put(VariableValueCache.Kind.ID_VALUES, local, computeIdVariableValues(local), version);
+    }
+    return values;
+  }
+
+  private Set<NIdNode> computeIdVariableValues(Local local) {
     NVarNode varNode = flowgraph.lookupVarNode(local);
     if (varNode == null) {
       return Collections.emptySet();
@@ -9,6 +9,7 @@
 
 package presto.android.gui;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import presto.android.Configs;
 import presto.android.Debug;
@@ -22,8 +23,13 @@ import sun.rmi.runtime.Log;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -36,162 +42,293 @@ import java.util.Set;
 public class FixpointComputationOptimized {
     static void optimizedComputePathsFromViewProducerToViewConsumer(FixpointSolver solver) {
         Logger.verb("Fixpoint", "Begin optimizedComputePathsFromViewProducerToViewConsumer...");
+        bindButterKnifeRoots(solver);
+        List<NNode> sources = Lists.newArrayList();
+        for (NNode source : solver.flowgraph.allNNodes) {
+            if (isPathSource(solver, source)) {
+                sources.add(source);
+            }
+        }
+
+        long factsBefore = countFacts(solver);
+        long peakBefore = resetPeakHeapUsage();
+        long startTime = System.nanoTime();
+        ReachabilityIndex index = new ReachabilityIndex(sources);
+        long indexTime = System.nanoTime() - startTime;
+        for (NNode source : sources) {
+            recordPathsFromSource(solver, source, index.reachables(source));
+        }
+        long estimatedTime = System.nanoTime() - startTime;
+        long peak = Math.max(peakBefore, peakHeapUsage());
+        Logger.verb("Fixpoint", "[ReachabilityIndex] sources: " + sources.size()
+                + ", components: " + index.getNumberOfComponents()
+                + ", targets: " + index.getNumberOfTargets()
+                + ", shared summaries: " + index.getNumberOfSharedSummaries()
+                + ", index: " + (indexTime * 1.0e-09) + " sec"
+                + ", total: " + (estimatedTime * 1.0e-09) + " sec"
+                + ", peak heap: " + (peak / 1024 / 1024) + " MB");
+        index = null;
+
+        if (Configs.debugCodes.contains(Debug.REACHABILITY_INDEX_DEBUG)) {
+            // Compare against one BFS per source. Both record the same monotone
+            // facts, so the BFS run must not add anything.
+            long factsWithIndex = countFacts(solver);
+            peakBefore = resetPeakHeapUsage();
+            startTime = System.nanoTime();
+            for (NNode source : sources) {
+                computePathsFromSource(solver, source);
+            }
+            estimatedTime = System.nanoTime() - startTime;
+            peak = Math.max(peakBefore, peakHeapUsage());
+            long factsWithBFS = countFacts(solver);
+            Logger.verb("Fixpoint", "[PerSourceBFS] total: " + (estimatedTime * 1.0e-09) + " sec"
+                    + ", peak heap: " + (peak / 1024 / 1024) + " MB"
+                    + ", facts: " + (factsWithIndex - factsBefore)
+                    + " (index) vs " + (factsWithBFS - factsBefore) + " (BFS)");
+            if (factsWithBFS != factsWithIndex) {
+                Logger.warn(FixpointComputationOptimized.class.getSimpleName(),
+                        "Reachability index missed " + (factsWithBFS - factsWithIndex) + " facts");
+            }
+        }
+
+        solver.solutionResultsReachability();
+        Logger.verb("Fixpoint", "optimizedComputePathsFromViewProducerToViewConsumer Done.");
+    }
+
+    private static long countFacts(FixpointSolver solver) {
+        return countFacts(solver.reachingParameterViews) + countFacts(solver.reachedParameterViews)
+                + countFacts(solver.reachingReceiverViews) + countFacts(solver.reachedReceiverViews)
+                + countFacts(solver.reachingListeners) + countFacts(solver.reachedListeners)
+                + countFacts(solver.solutionParameters) + countFacts(solver.solutionReceivers)
+                + countFacts(solver.solutionListeners);
+    }
+
+    private static <K, V> long countFacts(Map<K, Set<V>> map) {
+        long count = 0;
+        for (Set<V> values : map.values()) {
+            count += values.size();
+        }
+        return count;
+    }
+
+    // Resets the peak usage of the heap pools and returns the current usage.
+    private static long resetPeakHeapUsage() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long peakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Connects the roots of ButterKnife-bound activities to their binding root.
+     * Returns the roots that received a new edge, so that callers doing
+     * incremental propagation know where the flowgraph changed.
+     */
+    static Set<NNode> bindButterKnifeRoots(FixpointSolver solver) {
+        Set<NNode> newTails = Sets.newHashSet();
         for (NActivityNode activityNode: solver.flowgraph.butterKnifeActivityRootBinding.keySet()) {
             if (!solver.activityRoots.containsKey(activityNode)){
                 continue;
             }
             NNode bindingRoot = solver.flowgraph.butterKnifeActivityRootBinding.get(activityNode);
             for (NNode root: solver.activityRoots.get(activityNode)) {
+                int before = NNode.numberOfEdges;
                 root.addEdgeTo(bindingRoot);
+                if (NNode.numberOfEdges != before) {
+                    newTails.add(root);
+                }
             }
         }
-        for (NNode source : solver.flowgraph.allNNodes) {
+        return newTails;
+    }
 
-            Set<NNode> reachables = null;
-            if (source instanceof NViewAllocNode
-                    || source instanceof NInflNode
-                    || source instanceof NOptionsMenuNode
-                    || source instanceof NContextMenuNode
-                    || source instanceof NFindView1OpNode
-                    || source instanceof NFindView2OpNode
-                    || source instanceof NFindView3OpNode
-                    || source instanceof NInflate1OpNode) {
-                reachables = solver.graphUtil.reachableNodes(source);
-               /* if (source instanceof  NInflNode){
-                        Logger.verb("FixpointOptimized", "InfNode: "+ source.toString());
-                }*/
-
-                for (NNode target : reachables) {
-
-                    if (!(target instanceof NOpNode)) {
-                        continue;
-                    }
-                    NOpNode opNode = (NOpNode) target;
-                   /* if (source.id == 5860)
-                        Logger.verb("DEBUG","Target: " + target.toString());*/
-                    // View as parameter
-                    if (target instanceof NAddView1OpNode
-                            || (target instanceof NAddView2OpNode
-                                && reachables.contains(((NOpNode) target).getParameter())
-                    /*&& reachables.contains(((NOpNode) target).getReceiver())*/)) {
-                        MultiMapUtil.addKeyAndHashSetElement(
-                                solver.reachingParameterViews, (NOpNode) target, source);
-
-                        if (source instanceof NOpNode) {
-                            //reverse
-                            MultiMapUtil.addKeyAndHashSetElement(solver.reachedParameterViews,
-                                    (NOpNode) source, (NOpNode) target);
-                            /*if (source instanceof NInflate1OpNode)
-                                Logger.verb("DEBUG","Add to reachingParameterViews: "+source+ " - "+target);*/
-                        } else if (source instanceof NObjectNode
-                                && solver.isValidFlowByType(source, (NOpNode) target,
-                                    FixpointSolver.VarType.Parameter)) {
-                            if (source instanceof NViewAllocNode
-                                    || source instanceof NInflNode) {
-                                MultiMapUtil.addKeyAndHashSetElement(solver.solutionParameters,
-                                        (NOpNode) target, source);
-                                /*if (source.id == 5860)
-                                    Logger.verb("DEBUG","Add to solutionParameters" + target.toString());*/
+    /**
+     * Nodes whose forward reachability is summarized into the reaching/reached
+     * and solution maps of the solver.
+     */
+    static boolean isPathSource(FixpointSolver solver, NNode source) {
+        return isViewProducer(source)
+                || (source instanceof NObjectNode
+                    && solver.listenerSpecs.isListenerType(((NObjectNode) source).getClassType()));
+    }
+
+    static boolean isViewProducer(NNode source) {
+        return source instanceof NViewAllocNode
+                || source instanceof NInflNode
+                || source instanceof NOptionsMenuNode
+                || source instanceof NContextMenuNode
+                || source instanceof NFindView1OpNode
+                || source instanceof NFindView2OpNode
+                || source instanceof NFindView3OpNode
+                || source instanceof NInflate1OpNode;
+    }
+
+    /**
+     * Records the paths from a single producer to the view and listener
+     * consumers it reaches. All updates are monotone, so calling this again for
+     * the same source after the flowgraph has grown only adds the new facts.
+     *
+     * @return the nodes reachable from source, or null if source is neither a
+     * view producer nor a listener object.
+     */
+    static Collection<NNode> computePathsFromSource(FixpointSolver solver, NNode source) {
+        if (!isPathSource(solver, source)) {
+            return null;
+        }
+        Collection<NNode> reachables = solver.graphUtil.reachableNodes(source);
+        recordPathsFromSource(solver, source, reachables);
+        return reachables;
+    }
+
+    /**
+     * Same as above with the reachable nodes already computed. reachables must
+     * contain at least the op nodes reachable from source, and the receivers
+     * and parameters of reachable AddView2 and SetListener nodes.
+     */
+    static void recordPathsFromSource(FixpointSolver solver, NNode source,
+                                      Collection<NNode> reachables) {
+        if (isViewProducer(source)) {
+           /* if (source instanceof  NInflNode){
+                    Logger.verb("FixpointOptimized", "InfNode: "+ source.toString());
+            }*/
+
+            for (NNode target : reachables) {
+
+                if (!(target instanceof NOpNode)) {
+                    continue;
+                }
+                NOpNode opNode = (NOpNode) target;
+               /* if (source.id == 5860)
+                    Logger.verb("DEBUG","Target: " + target.toString());*/
+                // View as parameter
+                if (target instanceof NAddView1OpNode
+                        || (target instanceof NAddView2OpNode
+                            && reachables.contains(((NOpNode) target).getParameter())
+                /*&& reachables.contains(((NOpNode) target).getReceiver())*/)) {
+                    MultiMapUtil.addKeyAndHashSetElement(
+                            solver.reachingParameterViews, (NOpNode) target, source);
+
+                    if (source instanceof NOpNode) {
+                        //reverse
+                        MultiMapUtil.addKeyAndHashSetElement(solver.reachedParameterViews,
+                                (NOpNode) source, (NOpNode) target);
+                        /*if (source instanceof NInflate1OpNode)
+                            Logger.verb("DEBUG","Add to reachingParameterViews: "+source+ " - "+target);*/
+                    } else if (source instanceof NObjectNode
+                            && solver.isValidFlowByType(source, (NOpNode) target,
+                                FixpointSolver.VarType.Parameter)) {
+                        if (source instanceof NViewAllocNode
+                                || source instanceof NInflNode) {
+                            MultiMapUtil.addKeyAndHashSetElement(solver.solutionParameters,
+                                    (NOpNode) target, source);
+                            /*if (source.id == 5860)
+                                Logger.verb("DEBUG","Add to solutionParameters" + target.toString());*/
+                        } else {
+                            if (Configs.sanityCheck) {
+                                throw new RuntimeException(
+                                        "Unhandled reaching parameter at " + target + " for " + source);
                             } else {
-                                if (Configs.sanityCheck) {
-                                    throw new RuntimeException(
-                                            "Unhandled reaching parameter at " + target + " for " + source);
-                                } else {
-                                    Logger.warn(FixpointComputationOptimized.class.getSimpleName(),
-                                            "Unhandled reaching parameter at " + target + " for " + source);
-                                }
+                                Logger.warn(FixpointComputationOptimized.class.getSimpleName(),
+                                        "Unhandled reaching parameter at " + target + " for " + source);
                             }
                         }
                     }
-                    else if (target instanceof NSetListenerOpNode
-                            && reachables.contains(((NSetListenerOpNode) target).getParameter())) {
-                        if (source instanceof NOpNode) {
+                }
+                else if (target instanceof NSetListenerOpNode
+                        && reachables.contains(((NSetListenerOpNode) target).getParameter())) {
+                    if (source instanceof NOpNode) {
 //                            Logger.verb("FixpointOptimized", "ReachedListener: " + source.toString() + "--> "+ target.toString());
 
-                            //the result of source could flow to SetListener
-                            //If source is NObjectNode, it will be taken care of later.
-                            MultiMapUtil.addKeyAndHashSetElement(solver.reachingListeners,
-                                    ((NSetListenerOpNode) target), source);
-                            //reverse
-                            MultiMapUtil.addKeyAndHashSetElement(solver.reachedListeners,
-                                    (NOpNode) source, (NSetListenerOpNode) target);
-                        }
+                        //the result of source could flow to SetListener
+                        //If source is NObjectNode, it will be taken care of later.
+                        MultiMapUtil.addKeyAndHashSetElement(solver.reachingListeners,
+                                ((NSetListenerOpNode) target), source);
+                        //reverse
+                        MultiMapUtil.addKeyAndHashSetElement(solver.reachedListeners,
+                                (NOpNode) source, (NSetListenerOpNode) target);
+                    }
+                }
+                // View as receiver
+                if (target instanceof NFindView1OpNode
+                        || target instanceof NFindView3OpNode
+                        || target instanceof NSetIdOpNode
+                        || target instanceof NSetTextOpNode
+                        || (target instanceof NSetListenerOpNode
+                            && reachables.contains(((NOpNode) target).getReceiver()))
+                        || (target instanceof NAddView2OpNode
+                            && reachables.contains(((NOpNode) target).getReceiver()))) {
+                    if ((source instanceof NOptionsMenuNode
+                                || source instanceof NContextMenuNode)
+                            && target instanceof NSetIdOpNode) {
+                        //MenuNode cannot be a receiver of SetId
+                        continue;
                     }
-                    // View as receiver
-                    if (target instanceof NFindView1OpNode
-                            || target instanceof NFindView3OpNode
-                            || target instanceof NSetIdOpNode
-                            || target instanceof NSetTextOpNode
-                            || (target instanceof NSetListenerOpNode
-                                && reachables.contains(((NOpNode) target).getReceiver()))
-                            || (target instanceof NAddView2OpNode
-                                && reachables.contains(((NOpNode) target).getReceiver()))) {
-                        if ((source instanceof NOptionsMenuNode
-                                    || source instanceof NContextMenuNode)
-                                && target instanceof NSetIdOpNode) {
-                            //MenuNode cannot be a receiver of SetId
-                            continue;
-                        }
 
-                        //Logger.verb("FixpointOptimized", "reachedReceiverViews: " + source.toString() +"--> "+ target.toString());
-                        MultiMapUtil.addKeyAndHashSetElement(solver.reachingReceiverViews,
-                                (NOpNode) target, source);
-                        if (source instanceof NOpNode) {
-                            //reverse
-                            //TODO: If target is NSetListenerOpNode, add reachedReceiverViews only with source's...
-                            MultiMapUtil.addKeyAndHashSetElement(solver.reachedReceiverViews,
-                                    (NOpNode) source, (NOpNode) target);
-                          /*  if (source instanceof NInflate1OpNode)
-                                Logger.verb("DEBUG","Add to reachedReceiverViews: "+source+ " - "+target);*/
-                        } else if (source instanceof NObjectNode
-                                && solver.isValidFlowByType(source, (NOpNode) target,
-                                    FixpointSolver.VarType.Receiver)) {
-                            if (source instanceof NViewAllocNode
-                                    || source instanceof NOptionsMenuNode
-                                    || source instanceof NContextMenuNode
-                                    || source instanceof NInflNode
-                            ) {
-                                MultiMapUtil.addKeyAndHashSetElement(solver.solutionReceivers,
-                                        (NOpNode) target, source);
+                    //Logger.verb("FixpointOptimized", "reachedReceiverViews: " + source.toString() +"--> "+ target.toString());
+                    MultiMapUtil.addKeyAndHashSetElement(solver.reachingReceiverViews,
+                            (NOpNode) target, source);
+                    if (source instanceof NOpNode) {
+                        //reverse
+                        //TODO: If target is NSetListenerOpNode, add reachedReceiverViews only with source's...
+                        MultiMapUtil.addKeyAndHashSetElement(solver.reachedReceiverViews,
+                                (NOpNode) source, (NOpNode) target);
+                      /*  if (source instanceof NInflate1OpNode)
+                            Logger.verb("DEBUG","Add to reachedReceiverViews: "+source+ " - "+target);*/
+                    } else if (source instanceof NObjectNode
+                            && solver.isValidFlowByType(source, (NOpNode) target,
+                                FixpointSolver.VarType.Receiver)) {
+                        if (source instanceof NViewAllocNode
+                                || source instanceof NOptionsMenuNode
+                                || source instanceof NContextMenuNode
+                                || source instanceof NInflNode
+                        ) {
+                            MultiMapUtil.addKeyAndHashSetElement(solver.solutionReceivers,
+                                    (NOpNode) target, source);
 
+                        } else {
+                            if (Configs.sanityCheck) {
+                                throw new RuntimeException(
+                                        "Unhandled reaching receiver at " + target + " for " + source);
                             } else {
-                                if (Configs.sanityCheck) {
-                                    throw new RuntimeException(
-                                            "Unhandled reaching receiver at " + target + " for " + source);
-                                } else {
-                                    Logger.warn(FixpointComputationOptimized.class.getSimpleName(),
-                                            "Unhandled reaching receiver at " + target + " for " + source);
-                                }
+                                Logger.warn(FixpointComputationOptimized.class.getSimpleName(),
+                                        "Unhandled reaching receiver at " + target + " for " + source);
                             }
                         }
                     }
                 }
             }
-            // Any object could be a listener
-            if (source instanceof NObjectNode
-                    && solver.listenerSpecs.isListenerType(((NObjectNode) source).getClassType())) {
-                //Logger.verb("FixpointOptimized", "View: "+ source.toString());
-                if (reachables == null) {
-                    reachables = solver.graphUtil.reachableNodes(source);
-                }
-                for (NNode target : reachables) {
+        }
+        // Any object could be a listener
+        if (source instanceof NObjectNode
+                && solver.listenerSpecs.isListenerType(((NObjectNode) source).getClassType())) {
+            //Logger.verb("FixpointOptimized", "View: "+ source.toString());
+            for (NNode target : reachables) {
 
-                    if (target instanceof NSetListenerOpNode
-                            && reachables.contains(((NSetListenerOpNode) target).getParameter())) {
-                        //Logger.verb("FixpointOptimized", "Set Listener: "+target.toString());
-                        MultiMapUtil.addKeyAndHashSetElement(solver.reachingListeners,
-                                ((NSetListenerOpNode) target), source);
-                        MultiMapUtil.addKeyAndHashSetElement(solver.solutionListeners,
-                                (NSetListenerOpNode) target, source);
-                    }
+                if (target instanceof NSetListenerOpNode
+                        && reachables.contains(((NSetListenerOpNode) target).getParameter())) {
+                    //Logger.verb("FixpointOptimized", "Set Listener: "+target.toString());
+                    MultiMapUtil.addKeyAndHashSetElement(solver.reachingListeners,
+                            ((NSetListenerOpNode) target), source);
+                    MultiMapUtil.addKeyAndHashSetElement(solver.solutionListeners,
+                            (NSetListenerOpNode) target, source);
                 }
             }
-            //Resolve fields calling
-
         }
-
-        solver.solutionResultsReachability();
-        Logger.verb("Fixpoint", "optimizedComputePathsFromViewProducerToViewConsumer Done.");
+        //Resolve fields calling
     }
 
     static void windowReachability(FixpointSolver solver) {
@@ -34,8 +34,8 @@ import static java.util.Arrays.asList;
 /**
  * Fixed-point computation to resolve the mutual-dependence between NOpNode
  * nodes. First, it performs simple graph reachability. Then, it does the
- * actual fixed-point computation. Right now, it is iterative but seems to be
- * pretty efficient.
+ * actual fixed-point computation with a dependency-tracked worklist that runs
+ * until no op node solution and no flowgraph edge changes.
  */
 public class FixpointSolver {
   private final String TAG = FixpointSolver.class.getSimpleName();
@@ -81,6 +81,9 @@ public class FixpointSolver {
   // a parameter listener object to some SetListener NOpNode
   public Map<NOpNode, Set<NNode>> solutionListeners;
 
+  // Built after solving; see getSolutionIndex()
+  private SolutionIndex solutionIndex;
+
   // Mapping from an activity to the set of views that could be its root.
   public Map<NActivityNode, Set<NNode>> activityRoots;
   public Map<NDialogNode, Set<NNode>> dialogRoots = Maps.newHashMap();
@@ -98,7 +101,7 @@ public class FixpointSolver {
   private long totalEdges() {
     long ret = 0;
     for (NNode n : flowgraph.allNNodes) {
-      ret += n.getNumberOfSuccessors();
+      ret += n.successorIds().size();
     }
     return ret;
   }
@@ -116,6 +119,22 @@ public class FixpointSolver {
     preSolveInit();
 
     solveCore();
+
+    // Post
+    solutionIndex = new SolutionIndex(this);
+    VariableValueCache.v().invalidateAll();
+  }
+
+  /**
+   * Inverted indexes of solutionParameters/Receivers/Results/Listeners, for
+   * variable value queries after solving.
+   */
+  public synchronized SolutionIndex getSolutionIndex() {
+    if (solutionIndex == null || !solutionIndex.isUpToDate()) {
+      solutionIndex = new SolutionIndex(this);
+      VariableValueCache.v().invalidateAll();
+    }
+    return solutionIndex;
   }
 
   // TODO: move this to field decl section. There is no point doing it here
@@ -172,45 +191,39 @@ public class FixpointSolver {
   public void solveCore() {
     Logger.verb("DEBUG", "Begin solveCore");
     // compute
-    fieldReachabilty();
-    layoutIdReachability();
-    menuIdReachability();
+    Instrumentation.run("fieldReachability", this::fieldReachabilty);
+    Instrumentation.run("layoutIdReachability", this::layoutIdReachability);
+    Instrumentation.run("menuIdReachability", this::menuIdReachability);
 
-    FixpointComputationOptimized.windowReachability(this);
+    Instrumentation.run("windowReachability", () -> FixpointComputationOptimized.windowReachability(this));
     Logger.verb(TAG, "Begin optionsMenuReachability...");
-    optionsMenuReachability();
+    Instrumentation.run("optionsMenuReachability", this::optionsMenuReachability);
     Logger.verb(TAG, "Begin contextMenuReachability...");
-    contextMenuReachability();
+    Instrumentation.run("contextMenuReachability", this::contextMenuReachability);
     Logger.verb(TAG, "Begin viewIdReachability...");
-    viewIdReachability();
+    Instrumentation.run("viewIdReachability", this::viewIdReachability);
 
     if (Configs.enableStringAppendAnalysis && Configs.enableStringPropertyAnalysis) {
       Logger.trace(TAG, "start string append analysis...");
-      stringConstAndIdReachability();
-      stringBuilderReachability();
+      Instrumentation.run("stringReachability", () -> {
+        stringConstAndIdReachability();
+        stringBuilderReachability();
+      });
       Logger.trace(TAG, "end string append analysis...");
     }
 
     nodeCount = flowgraph.allNNodes.size();
     edgeCount = totalEdges();
     //computePathsFromViewProducerToViewConsumer();
-    FixpointComputationOptimized.optimizedComputePathsFromViewProducerToViewConsumer(this);
+    Instrumentation.run("producerToConsumerPaths",
+            () -> FixpointComputationOptimized.optimizedComputePathsFromViewProducerToViewConsumer(this));
     Logger.verb(TAG, "Begin processInflaterCalls...");
     // process inflater calls
-    processInflaterCalls();
-
-    //Added for Experiment
-    /*System.out.println("<TIME>:" + (Timer.duration() / 1000.0) + " second");
-    Runtime.getRuntime().gc();
-    Runtime.getRuntime().gc();
-    Runtime.getRuntime().gc();
-    System.out.println("<MEMORY>:" +
-            ((Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / 1024 / 1024) + " MB");
-    System.exit(0);*/
+    Instrumentation.run("processInflaterCalls", this::processInflaterCalls);
 
     // propagation
     Logger.verb(TAG, "Begin viewAndListernerPropagation...");
-    viewAndListenerPropagation();
+    Instrumentation.run("viewAndListenerPropagation", this::viewAndListenerPropagation);
   }
 
 
@@ -1575,87 +1588,12 @@ public class FixpointSolver {
     return null;
   }
 
-  // Now, we are done with inflation. Let's process other NOpNodes
+  // Now, we are done with inflation. Let's process other NOpNodes. Each op
+  // node is re-processed only when its inputs change; see PropagationWorklist.
   void viewAndListenerPropagation() {
-    int threshold = 10;
-    int time = 0;
-    while (true && time < threshold) {
-      boolean changed = false;
-      time++;
-      //Logger.verb("DEBUG","[FixpointSolver] NFindView1OpNode size: "+NOpNode.getNodes(NFindView1OpNode.class).size());
-      for (NOpNode findView1 : NOpNode.getNodes(NFindView1OpNode.class)) {
-        if (processFindView1((NFindView1OpNode) findView1)) {
-          changed = true;
-        }
-      }
-      //Logger.verb("DEBUG","[FixpointSolver] NFindView20pNode size: "+NOpNode.getNodes(NFindView2OpNode.class).size());
-      for (NOpNode findView2 : NOpNode.getNodes(NFindView2OpNode.class)) {
-
-        if (processFindView2((NFindView2OpNode) findView2)) {
-          changed = true;
-        }
-      }
-      //Logger.verb("DEBUG","[FixpointSolver] NFindView3OpNode size: "+NOpNode.getNodes(NFindView3OpNode.class).size());
-      for (NOpNode findView3 : NOpNode.getNodes(NFindView3OpNode.class)) {
-        if (processFindView3((NFindView3OpNode) findView3)) {
-          changed = true;
-        }
-      }
-      //Logger.verb("DEBUG","[FixpointSolver] NAddView1OpNode size: "+NOpNode.getNodes(NAddView1OpNode.class).size());
-      for (NOpNode addView1 : NOpNode.getNodes(NAddView1OpNode.class)) {
-        if (processAddView1((NAddView1OpNode) addView1)) {
-          changed = true;
-        }
-      }
-     // Logger.verb("DEBUG","[FixpointSolver] NAddView2OpNode size: "+NOpNode.getNodes(NAddView2OpNode.class).size());
-      for (NOpNode addView2 : NOpNode.getNodes(NAddView2OpNode.class)) {
-//        Logger.verb("DEBUG", "Start processAddView2 -> "+addView2);
-        if (processAddView2((NAddView2OpNode) addView2)) {
-          changed = true;
-        }
-      }
-      //Logger.verb("DEBUG","[FixpointSolver] NSetIdOpNode size: "+NOpNode.getNodes(NSetIdOpNode.class).size());
-      for (NOpNode setId : NOpNode.getNodes(NSetIdOpNode.class)) {
-//        Logger.verb("DEBUG", "Start processSetId -> "+setId);
-        if (processSetId((NSetIdOpNode) setId)) {
-          changed = true;
-        }
-      }
-      //Logger.verb("DEBUG","[FixpointSolver] NSetTextOpNode size: "+NOpNode.getNodes(NSetTextOpNode.class).size());
-      for (NOpNode setText : NOpNode.getNodes(NSetTextOpNode.class)) {
-//        Logger.verb("DEBUG", "Start processSetText -> "+setText);
-        if (processSetText((NSetTextOpNode) setText)) {
-          changed = true;
-        }
-      }
-      //Logger.verb("DEBUG","[FixpointSolver] NSetListenerOpNode size: "+NOpNode.getNodes(NSetListenerOpNode.class).size());
-      // SetListener: need to recompute path summary if anything changes
-      for (NOpNode setListener : NOpNode.getNodes(NSetListenerOpNode.class)) {
-//        Logger.verb("DEBUG", "Start processSetListener -> "+setListener);
-        if (processSetListener((NSetListenerOpNode) setListener)) {
-          changed = true;
-        }
-      }
-      if (changed) {
-        // recompute the paths
-        // computePathsFromViewProducerToViewConsumer();
-        long currentEdgeCount = totalEdges();
-        int currentNodeCount = flowgraph.allNNodes.size();
-        if (!(currentEdgeCount == edgeCount && currentNodeCount == nodeCount)) {
-          //computePathsFromViewProducerToViewConsumer();
-          FixpointComputationOptimized.optimizedComputePathsFromViewProducerToViewConsumer(this);
-        }
-        nodeCount = currentNodeCount;
-        edgeCount = currentEdgeCount;
-        if (Configs.fastMode) {
-          Logger.verb("FASTMODE", "FixedPointSolver, stop at 1 iteration");
-          break;
-        }
-      } else {
-        // Fixed point found
-        break;
-      }
-    }
+    new PropagationWorklist(this).solve();
+    nodeCount = flowgraph.allNNodes.size();
+    edgeCount = totalEdges();
   }
 
   // FindView1: lhs = receiver.findViewById(id)
@@ -46,7 +46,7 @@ import java.util.*;
 public class Flowgraph implements MethodNames {
   private final String TAG = Flowgraph.class.getSimpleName();
   static final String FAKE_NAME_PREFIX = "FakeName_";
-  private long fakeNameIndex = 0;
+  long fakeNameIndex = 0;
 
   String nextFakeName() {
     return FAKE_NAME_PREFIX + fakeNameIndex++;
@@ -108,42 +108,49 @@ public class Flowgraph implements MethodNames {
   }
 
   public void build() {
-    buildIdNodes();
-    processFrameworkManagedCallbacks();
-    processApplicationClasses();
+    Instrumentation.run("buildIdNodes", this::buildIdNodes);
+    Instrumentation.run("processFrameworkManagedCallbacks", this::processFrameworkManagedCallbacks);
+    Instrumentation.run("processApplicationClasses", this::processApplicationClasses);
 
     // Additional manipulation (a.k.a, post-processing)
+    Instrumentation.run("postProcessing", this::postProcess);
+  }
 
+  private void postProcess() {
     // Resolve one-level array-refs. We may want to refine this if later we
     // find it necessary
-    resolveArrayRefs();
+    Instrumentation.run("resolveArrayRefs", this::resolveArrayRefs);
 
     // Deal with recorded dialog and its builder calls
     // WARNING: the order of the following two calls cannot be changed!!!
-    processAllRecordedDialogCalls();
+    Instrumentation.run("dialogs", () -> {
+      processAllRecordedDialogCalls();
 
-    checkAndPatchRootlessActivities();
-    checkAndPatchRootlessDialogs();
+      checkAndPatchRootlessActivities();
+      checkAndPatchRootlessDialogs();
+    });
 
     // For each ListActivity, model its onListItemClick
-    patchListActivity();
-
     // Deal with list views and list adapters
-    processRecordedListViewCalls();
+    Instrumentation.run("listViews", () -> {
+      patchListActivity();
+      processRecordedListViewCalls();
+    });
 
     // TabHost, TabSpec...
-    processTabHostRelatedCalls();
-
-    processAddFragmentCalls();
-    processReplaceFragmentCalls();
-
-    processViewPagerSetAdapter();
+    Instrumentation.run("tabHosts", this::processTabHostRelatedCalls);
 
-    processFlowFromSetListenerToEventHandlers();
+    Instrumentation.run("fragments", () -> {
+      processAddFragmentCalls();
+      processReplaceFragmentCalls();
+      processViewPagerSetAdapter();
+    });
 
-    processButterKnifeViewBinding();
+    Instrumentation.run("listenerFlow", this::processFlowFromSetListenerToEventHandlers);
 
+    Instrumentation.run("butterKnife", this::processButterKnifeViewBinding);
   }
+
   public void buildIdNodes() {
     // Nodes for all layout ids, menu ids, widget ids, and string ids
     for (Integer i : allLayoutIds) {
@@ -171,7 +178,7 @@ public class Flowgraph implements MethodNames {
         processFragmentCallbacks(c);
       }
       else {
-        Logger.verb(this.getClass().getSimpleName(), "[TODO] Unhandled framework-managed class " + c);
+        Logger.verb(TAG, "[TODO] Unhandled framework-managed class {}", c);
       }
     }
   }
@@ -211,7 +218,7 @@ public class Flowgraph implements MethodNames {
     if (c.isAbstract()){
       return;
     }
-    Logger.verb("DEBUG", "[Flowgraph] Process Fragment Callbacks: "+c.getName());
+    Logger.verb("DEBUG", "[Flowgraph] Process Fragment Callbacks: {}", c.getName());
     // Flow from "Dialog onCreateDialog" to "onPrepareDialog(,Dialog)"
     modelFlowFromOnCreateDialogToOnPrepareDialog(c);
     // Model onCreateOptionsMenu and onPrepareOptionsMenu; then, model flow
@@ -223,7 +230,7 @@ public class Flowgraph implements MethodNames {
     SootMethod onCreateView = null;
     SootMethod onViewCreated = null;
     for (SootMethod callbackPrototype : callbacks) {
-      Logger.verb("DEBUG", "[Flowgraph] Callbacks: "+callbackPrototype.getSubSignature());
+      Logger.verb("DEBUG", "[Flowgraph] Callbacks: {}", callbackPrototype.getSubSignature());
       String subsig = callbackPrototype.getSubSignature();
       SootClass matched = hier.matchForVirtualDispatch(subsig, c);
       if (matched == null) {
@@ -233,7 +240,7 @@ public class Flowgraph implements MethodNames {
       if (!matched.isApplicationClass()) {
         continue;
       }
-      Logger.verb("DEBUG", "[Flowgraph] Matched Callbacks: "+callbackPrototype.getSubSignature());
+      Logger.verb("DEBUG", "[Flowgraph] Matched Callbacks: {}", callbackPrototype.getSubSignature());
       SootMethod callback = matched.getMethod(subsig);
       Local thisLocal = jimpleUtil.thisLocal(callback);
       NFragmentNode fragNode = fragmentNode(c);
@@ -253,7 +260,7 @@ public class Flowgraph implements MethodNames {
         NNode viewLocal = varNode(onViewCreated.getActiveBody().getParameterLocal(0));
         //assign flow from viewGroupParent to viewLocal
         returnViewNode.addEdgeTo(viewLocal);
-        Logger.verb("Fragment", "OnViewCreated view: "+ viewLocal.toString()+" --> OnCreateView viewGroup: "+ returnViewNode.toString());
+        Logger.verb("Fragment", "OnViewCreated view: {} --> OnCreateView viewGroup: {}", viewLocal, returnViewNode);
       }
 
     }
@@ -290,7 +297,7 @@ public class Flowgraph implements MethodNames {
     }
     if (hier.isFragmentClass(activityClass))
     {
-      Logger.verb("DEBUG", "[Flowgraph] CreateOrPrepareOptionsMenu in Fragment class "+ activityClass.getName());
+      Logger.verb("DEBUG", "[Flowgraph] CreateOrPrepareOptionsMenu in Fragment class {}", activityClass.getName());
     }
     NOptionsMenuNode optionsMenuNode =
             findOrCreateOptionsMenuNode(activityClass);
@@ -371,89 +378,46 @@ public class Flowgraph implements MethodNames {
 
   void processApplicationClasses() {
     long numClass = 0, numMtd = 0, numStmt = 0;
-    // Now process each "ordinary" statements
+    List<SootClass> classes = Lists.newArrayList();
     for (SootClass c : hier.appClasses) {
       if (WTGUtil.v().isIgnoredClass(c)) {
         continue;
       }
-      Logger.verb("Flowgraph", "Processing class: "+c.getName());
+      classes.add(c);
+    }
+    // Bodies and call targets are resolved first, and the virtual dispatch is
+    // computed in parallel; the flowgraph itself is built below in the
+    // original order.
+    long planStart = System.nanoTime();
+    List<ClassStatementPlan> plans = ClassStatementPlan.planAll(classes, hier);
+    Logger.verb("Flowgraph", "Planned " + plans.size() + " classes with "
+            + Configs.workerNum + " workers in "
+            + ((System.nanoTime() - planStart) * 1.0e-09) + " sec");
+
+    // Now process each "ordinary" statements
+    for (ClassStatementPlan plan : plans) {
+      SootClass c = plan.clazz;
+      Logger.verb("Flowgraph", "Processing class: {}", c.getName());
       numClass += 1;
-      //for (Iterator<SootMethod> iter = c.getMethods().iterator(); iter.hasNext();) {
-      for (Iterator<SootMethod> iter = Lists.newArrayList(c.getMethods()).iterator();
-           iter.hasNext(); ) {
-        currentMethod = iter.next();
-        if (!currentMethod.isConcrete()) {
-          continue;
-        }
+      for (ClassStatementPlan.MethodPlan methodPlan : plan.methods) {
+        currentMethod = methodPlan.method;
         NNode trackingFieldNode = null;
         numMtd += 1;
-        Body b = currentMethod.retrieveActiveBody();
-        Iterator<Unit> stmts = b.getUnits().iterator();
-/*        if (currentMethod.getSubSignature().equals(onActivityCreateSubSig) && currentMethod.getDeclaringClass().getName().contains("PlayerActivity"))
-        {
-          while (stmts.hasNext()) {
-            currentStmt = (Stmt) stmts.next();
-            Logger.verb("PlayerActivityOnCreate",currentStmt.toString());
-          }
-        }*/
-        stmts = b.getUnits().iterator();
-        while (stmts.hasNext()) {
-          currentStmt = (Stmt) stmts.next();
-          numStmt += 1;
-   /*       if (currentStmt.containsFieldRef())
-          {
-            FieldRef field = currentStmt.getFieldRef();
-            if (!field.getField().getName().contains("this$0") && c.getName().contains("PlayerActivity"))
-            {
-              Logger.verb("FieldRef", "Statement: "+ currentStmt.toString());
-              Logger.verb("FieldRef", "Var: "+ field.toString() + " - Field: " + field.getField().getSignature());
-
-            }
-
-          }*/
-          if (currentStmt instanceof ReturnVoidStmt) {
-            continue;
-          }
-          if (currentStmt instanceof ThrowStmt) {
-            continue;
-          }
-          if (currentStmt instanceof GotoStmt) {
-            continue;
-          }
-          if (currentStmt instanceof BreakpointStmt) {
-            continue;
-          }
-          if (currentStmt instanceof NopStmt) {
-            continue;
-          }
-          if (currentStmt instanceof RetStmt) {
-            continue;
-          }
-          if (currentStmt instanceof IfStmt) {
-            continue;
-          }
-          if (currentStmt instanceof TableSwitchStmt) {
-            continue;
-          }
-          if (currentStmt instanceof LookupSwitchStmt) {
-            continue;
-          }
-          if (currentStmt instanceof MonitorStmt) {
-            continue;
-          }
+        numStmt += methodPlan.numberOfUnits;
+        for (Stmt s : methodPlan.stmts) {
+          currentStmt = s;
           jimpleUtil.record(currentStmt, currentMethod); // remember the method
 
-          if (createPropagation(currentStmt))
+          if (methodPlan.propagationCalls.contains(currentStmt)
+                  && createPropagation(currentStmt))
             continue;
 
           // Some "special" handling of calls
           if (currentStmt.containsInvokeExpr()) {
             InvokeExpr ie = currentStmt.getInvokeExpr();
-            SootMethod stm = null;
-            try {
-              stm = ie.getMethod(); // static target
-            } catch (Exception e) {
-              Logger.trace("WARNING", "Bug in Soot. In Statement " + stm + " have incorrect invoke statement");
+            SootMethod stm = methodPlan.staticTargets.get(currentStmt); // static target
+            if (stm == null) {
+              Logger.trace("WARNING", "Bug in Soot. In Statement {} have incorrect invoke statement", currentStmt);
               continue;
             }
 
@@ -462,7 +426,7 @@ public class Flowgraph implements MethodNames {
             try {
               opNode = createOpNode(currentStmt);
             } catch (Exception e) {
-              Logger.verb(this.getClass().getSimpleName(), "Stmt: " + currentStmt.toString());
+              Logger.verb(TAG, "Stmt: {}", currentStmt);
               e.printStackTrace();
               throw new RuntimeException(e);
             }
@@ -490,16 +454,9 @@ public class Flowgraph implements MethodNames {
             }
 
             // flow graph edges at virtual calls
-            Local rcv_var = jimpleUtil.receiver(ie);
-            Type rcv_t = rcv_var.getType();
-            // could be ArrayType, for clone() calls
-            if (!(rcv_t instanceof RefType)) {
-              continue;
-            }
-            SootClass stc = ((RefType) rcv_t).getSootClass();
           /*  if (!currentMethod.isStatic() && rcv_var == jimpleUtil.thisLocal(currentMethod)) {
               Logger.verb("ProcessFlowAtCall",  currentStmt.toString());
-              Logger.verb("ProcessFlowAtCall", "Receiver class: "+stc.getName());
+              Logger.verb("ProcessFlowAtCall", "Receiver class: {}", stc.getName());
               if (hier.isActivityClass(stc) && currentStmt instanceof DefinitionStmt) {
                 Value leftOp = ((DefinitionStmt) currentStmt).getLeftOp();
                 activityNode(stc).addEdgeTo(simpleNode(leftOp));
@@ -507,12 +464,8 @@ public class Flowgraph implements MethodNames {
               continue;
             }*/
 
-            for (Iterator<SootClass> trg_i = hier.getConcreteSubtypes(stc).iterator(); trg_i.hasNext(); ) {
-              SootClass sub = trg_i.next();
-              SootMethod trg = hier.virtualDispatch(stm, sub);
-              if (trg != null && trg.getDeclaringClass().isApplicationClass()) {
-                processFlowAtCall(currentStmt, trg);
-              }
+            for (SootMethod trg : methodPlan.getVirtualTargets(currentStmt)) {
+              processFlowAtCall(currentStmt, trg);
             }
             continue;
           } // the statement was a call
@@ -585,7 +538,7 @@ public class Flowgraph implements MethodNames {
                     Local thisLocal = jimpleUtil.thisLocal(rn);
                     an.addEdgeTo(varNode(thisLocal), currentStmt);
                   } catch (RuntimeException e) {
-                    Logger.verb("WARNING", "Cannot resolve method: " + rn.getName());
+                    Logger.verb("WARNING", "Cannot resolve method: {}", rn.getName());
                   }
                 }
               }
@@ -987,7 +940,7 @@ public class Flowgraph implements MethodNames {
     try {
       callee = ie.getMethod();
     } catch (Exception e) {
-      Logger.trace("createInflate1OpNode", "unresolved InvokeExpr " + ie.toString());
+      Logger.trace("createInflate1OpNode", "unresolved InvokeExpr {}", ie);
       return null;
     }
     String sig = callee.getSignature();
@@ -1034,8 +987,8 @@ public class Flowgraph implements MethodNames {
     NOpNode inflate1 = null;
     NNode layoutIdNode = simpleNode(layoutIdVal);
     if (layoutIdNode == null) {
-      Logger.verb(this.getClass().getSimpleName(), "[WARNING] Null layout id for " + s + " @ " + caller);
-      Logger.verb(this.getClass().getSimpleName(), "  layoutIdVal: " + layoutIdVal);
+      Logger.verb(TAG, "[WARNING] Null layout id for {} @ {}", s, caller);
+      Logger.verb(TAG, "  layoutIdVal: {}", layoutIdVal);
       return null;
     }
     // TODO(tony): do we care about outside root when the return value is not
@@ -1069,7 +1022,7 @@ public class Flowgraph implements MethodNames {
       if (Configs.debugCodes.contains(Debug.OP_NODE_DEBUG)) {
         Logger.verb(this.getClass().getSimpleName(), "[AddView2] parent: " + outsideRootNode
                 + ", child: " + fakeLocalNode + " @ " + addView2);
-        Logger.verb(this.getClass().getSimpleName(), "[Inflate1] lhs: " + inflate1.getLhs());
+        Logger.verb(TAG, "[Inflate1] lhs: {}", inflate1.getLhs());
       }
       if (lhsNode != null) {
         fakeLocalNode.addEdgeTo(lhsNode, s);
@@ -1092,7 +1045,7 @@ public class Flowgraph implements MethodNames {
               (lhsNode == null ? "<NULL>" : lhsNode.toString()),
               (outsideRoot == null ? "<NULL>" : varNode(outsideRoot).toString()),
               inflate1.shortDescription());
-      Logger.verb(this.getClass().getSimpleName(), "  stmt: " + s + " @ " + jimpleUtil.lookup(s));
+      Logger.verb(TAG, "  stmt: {} @ {}", s, jimpleUtil.lookup(s));
     }
 
     return inflate1;
@@ -1105,7 +1058,7 @@ public class Flowgraph implements MethodNames {
     try {
       callee = ie.getMethod();
     } catch (Exception e) {
-      Logger.trace("createInflate2OpNode", "unresolved InvokeExpr " + ie.toString());
+      Logger.trace("createInflate2OpNode", "unresolved InvokeExpr {}", ie);
       return null;
     }
     SootClass c = callee.getDeclaringClass();
@@ -1133,7 +1086,7 @@ public class Flowgraph implements MethodNames {
       //Logger.verb("DEBUG", "createInflate2OpNode "+inflate2);
       return inflate2;
     } catch (Exception ex) {
-      Logger.verb("ERROR", "layoutIdNode : " + layoutIdVal.toString() + " not found");
+      Logger.verb("ERROR", "layoutIdNode : {} not found", layoutIdVal);
       ex.printStackTrace();
 
       return null;
@@ -1147,7 +1100,7 @@ public class Flowgraph implements MethodNames {
     try {
       callee = ie.getMethod();
     } catch (Exception e) {
-      Logger.trace("createFindView1OpNode", "unresolved InvokeExpr " + ie.toString());
+      Logger.trace("createFindView1OpNode", "unresolved InvokeExpr {}", ie);
       return null;
     }
     String subsig = callee.getSubSignature();
@@ -1243,7 +1196,7 @@ public class Flowgraph implements MethodNames {
     if (Configs.debugCodes.contains(Debug.OP_NODE_DEBUG)) {
       Logger.verb(this.getClass().getSimpleName(), "[FindView1] view: " + receiverNode + ", id: " +
               widgetIdNode + ", lhs: " + lhsNode + " @ " + findView1.shortDescription());
-      Logger.verb(this.getClass().getSimpleName(), "  stmt: " + s + " @ " + jimpleUtil.lookup(s));
+      Logger.verb(TAG, "  stmt: {} @ {}", s, jimpleUtil.lookup(s));
     }
 
     return findView1;
@@ -1256,7 +1209,7 @@ public class Flowgraph implements MethodNames {
     try {
       callee = ie.getMethod();
     } catch (Exception e) {
-      Logger.trace("createFindView2OpNode", "unresolved InvokeExpr " + ie.toString());
+      Logger.trace("createFindView2OpNode", "unresolved InvokeExpr {}", ie);
       return null;
     }
     String subsig = callee.getSubSignature();
@@ -1292,7 +1245,7 @@ public class Flowgraph implements MethodNames {
     Value layoutIdVal = ie.getArg(0);
     NNode layoutIdNode = simpleNode(layoutIdVal);
     if (layoutIdNode == null) {
-      Logger.verb(this.getClass().getSimpleName(), "[WARNING] Null layout id for " + s + " @ " + caller);
+      Logger.verb(TAG, "[WARNING] Null layout id for {} @ {}", s, caller);
       return NOpNode.NullOpNode;
     }
     NOpNode findView2 = new NFindView2OpNode(layoutIdNode, receiverNode, lhsNode,
@@ -1301,7 +1254,7 @@ public class Flowgraph implements MethodNames {
     if (Configs.debugCodes.contains(Debug.OP_NODE_DEBUG)) {
       Logger.verb(this.getClass().getSimpleName(), "[FindView2] id: " + layoutIdNode + ", act: " +
               receiverNode + ", lhs: " + lhsNode + " @ " + findView2.shortDescription());
-      Logger.verb(this.getClass().getSimpleName(), "  stmt: " + s + " @ " + jimpleUtil.lookup(s));
+      Logger.verb(TAG, "  stmt: {} @ {}", s, jimpleUtil.lookup(s));
     }
 
     return findView2;
@@ -1373,7 +1326,7 @@ public class Flowgraph implements MethodNames {
     if (Configs.debugCodes.contains(Debug.OP_NODE_DEBUG)) {
       Logger.verb(this.getClass().getSimpleName(), "[FindView3] view: " + receiverNode + ", lhs: " +
               lhsNode + " @ " + findView3.shortDescription());
-      Logger.verb(this.getClass().getSimpleName(), "  stmt: " + s + " @ " + jimpleUtil.lookup(s));
+      Logger.verb(TAG, "  stmt: {} @ {}", s, jimpleUtil.lookup(s));
     }
 
     return findView3;
@@ -1447,7 +1400,7 @@ public class Flowgraph implements MethodNames {
     }
     Local rcv = jimpleUtil.receiver(ie);
     if (rcv == null) {
-      Logger.verb("createSetIdOpNode", "InvokeExpr " + ie.toString() + "has no receiver");
+      Logger.verb("createSetIdOpNode", "InvokeExpr {}has no receiver", ie);
       return null;
     }
     SootClass rcvClass = ((RefType) rcv.getType()).getSootClass();
@@ -1598,7 +1551,7 @@ public class Flowgraph implements MethodNames {
     for (SootMethod h : handlers) {
       // this := listenerObject
       listenerObject.addEdgeTo(varNode(jimpleUtil.thisLocal(h)), s);
-      Logger.verb("processSetListener", "Listener: "+ h.getSignature());
+      Logger.verb("processSetListener", "Listener: {}", h.getSignature());
       // Find the view parameter in the event handler, and then do:
       // viewPara := viewObject
       String handlerSubsig = h.getSubSignature();
@@ -1629,7 +1582,7 @@ public class Flowgraph implements MethodNames {
                         + ", reason: " + s + " in " + (callSite != null ? callSite.getO2() : null));
         continue;
       }
-      Logger.verb("processSetListener", "View object: "+viewObject.toString() +" --> Handler: " + h.getSignature() + " --> viewPara: " +viewPara.toString() );
+      Logger.verb("processSetListener", "View object: {} --> Handler: {} --> viewPara: {}", viewObject, h.getSignature(), viewPara);
       viewObject.addEdgeTo(varNode(viewPara), s);
     }
 
@@ -1756,13 +1709,13 @@ public class Flowgraph implements MethodNames {
     Set<SootMethod> handlers = setListener.getListenerInstance().computeConcreteHandlers(listenerNode);
     if (handlers.size()==0)
     {
-      Logger.verb(this.getClass().getSimpleName(),  setListener + " does not have concrete handlers");
+      Logger.verb(TAG,  setListener + " does not have concrete handlers");
     }
     // Finally, create flow edges to represent the link between SetListener
     // and the dispatched callback methods.
     for (SootMethod h : handlers) {
       if (Configs.debugCodes.contains(Debug.LISTENER_DEBUG)) {
-        Logger.verb(this.getClass().getSimpleName(), "{SL->CB} " + setListener + " ===> " + h);
+        Logger.verb(TAG, "{SL->CB} {} ===> {}", setListener, h);
       }
       listenerNode.addEdgeTo(varNode(jimpleUtil.thisLocal(h)), s);
 
@@ -1803,7 +1756,7 @@ public class Flowgraph implements MethodNames {
                 "[WARNING] Cannot find View parameter for " + h.getSignature()
                         + ", listenerClass: " + listenerClass + ", listenerParameter: "
                         + listenerParameterType + ", reason: " + s + " in " + caller);
-        Logger.verb(this.getClass().getSimpleName(), "  viewParaType: " + viewParaType);
+        Logger.verb(TAG, "  viewParaType: {}", viewParaType);
         continue;
       }
       viewNode.addEdgeTo(varNode(viewPara), s);
@@ -1889,7 +1842,7 @@ public class Flowgraph implements MethodNames {
     if (Configs.debugCodes.contains(Debug.MENU_DEBUG)) {
       Logger.verb(this.getClass().getSimpleName(), "[AddMenuItem] menu: " + menu + ", menuItem: " + menuItem
               + " @ " + addMenuItem.shortDescription());
-      Logger.verb(this.getClass().getSimpleName(), "  stmt: " + s + " @ " + jimpleUtil.lookup(s));
+      Logger.verb(TAG, "  stmt: {} @ {}", s, jimpleUtil.lookup(s));
     }
 
     return addMenuItem;
@@ -1961,7 +1914,7 @@ public class Flowgraph implements MethodNames {
     NOpNode menuInflate = new NMenuInflateOpNode(menuIdNode, menuNode, callSite, false);
 
     if (Configs.debugCodes.contains(Debug.MENU_DEBUG)) {
-      Logger.verb(this.getClass().getSimpleName(), "--- [CREATED] " + menuInflate);
+      Logger.verb(TAG, "--- [CREATED] {}", menuInflate);
     }
     return menuInflate;
   }
@@ -2154,7 +2107,7 @@ public class Flowgraph implements MethodNames {
         }
       } catch (NullPointerException ne) {
         //work around for applications that use layout ids that are not in res/layout
-        Logger.verb("WARNING", "OpNode " + op.toString() + " unknown");
+        Logger.verb("WARNING", "OpNode {} unknown", op);
         continue;
       }
     }
@@ -2445,7 +2398,7 @@ public class Flowgraph implements MethodNames {
       NNode targetNode = simpleNode(target);
       recordedButterKnifeViewBinding.put(((RefType) target.getType()).getSootClass(),targetNode);
     } else{
-      Logger.verb("ButterKnife", "Not supported bind method: " + s);
+      Logger.verb("ButterKnife", "Not supported bind method: {}", s);
     }
     return false;
   }
@@ -2492,7 +2445,7 @@ public class Flowgraph implements MethodNames {
           bindedNode = fragmentNode(targetSootClass);
         }
         if (bindedNode == null) {
-          Logger.verb("ButterKnife", "Cannot get binded class: "+targetSootClass);
+          Logger.verb("ButterKnife", "Cannot get binded class: {}", targetSootClass);
           continue;
         }
        /* Logger.verb("DEBUG", "Reachable by "+bindedNode);
@@ -2505,7 +2458,7 @@ public class Flowgraph implements MethodNames {
     }
     for (SootClass key: recordedButterKnifeViewBinding.keySet()) {
       if (!viewBindingClass_RootView.containsKey(key)){
-        Logger.verb("ButterKnife", "No viewbinding constructor found for "+ key);
+        Logger.verb("ButterKnife", "No viewbinding constructor found for {}", key);
         continue;
       }
       NNode rootViewParam = viewBindingClass_RootView.get(key);
@@ -2584,7 +2537,7 @@ public class Flowgraph implements MethodNames {
     !hier.isSubclassOf(receiverClass,viewHolderClass2)) {
       return false;
     }
-    Logger.verb("DEBUG", "View holder construction: "+ s.toString());
+    Logger.verb("DEBUG", "View holder construction: {}", s);
     recyclerViewAdapterCreateHolderCalls.add(s);
     return true;
   }
@@ -2593,19 +2546,19 @@ public class Flowgraph implements MethodNames {
     for (Stmt s : recyclerViewAdapterCreateHolderCalls) {
       SootMethod method = jimpleUtil.lookup(s);
       if (!method.getSubSignature().contains(onCreateViewHolderSubSigTemplate)) {
-        Logger.verb("CreateViewHolder","Not a call in onCreateViewHolder "+method.getSignature());
+        Logger.verb("CreateViewHolder", "Not a call in onCreateViewHolder {}", method.getSignature());
         continue;
       }
       SootClass viewAdapterClass = method.getDeclaringClass();
-      Logger.verb("CreateViewHolder","Caller: "+method.getSignature());
-      Logger.verb("CreateViewHolder","CreateHolderCall: "+s);
+      Logger.verb("CreateViewHolder", "Caller: {}", method.getSignature());
+      Logger.verb("CreateViewHolder", "CreateHolderCall: {}", s);
       InvokeExpr ie = s.getInvokeExpr();
       NAllocNode allocNode = allNAllocNodes.get(ie);
       SootMethod callee = ie.getMethod();
-      Logger.verb("CreateViewHolder","Callee: "+callee.getSubSignature());
+      Logger.verb("CreateViewHolder", "Callee: {}", callee.getSubSignature());
       Local receiver = jimpleUtil.receiver(ie);
       SootClass receiverClass = ((RefType) receiver.getType()).getSootClass();
-      Logger.verb("CreateViewHolder","Receiver class: "+receiverClass.getName());
+      Logger.verb("CreateViewHolder", "Receiver class: {}", receiverClass.getName());
       //find the View parameters
       Value itemView = null;
       List<Value> args = ie.getArgs();
@@ -2674,7 +2627,7 @@ public class Flowgraph implements MethodNames {
     && !hier.isSubclassOf(receiverClass, recyclerView2Class)) {
       return false;
     }
-    Logger.verb("DEBUG", "Set adapter: "+ s.toString());
+    Logger.verb("DEBUG", "Set adapter: {}", s);
     listViewSetAdapterCalls.add(s);
     return true;
   }
@@ -2702,7 +2655,7 @@ public class Flowgraph implements MethodNames {
       return false;
     }
     if (Configs.debugCodes.contains(Debug.VIEWPAGER_DEBUG)) {
-      Logger.verb("Viewpager", "Recorded viewpager->setAdapter: "+ s.toString());
+      Logger.verb("Viewpager", "Recorded viewpager->setAdapter: {}", s);
     }
     viewPagerSetAdapterCalls.add(s);
     return true;
@@ -2803,7 +2756,7 @@ public class Flowgraph implements MethodNames {
     && !hier.isSubclassOf(receiverClass, recyclerAdapter2Class)) {
       return false;
     }
-    Logger.verb("DEBUG", "Adapter construction: "+ s.toString());
+    Logger.verb("DEBUG", "Adapter construction: {}", s);
     listAdapterConstructorCalls.add(s);
     return true;
   }
@@ -2819,7 +2772,7 @@ public class Flowgraph implements MethodNames {
     if (!hier.isSubclassOf(receiverClass, resourceCursorAdapterClass)) {
       return false;
     }
-    Logger.verb("DEBUG", "Adapter construction: "+ s.toString());
+    Logger.verb("DEBUG", "Adapter construction: {}", s);
     resourceAdapterConstructorCalls.add(s);
     return true;
   }
@@ -2838,7 +2791,7 @@ public class Flowgraph implements MethodNames {
             && !hier.isSubclassOf(receiverClass, recyclerAdapter2Class)) {
       return false;
     }
-    Logger.verb("DEBUG", "Adapter get view: "+ s.toString());
+    Logger.verb("DEBUG", "Adapter get view: {}", s);
     listAdapterGetViewCalls.add(s);
     return true;
   }
@@ -2859,7 +2812,7 @@ public class Flowgraph implements MethodNames {
             && !hier.isSubclassOf(receiverClass, viewPagerClass2)) {
       return false;
     }
-    Logger.verb("DEBUG", "Adapter get view: "+ s.toString());
+    Logger.verb("DEBUG", "Adapter get view: {}", s);
     pagerAdapterGetItemCalls.add(s);
     return true;
   }
@@ -2931,14 +2884,14 @@ public class Flowgraph implements MethodNames {
       Value v = extractLayoutIdFromAdapterConstructor(s);
 
       if (v == null) {
-        Logger.verb(this.getClass().getSimpleName(), "[WARNING] Cannot find resource id for " + stringForStmt);
+        Logger.verb(TAG, "[WARNING] Cannot find resource id for {}", stringForStmt);
         continue;
       }
       NNode idNode = simpleNode(v);
       if (idNode == null) {
         // Typically, this is when the value is 0. So, we are fine.
-        Logger.trace(this.getClass().getSimpleName(), "[WARNING] Cannot create node for id " + v);
-        Logger.trace(this.getClass().getSimpleName(), "  * " + stringForStmt);
+        Logger.trace(TAG, "[WARNING] Cannot create node for id {}", v);
+        Logger.trace(TAG, "  * {}", stringForStmt);
         continue;
       }
       NVarNode adapterVar = varNode(jimpleUtil.receiver(s));
@@ -2975,15 +2928,15 @@ public class Flowgraph implements MethodNames {
       Value v = extractLayoutIdFromAdapterConstructor(s);
 
       if (v == null) {
-        Logger.verb(this.getClass().getSimpleName(), "[WARNING] Cannot find resource id for " + stringForStmt);
+        Logger.verb(TAG, "[WARNING] Cannot find resource id for {}", stringForStmt);
         continue;
       }
-      Logger.verb(this.getClass().getSimpleName(), "LayoutId: "+ v.toString() + " --> "+stringForStmt);
+      Logger.verb(TAG, "LayoutId: {} --> {}", v, stringForStmt);
       NNode idNode = simpleNode(v);
       if (idNode == null) {
         // Typically, this is when the value is 0. So, we are fine.
-        Logger.trace(this.getClass().getSimpleName(), "[WARNING] Cannot create node for id " + v);
-        Logger.trace(this.getClass().getSimpleName(), "  * " + stringForStmt);
+        Logger.trace(TAG, "[WARNING] Cannot create node for id {}", v);
+        Logger.trace(TAG, "  * {}", stringForStmt);
         continue;
       }
       NVarNode adapterVar = varNode(jimpleUtil.receiver(s));
@@ -3020,14 +2973,14 @@ public class Flowgraph implements MethodNames {
 
       Value v = extractLayoutIdFromAdapterConstructor(s);
       if (v == null) {
-        Logger.verb(this.getClass().getSimpleName(), "[WARNING] Cannot find resource id for " + stringForStmt);
+        Logger.verb(TAG, "[WARNING] Cannot find resource id for {}", stringForStmt);
         continue;
       }
       NNode idNode = simpleNode(v);
       if (idNode == null) {
         // Typically, this is when the value is 0. So, we are fine.
-        Logger.trace(this.getClass().getSimpleName(), "[WARNING] Cannot create node for id " + v);
-        Logger.trace(this.getClass().getSimpleName(), "  * " + stringForStmt);
+        Logger.trace(TAG, "[WARNING] Cannot create node for id {}", v);
+        Logger.trace(TAG, "  * {}", stringForStmt);
         continue;
       }
       NVarNode adapterVar = varNode(jimpleUtil.receiver(s));
@@ -3061,17 +3014,17 @@ public class Flowgraph implements MethodNames {
   }
 
   void dumpRecordedListViewCalls() {
-    Logger.verb(this.getClass().getSimpleName(), "[TRan2mat] --- setAdapter");
+    Logger.verb(TAG, "[TRan2mat] --- setAdapter");
     for (Stmt s : listViewSetAdapterCalls) {
-      Logger.verb(this.getClass().getSimpleName(), "[TRan2mat]   * " + s);
+      Logger.verb(TAG, "[TRan2mat]   * {}", s);
     }
-    Logger.verb(this.getClass().getSimpleName(), "[TRan2mat] --- adapter.<init>");
+    Logger.verb(TAG, "[TRan2mat] --- adapter.<init>");
     for (Stmt s : listAdapterConstructorCalls) {
-      Logger.verb(this.getClass().getSimpleName(), "[TRan2mat]   * " + s);
+      Logger.verb(TAG, "[TRan2mat]   * {}", s);
     }
-    Logger.verb(this.getClass().getSimpleName(), "[TRan2mat] --- getView");
+    Logger.verb(TAG, "[TRan2mat] --- getView");
     for (Stmt s : listAdapterGetViewCalls) {
-      Logger.verb(this.getClass().getSimpleName(), "[TRan2mat]   * " + s);
+      Logger.verb(TAG, "[TRan2mat]   * {}", s);
     }
   }
 
@@ -3092,14 +3045,14 @@ public class Flowgraph implements MethodNames {
     Set<NNode> sources = graphUtil.backwardReachableNodes(varNode(adapter));
     Pair<Stmt, SootMethod> callSite = new Pair<Stmt, SootMethod>(setAdapterCall, caller);
     if (Configs.debugCodes.contains(Debug.LIST_ADAPTER_DEBUG)) {
-      Logger.verb(this.getClass().getSimpleName(), "--- SetAdapter: " + setAdapterCall + " in " + caller);
+      Logger.verb(TAG, "--- SetAdapter: {} in {}", setAdapterCall, caller);
     }
     for (NNode src : sources) {
 
       if (!(src instanceof NObjectNode)) {
         continue;
       }
-      Logger.verb(this.getClass().getSimpleName(), "Source: " + src.toString());
+      Logger.verb(TAG, "Source: {}", src);
       SootClass adapterType = ((NObjectNode) src).getClassType();
       SootMethod getView = null;
       SootClass concreteType;
@@ -3134,7 +3087,7 @@ public class Flowgraph implements MethodNames {
 
       if (Configs.debugCodes.contains(Debug.LIST_ADAPTER_DEBUG)) {
 
-        Logger.verb(this.getClass().getSimpleName(), "  * " + getView);
+        Logger.verb(TAG, "  * {}", getView);
       }
       // We handle ArrayAdapter only for now.
       // if (!hier.isSubclassOf(concreteType, arrayAdapterClass)) {
@@ -3181,7 +3134,7 @@ public class Flowgraph implements MethodNames {
 
               NOpNode addView2 =
                       new NAddView2OpNode(listViewNode, listItemNode, callSite, true);
-              Logger.verb("Flowgraph", "ListViewItem: " + addView2.toString());
+              Logger.verb("Flowgraph", "ListViewItem: {}", addView2);
               allNNodes.add(addView2);
               //listViewNode.addEdgeTo(listItemNode);
             /*if (hier.isSubclassOf(concreteType,recyclerAdapter1Class)||
@@ -3201,7 +3154,7 @@ public class Flowgraph implements MethodNames {
       } else{
           // Library-defined adapter type
           if (!(src instanceof NAllocNode)) {
-            Logger.verb(this.getClass().getSimpleName(), "Unexpected adapter object " + src);
+            Logger.verb(TAG, "Unexpected adapter object {}", src);
             continue;
           }
           NAllocNode adapterObject = (NAllocNode) src;
@@ -3346,15 +3299,15 @@ public class Flowgraph implements MethodNames {
   public Value extractLayoutIdFromAdapterConstructor(SootMethod method) {
     Body body = method.retrieveActiveBody();
     if (extractIdDebug) {
-      Logger.verb(this.getClass().getSimpleName(), "--- extracting from " + method);
-      Logger.verb(this.getClass().getSimpleName(), body.toString());
+      Logger.verb(TAG, "--- extracting from {}", method);
+      Logger.verb(TAG, body.toString());
     }
     SootClass thisClass = method.getDeclaringClass();
     Iterator<Unit> stmts = body.getUnits().iterator();
     while (stmts.hasNext()) {
       Stmt s = (Stmt) stmts.next();
       if (extractIdDebug) {
-        Logger.verb(this.getClass().getSimpleName(), "  * s: " + s);
+        Logger.verb(TAG, "  * s: {}", s);
       }
       if (!s.containsInvokeExpr()) {
         continue;
@@ -3600,10 +3553,10 @@ public class Flowgraph implements MethodNames {
 
     // Some warnings
     for (SootClass c : subclassesOfAlertDialog) {
-      Logger.verb(this.getClass().getSimpleName(), "  \033[1;31m[TODO]\033[0m Customized AlertDialog: " + c);
+      Logger.verb(TAG, "  \033[1;31m[TODO]\033[0m Customized AlertDialog: {}", c);
     }
     for (SootClass c : subclassesOfAlertDialogBuilder) {
-      Logger.verb(this.getClass().getSimpleName(), "  \033[1;31m[TDOO]\033[0m Customized AlertDialog.Builder: " + c);
+      Logger.verb(TAG, "  \033[1;31m[TDOO]\033[0m Customized AlertDialog.Builder: {}", c);
     }
   }
 
@@ -3856,7 +3809,7 @@ public class Flowgraph implements MethodNames {
       if (calleeSubsig.contains("android.os.Message")) {
         // This is for posting messages. We can't understand it yet. Print out
         // a warning message and return to ignore.
-        Logger.verb(this.getClass().getSimpleName(), "[WARNING] Posting message: " + s + " @ " + caller);
+        Logger.verb(TAG, "[WARNING] Posting message: {} @ {}", s, caller);
         return;
       }
       // Now, we are sure that a listener is set.
@@ -3929,7 +3882,7 @@ public class Flowgraph implements MethodNames {
       return;
     }
 
-    Logger.verb(this.getClass().getSimpleName(), "[WARNING] Unknown setter: " + s + " @ " + caller);
+    Logger.verb(TAG, "[WARNING] Unknown setter: {} @ {}", s, caller);
     //throw new RuntimeException("Unknown setter: " + s + " @ " + caller);
   }
 
@@ -5691,9 +5644,9 @@ public class Flowgraph implements MethodNames {
     || transaction3Add1Match || transaction3Add2Match || transaction3Add3Match
     || transaction3Add4Match || transaction3Add5Match))
       return false;
-    Logger.verb("ProcessFragment","[Flowgraph] AddFragmentStm: "+s.toString());
+    Logger.verb("ProcessFragment", "[Flowgraph] AddFragmentStm: {}", s);
     SootMethod caller = jimpleUtil.lookup(s);
-    Logger.verb("ProcessFragment","[Flowgraph] Caller: "+ caller.getSignature());
+    Logger.verb("ProcessFragment", "[Flowgraph] Caller: {}", caller.getSignature());
     try {
       Local receiver = jimpleUtil.receiver(ie);
 
@@ -5760,15 +5713,15 @@ public class Flowgraph implements MethodNames {
     || transaction3Replace1Match || transaction3Replace2Match
     || transaction3Replace3Match || transaction3Replace4Match))
       return false;
-    Logger.verb("ProcessFragment","[Flowgraph] ReplaceFragmentStm: "+s.toString());
+    Logger.verb("ProcessFragment", "[Flowgraph] ReplaceFragmentStm: {}", s);
     SootMethod caller = jimpleUtil.lookup(s);
-    Logger.verb("ProcessFragment","[Flowgraph] Caller: "+ caller.getSignature());
+    Logger.verb("ProcessFragment", "[Flowgraph] Caller: {}", caller.getSignature());
     try {
       Local receiver = jimpleUtil.receiver(ie);
       ArrayList<SootClass> topCaller = new ArrayList<>();
       Local topCallerLocal = findCaller(s, receiver,new ArrayList<SootClass>(hier.appClasses));
       NVarNode receiverNode = varNode(topCallerLocal);
-      Logger.verb("ProcessFragment","[Flowgraph] Top Caller: "+ topCallerLocal.getType().toString());
+      Logger.verb("ProcessFragment", "[Flowgraph] Top Caller: {}", topCallerLocal.getType());
       recordedReplaceFragmentCalls.put(s, receiverNode);
       return true;
     }
@@ -5794,7 +5747,7 @@ public class Flowgraph implements MethodNames {
       if (returnValueNode != null)
       {
         fragmentsReturnViewMap.put(c, returnValueNode);
-        Logger.verb("ProcessFragment", "Fragment: " +c.getName()+"--> Return view: " + returnValueNode);
+        Logger.verb("ProcessFragment", "Fragment: {}--> Return view: {}", c.getName(), returnValueNode);
         return returnValueNode;
       }
     }
@@ -5844,7 +5797,7 @@ public class Flowgraph implements MethodNames {
     }
     else
     {
-      Logger.verb("DEBUG", "Cannot get/create Node for: " + c.getName());
+      Logger.verb("DEBUG", "Cannot get/create Node for: {}", c.getName());
     }
     return result;
   }
@@ -5870,13 +5823,13 @@ public class Flowgraph implements MethodNames {
             || transaction3Add1Match || transaction3Add2Match || transaction3Add3Match
             || transaction3Add4Match || transaction3Add5Match))
       return null;
-    Logger.verb(this.getClass().getSimpleName(), ie.toString());
+    Logger.verb(TAG, ie.toString());
     Local rev = jimpleUtil.receiver(ie);
     SootClass receiverClass = ((RefType)((NVarNode)parentLocalNode).l.getType()).getSootClass();
-    Logger.verb("ProcessFragment", "Process AddFragment Stmt: "+s.toString());
+    Logger.verb("ProcessFragment", "Process AddFragment Stmt: {}", s);
     if (Configs.debugCodes.contains(Debug.FRAGMENT_DEBUG)) {
 
-      Logger.verb("ProcessFragment","ReceiverClass: "+receiverClass.getName());
+      Logger.verb("ProcessFragment", "ReceiverClass: {}", receiverClass.getName());
     }
     Value layoutIdVal = null;
     Local fragment = null;
@@ -5925,7 +5878,7 @@ public class Flowgraph implements MethodNames {
     for (SootClass c: relatedClass)
     {
       if (Configs.debugCodes.contains(Debug.FRAGMENT_DEBUG)) {
-        Logger.verb("ProcessFragment","Derived class: "+c.getName());
+        Logger.verb("ProcessFragment", "Derived class: {}", c.getName());
       }
       NNode parentNode;
       if (hier.isActivityClass(c))
@@ -5940,9 +5893,9 @@ public class Flowgraph implements MethodNames {
       Local classLocal = getClassLocal(c);
       NNode parentReceiverNode = varNode(classLocal);
       if (Configs.debugCodes.contains(Debug.FRAGMENT_DEBUG)) {
-        Logger.verb("ProcessFragment","Derived class: "+c.getName());
+        Logger.verb("ProcessFragment", "Derived class: {}", c.getName());
 
-        Logger.verb("ProcessFragment","ParentReceiverNode: "+parentReceiverNode + "--Type: "+classLocal.getType());
+        Logger.verb("ProcessFragment", "ParentReceiverNode: {}--Type: {}", parentReceiverNode, classLocal.getType());
         for (SootClass c2: relatedClass) {
           NNode c2Node;
           if (hier.isActivityClass(c2))
@@ -5953,10 +5906,10 @@ public class Flowgraph implements MethodNames {
             c2Node = null;
           Set<NNode> reachables = graphUtil.reachableNodes(c2Node);
           if (reachables.contains(parentReceiverNode)) {
-            Logger.verb("ProcessFragment", "parentReceiverNode is reached by: "+c2);
+            Logger.verb("ProcessFragment", "parentReceiverNode is reached by: {}", c2);
           }
           if(reachables.contains(parentNode)) {
-            Logger.verb("ProcessFragment", "activityNode is reached by: "+c2);
+            Logger.verb("ProcessFragment", "activityNode is reached by: {}", c2);
           }
         }
       }
@@ -6000,7 +5953,7 @@ public class Flowgraph implements MethodNames {
           Logger.verb("ProcessFragment", fragmentOpNode.getClass() + " created: "+ c.getName() + " -> " + fragmentClass
                   + " -> " + layoutIdNode.toString());
 
-          Logger.verb("ProcessFragment", "Return view: "+fragmentViewNode+" -- "+fragmentClass);
+          Logger.verb("ProcessFragment", "Return view: {} -- {}", fragmentViewNode, fragmentClass);
         }
 
         if (hier.isActivityClass(c))
@@ -6043,12 +5996,12 @@ public class Flowgraph implements MethodNames {
     List<SootMethod> methods = c.getMethods();
     for (SootMethod m: methods) {
       if (m.isConstructor()) {
-        Logger.verb( "GetClassLocal","This Local of "+m.getSubSignature());
+        Logger.verb("GetClassLocal", "This Local of {}", m.getSubSignature());
         return jimpleUtil.thisLocal(m);
       }
       if (m.getSubSignature() == onActivityCreateSubSig || m.getSubSignature() == onActivityStartSubSig
               || m.getSubSignature() == onActivityResumeSubSig) {
-        Logger.verb( "GetClassLocal","This Local of "+m.getSubSignature());
+        Logger.verb("GetClassLocal", "This Local of {}", m.getSubSignature());
         return jimpleUtil.thisLocal(m);
       }
     }
@@ -6057,7 +6010,7 @@ public class Flowgraph implements MethodNames {
     {
       if (m.isJavaLibraryMethod() || m.isConstructor() || m.isStatic() || m.isMain())
         continue;
-      Logger.verb( "GetClassLocal","This Local of "+m.getSubSignature());
+      Logger.verb("GetClassLocal", "This Local of {}", m.getSubSignature());
       return m.getActiveBody().getThisLocal();
 //      if (it.hasNext())
 //        {
@@ -6068,7 +6021,7 @@ public class Flowgraph implements MethodNames {
 //          }
 //        }
     }
-    Logger.verb( "GetClassLocal","This Local of "+methods.get(0).getSubSignature());
+    Logger.verb("GetClassLocal", "This Local of {}", methods.get(0).getSubSignature());
     return jimpleUtil.thisLocal(methods.get(0));
   }
 
@@ -6341,7 +6294,7 @@ public class Flowgraph implements MethodNames {
       return null;
     Local rev = jimpleUtil.receiver(ie);
     SootClass receiverClass = ((RefType)((NVarNode)parentLocalNode).l.getType()).getSootClass();
-    Logger.verb("ProcessFragment","ReceiverClass: "+receiverClass.getName());
+    Logger.verb("ProcessFragment", "ReceiverClass: {}", receiverClass.getName());
 
     Value layoutIdVal = null;
     Local fragment = null;
@@ -6447,11 +6400,11 @@ public class Flowgraph implements MethodNames {
       for (NNode node : interestingNodes) {
         writePred(writer, node, edges);
       }
-      Logger.trace(TAG, "---- total edges: " + edges.size());
+      Logger.trace(TAG, "---- total edges: {}", edges.size());
       // end of .dot file
       writer.write("\n}");
       writer.close();
-      Logger.verb(TAG, "flow graph dump to file: " + dotFile);
+      Logger.verb(TAG, "flow graph dump to file: {}", dotFile);
     } catch (IOException e) {
       e.printStackTrace();
     }
@@ -11,9 +11,9 @@ package presto.android.gui;
 import com.google.common.collect.Sets;
 import presto.android.Configs;
 import presto.android.Hierarchy;
+import presto.android.Instrumentation;
 import presto.android.Logger;
 import presto.android.xml.XMLParser;
-import presto.android.Timer;
 
 import java.util.Set;
 
@@ -85,39 +85,33 @@ public class GUIAnalysis {
     // 0. Populate IDs
     populateIDContainers();
 
-    // 1. Build flow graph
-    flowgraph = new Flowgraph(hier, allLayoutIds, allMenuIds, allWidgetIds, allStringIds);
-    flowgraph.build();
-
-    //Added for Experiment
-    /*System.out.println("<TIME>:" + (Timer.duration() / 1000.0) + " second");
-    Runtime.getRuntime().gc();
-    Runtime.getRuntime().gc();
-    Runtime.getRuntime().gc();
-    System.out.println("<MEMORY>:" +
-            ((Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / 1024 /
-                    1024) + " MB");
-    System.exit(0);*/
-
-    // 2. Fix-point computation
-    fixpointSolver = new FixpointSolver(flowgraph);
-    fixpointSolver.solve();
-
-    // Added for Experiment
-    /*System.out.println("<TIME>:" + (Timer.duration() / 1000.0) + " second");
-    Runtime.getRuntime().gc();
-    Runtime.getRuntime().gc();
-    Runtime.getRuntime().gc();
-    System.out.println("<MEMORY>:" +
-            ((Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / 1024 /
-                    1024) + " MB");
-    System.exit(0);*/
+    if (!Configs.loadSnapshot.isEmpty()) {
+      // 1-2. Load the solved flow graph
+      Instrumentation.run("LoadSnapshot", () -> AnalysisSnapshot.load(this, Configs.loadSnapshot));
+    } else {
+      // 1. Build flow graph
+      Instrumentation.run("Flowgraph", () -> {
+        flowgraph = new Flowgraph(hier, allLayoutIds, allMenuIds, allWidgetIds, allStringIds);
+        flowgraph.build();
+      });
+
+      // 2. Fix-point computation
+      Instrumentation.run("FixpointSolver", () -> {
+        fixpointSolver = new FixpointSolver(flowgraph);
+        fixpointSolver.solve();
+      });
+
+      if (!Configs.saveSnapshot.isEmpty()) {
+        Instrumentation.run("SaveSnapshot", () -> AnalysisSnapshot.save(this, Configs.saveSnapshot));
+      }
+    }
 
     // 3. Variable value query interface
     variableValueQueryInterface = DemandVariableValueQuery.v(flowgraph, fixpointSolver);
 
     // 4. Construct the output
-    GUIAnalysisOutput output = new DefaultGUIAnalysisOutput(this);
+    GUIAnalysisOutput output =
+            Instrumentation.call("GUIAnalysisOutput", () -> new DefaultGUIAnalysisOutput(this));
 
     long estimatedTime = System.nanoTime() - startTime;
     output.setRunningTimeInNanoSeconds(estimatedTime);
@@ -145,9 +139,11 @@ public class GUIAnalysis {
       }
 
       Logger.verb(TAG, "[" + clientName + "] Start");
-      long startTime = System.nanoTime();
-      client.run(output);
-      long estimatedTime = System.nanoTime() - startTime;
+      long estimatedTime;
+      try (Instrumentation.Span span = Instrumentation.begin("Client:" + clientName)) {
+        client.run(output);
+        estimatedTime = span.getWallNanos();
+      }
       Logger.verb(TAG, "[" + clientName + "] End: " + (estimatedTime * 1.0e-09) + " sec");
     }
   }
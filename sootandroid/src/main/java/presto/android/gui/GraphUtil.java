@@ -12,14 +12,18 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import presto.android.Logger;
 import presto.android.gui.graph.NNode;
+import presto.android.gui.graph.NNodeIdList;
+import presto.android.gui.graph.NNodeIdSet;
 import presto.android.gui.graph.NOpNode;
 import soot.toolkits.scalar.Pair;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Set;
 
 public class GraphUtil {
+  private static final String TAG = GraphUtil.class.getSimpleName();
   public static boolean verbose;
   private static GraphUtil instance;
 
@@ -34,27 +38,29 @@ public class GraphUtil {
   }
 
   public Set<NNode> reachableNodes(NNode n) {
-    Set<NNode> res = Sets.newHashSet();
+    Set<NNode> res = new NNodeIdSet();
     findReachableNodes(n, res);
     return res;
   }
 
+  // Traverses the id-based adjacency directly; no successor lists are copied.
   public void findReachableNodes(NNode start, Set<NNode> reachableNodes) {
-    LinkedList<NNode> worklist = Lists.newLinkedList();
-    worklist.add(start);
+    IntQueue worklist = new IntQueue();
+    worklist.add(start.id);
     reachableNodes.add(start);
     while (!worklist.isEmpty()) {
-      NNode n = worklist.remove();
-      for (NNode s : n.getSuccessors()) {
-        if (reachableNodes.contains(s)) {
+      NNode n = NNode.byId(worklist.remove());
+      NNodeIdList successors = n.successorIds();
+      for (int i = 0; i < successors.size(); i++) {
+        NNode s = successors.getNode(i);
+        if (!reachableNodes.add(s)) {
           continue;
         }
         if (!(s instanceof NOpNode)) {
-          worklist.add(s);
+          worklist.add(s.id);
         }
-        reachableNodes.add(s);
         if (verbose) {
-          Logger.verb(this.getClass().getSimpleName(), "[findReachableNodes] Edge: " + n + " --> " + s);
+          Logger.verb(TAG, "[findReachableNodes] Edge: {} --> {}", n, s);
         }
       }
     }
@@ -63,30 +69,32 @@ public class GraphUtil {
   // ///
   public Set<NNode> backwardReachableNodes(NNode n) {
     // p("[BackwardReachable] " + n);
-    Set<NNode> res = Sets.newHashSet();
+    Set<NNode> res = new NNodeIdSet();
     findBackwardReachableNodes(n, res);
     return res;
   }
 
   public void findBackwardReachableNodes(NNode start, Set<NNode> reachableNodes) {
-    LinkedList<NNode> worklist = Lists.newLinkedList();
-    worklist.add(start);
+    IntQueue worklist = new IntQueue();
+    worklist.add(start.id);
     reachableNodes.add(start);
     while (!worklist.isEmpty()) {
-      NNode n = worklist.remove();
-      for (NNode s : n.getPredecessors()) {
+      NNode n = NNode.byId(worklist.remove());
+      NNodeIdList predecessors = n.predecessorIds();
+      for (int i = 0; i < predecessors.size(); i++) {
+        NNode s = predecessors.getNode(i);
         if (reachableNodes.contains(s)) {
           continue;
         }
         if (verbose) {
-          Logger.verb(this.getClass().getSimpleName(), "[findReachableNodes] Edge: " + n + " --> " + s);
+          Logger.verb(TAG, "[findReachableNodes] Edge: {} --> {}", n, s);
         }
         if (s instanceof NOpNode) {
           if (!(start instanceof NOpNode)) {
             reachableNodes.add(s);
           }
         } else {
-          worklist.add(s);
+          worklist.add(s.id);
           reachableNodes.add(s);
         }
       }
@@ -94,29 +102,57 @@ public class GraphUtil {
   }
 
   public Set<NNode> allBackwardReachableNodes(NNode n) {
-    Set<NNode> res = Sets.newHashSet();
+    Set<NNode> res = new NNodeIdSet();
     findBackwardReachableNodes(n, res, false);
     return res;
   }
 
   private void findBackwardReachableNodes(NNode start, Set<NNode> reachableNodes, boolean stopAtOpNode) {
-    LinkedList<NNode> worklist = Lists.newLinkedList();
-    worklist.add(start);
+    IntQueue worklist = new IntQueue();
+    worklist.add(start.id);
     reachableNodes.add(start);
     while (!worklist.isEmpty()) {
-      NNode n = worklist.remove();
-      for (NNode s : n.getPredecessors()) {
-        if (reachableNodes.contains(s)) {
+      NNode n = NNode.byId(worklist.remove());
+      NNodeIdList predecessors = n.predecessorIds();
+      for (int i = 0; i < predecessors.size(); i++) {
+        NNode s = predecessors.getNode(i);
+        if (!reachableNodes.add(s)) {
           continue;
         }
-        Logger.trace("findBackwardReachableNodes", "Edge: " + n + " --> " + s);
-        if (s instanceof NOpNode && stopAtOpNode) {
-          reachableNodes.add(s);
+        Logger.trace("findBackwardReachableNodes", "Edge: {} --> {}", n, s);
+        if (!(s instanceof NOpNode && stopAtOpNode)) {
+          worklist.add(s.id);
+        }
+      }
+    }
+  }
+
+  // FIFO queue of node ids backed by a growable int array.
+  private static class IntQueue {
+    private int[] elements = new int[64];
+    private int head = 0;
+    private int tail = 0;
+
+    void add(int id) {
+      if (tail == elements.length) {
+        if (head > elements.length / 2) {
+          System.arraycopy(elements, head, elements, 0, tail - head);
         } else {
-          worklist.add(s);
-          reachableNodes.add(s);
+          elements = Arrays.copyOf(elements, elements.length * 2);
+          System.arraycopy(elements, head, elements, 0, tail - head);
         }
+        tail -= head;
+        head = 0;
       }
+      elements[tail++] = id;
+    }
+
+    int remove() {
+      return elements[head++];
+    }
+
+    boolean isEmpty() {
+      return head == tail;
     }
   }
 
@@ -174,7 +210,7 @@ public class GraphUtil {
       Pair<NNode, String> p = stack.removeFirst();
       NNode node = p.getO1();
       String indent = p.getO2();
-      Logger.verb(this.getClass().getSimpleName(), indent + node);
+      Logger.verb(TAG, "{}{}", indent, node);
       String newIndent = indent + "  ";
       for (NNode child : node.getChildren()) {
         stack.addFirst(new Pair<NNode, String>(child, newIndent));
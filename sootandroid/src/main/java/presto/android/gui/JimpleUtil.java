@@ -9,6 +9,7 @@
 package presto.android.gui;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.io.Files;
@@ -26,8 +27,10 @@ import java.io.PrintWriter;
 import java.sql.Statement;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -128,8 +131,20 @@ public class JimpleUtil implements MethodNames {
   // App-specific recording
   public Map<Stmt, SootMethod> s2m;
 
+  // Application methods whose statements are not recorded yet, when they
+  // are recorded on demand; see recordOnDemand()
+  private volatile List<SootMethod> unrecordedMethods;
+
   public SootMethod lookup(Stmt s) {
-    return s2m.get(s);
+    if (s == null) {
+      return null;
+    }
+    SootMethod m = s2m.get(s);
+    if (m == null && unrecordedMethods != null) {
+      recordRetrievedBodies();
+      m = s2m.get(s);
+    }
+    return m;
   }
 
   public void record(Stmt s, SootMethod m) {
@@ -139,7 +154,51 @@ public class JimpleUtil implements MethodNames {
   public Map<Expr, Stmt> exprToStmt;
 
   public Stmt lookup(Expr e) {
-    return exprToStmt.get(e);
+    if (e == null) {
+      return null;
+    }
+    Stmt s = exprToStmt.get(e);
+    if (s == null && unrecordedMethods != null) {
+      recordRetrievedBodies();
+      s = exprToStmt.get(e);
+    }
+    return s;
+  }
+
+  /**
+   * Records the statements of application methods when they are looked up,
+   * instead of when the flowgraph is built. Used when the flowgraph is
+   * loaded from a snapshot, so that only the bodies retrieved by the
+   * clients are read.
+   */
+  public synchronized void recordOnDemand() {
+    s2m = new ConcurrentHashMap<>(s2m);
+    exprToStmt = new ConcurrentHashMap<>(exprToStmt);
+    List<SootMethod> methods = Lists.newLinkedList();
+    for (SootClass c : Scene.v().getApplicationClasses()) {
+      methods.addAll(c.getMethods());
+    }
+    unrecordedMethods = methods;
+  }
+
+  // A statement can only be looked up once its body is retrieved, so a miss
+  // records the bodies retrieved since the previous miss.
+  private synchronized void recordRetrievedBodies() {
+    Iterator<SootMethod> methods = unrecordedMethods.iterator();
+    while (methods.hasNext()) {
+      SootMethod m = methods.next();
+      if (!m.hasActiveBody()) {
+        continue;
+      }
+      methods.remove();
+      for (Unit u : m.getActiveBody().getUnits()) {
+        Stmt s = (Stmt) u;
+        s2m.putIfAbsent(s, m);
+        if (s instanceof AssignStmt && ((AssignStmt) s).getRightOp() instanceof AnyNewExpr) {
+          exprToStmt.putIfAbsent((Expr) ((AssignStmt) s).getRightOp(), s);
+        }
+      }
+    }
   }
 
   public void record(Expr e, Stmt s) {
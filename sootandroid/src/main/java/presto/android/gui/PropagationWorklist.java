@@ -0,0 +1,278 @@
+/*
+ * PropagationWorklist.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import presto.android.Configs;
+import presto.android.Logger;
+import presto.android.MultiMapUtil;
+import presto.android.gui.graph.*;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dependency-tracked worklist for FixpointSolver.viewAndListenerPropagation().
+ * <p>
+ * An op node is (re-)processed only when one of its inputs changes:
+ * <p>
+ * 1) its receiver/parameter/listener solution grows, because a FindView1/2/3
+ * it is reached from produced new views;
+ * <p>
+ * 2) the view hierarchy below one of the views or windows it searched grows,
+ * either through AddView1/AddView2 (new children) or SetId (new ids);
+ * <p>
+ * 3) the flowgraph grows (SetListener connects handlers, ButterKnife binds
+ * activity roots). In that case only the producers that can reach the new
+ * edges have their paths recomputed, instead of all nodes of the flowgraph.
+ * <p>
+ * The loop terminates when the worklist is empty and the flowgraph no longer
+ * changes, i.e., at a real fixed point.
+ */
+class PropagationWorklist {
+  private static final String TAG = PropagationWorklist.class.getSimpleName();
+
+  private final FixpointSolver solver;
+
+  private final ArrayDeque<NOpNode> worklist = new ArrayDeque<>();
+  private final Set<NOpNode> queued = Sets.newHashSet();
+
+  // View or window -> FindView nodes that searched the hierarchy below it
+  private final Map<NNode, Set<NOpNode>> hierarchyReaders = Maps.newHashMap();
+
+  // Nodes that received new out-going flowgraph edges since the last round
+  private final Set<NNode> newEdgeTails = Sets.newHashSet();
+
+  // Statistics
+  private int rounds = 0;
+  private int evaluations = 0;
+  private int effectiveEvaluations = 0;
+  private int recomputedSources = 0;
+
+  PropagationWorklist(FixpointSolver solver) {
+    this.solver = solver;
+  }
+
+  void solve() {
+    long startTime = System.nanoTime();
+    enqueueAll();
+    while (true) {
+      rounds++;
+      while (!worklist.isEmpty()) {
+        NOpNode node = worklist.poll();
+        queued.remove(node);
+        process(node);
+      }
+      if (Configs.fastMode) {
+        // A single sweep, after which the paths are recomputed once if the
+        // sweep grew the flowgraph. The op nodes they reach are not
+        // processed again, see enqueue().
+        if (!newEdgeTails.isEmpty()) {
+          newEdgeTails.addAll(FixpointComputationOptimized.bindButterKnifeRoots(solver));
+          propagateFlowgraphDelta();
+        }
+        Logger.verb("FASTMODE", "FixedPointSolver, stop at 1 iteration");
+        break;
+      }
+      newEdgeTails.addAll(FixpointComputationOptimized.bindButterKnifeRoots(solver));
+      if (newEdgeTails.isEmpty()) {
+        // Fixed point found
+        break;
+      }
+      propagateFlowgraphDelta();
+    }
+    long estimatedTime = System.nanoTime() - startTime;
+    Logger.stat("[Fixpoint] propagation rounds: " + rounds
+            + ", op node evaluations: " + evaluations
+            + " (" + effectiveEvaluations + " with changes)"
+            + ", recomputed sources: " + recomputedSources
+            + ", time: " + (estimatedTime * 1.0e-09) + " sec");
+  }
+
+  private void enqueueAll() {
+    enqueueAll(NOpNode.getNodes(NFindView1OpNode.class));
+    enqueueAll(NOpNode.getNodes(NFindView2OpNode.class));
+    enqueueAll(NOpNode.getNodes(NFindView3OpNode.class));
+    enqueueAll(NOpNode.getNodes(NAddView1OpNode.class));
+    enqueueAll(NOpNode.getNodes(NAddView2OpNode.class));
+    enqueueAll(NOpNode.getNodes(NSetIdOpNode.class));
+    enqueueAll(NOpNode.getNodes(NSetTextOpNode.class));
+    enqueueAll(NOpNode.getNodes(NSetListenerOpNode.class));
+  }
+
+  private void enqueueAll(Set<? extends NOpNode> nodes) {
+    if (nodes == null) {
+      return;
+    }
+    for (NOpNode node : nodes) {
+      enqueue(node);
+    }
+  }
+
+  private void enqueue(NOpNode node) {
+    if (Configs.fastMode && rounds > 0) {
+      // Fast mode mimics a single sweep over the op nodes.
+      return;
+    }
+    if (!isPropagationNode(node)) {
+      return;
+    }
+    if (queued.add(node)) {
+      worklist.add(node);
+    }
+  }
+
+  private static boolean isPropagationNode(NOpNode node) {
+    return node instanceof NFindView1OpNode
+            || node instanceof NFindView2OpNode
+            || node instanceof NFindView3OpNode
+            || node instanceof NAddView1OpNode
+            || node instanceof NAddView2OpNode
+            || node instanceof NSetIdOpNode
+            || node instanceof NSetTextOpNode
+            || node instanceof NSetListenerOpNode;
+  }
+
+  private void process(NOpNode node) {
+    evaluations++;
+    boolean changed;
+    if (node instanceof NFindView1OpNode) {
+      changed = solver.processFindView1((NFindView1OpNode) node);
+      readHierarchyBelow(node, solver.solutionReceivers.get(node));
+      if (changed) {
+        solutionChanged(node);
+      }
+    } else if (node instanceof NFindView2OpNode) {
+      changed = solver.processFindView2((NFindView2OpNode) node);
+      readHierarchyBelow(node, solver.reachingWindows.get(node));
+      if (changed) {
+        solutionChanged(node);
+      }
+    } else if (node instanceof NFindView3OpNode) {
+      changed = solver.processFindView3((NFindView3OpNode) node);
+      readHierarchyBelow(node, solver.solutionReceivers.get(node));
+      if (changed) {
+        solutionChanged(node);
+      }
+    } else if (node instanceof NAddView1OpNode) {
+      changed = solver.processAddView1((NAddView1OpNode) node);
+      if (changed) {
+        hierarchyChanged(solver.reachingWindows.get(node));
+      }
+    } else if (node instanceof NAddView2OpNode) {
+      changed = solver.processAddView2((NAddView2OpNode) node);
+      if (changed) {
+        hierarchyChanged(solver.solutionReceivers.get(node));
+      }
+    } else if (node instanceof NSetIdOpNode) {
+      changed = solver.processSetId((NSetIdOpNode) node);
+      if (changed) {
+        hierarchyChanged(solver.solutionReceivers.get(node));
+      }
+    } else if (node instanceof NSetTextOpNode) {
+      changed = solver.processSetText((NSetTextOpNode) node);
+    } else if (node instanceof NSetListenerOpNode) {
+      int edgesBefore = NNode.numberOfEdges;
+      changed = solver.processSetListener((NSetListenerOpNode) node);
+      if (NNode.numberOfEdges != edgesBefore) {
+        newEdgeTails.addAll(MultiMapUtil.getNonNullHashSetByKey(solver.solutionReceivers, node));
+        newEdgeTails.addAll(MultiMapUtil.getNonNullHashSetByKey(solver.solutionListeners, node));
+      }
+    } else {
+      throw new RuntimeException("Unexpected op node in worklist: " + node);
+    }
+    if (changed) {
+      effectiveEvaluations++;
+    }
+  }
+
+  // The solution of a FindView node grew and has already been pushed to the
+  // consumers by FixpointSolver.propagateToParametersAndReceivers().
+  private void solutionChanged(NOpNode node) {
+    enqueueAll(solver.reachedParameterViews.get(node));
+    enqueueAll(solver.reachedReceiverViews.get(node));
+    enqueueAll(solver.reachedListeners.get(node));
+  }
+
+  private void readHierarchyBelow(NOpNode reader, Set<? extends NNode> roots) {
+    if (roots == null) {
+      return;
+    }
+    for (NNode root : roots) {
+      MultiMapUtil.addKeyAndHashSetElement(hierarchyReaders, root, reader);
+    }
+  }
+
+  // Children or ids were added somewhere below each of the given nodes, so
+  // every FindView that searched from one of their ancestors is stale.
+  private void hierarchyChanged(Set<? extends NNode> changedNodes) {
+    if (changedNodes == null) {
+      return;
+    }
+    Set<NNode> ancestors = Sets.newHashSet();
+    for (NNode n : changedNodes) {
+      if (!ancestors.contains(n)) {
+        solver.graphUtil.findAncestorNodes(n, ancestors);
+      }
+    }
+    for (NNode ancestor : ancestors) {
+      enqueueAll(hierarchyReaders.get(ancestor));
+    }
+  }
+
+  // Recompute paths only for producers that can reach one of the new edges.
+  private void propagateFlowgraphDelta() {
+    Set<NNode> affectedSources = Sets.newHashSet();
+    for (NNode tail : newEdgeTails) {
+      for (NNode n : solver.graphUtil.backwardReachableNodes(tail)) {
+        if (FixpointComputationOptimized.isPathSource(solver, n)) {
+          affectedSources.add(n);
+        }
+      }
+    }
+    newEdgeTails.clear();
+    Logger.verb(TAG, "Round " + rounds + ": recomputing paths from "
+            + affectedSources.size() + " sources");
+
+    for (NNode source : affectedSources) {
+      recomputedSources++;
+      Collection<NNode> reachables = FixpointComputationOptimized.computePathsFromSource(solver, source);
+      if (reachables == null) {
+        continue;
+      }
+      for (NNode target : reachables) {
+        if (target instanceof NOpNode) {
+          enqueue((NOpNode) target);
+        }
+      }
+    }
+    solver.solutionResultsReachability();
+
+    // New reached consumers of a FindView node have not seen its existing
+    // solution yet.
+    for (NNode source : affectedSources) {
+      if (!(source instanceof NOpNode)) {
+        continue;
+      }
+      Set<NNode> solution = solver.solutionResults.get(source);
+      if (solution != null && !solution.isEmpty()) {
+        solver.propagateToParametersAndReceivers(solution, (NOpNode) source);
+        solutionChanged((NOpNode) source);
+      }
+    }
+
+    // Text may now flow along the new edges.
+    if (Configs.enableStringPropertyAnalysis) {
+      enqueueAll(NOpNode.getNodes(NSetTextOpNode.class));
+    }
+  }
+}
@@ -0,0 +1,324 @@
+/*
+ * ReachabilityIndex.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui;
+
+import presto.android.gui.graph.*;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Transitive reachability summaries for the producer-to-consumer paths of
+ * FixpointComputationOptimized.
+ * <p>
+ * GraphUtil.reachableNodes() stops at op nodes: an op node is reachable, but
+ * its successors are not (unless it is the start node). The index condenses
+ * the strongly connected components of the flowgraph restricted to non-op
+ * nodes, and computes for each component a BitSet of the "targets" it reaches.
+ * Tarjan's algorithm completes components in reverse topological order, so
+ * every summary is the union of already completed successor summaries, i.e.,
+ * one pass over the condensation. A component that only forwards the summary
+ * of its single successor shares that BitSet instead of copying it.
+ * <p>
+ * Targets are all op nodes plus the receivers and parameters that the path
+ * computation checks with reachables.contains(). reachables() returns a Set
+ * view restricted to those targets.
+ */
+class ReachabilityIndex {
+  private static final int UNVISITED = -1;
+
+  // node id -> target number, or -1
+  private final int[] targetOf;
+  // target number -> node
+  private NNode[] targets;
+  private int numberOfTargets = 0;
+
+  // node id -> component number, or UNVISITED
+  private final int[] componentOf;
+  // component number -> summary
+  private BitSet[] summaries = new BitSet[1024];
+  private int numberOfComponents = 0;
+  private int sharedSummaries = 0;
+
+  // Tarjan state, indexed by node id
+  private final int[] dfsIndex;
+  private final int[] lowLink;
+  private final boolean[] onStack;
+  private int nextDfsIndex = 0;
+
+  ReachabilityIndex(Collection<NNode> sources) {
+    int size = NNode.maxId() + 1;
+    targetOf = new int[size];
+    Arrays.fill(targetOf, -1);
+    targets = new NNode[1024];
+    componentOf = new int[size];
+    Arrays.fill(componentOf, UNVISITED);
+    dfsIndex = new int[size];
+    Arrays.fill(dfsIndex, UNVISITED);
+    lowLink = new int[size];
+    onStack = new boolean[size];
+
+    // Number all targets first, so that a component summarized before the op
+    // node that consumes it still records its receiver/parameter bits.
+    for (int id = 1; id < size; id++) {
+      NNode n = NNode.byId(id);
+      if (n instanceof NOpNode) {
+        addTarget(n);
+      }
+    }
+    for (NNode source : sources) {
+      if (source instanceof NOpNode) {
+        NNodeIdList successors = source.successorIds();
+        for (int i = 0; i < successors.size(); i++) {
+          NNode s = successors.getNode(i);
+          if (!(s instanceof NOpNode)) {
+            strongConnect(s);
+          }
+        }
+      } else {
+        strongConnect(source);
+      }
+    }
+  }
+
+  int getNumberOfComponents() {
+    return numberOfComponents;
+  }
+
+  int getNumberOfTargets() {
+    return numberOfTargets;
+  }
+
+  int getNumberOfSharedSummaries() {
+    return sharedSummaries;
+  }
+
+  /**
+   * The targets reachable from source, following the semantics of
+   * GraphUtil.reachableNodes(source). Source must be one of the nodes the
+   * index was built from.
+   */
+  Collection<NNode> reachables(NNode source) {
+    BitSet bits;
+    if (source instanceof NOpNode) {
+      bits = new BitSet();
+      bits.set(targetOf[source.id]);
+      NNodeIdList successors = source.successorIds();
+      for (int i = 0; i < successors.size(); i++) {
+        NNode s = successors.getNode(i);
+        if (s instanceof NOpNode) {
+          bits.set(addTarget(s));
+        } else {
+          bits.or(summaries[componentOf[s.id]]);
+        }
+      }
+    } else {
+      bits = summaries[componentOf[source.id]];
+    }
+    return new TargetSet(bits);
+  }
+
+  private int addTarget(NNode n) {
+    if (n.id >= targetOf.length) {
+      throw new RuntimeException("Node " + n + " created after the index was built");
+    }
+    int t = targetOf[n.id];
+    if (t >= 0) {
+      return t;
+    }
+    if (numberOfTargets == targets.length) {
+      targets = Arrays.copyOf(targets, targets.length * 2);
+    }
+    t = numberOfTargets++;
+    targets[t] = n;
+    targetOf[n.id] = t;
+    if (n instanceof NAddView2OpNode || n instanceof NSetListenerOpNode) {
+      NOpNode opNode = (NOpNode) n;
+      addTarget(opNode.getParameter());
+      addTarget(opNode.getReceiver());
+    }
+    return t;
+  }
+
+  // Iterative Tarjan, to survive long var-node chains.
+  private void strongConnect(NNode root) {
+    if (dfsIndex[root.id] != UNVISITED) {
+      return;
+    }
+    int[] callStack = new int[64];
+    int[] nextSucc = new int[64];
+    int[] sccStack = new int[64];
+    int callTop = 0;
+    int sccTop = 0;
+
+    callStack[callTop] = root.id;
+    nextSucc[callTop] = 0;
+    callTop++;
+    dfsIndex[root.id] = lowLink[root.id] = nextDfsIndex++;
+    sccStack[sccTop++] = root.id;
+    onStack[root.id] = true;
+
+    while (callTop > 0) {
+      int v = callStack[callTop - 1];
+      NNodeIdList successors = NNode.byId(v).successorIds();
+      int i = nextSucc[callTop - 1];
+      if (i < successors.size()) {
+        nextSucc[callTop - 1] = i + 1;
+        int w = successors.get(i);
+        if (NNode.byId(w) instanceof NOpNode) {
+          continue;
+        }
+        if (dfsIndex[w] == UNVISITED) {
+          if (callTop == callStack.length) {
+            callStack = Arrays.copyOf(callStack, callTop * 2);
+            nextSucc = Arrays.copyOf(nextSucc, callTop * 2);
+          }
+          callStack[callTop] = w;
+          nextSucc[callTop] = 0;
+          callTop++;
+          dfsIndex[w] = lowLink[w] = nextDfsIndex++;
+          if (sccTop == sccStack.length) {
+            sccStack = Arrays.copyOf(sccStack, sccTop * 2);
+          }
+          sccStack[sccTop++] = w;
+          onStack[w] = true;
+        } else if (onStack[w]) {
+          lowLink[v] = Math.min(lowLink[v], dfsIndex[w]);
+        }
+        continue;
+      }
+      // All successors of v are done
+      callTop--;
+      if (callTop > 0) {
+        int parent = callStack[callTop - 1];
+        lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+      }
+      if (lowLink[v] == dfsIndex[v]) {
+        int component = numberOfComponents++;
+        int bottom = sccTop;
+        do {
+          bottom--;
+        } while (sccStack[bottom] != v);
+        for (int k = bottom; k < sccTop; k++) {
+          componentOf[sccStack[k]] = component;
+          onStack[sccStack[k]] = false;
+        }
+        summarize(component, sccStack, bottom, sccTop);
+        sccTop = bottom;
+      }
+    }
+  }
+
+  // Successor components are complete because Tarjan finishes them first.
+  private void summarize(int component, int[] members, int from, int to) {
+    BitSet summary = null;
+    boolean owned = false;
+    for (int k = from; k < to; k++) {
+      NNode n = NNode.byId(members[k]);
+      if (targetOf[n.id] >= 0) {
+        if (!owned) {
+          summary = copyOf(summary);
+          owned = true;
+        }
+        summary.set(targetOf[n.id]);
+      }
+      NNodeIdList successors = n.successorIds();
+      for (int i = 0; i < successors.size(); i++) {
+        NNode s = successors.getNode(i);
+        if (s instanceof NOpNode) {
+          if (!owned) {
+            summary = copyOf(summary);
+            owned = true;
+          }
+          summary.set(addTarget(s));
+          continue;
+        }
+        int c = componentOf[s.id];
+        if (c == component) {
+          continue;
+        }
+        BitSet successorSummary = summaries[c];
+        if (summary == null) {
+          summary = successorSummary;
+        } else if (summary != successorSummary) {
+          if (!owned) {
+            summary = copyOf(summary);
+            owned = true;
+          }
+          summary.or(successorSummary);
+        }
+      }
+    }
+    if (summary == null) {
+      summary = new BitSet(0);
+    } else if (!owned) {
+      sharedSummaries++;
+    }
+    if (component == summaries.length) {
+      summaries = Arrays.copyOf(summaries, component * 2);
+    }
+    summaries[component] = summary;
+  }
+
+  private static BitSet copyOf(BitSet bits) {
+    return (bits == null ? new BitSet() : (BitSet) bits.clone());
+  }
+
+  // Read-only view of a summary as a set of target nodes.
+  private class TargetSet extends AbstractSet<NNode> {
+    private final BitSet bits;
+
+    TargetSet(BitSet bits) {
+      this.bits = bits;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof NNode)) {
+        return false;
+      }
+      int id = ((NNode) o).id;
+      if (id >= targetOf.length || targetOf[id] < 0) {
+        return false;
+      }
+      return bits.get(targetOf[id]);
+    }
+
+    @Override
+    public int size() {
+      return bits.cardinality();
+    }
+
+    @Override
+    public Iterator<NNode> iterator() {
+      return new Iterator<NNode>() {
+        int next = bits.nextSetBit(0);
+
+        @Override
+        public boolean hasNext() {
+          return next >= 0;
+        }
+
+        @Override
+        public NNode next() {
+          if (next < 0) {
+            throw new NoSuchElementException();
+          }
+          NNode n = targets[next];
+          next = bits.nextSetBit(next + 1);
+          return n;
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,938 @@
+/*
+ * SnapshotReader.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import presto.android.gui.AnalysisSnapshot.NodeKind;
+import presto.android.gui.graph.NActivityNode;
+import presto.android.gui.graph.NAddFragmentOpNode;
+import presto.android.gui.graph.NAddView1OpNode;
+import presto.android.gui.graph.NAddView2OpNode;
+import presto.android.gui.graph.NAllocNode;
+import presto.android.gui.graph.NAnonymousIdNode;
+import presto.android.gui.graph.NContextMenuNode;
+import presto.android.gui.graph.NDialogNode;
+import presto.android.gui.graph.NFieldNode;
+import presto.android.gui.graph.NFindView1OpNode;
+import presto.android.gui.graph.NFindView1OpNode.FindView1Type;
+import presto.android.gui.graph.NFindView2OpNode;
+import presto.android.gui.graph.NFindView3OpNode;
+import presto.android.gui.graph.NFindView3OpNode.FindView3Type;
+import presto.android.gui.graph.NFragmentNode;
+import presto.android.gui.graph.NIdNode;
+import presto.android.gui.graph.NInflNode;
+import presto.android.gui.graph.NInflate1OpNode;
+import presto.android.gui.graph.NInflate2OpNode;
+import presto.android.gui.graph.NIntConstantNode;
+import presto.android.gui.graph.NLayoutIdNode;
+import presto.android.gui.graph.NListenerAllocNode;
+import presto.android.gui.graph.NLongConstantNode;
+import presto.android.gui.graph.NMenuIdNode;
+import presto.android.gui.graph.NMenuInflateOpNode;
+import presto.android.gui.graph.NMenuItemInflNode;
+import presto.android.gui.graph.NNode;
+import presto.android.gui.graph.NNullNode;
+import presto.android.gui.graph.NOpNode;
+import presto.android.gui.graph.NOptionsMenuNode;
+import presto.android.gui.graph.NReplaceFragmentOpNode;
+import presto.android.gui.graph.NSetIdOpNode;
+import presto.android.gui.graph.NSetListenerOpNode;
+import presto.android.gui.graph.NSetTextOpNode;
+import presto.android.gui.graph.NStringBuilderAppendOpNode;
+import presto.android.gui.graph.NStringBuilderNode;
+import presto.android.gui.graph.NStringConstantNode;
+import presto.android.gui.graph.NStringIdNode;
+import presto.android.gui.graph.NTabSpecNode;
+import presto.android.gui.graph.NVarNode;
+import presto.android.gui.graph.NViewAllocNode;
+import presto.android.gui.graph.NWidgetIdNode;
+import presto.android.gui.listener.EventType;
+import presto.android.gui.listener.ListenerInstance;
+import soot.BooleanType;
+import soot.ByteType;
+import soot.CharType;
+import soot.DoubleType;
+import soot.FloatType;
+import soot.IntType;
+import soot.Local;
+import soot.LongType;
+import soot.NullType;
+import soot.RefType;
+import soot.Scene;
+import soot.ShortType;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootMethod;
+import soot.SootMethodRef;
+import soot.Type;
+import soot.Unit;
+import soot.UnknownType;
+import soot.Value;
+import soot.VoidType;
+import soot.jimple.Expr;
+import soot.jimple.IntConstant;
+import soot.jimple.InvokeExpr;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.LongConstant;
+import soot.jimple.NullConstant;
+import soot.jimple.Stmt;
+import soot.jimple.StringConstant;
+import soot.toolkits.scalar.Pair;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static presto.android.gui.AnalysisSnapshot.*;
+import static presto.android.gui.SnapshotWriter.*;
+
+/**
+ * Reads an AnalysisSnapshot into a new flowgraph and solver. Classes,
+ * methods and fields are looked up, and bodies retrieved, when a value
+ * refers to them.
+ */
+class SnapshotReader {
+  private final Flowgraph flowgraph;
+  private final FixpointSolver solver;
+  private DataInputStream in;
+
+  private String[] classNames;
+  private SootClass[] classes;
+  private String[] methodSignatures;
+  private SootMethod[] methods;
+  private String[] fieldSignatures;
+  private SootField[] fields;
+  private String[] typeNames;
+  private Type[] types;
+  // method, position and number of units of the body, or DETACHED
+  private int[][] stmtRefs;
+  private Stmt[] stmts;
+  // method and position in the locals of the body, or DETACHED and type
+  private int[][] localRefs;
+  private String[] localNames;
+  private Local[] locals;
+  // statement and use box, or DETACHED and type
+  private int[][] exprRefs;
+  private Expr[] exprs;
+  private final Map<SootMethod, Unit[]> bodyUnits = Maps.newHashMap();
+  private final Map<SootMethod, Local[]> bodyLocals = Maps.newHashMap();
+
+  private NNode[] nodes;
+
+  SnapshotReader(Flowgraph flowgraph, FixpointSolver solver) {
+    this.flowgraph = flowgraph;
+    this.solver = solver;
+  }
+
+  void read(File file) throws IOException {
+    try (DataInputStream data = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file)))) {
+      in = data;
+      Preconditions.checkState(in.readInt() == MAGIC && in.readInt() == VERSION,
+              "[Error]: " + file + " is not a snapshot of this version");
+      String fingerprint = readString();
+      Preconditions.checkState(fingerprint().equals(fingerprint),
+              "[Error]: snapshot " + file + " is for another input: " + fingerprint);
+      readSyntheticClasses();
+      readTables();
+      readNodes();
+      readLinks();
+      flowgraph.fakeNameIndex = in.readLong();
+      solver.nodeCount = in.readInt();
+      solver.edgeCount = in.readLong();
+      for (Object state : state(flowgraph, solver)) {
+        readInto(state);
+      }
+      readDetachedRecords();
+    }
+  }
+
+  // The node read for the index-th node of the snapshot
+  NNode node(int index) {
+    return nodes[index];
+  }
+
+  private void readTables() throws IOException {
+    classNames = readStrings();
+    classes = new SootClass[classNames.length];
+    methodSignatures = readStrings();
+    methods = new SootMethod[methodSignatures.length];
+    fieldSignatures = readStrings();
+    fields = new SootField[fieldSignatures.length];
+    typeNames = readStrings();
+    types = new Type[typeNames.length];
+
+    stmtRefs = new int[in.readInt()][];
+    for (int i = 0; i < stmtRefs.length; i++) {
+      int method = in.readInt();
+      stmtRefs[i] = method == DETACHED
+              ? new int[] {DETACHED} : new int[] {method, in.readInt(), in.readInt()};
+    }
+    stmts = new Stmt[stmtRefs.length];
+
+    localRefs = new int[in.readInt()][];
+    localNames = new String[localRefs.length];
+    for (int i = 0; i < localRefs.length; i++) {
+      int method = in.readInt();
+      if (method == DETACHED) {
+        localNames[i] = readString();
+      }
+      localRefs[i] = new int[] {method, in.readInt()};
+    }
+    locals = new Local[localRefs.length];
+
+    exprRefs = new int[in.readInt()][];
+    for (int i = 0; i < exprRefs.length; i++) {
+      exprRefs[i] = new int[] {in.readInt(), in.readInt()};
+    }
+    exprs = new Expr[exprRefs.length];
+  }
+
+  // Nodes are created in the order they were, so that ids keep their
+  // order. An op node whose arguments come later is created at the end.
+  private void readNodes() throws IOException {
+    nodes = new NNode[in.readInt()];
+    List<NodeRecord> records = Lists.newArrayListWithCapacity(nodes.length);
+    for (int i = 0; i < nodes.length; i++) {
+      records.add(readNodeRecord(i));
+    }
+    List<NodeRecord> deferred = Lists.newArrayList();
+    for (NodeRecord r : records) {
+      if (isReady(r)) {
+        nodes[r.index] = create(r);
+      } else {
+        deferred.add(r);
+      }
+    }
+    for (NodeRecord r : deferred) {
+      nodes[r.index] = create(r);
+    }
+  }
+
+  private NodeRecord readNodeRecord(int index) throws IOException {
+    NodeRecord r = new NodeRecord(index, NodeKind.values()[in.readByte()]);
+    switch (r.kind) {
+      case NULL_NODE:
+      case NULL_OP:
+      case CONTEXT_MENU:
+        break;
+      case VAR:
+      case FIELD:
+      case ALLOC:
+      case ACTIVITY:
+      case FRAGMENT:
+      case INFL:
+      case OPTIONS_MENU:
+      case STRING_CONSTANT:
+      case INT_CONSTANT:
+      case LONG_CONSTANT:
+        r.values.add(readValue());
+        break;
+      case VIEW_ALLOC:
+      case LISTENER_ALLOC:
+      case MENU_ITEM_INFL:
+        r.values.add(readValue());
+        r.values.add(readValue());
+        break;
+      case TAB_SPEC:
+        r.values.add(readValue());
+        r.values.add(readValue());
+        r.values.add(readValue());
+        break;
+      case STRING_BUILDER:
+        r.values.add(readValue());
+        r.values.add(readValue());
+        r.values.add(readValue());
+        r.values.add(readValue());
+        break;
+      case DIALOG:
+        r.values.add(readValue());
+        r.values.add(readValue());
+        r.values.add(readValue());
+        r.values.add(in.readBoolean());
+        break;
+      case LAYOUT_ID:
+      case MENU_ID:
+      case WIDGET_ID:
+      case STRING_ID:
+      case ANONYMOUS_ID:
+        r.values.add(in.readInt());
+        break;
+      default:
+        readOpNodeRecord(r);
+    }
+    return r;
+  }
+
+  private void readOpNodeRecord(NodeRecord r) throws IOException {
+    if (in.readBoolean()) {
+      r.callSite = new Pair<>((Stmt) readValue(), (SootMethod) readValue());
+    }
+    r.receiverType = (Type) readValue();
+    r.parameterType = (Type) readValue();
+    r.artificial = in.readBoolean();
+    r.args = new int[in.readInt()];
+    for (int i = 0; i < r.args.length; i++) {
+      r.args[i] = in.readInt();
+    }
+    r.lhs = in.readInt();
+    switch (r.kind) {
+      case FIND_VIEW1:
+      case FIND_VIEW3:
+      case SET_TEXT:
+        r.values.add(readString());
+        break;
+      case SET_LISTENER:
+        r.values.add(in.readBoolean());
+        if (in.readBoolean()) {
+          String eventType = readString();
+          ListenerInstance listener = new ListenerInstance(null, null,
+                  Sets.newHashSet(this.<Set<SootMethod>>cast(readValue())),
+                  eventType == null ? null : EventType.valueOf(eventType));
+          listener.recordEventHandlers(this.<Set<SootMethod>>cast(readValue()));
+          listener.recordInlineEventHandler(this.<Set<SootMethod>>cast(readValue()));
+          r.values.add(listener);
+        } else {
+          r.values.add(null);
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  private boolean isReady(NodeRecord r) {
+    if (r.args == null) {
+      return true;
+    }
+    for (int arg : r.args) {
+      if (nodes[arg] == null) {
+        return false;
+      }
+    }
+    return r.lhs == DETACHED || nodes[r.lhs] != null;
+  }
+
+  private NNode create(NodeRecord r) {
+    Iterator<Object> v = r.values.iterator();
+    switch (r.kind) {
+      case NULL_NODE:
+        return NNullNode.NullNode;
+      case NULL_OP:
+        return NOpNode.NullOpNode;
+      case VAR: {
+        NVarNode n = new NVarNode();
+        n.l = (Local) v.next();
+        return n;
+      }
+      case FIELD: {
+        NFieldNode n = new NFieldNode();
+        n.f = (SootField) v.next();
+        return n;
+      }
+      case ALLOC: {
+        NAllocNode n = new NAllocNode();
+        n.e = (Expr) v.next();
+        return n;
+      }
+      case VIEW_ALLOC: {
+        NViewAllocNode n = new NViewAllocNode();
+        n.e = (Expr) v.next();
+        n.c = (SootClass) v.next();
+        return n;
+      }
+      case LISTENER_ALLOC: {
+        NListenerAllocNode n = new NListenerAllocNode((SootClass) v.next());
+        n.e = (Expr) v.next();
+        return n;
+      }
+      case STRING_BUILDER: {
+        NStringBuilderNode n =
+                new NStringBuilderNode((Expr) v.next(), (Stmt) v.next(), (SootMethod) v.next());
+        n.possibleValues.addAll(this.<Set<String>>cast(v.next()));
+        return n;
+      }
+      case ACTIVITY: {
+        NActivityNode n = new NActivityNode();
+        n.c = (SootClass) v.next();
+        return n;
+      }
+      case FRAGMENT: {
+        NFragmentNode n = new NFragmentNode();
+        n.c = (SootClass) v.next();
+        return n;
+      }
+      case DIALOG: {
+        NDialogNode n = new NDialogNode((SootClass) v.next(), (Stmt) v.next(), (SootMethod) v.next());
+        n.cancelable = (Boolean) v.next();
+        return n;
+      }
+      case TAB_SPEC:
+        return new NTabSpecNode((SootClass) v.next(), (Stmt) v.next(), (SootMethod) v.next());
+      case INFL: {
+        NInflNode n = new NInflNode();
+        n.c = (SootClass) v.next();
+        return n;
+      }
+      case MENU_ITEM_INFL: {
+        NMenuItemInflNode n = new NMenuItemInflNode();
+        n.c = (SootClass) v.next();
+        n.attrs = this.<HashMap<String, String>>cast(v.next());
+        return n;
+      }
+      case OPTIONS_MENU: {
+        NOptionsMenuNode n = new NOptionsMenuNode();
+        n.ownerActivity = (SootClass) v.next();
+        return n;
+      }
+      case CONTEXT_MENU:
+        return new NContextMenuNode();
+      case STRING_CONSTANT: {
+        NStringConstantNode n = new NStringConstantNode();
+        n.value = (String) v.next();
+        return n;
+      }
+      case INT_CONSTANT: {
+        NIntConstantNode n = new NIntConstantNode();
+        n.value = (Integer) v.next();
+        return n;
+      }
+      case LONG_CONSTANT: {
+        NLongConstantNode n = new NLongConstantNode();
+        n.value = (Long) v.next();
+        return n;
+      }
+      case LAYOUT_ID:
+        return new NLayoutIdNode((Integer) v.next());
+      case MENU_ID:
+        return new NMenuIdNode((Integer) v.next());
+      case WIDGET_ID:
+        return new NWidgetIdNode((Integer) v.next());
+      case STRING_ID:
+        return new NStringIdNode((Integer) v.next());
+      case ANONYMOUS_ID:
+        return new NAnonymousIdNode((Integer) v.next());
+      default:
+        return createOpNode(r, v);
+    }
+  }
+
+  // The edges added by the constructors are replaced by readLinks()
+  private NOpNode createOpNode(NodeRecord r, Iterator<Object> v) {
+    NOpNode n;
+    switch (r.kind) {
+      case INFLATE1:
+        n = new NInflate1OpNode(arg(r, 0), lhs(r), r.callSite, r.artificial);
+        break;
+      case INFLATE2:
+        n = new NInflate2OpNode(arg(r, 0), varArg(r, 1), r.callSite, r.artificial);
+        break;
+      case FIND_VIEW1:
+        n = new NFindView1OpNode(arg(r, 0), arg(r, 1), lhs(r), r.callSite,
+                FindView1Type.valueOf((String) v.next()), r.artificial);
+        break;
+      case FIND_VIEW2:
+        n = new NFindView2OpNode(arg(r, 0), arg(r, 1), lhs(r), r.callSite, r.artificial);
+        break;
+      case FIND_VIEW3:
+        n = new NFindView3OpNode(arg(r, 0), lhs(r), r.callSite,
+                FindView3Type.valueOf((String) v.next()), r.artificial);
+        break;
+      case ADD_VIEW1:
+        n = new NAddView1OpNode(arg(r, 0), arg(r, 1), r.callSite, r.artificial);
+        break;
+      case ADD_VIEW2:
+        n = new NAddView2OpNode(varArg(r, 1), varArg(r, 0), r.callSite, r.artificial);
+        break;
+      case SET_ID:
+        n = new NSetIdOpNode(arg(r, 0), arg(r, 1), r.callSite, r.artificial);
+        break;
+      case SET_LISTENER: {
+        boolean isContextMenuSetListener = (Boolean) v.next();
+        n = new NSetListenerOpNode((ListenerInstance) v.next(), varArg(r, 1), arg(r, 0),
+                r.callSite, isContextMenuSetListener, r.artificial);
+        break;
+      }
+      case SET_TEXT:
+        n = new NSetTextOpNode(arg(r, 0), arg(r, 1),
+                NSetTextOpNode.Type.valueOf((String) v.next()), r.callSite);
+        break;
+      case MENU_INFLATE:
+        n = new NMenuInflateOpNode(arg(r, 0), arg(r, 1), r.callSite, r.artificial);
+        break;
+      case STRING_BUILDER_APPEND:
+        n = new NStringBuilderAppendOpNode(varArg(r, 0), arg(r, 1), r.callSite);
+        break;
+      case ADD_FRAGMENT:
+        n = new NAddFragmentOpNode(arg(r, 1), varArg(r, 2), arg(r, 0), r.callSite, r.artificial);
+        break;
+      case REPLACE_FRAGMENT:
+        n = new NReplaceFragmentOpNode(arg(r, 1), varArg(r, 2), arg(r, 0), r.callSite, r.artificial);
+        break;
+      default:
+        throw new IllegalStateException("[Error]: unexpected op node kind " + r.kind);
+    }
+    n.receiverType = r.receiverType;
+    n.parameterType = r.parameterType;
+    n.artificial = r.artificial;
+    return n;
+  }
+
+  private NNode arg(NodeRecord r, int i) {
+    return i < r.args.length ? nodes[r.args[i]] : NNullNode.NullNode;
+  }
+
+  private NVarNode varArg(NodeRecord r, int i) {
+    NNode arg = arg(r, i);
+    Preconditions.checkState(arg instanceof NVarNode,
+            "[Error]: argument " + i + " of " + r.kind + " is not a variable: " + arg);
+    return (NVarNode) arg;
+  }
+
+  private NNode lhs(NodeRecord r) {
+    return r.lhs == DETACHED ? NNullNode.NullNode : nodes[r.lhs];
+  }
+
+  private void readLinks() throws IOException {
+    for (NNode node : nodes) {
+      node.idNode = (NIdNode) readValue();
+      for (Object parent : (List<?>) readValue()) {
+        node.addParent((NNode) parent);
+      }
+      for (Object text : (List<?>) readValue()) {
+        node.addTextNode((NNode) text);
+      }
+      for (Object hint : (List<?>) readValue()) {
+        node.addHintNode((NNode) hint);
+      }
+      int[] succ = readNodeIds();
+      int[] pred = readNodeIds();
+      node.restoreEdges(succ, pred);
+      if (node instanceof NContextMenuNode) {
+        NContextMenuNode menu = (NContextMenuNode) node;
+        menu.menuParameterNode = (NVarNode) readValue();
+        menu.varNodesForRegisteredViews.addAll(this.<Set<NVarNode>>cast(readValue()));
+      }
+    }
+  }
+
+  private int[] readNodeIds() throws IOException {
+    int[] ids = new int[in.readInt()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = nodes[in.readInt()].id;
+    }
+    return ids;
+  }
+
+  private void readDetachedRecords() throws IOException {
+    JimpleUtil jimpleUtil = flowgraph.jimpleUtil;
+    for (Map.Entry<Stmt, SootMethod> e :
+            this.<Map<Stmt, SootMethod>>cast(readValue()).entrySet()) {
+      jimpleUtil.record(e.getKey(), e.getValue());
+    }
+    for (Map.Entry<Expr, Stmt> e : this.<Map<Expr, Stmt>>cast(readValue()).entrySet()) {
+      jimpleUtil.record(e.getKey(), e.getValue());
+    }
+  }
+
+  // Fills a map, set or multimap of a new flowgraph or solver
+  @SuppressWarnings("unchecked")
+  private void readInto(Object target) throws IOException {
+    Object value = readValue();
+    if (target instanceof Multimap) {
+      Multimap<Object, Object> multimap = (Multimap<Object, Object>) target;
+      for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+        multimap.putAll(e.getKey(), (Collection<?>) e.getValue());
+      }
+    } else if (target instanceof Map) {
+      ((Map<Object, Object>) target).putAll((Map<?, ?>) value);
+    } else {
+      ((Collection<Object>) target).addAll((Collection<?>) value);
+    }
+  }
+
+  private Object readValue() throws IOException {
+    byte tag = in.readByte();
+    switch (tag) {
+      case NULL:
+        return null;
+      case NODE:
+        return nodes[in.readInt()];
+      case CLASS:
+        return sootClass(in.readInt());
+      case METHOD:
+        return method(in.readInt());
+      case FIELD:
+        return field(in.readInt());
+      case TYPE:
+        return type(in.readInt());
+      case STMT:
+        return stmt(in.readInt());
+      case LOCAL:
+        return local(in.readInt());
+      case EXPR:
+        return expr(in.readInt());
+      case INT:
+        return in.readInt();
+      case LONG:
+        return in.readLong();
+      case STRING:
+        return readString();
+      case BOOLEAN:
+        return in.readBoolean();
+      case SET: {
+        int size = in.readInt();
+        Set<Object> set = Sets.newHashSetWithExpectedSize(size);
+        for (int i = 0; i < size; i++) {
+          set.add(readValue());
+        }
+        return set;
+      }
+      case LIST: {
+        int size = in.readInt();
+        List<Object> list = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++) {
+          list.add(readValue());
+        }
+        return list;
+      }
+      case MAP: {
+        int size = in.readInt();
+        HashMap<Object, Object> map = Maps.newHashMapWithExpectedSize(size);
+        for (int i = 0; i < size; i++) {
+          Object key = readValue();
+          map.put(key, readValue());
+        }
+        return map;
+      }
+      default:
+        throw new IllegalStateException("[Error]: unknown value tag " + tag + " in snapshot");
+    }
+  }
+
+  private SootClass sootClass(int i) {
+    if (classes[i] == null) {
+      classes[i] = Scene.v().getSootClass(classNames[i]);
+    }
+    return classes[i];
+  }
+
+  private SootMethod method(int i) {
+    if (methods[i] == null) {
+      methods[i] = Preconditions.checkNotNull(Scene.v().grabMethod(methodSignatures[i]),
+              "[Error]: method of the snapshot not found: " + methodSignatures[i]);
+    }
+    return methods[i];
+  }
+
+  private SootField field(int i) {
+    if (fields[i] == null) {
+      fields[i] = Preconditions.checkNotNull(Scene.v().grabField(fieldSignatures[i]),
+              "[Error]: field of the snapshot not found: " + fieldSignatures[i]);
+    }
+    return fields[i];
+  }
+
+  private Type type(int i) {
+    if (types[i] == null) {
+      types[i] = parseType(typeNames[i]);
+    }
+    return types[i];
+  }
+
+  private Stmt stmt(int i) {
+    if (stmts[i] == null) {
+      int[] ref = stmtRefs[i];
+      if (ref[0] == DETACHED) {
+        stmts[i] = Jimple.v().newNopStmt();
+      } else {
+        SootMethod m = method(ref[0]);
+        Unit[] units = units(m);
+        Preconditions.checkState(units.length == ref[2],
+                "[Error]: body of " + m + " changed since the snapshot");
+        stmts[i] = (Stmt) units[ref[1]];
+      }
+    }
+    return stmts[i];
+  }
+
+  private Local local(int i) {
+    if (locals[i] == null) {
+      int[] ref = localRefs[i];
+      if (ref[0] == DETACHED) {
+        locals[i] = Jimple.v().newLocal(localNames[i], type(ref[1]));
+      } else {
+        SootMethod m = method(ref[0]);
+        Local[] bodyLocals = locals(m);
+        Preconditions.checkState(ref[1] < bodyLocals.length,
+                "[Error]: body of " + m + " changed since the snapshot");
+        locals[i] = bodyLocals[ref[1]];
+      }
+    }
+    return locals[i];
+  }
+
+  private Expr expr(int i) {
+    if (exprs[i] == null) {
+      int[] ref = exprRefs[i];
+      if (ref[0] == DETACHED) {
+        exprs[i] = Jimple.v().newNewExpr((RefType) type(ref[1]));
+      } else {
+        exprs[i] = (Expr) stmt(ref[0]).getUseBoxes().get(ref[1]).getValue();
+      }
+    }
+    return exprs[i];
+  }
+
+  private Unit[] units(SootMethod m) {
+    Unit[] units = bodyUnits.get(m);
+    if (units == null) {
+      units = m.retrieveActiveBody().getUnits().toArray(new Unit[0]);
+      bodyUnits.put(m, units);
+    }
+    return units;
+  }
+
+  private Local[] locals(SootMethod m) {
+    Local[] result = bodyLocals.get(m);
+    if (result == null) {
+      result = m.retrieveActiveBody().getLocals().toArray(new Local[0]);
+      bodyLocals.put(m, result);
+    }
+    return result;
+  }
+
+  // The inverse of Type.toString()
+  static Type parseType(String name) {
+    if (name.endsWith("[]")) {
+      return parseType(name.substring(0, name.length() - 2)).makeArrayType();
+    }
+    switch (name) {
+      case "boolean":
+        return BooleanType.v();
+      case "byte":
+        return ByteType.v();
+      case "char":
+        return CharType.v();
+      case "short":
+        return ShortType.v();
+      case "int":
+        return IntType.v();
+      case "long":
+        return LongType.v();
+      case "float":
+        return FloatType.v();
+      case "double":
+        return DoubleType.v();
+      case "void":
+        return VoidType.v();
+      case "null_type":
+        return NullType.v();
+      case "unknown":
+        return UnknownType.v();
+      default:
+        return RefType.v(name);
+    }
+  }
+
+  // The listener classes made up by the flowgraph, registered the way
+  // Flowgraph registers them
+  private void readSyntheticClasses() throws IOException {
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      SootClass c = new SootClass(readString());
+      String superclass = readString();
+      if (superclass != null) {
+        c.setSuperclass(Scene.v().getSootClass(superclass));
+      }
+      int interfaces = in.readInt();
+      for (int j = 0; j < interfaces; j++) {
+        c.addInterface(Scene.v().getSootClass(readString()));
+      }
+      flowgraph.hier.appClasses.add(c);
+      if (interfaces > 0) {
+        flowgraph.hier.addFakeListenerClass(c, c.getInterfaces().getFirst());
+      }
+      Scene.v().addClass(c);
+      c.setApplicationClass();
+
+      int methodCount = in.readInt();
+      for (int j = 0; j < methodCount; j++) {
+        String name = readString();
+        List<Type> parameterTypes = Lists.newArrayList();
+        int parameters = in.readInt();
+        for (int k = 0; k < parameters; k++) {
+          parameterTypes.add(parseType(readString()));
+        }
+        SootMethod m = new SootMethod(name, parameterTypes, parseType(readString()), in.readInt());
+        c.addMethod(m);
+        if (in.readBoolean()) {
+          m.setActiveBody(readSyntheticBody(m));
+        }
+      }
+    }
+  }
+
+  private JimpleBody readSyntheticBody(SootMethod m) throws IOException {
+    Jimple jimple = Jimple.v();
+    JimpleBody body = jimple.newBody(m);
+    Local[] bodyLocals = new Local[in.readInt()];
+    for (int i = 0; i < bodyLocals.length; i++) {
+      bodyLocals[i] = jimple.newLocal(readString(), parseType(readString()));
+      body.getLocals().add(bodyLocals[i]);
+    }
+    int units = in.readInt();
+    for (int i = 0; i < units; i++) {
+      byte code = in.readByte();
+      Unit u;
+      switch (code) {
+        case IDENTITY_THIS:
+          u = jimple.newIdentityStmt(bodyLocals[in.readInt()],
+                  jimple.newThisRef(m.getDeclaringClass().getType()));
+          break;
+        case IDENTITY_PARAMETER: {
+          int index = in.readInt();
+          u = jimple.newIdentityStmt(bodyLocals[in.readInt()],
+                  jimple.newParameterRef(m.getParameterType(index), index));
+          break;
+        }
+        case ASSIGN: {
+          Local lhs = bodyLocals[in.readInt()];
+          u = jimple.newAssignStmt(lhs, readSyntheticValue(bodyLocals));
+          break;
+        }
+        case INVOKE:
+          u = jimple.newInvokeStmt(readSyntheticValue(bodyLocals));
+          break;
+        case RETURN_VOID:
+          u = jimple.newReturnVoidStmt();
+          break;
+        case RETURN:
+          u = jimple.newReturnStmt(readSyntheticValue(bodyLocals));
+          break;
+        case NOP:
+          u = jimple.newNopStmt();
+          break;
+        default:
+          throw new IllegalStateException("[Error]: unknown synthetic unit " + code);
+      }
+      body.getUnits().add(u);
+    }
+    return body;
+  }
+
+  private Value readSyntheticValue(Local[] bodyLocals) throws IOException {
+    Jimple jimple = Jimple.v();
+    byte code = in.readByte();
+    switch (code) {
+      case LOCAL_VALUE:
+        return bodyLocals[in.readInt()];
+      case NULL_VALUE:
+        return NullConstant.v();
+      case INT_VALUE:
+        return IntConstant.v(in.readInt());
+      case LONG_VALUE:
+        return LongConstant.v(in.readLong());
+      case STRING_VALUE:
+        return StringConstant.v(readString());
+      case NEW_VALUE:
+        return jimple.newNewExpr(RefType.v(readString()));
+      case VIRTUAL_INVOKE:
+      case SPECIAL_INVOKE:
+      case INTERFACE_INVOKE:
+      case STATIC_INVOKE: {
+        SootClass declaringClass = Scene.v().getSootClass(readString());
+        String name = readString();
+        List<Type> parameterTypes = Lists.newArrayList();
+        int parameters = in.readInt();
+        for (int i = 0; i < parameters; i++) {
+          parameterTypes.add(parseType(readString()));
+        }
+        Type returnType = parseType(readString());
+        SootMethodRef ref = Scene.v().makeMethodRef(declaringClass, name, parameterTypes,
+                returnType, code == STATIC_INVOKE);
+        Local base = code == STATIC_INVOKE ? null : (Local) readSyntheticValue(bodyLocals);
+        List<Value> args = Lists.newArrayList();
+        int argCount = in.readInt();
+        for (int i = 0; i < argCount; i++) {
+          args.add(readSyntheticValue(bodyLocals));
+        }
+        InvokeExpr e;
+        if (code == VIRTUAL_INVOKE) {
+          e = jimple.newVirtualInvokeExpr(base, ref, args);
+        } else if (code == SPECIAL_INVOKE) {
+          e = jimple.newSpecialInvokeExpr(base, ref, args);
+        } else if (code == INTERFACE_INVOKE) {
+          e = jimple.newInterfaceInvokeExpr(base, ref, args);
+        } else {
+          e = jimple.newStaticInvokeExpr(ref, args);
+        }
+        return e;
+      }
+      default:
+        throw new IllegalStateException("[Error]: unknown synthetic value " + code);
+    }
+  }
+
+  private String[] readStrings() throws IOException {
+    String[] strings = new String[in.readInt()];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = readString();
+    }
+    return strings;
+  }
+
+  private String readString() throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T cast(Object value) {
+    return (T) value;
+  }
+
+  // A node as it is read, before it is created
+  private static class NodeRecord {
+    final int index;
+    final NodeKind kind;
+    final List<Object> values = Lists.newArrayListWithCapacity(4);
+    // for op nodes
+    Pair<Stmt, SootMethod> callSite;
+    Type receiverType;
+    Type parameterType;
+    boolean artificial;
+    int[] args;
+    int lhs = DETACHED;
+
+    NodeRecord(int index, NodeKind kind) {
+      this.index = index;
+      this.kind = kind;
+    }
+  }
+}
@@ -0,0 +1,745 @@
+/*
+ * SnapshotWriter.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import presto.android.Logger;
+import presto.android.gui.AnalysisSnapshot.NodeKind;
+import presto.android.gui.graph.NContextMenuNode;
+import presto.android.gui.graph.NDialogNode;
+import presto.android.gui.graph.NFindView1OpNode;
+import presto.android.gui.graph.NFindView3OpNode;
+import presto.android.gui.graph.NIdNode;
+import presto.android.gui.graph.NMenuItemInflNode;
+import presto.android.gui.graph.NNode;
+import presto.android.gui.graph.NOpNode;
+import presto.android.gui.graph.NSetListenerOpNode;
+import presto.android.gui.graph.NSetTextOpNode;
+import presto.android.gui.graph.NStringBuilderNode;
+import presto.android.gui.graph.NTabSpecNode;
+import presto.android.gui.graph.NAllocNode;
+import presto.android.gui.graph.NFieldNode;
+import presto.android.gui.graph.NFragmentNode;
+import presto.android.gui.graph.NInflNode;
+import presto.android.gui.graph.NIntConstantNode;
+import presto.android.gui.graph.NListenerAllocNode;
+import presto.android.gui.graph.NLongConstantNode;
+import presto.android.gui.graph.NOptionsMenuNode;
+import presto.android.gui.graph.NStringConstantNode;
+import presto.android.gui.graph.NVarNode;
+import presto.android.gui.graph.NViewAllocNode;
+import presto.android.gui.graph.NWindowNode;
+import presto.android.gui.listener.ListenerInstance;
+import soot.Body;
+import soot.Local;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootMethod;
+import soot.SootMethodRef;
+import soot.Type;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.AssignStmt;
+import soot.jimple.Expr;
+import soot.jimple.IdentityStmt;
+import soot.jimple.InstanceInvokeExpr;
+import soot.jimple.IntConstant;
+import soot.jimple.InterfaceInvokeExpr;
+import soot.jimple.InvokeExpr;
+import soot.jimple.InvokeStmt;
+import soot.jimple.LongConstant;
+import soot.jimple.NewExpr;
+import soot.jimple.NopStmt;
+import soot.jimple.NullConstant;
+import soot.jimple.ParameterRef;
+import soot.jimple.ReturnStmt;
+import soot.jimple.ReturnVoidStmt;
+import soot.jimple.SpecialInvokeExpr;
+import soot.jimple.StaticInvokeExpr;
+import soot.jimple.Stmt;
+import soot.jimple.StringConstant;
+import soot.jimple.ThisRef;
+import soot.jimple.VirtualInvokeExpr;
+import soot.toolkits.scalar.Pair;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static presto.android.gui.AnalysisSnapshot.*;
+
+/**
+ * Writes an AnalysisSnapshot. The nodes and the state are written first to
+ * a buffer, which interns the Soot objects they refer to; the file is then
+ * the header, the synthetic classes, the tables of the interned objects,
+ * and the buffer.
+ */
+class SnapshotWriter {
+  private static final String TAG = SnapshotWriter.class.getSimpleName();
+
+  // unit codes of the bodies of synthetic classes
+  static final byte IDENTITY_THIS = 0;
+  static final byte IDENTITY_PARAMETER = 1;
+  static final byte ASSIGN = 2;
+  static final byte INVOKE = 3;
+  static final byte RETURN_VOID = 4;
+  static final byte RETURN = 5;
+  static final byte NOP = 6;
+
+  // value codes of the bodies of synthetic classes
+  static final byte LOCAL_VALUE = 0;
+  static final byte NULL_VALUE = 1;
+  static final byte INT_VALUE = 2;
+  static final byte LONG_VALUE = 3;
+  static final byte STRING_VALUE = 4;
+  static final byte NEW_VALUE = 5;
+  static final byte VIRTUAL_INVOKE = 6;
+  static final byte SPECIAL_INVOKE = 7;
+  static final byte INTERFACE_INVOKE = 8;
+  static final byte STATIC_INVOKE = 9;
+
+  private final Flowgraph flowgraph;
+  private final FixpointSolver solver;
+
+  // the nodes, in the order of their ids
+  private final List<NNode> nodes = Lists.newArrayList();
+  private final Map<NNode, Integer> nodeIndexes = new IdentityHashMap<>();
+
+  private final Table<String> classes = new Table<>(false);
+  private final Table<SootMethod> methods = new Table<>(true);
+  private final Table<SootField> fields = new Table<>(true);
+  private final Table<String> types = new Table<>(false);
+  private final Table<Stmt> stmts = new Table<>(true);
+  private final Table<Local> locals = new Table<>(true);
+  private final Table<Expr> exprs = new Table<>(true);
+  // descriptors of the interned statements, locals and expressions
+  private final ByteArrayOutputStream stmtBytes = new ByteArrayOutputStream();
+  private final DataOutputStream stmtOut = new DataOutputStream(stmtBytes);
+  private final ByteArrayOutputStream localBytes = new ByteArrayOutputStream();
+  private final DataOutputStream localOut = new DataOutputStream(localBytes);
+  private final ByteArrayOutputStream exprBytes = new ByteArrayOutputStream();
+  private final DataOutputStream exprOut = new DataOutputStream(exprBytes);
+
+  // positions of the statements, locals and expressions of the bodies
+  private final Map<Unit, SootMethod> unitMethods = new IdentityHashMap<>();
+  private final Map<Unit, Integer> unitIndexes = new IdentityHashMap<>();
+  private final Map<Local, SootMethod> localMethods = new IdentityHashMap<>();
+  private final Map<Local, Integer> localIndexes = new IdentityHashMap<>();
+  private final Map<Value, Unit> exprUnits = new IdentityHashMap<>();
+  private final Map<Value, Integer> exprBoxes = new IdentityHashMap<>();
+  private int detachedStmts;
+
+  private final ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+  private final DataOutputStream out = new DataOutputStream(bodyBytes);
+
+  SnapshotWriter(Flowgraph flowgraph, FixpointSolver solver) {
+    this.flowgraph = flowgraph;
+    this.solver = solver;
+  }
+
+  void write(File file) throws IOException {
+    indexBodies();
+    for (int id = 1; id <= NNode.maxId(); id++) {
+      NNode node = NNode.byId(id);
+      if (node != null) {
+        nodeIndexes.put(node, nodes.size());
+        nodes.add(node);
+      }
+    }
+    writeNodes();
+    writeLinks();
+    out.writeLong(flowgraph.fakeNameIndex);
+    out.writeInt(solver.nodeCount);
+    out.writeLong(solver.edgeCount);
+    for (Object state : state(flowgraph, solver)) {
+      writeValue(state instanceof Multimap ? ((Multimap<?, ?>) state).asMap() : state);
+    }
+    writeDetachedRecords();
+    out.flush();
+    stmtOut.flush();
+    localOut.flush();
+    exprOut.flush();
+    if (detachedStmts > 0) {
+      Logger.verb(TAG, "{} statements out of bodies are written as nop", detachedStmts);
+    }
+
+    try (DataOutputStream data = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file)))) {
+      data.writeInt(MAGIC);
+      data.writeInt(VERSION);
+      writeString(data, fingerprint());
+      writeSyntheticClasses(data);
+      data.writeInt(classes.values.size());
+      for (String c : classes.values) {
+        writeString(data, c);
+      }
+      data.writeInt(methods.values.size());
+      for (SootMethod m : methods.values) {
+        writeString(data, m.getSignature());
+      }
+      data.writeInt(fields.values.size());
+      for (SootField f : fields.values) {
+        writeString(data, f.getSignature());
+      }
+      data.writeInt(types.values.size());
+      for (String t : types.values) {
+        writeString(data, t);
+      }
+      data.writeInt(stmts.values.size());
+      stmtBytes.writeTo(data);
+      data.writeInt(locals.values.size());
+      localBytes.writeTo(data);
+      data.writeInt(exprs.values.size());
+      exprBytes.writeTo(data);
+      data.writeInt(nodes.size());
+      bodyBytes.writeTo(data);
+    }
+    Logger.verb(TAG, "{} nodes, {} methods, {} statements",
+            nodes.size(), methods.values.size(), stmts.values.size());
+  }
+
+  // Positions of the units, locals and expressions of every body built so
+  // far, which are all the bodies the flowgraph may refer to.
+  private void indexBodies() {
+    for (SootClass c : Scene.v().getClasses()) {
+      for (SootMethod m : c.getMethods()) {
+        if (!m.hasActiveBody()) {
+          continue;
+        }
+        Body body = m.getActiveBody();
+        int i = 0;
+        for (Local l : body.getLocals()) {
+          localMethods.put(l, m);
+          localIndexes.put(l, i++);
+        }
+        i = 0;
+        for (Unit u : body.getUnits()) {
+          unitMethods.put(u, m);
+          unitIndexes.put(u, i++);
+          List<ValueBox> boxes = u.getUseBoxes();
+          for (int j = 0; j < boxes.size(); j++) {
+            Value v = boxes.get(j).getValue();
+            if (v instanceof Expr && !exprUnits.containsKey(v)) {
+              exprUnits.put(v, u);
+              exprBoxes.put(v, j);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  // Nodes are written in the order of their ids, with what is needed to
+  // create them again: an op node comes with the nodes of its arguments.
+  private void writeNodes() throws IOException {
+    for (NNode node : nodes) {
+      NodeKind kind = NodeKind.of(node);
+      out.writeByte(kind.ordinal());
+      switch (kind) {
+        case NULL_NODE:
+        case NULL_OP:
+          break;
+        case VAR:
+          writeValue(((NVarNode) node).l);
+          break;
+        case FIELD:
+          writeValue(((NFieldNode) node).f);
+          break;
+        case ALLOC:
+          writeValue(((NAllocNode) node).e);
+          break;
+        case VIEW_ALLOC:
+          writeValue(((NViewAllocNode) node).e);
+          writeValue(((NViewAllocNode) node).c);
+          break;
+        case LISTENER_ALLOC:
+          writeValue(((NListenerAllocNode) node).c);
+          writeValue(((NListenerAllocNode) node).e);
+          break;
+        case STRING_BUILDER: {
+          NStringBuilderNode n = (NStringBuilderNode) node;
+          writeValue(n.e);
+          writeValue(n.getStmt());
+          writeValue(n.inMethod);
+          writeValue(n.possibleValues);
+          break;
+        }
+        case ACTIVITY:
+          writeValue(((NWindowNode) node).c);
+          break;
+        case FRAGMENT:
+          writeValue(((NFragmentNode) node).c);
+          break;
+        case DIALOG: {
+          NDialogNode n = (NDialogNode) node;
+          writeValue(n.c);
+          writeValue(n.allocStmt);
+          writeValue(n.allocMethod);
+          out.writeBoolean(n.cancelable);
+          break;
+        }
+        case TAB_SPEC: {
+          NTabSpecNode n = (NTabSpecNode) node;
+          writeValue(n.c);
+          writeValue(n.allocStmt);
+          writeValue(n.allocMethod);
+          break;
+        }
+        case INFL:
+          writeValue(((NInflNode) node).c);
+          break;
+        case MENU_ITEM_INFL:
+          writeValue(((NMenuItemInflNode) node).c);
+          writeValue(((NMenuItemInflNode) node).attrs);
+          break;
+        case OPTIONS_MENU:
+          writeValue(((NOptionsMenuNode) node).ownerActivity);
+          break;
+        case CONTEXT_MENU:
+          break;
+        case STRING_CONSTANT:
+          writeValue(((NStringConstantNode) node).value);
+          break;
+        case INT_CONSTANT:
+          writeValue(((NIntConstantNode) node).value);
+          break;
+        case LONG_CONSTANT:
+          writeValue(((NLongConstantNode) node).value);
+          break;
+        case LAYOUT_ID:
+        case MENU_ID:
+        case WIDGET_ID:
+        case STRING_ID:
+        case ANONYMOUS_ID:
+          out.writeInt(((NIdNode) node).getIdValue());
+          break;
+        default:
+          writeOpNode(kind, (NOpNode) node);
+      }
+    }
+  }
+
+  private void writeOpNode(NodeKind kind, NOpNode node) throws IOException {
+    Pair<Stmt, SootMethod> callSite = node.callSite;
+    out.writeBoolean(callSite != null);
+    if (callSite != null) {
+      writeValue(callSite.getO1());
+      writeValue(callSite.getO2());
+    }
+    writeValue(node.receiverType);
+    writeValue(node.parameterType);
+    out.writeBoolean(node.artificial);
+    switch (kind) {
+      case INFLATE1:
+      case FIND_VIEW2:
+        writeArguments(node.getPredecessors(), lhs(node));
+        break;
+      case FIND_VIEW1:
+        writeArguments(node.getPredecessors(), lhs(node));
+        writeString(out, ((NFindView1OpNode) node).type.name());
+        break;
+      case FIND_VIEW3:
+        writeArguments(node.getPredecessors(), lhs(node));
+        writeString(out, ((NFindView3OpNode) node).type.name());
+        break;
+      case INFLATE2:
+      case ADD_VIEW1:
+      case ADD_VIEW2:
+      case SET_ID:
+      case MENU_INFLATE:
+      case ADD_FRAGMENT:
+      case REPLACE_FRAGMENT:
+        writeArguments(node.getPredecessors(), null);
+        break;
+      case SET_TEXT:
+        writeArguments(node.getPredecessors(), null);
+        writeString(out, ((NSetTextOpNode) node).type.name());
+        break;
+      case SET_LISTENER: {
+        NSetListenerOpNode n = (NSetListenerOpNode) node;
+        writeArguments(node.getPredecessors(), null);
+        out.writeBoolean(n.isContextMenuSetListener);
+        ListenerInstance listener = n.getListenerInstance();
+        out.writeBoolean(listener != null);
+        if (listener != null) {
+          writeString(out, listener.getEventType() == null ? null : listener.getEventType().name());
+          writeValue(listener.getHandlerPrototypes());
+          writeValue(listener.getEventHandlers());
+          writeValue(listener.getInlineEventHandlers());
+        }
+        break;
+      }
+      case STRING_BUILDER_APPEND:
+        writeArguments(Lists.newArrayList(node.getReceiver(), node.getParameter()), null);
+        break;
+      default:
+        throw new IllegalStateException("[Error]: unexpected op node " + node);
+    }
+  }
+
+  private static NNode lhs(NOpNode node) {
+    return node.getNumberOfSuccessors() == 0 ? null : node.getSuccessor(0);
+  }
+
+  // The predecessors of an op node, in the order its constructor added them.
+  // Its edges are restored later on, so these only have to give the fields
+  // the constructor computes from them.
+  private void writeArguments(Collection<NNode> preds, NNode lhs) throws IOException {
+    out.writeInt(preds.size());
+    for (NNode pred : preds) {
+      out.writeInt(nodeIndex(pred));
+    }
+    out.writeInt(lhs == null ? DETACHED : nodeIndex(lhs));
+  }
+
+  // The edges and the other references between nodes. They are read once
+  // all the nodes are created, and replace the edges of the constructors.
+  private void writeLinks() throws IOException {
+    for (NNode node : nodes) {
+      writeValue(node.idNode);
+      writeValue(Lists.newArrayList(node.getParents()));
+      writeValue(Lists.newArrayList(node.getTextNodes()));
+      writeValue(Lists.newArrayList(node.getHintNodes()));
+      writeNodeIds(node.getSuccessors());
+      writeNodeIds(node.getPredecessors());
+      if (node instanceof NContextMenuNode) {
+        writeValue(((NContextMenuNode) node).menuParameterNode);
+        writeValue(((NContextMenuNode) node).varNodesForRegisteredViews);
+      }
+    }
+  }
+
+  private void writeNodeIds(Collection<NNode> adjacent) throws IOException {
+    out.writeInt(adjacent.size());
+    for (NNode n : adjacent) {
+      out.writeInt(nodeIndex(n));
+    }
+  }
+
+  // Statements and allocations of the flowgraph that are not in a body
+  // are recorded in JimpleUtil; the records of the others are rebuilt
+  // when their bodies are retrieved.
+  private void writeDetachedRecords() throws IOException {
+    JimpleUtil jimpleUtil = flowgraph.jimpleUtil;
+    Map<Stmt, SootMethod> detachedMethods = Maps.newHashMap();
+    for (Map.Entry<Stmt, SootMethod> e : jimpleUtil.s2m.entrySet()) {
+      if (!unitMethods.containsKey(e.getKey()) && stmts.contains(e.getKey())) {
+        detachedMethods.put(e.getKey(), e.getValue());
+      }
+    }
+    Map<Expr, Stmt> detachedExprs = Maps.newHashMap();
+    for (Map.Entry<Expr, Stmt> e : jimpleUtil.exprToStmt.entrySet()) {
+      if (!exprUnits.containsKey(e.getKey()) && exprs.contains(e.getKey())) {
+        detachedExprs.put(e.getKey(), e.getValue());
+      }
+    }
+    writeValue(detachedMethods);
+    writeValue(detachedExprs);
+  }
+
+  void writeValue(Object v) throws IOException {
+    if (v == null) {
+      out.writeByte(NULL);
+    } else if (v instanceof NNode) {
+      out.writeByte(NODE);
+      out.writeInt(nodeIndex((NNode) v));
+    } else if (v instanceof SootClass) {
+      out.writeByte(CLASS);
+      out.writeInt(classes.indexOf(((SootClass) v).getName()));
+    } else if (v instanceof SootMethod) {
+      out.writeByte(METHOD);
+      out.writeInt(methods.indexOf((SootMethod) v));
+    } else if (v instanceof SootField) {
+      out.writeByte(FIELD);
+      out.writeInt(fields.indexOf((SootField) v));
+    } else if (v instanceof Type) {
+      out.writeByte(TYPE);
+      out.writeInt(types.indexOf(v.toString()));
+    } else if (v instanceof Stmt) {
+      out.writeByte(STMT);
+      out.writeInt(stmtIndex((Stmt) v));
+    } else if (v instanceof Local) {
+      out.writeByte(LOCAL);
+      out.writeInt(localIndex((Local) v));
+    } else if (v instanceof Expr) {
+      out.writeByte(EXPR);
+      out.writeInt(exprIndex((Expr) v));
+    } else if (v instanceof Integer) {
+      out.writeByte(INT);
+      out.writeInt((Integer) v);
+    } else if (v instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) v);
+    } else if (v instanceof String) {
+      out.writeByte(STRING);
+      writeString(out, (String) v);
+    } else if (v instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean) v);
+    } else if (v instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) v;
+      out.writeByte(MAP);
+      out.writeInt(map.size());
+      for (Map.Entry<?, ?> e : map.entrySet()) {
+        writeValue(e.getKey());
+        writeValue(e.getValue());
+      }
+    } else if (v instanceof Set || v instanceof List) {
+      Collection<?> collection = (Collection<?>) v;
+      out.writeByte(v instanceof Set ? SET : LIST);
+      out.writeInt(collection.size());
+      for (Object o : collection) {
+        writeValue(o);
+      }
+    } else {
+      throw new IllegalStateException(
+              "[Error]: " + v.getClass().getName() + " cannot be written to a snapshot");
+    }
+  }
+
+  private int nodeIndex(NNode node) {
+    Integer i = nodeIndexes.get(node);
+    if (i == null) {
+      throw new IllegalStateException("[Error]: node " + node + " is not registered");
+    }
+    return i;
+  }
+
+  // A statement is its method, its position and the number of units of the
+  // body, to tell a body that changed since.
+  private int stmtIndex(Stmt s) throws IOException {
+    if (stmts.contains(s)) {
+      return stmts.indexOf(s);
+    }
+    SootMethod m = unitMethods.get(s);
+    if (m == null) {
+      stmtOut.writeInt(DETACHED);
+      if (!(s instanceof NopStmt)) {
+        detachedStmts++;
+      }
+    } else {
+      stmtOut.writeInt(methods.indexOf(m));
+      stmtOut.writeInt(unitIndexes.get(s));
+      stmtOut.writeInt(m.getActiveBody().getUnits().size());
+    }
+    return stmts.indexOf(s);
+  }
+
+  private int localIndex(Local l) throws IOException {
+    if (locals.contains(l)) {
+      return locals.indexOf(l);
+    }
+    SootMethod m = localMethods.get(l);
+    if (m == null) {
+      localOut.writeInt(DETACHED);
+      writeString(localOut, l.getName());
+      localOut.writeInt(types.indexOf(l.getType().toString()));
+    } else {
+      localOut.writeInt(methods.indexOf(m));
+      localOut.writeInt(localIndexes.get(l));
+    }
+    return locals.indexOf(l);
+  }
+
+  private int exprIndex(Expr e) throws IOException {
+    if (exprs.contains(e)) {
+      return exprs.indexOf(e);
+    }
+    Unit u = exprUnits.get(e);
+    if (u == null) {
+      if (!(e instanceof NewExpr)) {
+        throw new IllegalStateException("[Error]: expression " + e + " is not in a body");
+      }
+      exprOut.writeInt(DETACHED);
+      exprOut.writeInt(types.indexOf(((NewExpr) e).getBaseType().toString()));
+    } else {
+      exprOut.writeInt(stmtIndex((Stmt) u));
+      exprOut.writeInt(exprBoxes.get(e));
+    }
+    return exprs.indexOf(e);
+  }
+
+  // The listener classes made up by the flowgraph. Their bodies only have
+  // the few kinds of units the flowgraph creates.
+  private void writeSyntheticClasses(DataOutputStream file) throws IOException {
+    List<SootClass> synthetic = Lists.newArrayList();
+    for (SootClass c : Scene.v().getApplicationClasses()) {
+      if (c.getName().startsWith(Flowgraph.FAKE_NAME_PREFIX)) {
+        synthetic.add(c);
+      }
+    }
+    file.writeInt(synthetic.size());
+    for (SootClass c : synthetic) {
+      writeString(file, c.getName());
+      writeString(file, c.hasSuperclass() ? c.getSuperclass().getName() : null);
+      file.writeInt(c.getInterfaceCount());
+      for (SootClass i : c.getInterfaces()) {
+        writeString(file, i.getName());
+      }
+      file.writeInt(c.getMethodCount());
+      for (SootMethod m : c.getMethods()) {
+        writeString(file, m.getName());
+        file.writeInt(m.getParameterCount());
+        for (Type t : m.getParameterTypes()) {
+          writeString(file, t.toString());
+        }
+        writeString(file, m.getReturnType().toString());
+        file.writeInt(m.getModifiers());
+        file.writeBoolean(m.hasActiveBody());
+        if (m.hasActiveBody()) {
+          writeSyntheticBody(file, m.getActiveBody());
+        }
+      }
+    }
+  }
+
+  private void writeSyntheticBody(DataOutputStream file, Body body) throws IOException {
+    Map<Local, Integer> bodyLocals = new IdentityHashMap<>();
+    file.writeInt(body.getLocalCount());
+    for (Local l : body.getLocals()) {
+      bodyLocals.put(l, bodyLocals.size());
+      writeString(file, l.getName());
+      writeString(file, l.getType().toString());
+    }
+    file.writeInt(body.getUnits().size());
+    for (Unit u : body.getUnits()) {
+      if (u instanceof IdentityStmt) {
+        IdentityStmt s = (IdentityStmt) u;
+        if (s.getRightOp() instanceof ThisRef) {
+          file.writeByte(IDENTITY_THIS);
+        } else if (s.getRightOp() instanceof ParameterRef) {
+          file.writeByte(IDENTITY_PARAMETER);
+          file.writeInt(((ParameterRef) s.getRightOp()).getIndex());
+        } else {
+          throw new IllegalStateException("[Error]: unexpected synthetic unit " + u);
+        }
+        file.writeInt(bodyLocals.get((Local) s.getLeftOp()));
+      } else if (u instanceof AssignStmt) {
+        AssignStmt s = (AssignStmt) u;
+        if (!(s.getLeftOp() instanceof Local)) {
+          throw new IllegalStateException("[Error]: unexpected synthetic unit " + u);
+        }
+        file.writeByte(ASSIGN);
+        file.writeInt(bodyLocals.get((Local) s.getLeftOp()));
+        writeSyntheticValue(file, bodyLocals, s.getRightOp());
+      } else if (u instanceof InvokeStmt) {
+        file.writeByte(INVOKE);
+        writeSyntheticValue(file, bodyLocals, ((InvokeStmt) u).getInvokeExpr());
+      } else if (u instanceof ReturnVoidStmt) {
+        file.writeByte(RETURN_VOID);
+      } else if (u instanceof ReturnStmt) {
+        file.writeByte(RETURN);
+        writeSyntheticValue(file, bodyLocals, ((ReturnStmt) u).getOp());
+      } else if (u instanceof NopStmt) {
+        file.writeByte(NOP);
+      } else {
+        throw new IllegalStateException("[Error]: unexpected synthetic unit " + u);
+      }
+    }
+  }
+
+  private void writeSyntheticValue(DataOutputStream file, Map<Local, Integer> bodyLocals, Value v)
+          throws IOException {
+    if (v instanceof Local) {
+      file.writeByte(LOCAL_VALUE);
+      file.writeInt(bodyLocals.get(v));
+    } else if (v instanceof NullConstant) {
+      file.writeByte(NULL_VALUE);
+    } else if (v instanceof IntConstant) {
+      file.writeByte(INT_VALUE);
+      file.writeInt(((IntConstant) v).value);
+    } else if (v instanceof LongConstant) {
+      file.writeByte(LONG_VALUE);
+      file.writeLong(((LongConstant) v).value);
+    } else if (v instanceof StringConstant) {
+      file.writeByte(STRING_VALUE);
+      writeString(file, ((StringConstant) v).value);
+    } else if (v instanceof NewExpr) {
+      file.writeByte(NEW_VALUE);
+      writeString(file, ((NewExpr) v).getBaseType().toString());
+    } else if (v instanceof InvokeExpr) {
+      InvokeExpr e = (InvokeExpr) v;
+      if (e instanceof VirtualInvokeExpr) {
+        file.writeByte(VIRTUAL_INVOKE);
+      } else if (e instanceof SpecialInvokeExpr) {
+        file.writeByte(SPECIAL_INVOKE);
+      } else if (e instanceof InterfaceInvokeExpr) {
+        file.writeByte(INTERFACE_INVOKE);
+      } else if (e instanceof StaticInvokeExpr) {
+        file.writeByte(STATIC_INVOKE);
+      } else {
+        throw new IllegalStateException("[Error]: unexpected synthetic value " + v);
+      }
+      SootMethodRef ref = e.getMethodRef();
+      writeString(file, ref.getDeclaringClass().getName());
+      writeString(file, ref.getName());
+      file.writeInt(ref.getParameterTypes().size());
+      for (Type t : ref.getParameterTypes()) {
+        writeString(file, t.toString());
+      }
+      writeString(file, ref.getReturnType().toString());
+      if (!(e instanceof StaticInvokeExpr)) {
+        writeSyntheticValue(file, bodyLocals, ((InstanceInvokeExpr) e).getBase());
+      }
+      file.writeInt(e.getArgCount());
+      for (Value arg : e.getArgs()) {
+        writeSyntheticValue(file, bodyLocals, arg);
+      }
+    } else {
+      throw new IllegalStateException("[Error]: unexpected synthetic value " + v);
+    }
+  }
+
+  static void writeString(DataOutputStream out, String s) throws IOException {
+    if (s == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  // Objects numbered in the order they are first written
+  private static class Table<T> {
+    final Map<T, Integer> indexes;
+    final List<T> values = Lists.newArrayList();
+
+    Table(boolean identity) {
+      indexes = identity ? new IdentityHashMap<T, Integer>() : Maps.<T, Integer>newHashMap();
+    }
+
+    boolean contains(T value) {
+      return indexes.containsKey(value);
+    }
+
+    int indexOf(T value) {
+      Integer i = indexes.get(value);
+      if (i == null) {
+        i = values.size();
+        indexes.put(value, i);
+        values.add(value);
+      }
+      return i;
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * SolutionIndex.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import presto.android.gui.FixpointSolver.VarExtractor;
+import presto.android.gui.graph.NNode;
+import presto.android.gui.graph.NObjectNode;
+import presto.android.gui.graph.NOpNode;
+import presto.android.gui.graph.NVarNode;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted indexes of the fixed-point solution: for each kind of solution,
+ * the op nodes whose extracted variable (parameter, receiver, lhs) is a given
+ * NVarNode. Variable value queries look up the variables they reach instead
+ * of scanning every op node of the solution map.
+ * <p>
+ * Only the keys are indexed; solution sets are read from the solver at query
+ * time. FixpointSolver.getSolutionIndex() rebuilds the index if op nodes were
+ * added to a solution map after it was built.
+ */
+public class SolutionIndex {
+  public enum Kind {
+    // solutionParameters, by parameter
+    PARAMETER,
+    // solutionReceivers, by receiver
+    RECEIVER,
+    // solutionResults, by lhs
+    RESULT,
+    // solutionListeners, by parameter
+    LISTENER
+  }
+
+  private final FixpointSolver solver;
+  private final Map<Kind, Map<NVarNode, List<NOpNode>>> opNodesByVar = Maps.newEnumMap(Kind.class);
+  private final Map<Kind, Integer> indexedSizes = Maps.newEnumMap(Kind.class);
+
+  SolutionIndex(FixpointSolver solver) {
+    this.solver = solver;
+    for (Kind kind : Kind.values()) {
+      Map<NOpNode, Set<NNode>> solution = solutionMap(kind);
+      VarExtractor extractor = extractor(kind);
+      Map<NVarNode, List<NOpNode>> index = Maps.newHashMap();
+      for (NOpNode opNode : solution.keySet()) {
+        NVarNode var = extractor.extract(opNode);
+        List<NOpNode> opNodes = index.get(var);
+        if (opNodes == null) {
+          opNodes = Lists.newArrayListWithCapacity(1);
+          index.put(var, opNodes);
+        }
+        opNodes.add(opNode);
+      }
+      opNodesByVar.put(kind, index);
+      indexedSizes.put(kind, solution.size());
+    }
+  }
+
+  private Map<NOpNode, Set<NNode>> solutionMap(Kind kind) {
+    switch (kind) {
+      case PARAMETER:
+        return solver.solutionParameters;
+      case RECEIVER:
+        return solver.solutionReceivers;
+      case RESULT:
+        return solver.solutionResults;
+      case LISTENER:
+        return solver.solutionListeners;
+      default:
+        throw new RuntimeException("Unknown solution kind " + kind);
+    }
+  }
+
+  private VarExtractor extractor(Kind kind) {
+    switch (kind) {
+      case PARAMETER:
+      case LISTENER:
+        return solver.parameterExtractor;
+      case RECEIVER:
+        return solver.receiverExtractor;
+      case RESULT:
+        return solver.resultExtractor;
+      default:
+        throw new RuntimeException("Unknown solution kind " + kind);
+    }
+  }
+
+  // True if no op node was added to (or removed from) a solution map since
+  // the index was built.
+  boolean isUpToDate() {
+    for (Kind kind : Kind.values()) {
+      if (solutionMap(kind).size() != indexedSizes.get(kind)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The op nodes of the given solution whose variable is var.
+   */
+  public List<NOpNode> opNodesFor(Kind kind, NVarNode var) {
+    return opNodesByVar.get(kind).get(var);
+  }
+
+  /**
+   * Adds to resultSet the solution of every op node whose variable is in
+   * locals.
+   */
+  public void addSolutions(Kind kind, Collection<NVarNode> locals,
+                           Set<? super NObjectNode> resultSet) {
+    Map<NVarNode, List<NOpNode>> index = opNodesByVar.get(kind);
+    if (index.isEmpty()) {
+      return;
+    }
+    Map<NOpNode, Set<NNode>> solution = solutionMap(kind);
+    for (NVarNode local : locals) {
+      List<NOpNode> opNodes = index.get(local);
+      if (opNodes == null) {
+        continue;
+      }
+      for (NOpNode opNode : opNodes) {
+        Set<NNode> values = solution.get(opNode);
+        if (values == null) {
+          continue;
+        }
+        for (NNode resultNode : values) {
+          resultSet.add((NObjectNode) resultNode);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * VariableValueCache.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import presto.android.Configs;
+import presto.android.gui.graph.NNode;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Memoized results of variable value queries (QueryHelper.allVariableValues()
+ * and the DemandVariableValueQuery queries), keyed by the queried node or
+ * local and the kind of query. Each query is a backward traversal of the
+ * flowgraph, and the WTG analyzers ask for the same locals over and over.
+ * <p>
+ * The cache is bounded (Configs.queryCacheSize entries, least recently used
+ * first out) and safe to use from several threads. Cached sets are
+ * unmodifiable. All entries are dropped when the flowgraph changes, e.g.,
+ * when FlowgraphRebuilder adds or removes edges, or when the fixed-point
+ * solution is recomputed.
+ */
+public class VariableValueCache {
+  public enum Kind {
+    // QueryHelper.allVariableValues(), by NNode
+    ALL_VALUES,
+    // Object values of a reference-typed local, by Local
+    REF_VALUES,
+    // Id values of an int local, by Local
+    ID_VALUES
+  }
+
+  private static VariableValueCache instance;
+
+  private final Cache<Key, Set<?>> cache;
+  // NNode.getGraphVersion() the entries were computed at
+  private long version;
+
+  public static synchronized VariableValueCache v() {
+    if (instance == null) {
+      instance = new VariableValueCache();
+    }
+    return instance;
+  }
+
+  private VariableValueCache() {
+    cache = CacheBuilder.newBuilder()
+            .maximumSize(Configs.queryCacheSize)
+            .concurrencyLevel(Math.max(1, Configs.workerNum))
+            .recordStats()
+            .build();
+    version = NNode.getGraphVersion();
+  }
+
+  /**
+   * The cached result of the query, or null. The caller computes a missing
+   * result and stores it with put(), passing the graph version it read
+   * before computing it.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> Set<T> get(Kind kind, Object target) {
+    checkVersion();
+    return (Set<T>) cache.getIfPresent(new Key(kind, target));
+  }
+
+  /**
+   * Caches the result of a query computed at the given graph version, unless
+   * the graph changed since. Returns the set to hand out to the caller.
+   */
+  public <T> Set<T> put(Kind kind, Object target, Set<T> result, long computedAt) {
+    Set<T> value = Collections.unmodifiableSet(result);
+    synchronized (this) {
+      if (computedAt == version && computedAt == NNode.getGraphVersion()) {
+        cache.put(new Key(kind, target), value);
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Drops all entries, e.g., after the fixed-point solution changed.
+   */
+  public synchronized void invalidateAll() {
+    cache.invalidateAll();
+    version = NNode.getGraphVersion();
+  }
+
+  private void checkVersion() {
+    long current = NNode.getGraphVersion();
+    synchronized (this) {
+      if (current != version) {
+        cache.invalidateAll();
+        version = current;
+      }
+    }
+  }
+
+  public String getStatistics() {
+    CacheStats stats = cache.stats();
+    return "[VariableValueCache] requests: " + stats.requestCount()
+            + ", hits: " + stats.hitCount()
+            + " (" + String.format("%.1f", stats.hitRate() * 100) + "%)"
+            + ", evictions: " + stats.evictionCount()
+            + ", entries: " + cache.size();
+  }
+
+  private static class Key {
+    private final Kind kind;
+    private final Object target;
+
+    Key(Kind kind, Object target) {
+      this.kind = kind;
+      this.target = target;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return kind == other.kind && target.equals(other.target);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(kind, target);
+    }
+  }
+}
@@ -29,6 +29,7 @@ import presto.android.gui.wtg.ds.WTGNode;
 import soot.SootClass;
 
 import java.io.*;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -112,17 +113,16 @@ public class ASE15Client implements GUIAnalysisClient {
     Logger.verb(getClass().getSimpleName(), "=========================================");
     for (int k = 1; k <= Configs.epDepth + 1; k++) {
       Logger.verb(label, "*************** m = " + k + " ****************");
-      List<List<WTGEdge>> naive = wtgOutput.explorePaths(wtg.getLauncherNode(), k, false, Configs.allowLoop);
-      int numAllPaths = naive.size();
+      // only the number of paths is needed: count them as they are enumerated
+      long numAllPaths = wtgOutput.streamPaths(wtg.getLauncherNode(), k, false, Configs.allowLoop).count();
       Logger.verb(label + ".Naive", "# of paths: " + numAllPaths);
-      // use a helper method explorePaths in WTGAnalysisOutput to construct the set of all paths of length
+      // use a helper method streamPaths in WTGAnalysisOutput to enumerate the set of all paths of length
       // at most k, starting from the WTG node for the Android launcher (this artificial node has a WTG edge
       // to the main activity of the application). The third parameter indicates whether the path feasibility
       // check should be used. The last parameter (false by default) specifies whether a WTG edge is allowed
       // to appear in the path more than once. Please see the source code of this method for more details on
       // how to perform path feasibility checks by modelling the window stack
-      List<List<WTGEdge>> feasible = wtgOutput.explorePaths(wtg.getLauncherNode(), k, true, Configs.allowLoop);
-      int numFeasiblePaths = feasible.size();
+      long numFeasiblePaths = wtgOutput.streamPaths(wtg.getLauncherNode(), k, true, Configs.allowLoop).count();
       Logger.verb(label + ".Feasible", "# of paths: " + numFeasiblePaths);
 
       Logger.verb(label + ".Compare", "% of imprv: " + (double) (numAllPaths - numFeasiblePaths) / numAllPaths);
@@ -167,10 +167,11 @@ public class ASE15Client implements GUIAnalysisClient {
                                                      VelocityContext context, int k) {
     Logger.verb(getClass().getSimpleName(), "-----lengthKFeasiblePathTestCases-----");
     WTG wtg = wtgOutput.getWTG();
-    List<List<WTGEdge>> smart = wtgOutput.explorePaths(wtg.getLauncherNode(), k, true, Configs.allowLoop);
     Robo robo = new Robo(guiOutput.getAppPackageName());
-    for (List<WTGEdge> path : smart) {
-      robo.generateTestCase(new Path(path));
+    Iterator<List<WTGEdge>> smart =
+            wtgOutput.streamPaths(wtg.getLauncherNode(), k, true, Configs.allowLoop).iterator();
+    while (smart.hasNext()) {
+      robo.generateTestCase(new Path(smart.next()));
     }
     Logger.verb(getClass().getSimpleName(), "#TestCases: " + robo.cases.size());
     genCaseFile(context, "TestFeasiblePathLength" + Configs.epDepth, "Path", robo);
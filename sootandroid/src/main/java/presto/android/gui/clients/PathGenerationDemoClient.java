@@ -16,6 +16,7 @@ import presto.android.gui.GUIAnalysisClient;
 import presto.android.gui.GUIAnalysisOutput;
 import presto.android.gui.clients.energy.DFSGenericPathGenerator;
 import presto.android.gui.clients.energy.IPathFilter;
+import presto.android.gui.clients.energy.IPathVisitor;
 import presto.android.gui.graph.NActivityNode;
 import presto.android.gui.graph.NObjectNode;
 import presto.android.gui.wtg.StackOperation;
@@ -95,15 +96,25 @@ public class PathGenerationDemoClient implements GUIAnalysisClient {
 
     Logger.verb("PathGenDemo", "Total Init Edges: " + initEdges.size());
 
-    //Create Output Map
-    Map<String, List<List<WTGEdge>>> outputMap = Maps.newHashMap();
+    //Count the matched paths as they are generated,
+    //instead of saving all of them
+    final Map<String, Integer> pathCounts = Maps.newHashMap();
+    pathCounts.put(ph.getFilterName(), 0);
+    IPathVisitor counter = new IPathVisitor() {
+      @Override
+      public boolean visit(IPathFilter pF, List<WTGEdge> P) {
+        pathCounts.put(pF.getFilterName(), pathCounts.get(pF.getFilterName()) + 1);
+        return true;
+      }
+    };
 
     DFSGenericPathGenerator dg = DFSGenericPathGenerator.create(
-            pathFilterList, null, initEdges, outputMap, false, false, 3);
+            pathFilterList, null, initEdges, null, false, false, 3);
+    dg.setPathVisitor(counter);
 
     dg.doPathGeneration();
 
     Logger.verb("PathGenDemo", "K = " + 3);
-    Logger.verb("PathGenDemo", "Total path count: " + outputMap.get(ph.getFilterName()).size());
+    Logger.verb("PathGenDemo", "Total path count: " + pathCounts.get(ph.getFilterName()));
   }
 }
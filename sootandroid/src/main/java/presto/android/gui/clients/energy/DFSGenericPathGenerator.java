@@ -16,10 +16,12 @@ import presto.android.gui.graph.NObjectNode;
 import presto.android.gui.wtg.StackOperation;
 import presto.android.gui.wtg.ds.WTGEdge;
 import presto.android.gui.wtg.ds.WTGNode;
+import presto.android.gui.wtg.parallel.TaskExecutor;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Created by zero on 2/15/16.
@@ -32,6 +34,9 @@ public class DFSGenericPathGenerator {
   private boolean m_allowRepeatedEdge;
   private Map<String, List<List<WTGEdge>>> m_matchedPath;
   private boolean m_stopAtMatch;
+  private IPathVisitor m_visitor;
+  private boolean m_parallel;
+  private final AtomicBoolean m_stopped = new AtomicBoolean();
 
   private DFSGenericPathGenerator(
           List<IPathFilter> pathFilters,
@@ -165,35 +170,88 @@ public class DFSGenericPathGenerator {
       this.m_edgeFilters.add(eF);
   }
 
+  /***
+   * Set the visitor of matched paths. Matched paths are passed to the
+   * visitor as they are generated, instead of being saved
+   * @param visitor the path visitor. Could be null
+   */
+  public void setPathVisitor(IPathVisitor visitor) {
+    this.m_visitor = visitor;
+  }
+
+  /***
+   * Split the path generation by init edge across the TaskExecutor workers.
+   * Path filters, edge filters and the path visitor must then be thread safe
+   * @param parallel Parallel generation flag
+   */
+  public void setParallel(boolean parallel) {
+    this.m_parallel = parallel;
+  }
+
   public void doPathGeneration() {
-    for (WTGEdge initEdge : this.m_initEdges) {
-      List<WTGEdge> P = Lists.newArrayList();
-      Stack<NObjectNode> S = new Stack<NObjectNode>();
-      S.add(initEdge.getSourceNode().getWindow());
-      if (!canAppend(P, S, initEdge))
-        continue;
-      doAppend(P, S, initEdge);
-      doDFS(P, S, initEdge.getTargetNode());
-      unDoAppend(P, S, initEdge);
-    }
+    generate(false);
   }
 
   public void doPathGenerationWithTarget() {
-    String mtdTag = "DFSGenericPathGenerator.doPathGenerationWtihTarget";
-    for (WTGEdge initEdge : this.m_initEdges) {
-      List<WTGEdge> P = Lists.newArrayList();
-      Stack<NObjectNode> S = new Stack<NObjectNode>();
+    generate(true);
+  }
+
+  private void generate(final boolean withTarget) {
+    this.m_stopped.set(false);
+    if (!this.m_parallel) {
+      for (WTGEdge initEdge : this.m_initEdges) {
+        if (!generateFrom(initEdge, withTarget))
+          return;
+      }
+      return;
+    }
+    //Inputs are the indices, as an init edge may be listed twice
+    List<Integer> indices = Lists.newArrayList();
+    for (int i = 0; i < this.m_initEdges.size(); i++) {
+      indices.add(i);
+    }
+    TaskExecutor.invokeAll(getClass().getSimpleName(), indices,
+            new TaskExecutor.Task<Integer, Boolean>() {
+              @Override
+              public Boolean run(Integer index) {
+                if (m_stopped.get())
+                  return false;
+                if (!generateFrom(m_initEdges.get(index), withTarget)) {
+                  m_stopped.set(true);
+                  return false;
+                }
+                return true;
+              }
+            });
+  }
+
+  //Return false if the path visitor stopped the generation
+  private boolean generateFrom(WTGEdge initEdge, boolean withTarget) {
+    List<WTGEdge> P = Lists.newArrayList();
+    Stack<NObjectNode> S = new Stack<NObjectNode>();
+    if (withTarget) {
       S.add(initEdge.getTargetNode().getWindow());
       P.add(initEdge);
-      doDFS(P, S, initEdge.getTargetNode());
+      return doDFS(P, S, initEdge.getTargetNode());
     }
+    S.add(initEdge.getSourceNode().getWindow());
+    if (!canAppend(P, S, initEdge))
+      return true;
+    doAppend(P, S, initEdge);
+    boolean goOn = doDFS(P, S, initEdge.getTargetNode());
+    unDoAppend(P, S, initEdge);
+    return goOn;
   }
 
-  private void doDFS(List<WTGEdge> P, Stack<NObjectNode> S, WTGNode n) {
+  //Return false if the path visitor stopped the generation
+  private boolean doDFS(List<WTGEdge> P, Stack<NObjectNode> S, WTGNode n) {
     //If current path size larger than K
     //Stop traversal
     if (P.size() > K)
-      return;
+      return true;
+    //Another worker stopped the generation
+    if (this.m_stopped.get())
+      return false;
 
 
     //Check those path filters
@@ -201,11 +259,12 @@ public class DFSGenericPathGenerator {
     for (IPathFilter pF : this.m_pathFilters) {
       if (pF.match(P, S)) {
         matched = true;
-        addToMap(pF, P);
+        if (!visitPath(pF, P))
+          return false;
       }
     }
     if (matched && this.m_stopAtMatch)
-      return;
+      return true;
 
     //Expand path
     for (WTGEdge e : n.getOutEdges()) {
@@ -226,14 +285,26 @@ public class DFSGenericPathGenerator {
         continue;
       }
       doAppend(P, S, e);
-      doDFS(P, S, e.getTargetNode());
+      boolean goOn = doDFS(P, S, e.getTargetNode());
       unDoAppend(P, S, e);
+      if (!goOn)
+        return false;
     }
+    return true;
+  }
 
+  private boolean visitPath(IPathFilter pF, List<WTGEdge> P) {
+    if (this.m_visitor != null) {
+      return this.m_visitor.visit(pF, P);
+    }
+    addToMap(pF, P);
+    return true;
   }
 
   private void addToMap(IPathFilter pF, List<WTGEdge> P) {
-    if (this.m_matchedPath != null) {
+    if (this.m_matchedPath == null)
+      return;
+    synchronized (this.m_matchedPath) {
       if (!this.m_matchedPath.containsKey(pF.getFilterName())) {
         this.m_matchedPath.put(
                 pF.getFilterName(), Lists.newArrayList());
@@ -23,6 +23,7 @@ import presto.android.gui.graph.NNode;
 import presto.android.gui.graph.NObjectNode;
 import presto.android.gui.listener.EventType;
 import presto.android.gui.wtg.EventHandler;
+import presto.android.gui.wtg.ImmutableWindowStack;
 import presto.android.gui.wtg.StackOperation;
 import presto.android.gui.wtg.WTGAnalysisOutput;
 import presto.android.gui.wtg.analyzer.CFGTraversal;
@@ -40,6 +41,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class EnergyAnalyzer {
@@ -54,6 +56,13 @@ public class EnergyAnalyzer {
   List<WTGNode> allNode;
   GUIAnalysisOutput guiOutput;
   private WTG wtg;
+  //Path prefixes analysed by each path generation worker
+  private final ThreadLocal<PrefixCache> prefixCaches = new ThreadLocal<PrefixCache>() {
+    @Override
+    protected PrefixCache initialValue() {
+      return new PrefixCache();
+    }
+  };
   private JimpleUtil jimpleUtil;
   private WTGUtil wtgUtil;
 
@@ -155,10 +164,12 @@ public class EnergyAnalyzer {
   //Pattern 1 and 2 Analysis using generic DFS Path Generator
   private void Pattern1_2AnalysisG() {
     final String mtdTag = "EnergyAnalyzer.Pattern1_2AnalysisG";
-    //Map used to save Pattern 1 Paths with energy defects.
-    final Map<List<WTGEdge>, List<ResNode>> p1PathResMap = Maps.newHashMap();
-    //Map used to save Pattern 2 Paths with energy defects.
-    final Map<List<WTGEdge>, List<ResNode>> p2PathResMap = Maps.newHashMap();
+    //Sinks of Pattern 1 and Pattern 2 Paths with energy defects.
+    //Paths are generated in parallel, so results are added as they are found
+    final OutputReducer reducerC1 = new OutputReducer(OutputReducer.PathType.C1);
+    final OutputReducer reducerC2 = new OutputReducer(OutputReducer.PathType.C2);
+    final AtomicInteger p1Candidates = new AtomicInteger();
+    final AtomicInteger p2Candidates = new AtomicInteger();
     IPathFilter pattern1Filter = new IPathFilter() {
       @Override
       public boolean match(List<WTGEdge> P, Stack<NObjectNode> S) {
@@ -194,10 +205,10 @@ public class EnergyAnalyzer {
           NObjectNode opWindow = curOp.getWindow();
           if (opWindow == targetWindow && (!curOp.isPushOp()) && cpS.isEmpty()) {
             //Stack is balanced(Empty). Currently it is a pop operation and op Window is the target Window
-            VarUtil.v().P1Candidate++;
+            p1Candidates.incrementAndGet();
             List<ResNode> rmRes = EnergyAnalyzer.this.traverseCategory1Path(P);
             if (!rmRes.isEmpty()) {
-              p1PathResMap.put(Lists.newArrayList(P), rmRes);
+              reducerC1.addPath(Lists.newArrayList(P), rmRes);
             }
             return true;
           }
@@ -236,10 +247,10 @@ public class EnergyAnalyzer {
         EventType evt = lastEdge.getEventType();
         if (topActivity == targetWindow &&
                 (evt == EventType.implicit_home_event)) {
-          VarUtil.v().P2Candidate++;
+          p2Candidates.incrementAndGet();
           List<ResNode> rmRes = EnergyAnalyzer.this.traverseCategory2Path(P);
           if (!rmRes.isEmpty()) {
-            p2PathResMap.put(Lists.newArrayList(P), rmRes);
+            reducerC2.addPath(Lists.newArrayList(P), rmRes);
           }
           return true;
         }
@@ -299,23 +310,23 @@ public class EnergyAnalyzer {
     pathFilters.add(pattern2Filter);
     DFSGenericPathGenerator pathGen = DFSGenericPathGenerator.create(
             pathFilters, null, initEdges, VarUtil.v().K);
+    //The path filters only share the sinks and the candidate counters
+    pathGen.setParallel(Configs.workerNum > 1);
     pathGen.doPathGenerationWithTarget();
+    VarUtil.v().P1Candidate += p1Candidates.get();
+    VarUtil.v().P2Candidate += p2Candidates.get();
 
-    if (p1PathResMap.isEmpty()) {
+    if (reducerC1.getUniqueIssues() == 0) {
       Logger.verb(mtdTag, "Pattern 1 No Issue");
     } else {
-      OutputReducer reducerC1 = new OutputReducer(OutputReducer.PathType.C1);
-      reducerC1.parseOutput(p1PathResMap);
       VarUtil.v().uniqueC1 = reducerC1.getUniqueIssues();
       reducerC1.outputToFile(Configs.benchmarkName + "C1.log", OutputReducer.OutputType.MINIMAL);
       Logger.verb("\033[1;31mDEBUG\033[0m", "Pattern 1 defects output to " + reducerC1.absPath);
     }
 
-    if (p2PathResMap.isEmpty()) {
+    if (reducerC2.getUniqueIssues() == 0) {
       Logger.verb(mtdTag, "Pattern 2 No Issue");
     } else {
-      OutputReducer reducerC2 = new OutputReducer(OutputReducer.PathType.C2);
-      reducerC2.parseOutput(p2PathResMap);
       VarUtil.v().uniqueC2 = reducerC2.getUniqueIssues();
       reducerC2.outputToFile(Configs.benchmarkName + "C2.log", OutputReducer.OutputType.MINIMAL);
       Logger.verb("\033[1;31mDEBUG\033[0m", "Pattern 2 defects output to " + reducerC2.absPath);
@@ -330,201 +341,207 @@ public class EnergyAnalyzer {
    * @return If this path contains a leak. return leaking resources. Otherwise return an empty list
    */
   public List<ResNode> traverseCategory1Path(List<WTGEdge> curPath) {
-    Stack<NObjectNode> windowStack = new Stack<NObjectNode>();
     NObjectNode targetNode = curPath.get(0).getTargetNode().getWindow();
     WTGNode targetWTGNode = curPath.get(0).getTargetNode();
     List<ResNode> retList = Lists.newArrayList();
-    HashMultimap<NObjectNode, ResNode> rmACQMap = HashMultimap.create();
-    Set<ResNode> m_sessionACQ;
-    Set<ResNode> m_sessionREL;
     if (!(targetNode instanceof NActivityNode)) {
       //If target Window is not an activity
       //Do noting on it
       return retList;
     }
 
-    //Assume the src node is already in the stack
-    windowStack.push(curPath.get(0).getSourceNode().getWindow());
-    for (int i = 0; i < curPath.size(); i++) {
-      WTGEdge curEdge = curPath.get(i);
-      List<StackOperation> ops = curEdge.getStackOps();
-      for (StackOperation op : ops) {
-        NObjectNode opWindow = op.getWindow();
-        if (op.isPushOp()) {
-          windowStack.push(opWindow);
-        } else if (!windowStack.isEmpty()) {
-          windowStack.pop();
-        } else {
-          return retList;
-        }
-      }
-
-      NObjectNode widget = curEdge.getGUIWidget();
-      for (SootMethod curHandler : curEdge.getEventHandlers()) {
-        if (i == 0 || i == curPath.size() - 1) {
-          if (!isMethodRelevant(curHandler, targetWTGNode))
-            continue;
-        }
-
-        Pair<NObjectNode, SootMethod> curPair = new Pair<NObjectNode, SootMethod>(widget, curHandler);
-        m_sessionACQ = pairACQMap.get(curPair);
-        m_sessionREL = pairRELMap.get(curPair);
-        NObjectNode curTopWindow = getTopActivity(windowStack);
-
-        if (!m_sessionREL.isEmpty()) {
-          for (ResNode curREL : m_sessionREL) {
-            matchAndRemoveRes(rmACQMap, curREL);
-          }
-        }
-
-        if (curTopWindow == targetNode) {
-          addResNodeToMap(rmACQMap, m_sessionACQ);
-        }
-
-      }
+    //All edges but the last one are traversed the same way in both categories.
+    //Their result is shared with the paths of the same prefix
+    PrefixState prefix = prefixCaches.get().stateBefore(curPath, curPath.size() - 1);
+    if (prefix == null) {
+      return retList;
+    }
+    HashMultimap<NObjectNode, ResNode> rmACQMap = HashMultimap.create(prefix.rmACQMap);
+    WTGEdge curEdge = curPath.get(curPath.size() - 1);
+    ImmutableWindowStack windowStack = applyStackOps(prefix.windowStack, curEdge);
+    if (windowStack == null) {
+      return retList;
+    }
 
-      //Then do on Callbacks
-      if (i == curPath.size() - 1) {
-        //Last edge
-        //Check in onPause/onStop/onDestroy
-        for (EventHandler evt : curEdge.getCallbacks()) {
-          SootMethod curMethod = evt.getEventHandler();
-          String curSub = curMethod.getSubSignature();
-          if (!(curSub.contains("onPause") || curSub.contains("onStop") || curSub.contains("onDestroy")))
-            continue;
-          Pair<NObjectNode, SootMethod> curPair = new Pair<NObjectNode, SootMethod>(evt.getWindow(), evt.getEventHandler());
-          m_sessionACQ = pairACQMap.get(curPair);
-          m_sessionREL = pairRELMap.get(curPair);
-          NObjectNode curTopWindow = getTopActivity(windowStack);
-          if (!m_sessionREL.isEmpty()) {
-            for (ResNode curREL : m_sessionREL) {
-              matchAndRemoveRes(rmACQMap, curREL);
-            }
-          }
-          if (curTopWindow == targetNode) {
-            addResNodeToMap(rmACQMap, m_sessionACQ);
-          }
-        }
+    NObjectNode widget = curEdge.getGUIWidget();
+    for (SootMethod curHandler : curEdge.getEventHandlers()) {
+      if (!isMethodRelevant(curHandler, targetWTGNode))
         continue;
-      }
-
-      for (EventHandler evt : curEdge.getCallbacks()) {
-        if (i == 0 || i == curPath.size() - 1) {
-          if (!isMethodRelevant(evt.getEventHandler(), targetWTGNode))
-            continue;
-        }
-        Pair<NObjectNode, SootMethod> curPair = new Pair<NObjectNode, SootMethod>(evt.getWindow(), evt.getEventHandler());
-        m_sessionACQ = pairACQMap.get(curPair);
-        m_sessionREL = pairRELMap.get(curPair);
-        NObjectNode curTopWindow = getTopActivity(windowStack);
-        if (!m_sessionREL.isEmpty()) {
-          for (ResNode curREL : m_sessionREL) {
-            matchAndRemoveRes(rmACQMap, curREL);
-          }
-        }
-        if (curTopWindow == targetNode) {
-          addResNodeToMap(rmACQMap, m_sessionACQ);
-        }
-      }
+      traversePair(rmACQMap, new Pair<NObjectNode, SootMethod>(widget, curHandler), windowStack, targetNode);
     }
-    if (!rmACQMap.isEmpty()) {
-      for (NObjectNode curObj : rmACQMap.keySet()) {
-        Set<ResNode> curRESSet = rmACQMap.get(curObj);
-        retList.addAll(curRESSet);
-      }
+
+    //Then do on Callbacks
+    //Last edge
+    //Check in onPause/onStop/onDestroy
+    for (EventHandler evt : curEdge.getCallbacks()) {
+      SootMethod curMethod = evt.getEventHandler();
+      String curSub = curMethod.getSubSignature();
+      if (!(curSub.contains("onPause") || curSub.contains("onStop") || curSub.contains("onDestroy")))
+        continue;
+      traversePair(rmACQMap, new Pair<NObjectNode, SootMethod>(evt.getWindow(), evt.getEventHandler()),
+              windowStack, targetNode);
     }
+    retList.addAll(rmACQMap.values());
     return retList;
   }
 
   public List<ResNode> traverseCategory2Path(List<WTGEdge> curPath) {
-    Stack<NObjectNode> windowStack = new Stack<NObjectNode>();
     NObjectNode targetNode = curPath.get(0).getTargetNode().getWindow();
     WTGNode targetWTGNode = curPath.get(0).getTargetNode();
     List<ResNode> retList = Lists.newArrayList();
-    HashMultimap<NObjectNode, ResNode> rmACQMap = HashMultimap.create();
-    Set<ResNode> m_sessionACQ;
-    Set<ResNode> m_sessionREL;
     if (!(targetNode instanceof NActivityNode)) {
       //If target Window is not an activity
       //Do noting on it
       return retList;
     }
 
-    //Assume the src node is already in the stack
-    windowStack.push(curPath.get(0).getSourceNode().getWindow());
-    for (int i = 0; i < curPath.size(); i++) {
-      WTGEdge curEdge = curPath.get(i);
-      List<StackOperation> ops = curEdge.getStackOps();
-      for (StackOperation op : ops) {
-        NObjectNode opWindow = op.getWindow();
-        if (op.isPushOp()) {
-          windowStack.push(opWindow);
-        } else if (!windowStack.isEmpty()) {
-          windowStack.pop();
-        } else {
-          return retList;
-        }
-      }
-
-      NObjectNode widget = curEdge.getGUIWidget();
-      for (SootMethod curHandler : curEdge.getEventHandlers()) {
-        if (i == 0 || i == curPath.size() - 1) {
-          if (!isMethodRelevant(curHandler, targetWTGNode))
-            continue;
-        }
+    PrefixState prefix = prefixCaches.get().stateBefore(curPath, curPath.size() - 1);
+    if (prefix == null) {
+      return retList;
+    }
+    HashMultimap<NObjectNode, ResNode> rmACQMap = HashMultimap.create(prefix.rmACQMap);
+    WTGEdge curEdge = curPath.get(curPath.size() - 1);
+    ImmutableWindowStack windowStack = applyStackOps(prefix.windowStack, curEdge);
+    if (windowStack == null) {
+      return retList;
+    }
 
-        Pair<NObjectNode, SootMethod> curPair = new Pair<NObjectNode, SootMethod>(widget, curHandler);
-        m_sessionACQ = pairACQMap.get(curPair);
-        m_sessionREL = pairRELMap.get(curPair);
-        NObjectNode curTopWindow = getTopActivity(windowStack);
-        if (!m_sessionREL.isEmpty()) {
-          for (ResNode curREL : m_sessionREL) {
-            matchAndRemoveRes(rmACQMap, curREL);
-          }
-        }
-        if (curTopWindow == targetNode) {
-          addResNodeToMap(rmACQMap, m_sessionACQ);
-        }
-      }
+    NObjectNode widget = curEdge.getGUIWidget();
+    for (SootMethod curHandler : curEdge.getEventHandlers()) {
+      if (!isMethodRelevant(curHandler, targetWTGNode))
+        continue;
+      traversePair(rmACQMap, new Pair<NObjectNode, SootMethod>(widget, curHandler), windowStack, targetNode);
+    }
 
-      //Then do on Callbacks
-      for (EventHandler evt : curEdge.getCallbacks()) {
-        if (i == 0) {
-          if (!isMethodRelevant(evt.getEventHandler(), targetWTGNode))
-            continue;
-        }
+    //Then do on Callbacks
+    for (EventHandler evt : curEdge.getCallbacks()) {
+      SootMethod curMethod = evt.getEventHandler();
+      if (!isMethodRelevant(evt.getEventHandler(), targetWTGNode))
+        continue;
+      String curSub = curMethod.getSubSignature();
+      if (curSub.contains("onResume") || curSub.contains("onStart") || curSub.contains("onRestart"))
+        continue;
+      traversePair(rmACQMap, new Pair<NObjectNode, SootMethod>(evt.getWindow(), evt.getEventHandler()),
+              windowStack, targetNode);
+    }
+    retList.addAll(rmACQMap.values());
+    return retList;
+  }
 
-        if (i == curPath.size() - 1) {
-          SootMethod curMethod = evt.getEventHandler();
-          if (!isMethodRelevant(evt.getEventHandler(), targetWTGNode))
-            continue;
-          String curSub = curMethod.getSubSignature();
-          if (curSub.contains("onResume") || curSub.contains("onStart") || curSub.contains("onRestart"))
-            continue;
-        }
+  /**
+   * Traverse an edge that is not the last one of the path
+   *
+   * @param state   state after the previous edges of the path
+   * @param curEdge the edge
+   * @param first   whether it is the first edge of the path
+   * @return state after the edge, or null if the window stack is not balanced
+   */
+  private PrefixState traverseEdge(PrefixState state, WTGEdge curEdge, boolean first,
+                                   NObjectNode targetNode, WTGNode targetWTGNode) {
+    ImmutableWindowStack windowStack = applyStackOps(state.windowStack, curEdge);
+    if (windowStack == null) {
+      return null;
+    }
+    HashMultimap<NObjectNode, ResNode> rmACQMap = HashMultimap.create(state.rmACQMap);
+    NObjectNode widget = curEdge.getGUIWidget();
+    for (SootMethod curHandler : curEdge.getEventHandlers()) {
+      if (first && !isMethodRelevant(curHandler, targetWTGNode))
+        continue;
+      traversePair(rmACQMap, new Pair<NObjectNode, SootMethod>(widget, curHandler), windowStack, targetNode);
+    }
+    //Then do on Callbacks
+    for (EventHandler evt : curEdge.getCallbacks()) {
+      if (first && !isMethodRelevant(evt.getEventHandler(), targetWTGNode))
+        continue;
+      traversePair(rmACQMap, new Pair<NObjectNode, SootMethod>(evt.getWindow(), evt.getEventHandler()),
+              windowStack, targetNode);
+    }
+    return new PrefixState(windowStack, rmACQMap);
+  }
 
-        Pair<NObjectNode, SootMethod> curPair = new Pair<NObjectNode, SootMethod>(evt.getWindow(), evt.getEventHandler());
-        m_sessionACQ = pairACQMap.get(curPair);
-        m_sessionREL = pairRELMap.get(curPair);
-        NObjectNode curTopWindow = getTopActivity(windowStack);
-        if (!m_sessionREL.isEmpty()) {
-          for (ResNode curREL : m_sessionREL) {
-            matchAndRemoveRes(rmACQMap, curREL);
-          }
-        }
-        if (curTopWindow == targetNode) {
-          addResNodeToMap(rmACQMap, m_sessionACQ);
-        }
+  //Match the REL of the pair, then keep its ACQ if the target window is the top activity
+  private void traversePair(HashMultimap<NObjectNode, ResNode> rmACQMap, Pair<NObjectNode, SootMethod> curPair,
+                            ImmutableWindowStack windowStack, NObjectNode targetNode) {
+    Set<ResNode> m_sessionACQ = pairACQMap.get(curPair);
+    Set<ResNode> m_sessionREL = pairRELMap.get(curPair);
+    NObjectNode curTopWindow = getTopActivity(windowStack);
+    if (!m_sessionREL.isEmpty()) {
+      for (ResNode curREL : m_sessionREL) {
+        matchAndRemoveRes(rmACQMap, curREL);
       }
     }
-    if (!rmACQMap.isEmpty()) {
-      for (NObjectNode curObj : rmACQMap.keySet()) {
-        Set<ResNode> curRESSet = rmACQMap.get(curObj);
-        retList.addAll(curRESSet);
+    if (curTopWindow == targetNode) {
+      addResNodeToMap(rmACQMap, m_sessionACQ);
+    }
+  }
+
+  //Return null if a pop is done on an empty stack
+  private ImmutableWindowStack applyStackOps(ImmutableWindowStack windowStack, WTGEdge curEdge) {
+    for (StackOperation op : curEdge.getStackOps()) {
+      if (op.isPushOp()) {
+        windowStack = windowStack.push(op.getWindow());
+      } else if (!windowStack.isEmpty()) {
+        windowStack = windowStack.pop();
+      } else {
+        return null;
       }
     }
+    return windowStack;
+  }
 
-    return retList;
+  /**
+   * Window stack and remaining acquired resources after a prefix of a path.
+   * It is not modified once created.
+   */
+  private static class PrefixState {
+    final ImmutableWindowStack windowStack;
+    final HashMultimap<NObjectNode, ResNode> rmACQMap;
+
+    PrefixState(ImmutableWindowStack windowStack, HashMultimap<NObjectNode, ResNode> rmACQMap) {
+      this.windowStack = windowStack;
+      this.rmACQMap = rmACQMap;
+    }
+  }
+
+  /**
+   * States of the prefixes of the last path traversed by a thread. Paths
+   * are generated depth first, so consecutive paths share long prefixes.
+   */
+  private class PrefixCache {
+    private final List<WTGEdge> edges = Lists.newArrayList();
+    // states.get(i) is the state after edges 0..i, null if not balanced
+    private final List<PrefixState> states = Lists.newArrayList();
+
+    /**
+     * @return the state after the first n edges of the path, or null if the
+     * window stack is not balanced
+     */
+    PrefixState stateBefore(List<WTGEdge> curPath, int n) {
+      int common = 0;
+      while (common < edges.size() && common < n && edges.get(common) == curPath.get(common)) {
+        common++;
+      }
+      edges.subList(common, edges.size()).clear();
+      states.subList(common, states.size()).clear();
+      PrefixState state;
+      if (common > 0) {
+        state = states.get(common - 1);
+      } else {
+        //Assume the src node is already in the stack
+        state = new PrefixState(ImmutableWindowStack.of(curPath.get(0).getSourceNode().getWindow()),
+                HashMultimap.<NObjectNode, ResNode>create());
+      }
+      NObjectNode targetNode = curPath.get(0).getTargetNode().getWindow();
+      WTGNode targetWTGNode = curPath.get(0).getTargetNode();
+      for (int i = common; i < n; i++) {
+        if (state != null) {
+          state = traverseEdge(state, curPath.get(i), i == 0, targetNode, targetWTGNode);
+        }
+        edges.add(curPath.get(i));
+        states.add(state);
+      }
+      return state;
+    }
   }
 
   private void addResNodeToMap(HashMultimap<NObjectNode, ResNode> m_ACQMAP, Set<ResNode> m_sessionACQL) {
@@ -556,6 +573,14 @@ public class EnergyAnalyzer {
     }
   }
 
+  private NObjectNode getTopActivity(ImmutableWindowStack windowStack) {
+    for (; !windowStack.isEmpty(); windowStack = windowStack.pop()) {
+      if (windowStack.peek() instanceof NActivityNode)
+        return windowStack.peek();
+    }
+    return null;
+  }
+
   private NObjectNode getTopActivity(Stack<NObjectNode> windowStack) {
     if (windowStack.isEmpty())
       return null;
@@ -586,6 +611,7 @@ public class EnergyAnalyzer {
       ret = HashMultimap.create();
       HashMultimap<Stmt, SootMethod> infeasibleCalls = HashMultimap.create();
       VarUtil.v().constantAnalysis.doAnalysis(curPair.getL(), curPair.getR(), ret, infeasibleCalls);
+      VarUtil.v().constantAnalysis.publishResults();
     }
     return ret;
   }
@@ -606,6 +632,7 @@ public class EnergyAnalyzer {
       ret = HashMultimap.create();
       HashMultimap<Stmt, Stmt> infeasibleEdges = HashMultimap.create();
       VarUtil.v().constantAnalysis.doAnalysis(curPair.getL(), curPair.getR(), infeasibleEdges, ret);
+      VarUtil.v().constantAnalysis.publishResults();
     }
     return ret;
   }
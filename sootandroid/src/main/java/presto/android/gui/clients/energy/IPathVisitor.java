@@ -0,0 +1,25 @@
+/*
+ * IPathVisitor.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+
+package presto.android.gui.clients.energy;
+
+import presto.android.gui.wtg.ds.WTGEdge;
+
+import java.util.List;
+
+public interface IPathVisitor {
+  /***
+   * Called for every path matched by a path filter, as the path is generated
+   * @param pF the path filter matching the path
+   * @param P the matched path. It is modified as the generation goes on:
+   *          copy it to keep it
+   * @return false to stop the path generation. Otherwise return true
+   */
+  boolean visit(IPathFilter pF, List<WTGEdge> P);
+}
@@ -11,6 +11,7 @@ package presto.android.gui.clients.energy;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import presto.android.gui.graph.NObjectNode;
 import presto.android.gui.wtg.EventHandler;
@@ -103,36 +104,49 @@ public class OutputReducer {
   }
 
   public void parseOutput(Map<List<WTGEdge>, List<ResNode>> pathResMap) {
-    this.mPathResMap = pathResMap;
     for (List<WTGEdge> curPath : pathResMap.keySet()) {
-      //While very unlikely. Test if the path is empty
-      if (curPath.isEmpty())
-        continue;
-
-      NObjectNode curObjectNode = curPath.get(0).getTargetNode().getWindow();
-      Set<ResNode> curResSet = Sets.newHashSet(pathResMap.get(curPath));
-      if (!mData.containsKey(curObjectNode)) {
-        Path curPathNode = new Path(curObjectNode, curResSet);
-        curPathNode.addPath(curPath);
-        mData.put(curObjectNode, curPathNode);
-      } else {
-        //It does have an entry for this Node
-        Set<Path> curPathSet = mData.get(curObjectNode);
-        Path targetPathNode = null;
-        for (Path curPathNode : curPathSet) {
-          if (curPathNode.compareSet(curResSet)) {
-            targetPathNode = curPathNode;
-            break;
-          }
-        }
-        if (targetPathNode == null) {
-          targetPathNode = new Path(curObjectNode, curResSet);
-          targetPathNode.addPath(curPath);
-          mData.put(curObjectNode, targetPathNode);
-        } else {
-          targetPathNode.addPath(curPath);
+      addPath(curPath, pathResMap.get(curPath));
+    }
+  }
+
+  /**
+   * Add a path with energy issues, as it is found. Paths may be added
+   * by several threads.
+   *
+   * @param curPath   the path, which is not modified afterwards
+   * @param resources the leaking resources on the path
+   */
+  public synchronized void addPath(List<WTGEdge> curPath, List<ResNode> resources) {
+    if (this.mPathResMap == null)
+      this.mPathResMap = Maps.newLinkedHashMap();
+    this.mPathResMap.put(curPath, resources);
+    //While very unlikely. Test if the path is empty
+    if (curPath.isEmpty())
+      return;
+
+    NObjectNode curObjectNode = curPath.get(0).getTargetNode().getWindow();
+    Set<ResNode> curResSet = Sets.newHashSet(resources);
+    if (!mData.containsKey(curObjectNode)) {
+      Path curPathNode = new Path(curObjectNode, curResSet);
+      curPathNode.addPath(curPath);
+      mData.put(curObjectNode, curPathNode);
+    } else {
+      //It does have an entry for this Node
+      Set<Path> curPathSet = mData.get(curObjectNode);
+      Path targetPathNode = null;
+      for (Path curPathNode : curPathSet) {
+        if (curPathNode.compareSet(curResSet)) {
+          targetPathNode = curPathNode;
+          break;
         }
       }
+      if (targetPathNode == null) {
+        targetPathNode = new Path(curObjectNode, curResSet);
+        targetPathNode.addPath(curPath);
+        mData.put(curObjectNode, targetPathNode);
+      } else {
+        targetPathNode.addPath(curPath);
+      }
     }
   }
 
@@ -12,6 +12,7 @@ package presto.android.gui.clients.energy;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import presto.android.gui.GUIAnalysisOutput;
 import presto.android.gui.graph.NObjectNode;
 import presto.android.gui.wtg.WTGAnalysisOutput;
@@ -31,10 +32,10 @@ public class VarUtil {
 
   public WTGNode fakeWTGNode = null;
 
-  public Set<NObjectNode> widgetSet = Collections.synchronizedSet(new HashSet<NObjectNode>());
+  public Set<NObjectNode> widgetSet = Sets.newConcurrentHashSet();
 
 
-  public ConstantAnalysis constantAnalysis = null;
+  public volatile ConstantAnalysis constantAnalysis = null;
 
   public Map<Pair<NObjectNode, SootMethod>, HashMultimap<Stmt, Stmt>> infeasibleEdgesMap;
 
@@ -65,8 +66,9 @@ public class VarUtil {
   public int P2Candidate;
 
   private VarUtil() {
-    infeasibleCallsMap = Maps.newHashMap();
-    infeasibleEdgesMap = Maps.newHashMap();
+    // filled by concurrent CFG analyses
+    infeasibleCallsMap = Maps.newConcurrentMap();
+    infeasibleEdgesMap = Maps.newConcurrentMap();
     uniqueC1 = 0;
     uniqueC2 = 0;
     P1Candidate = 0;
@@ -75,7 +77,7 @@ public class VarUtil {
 
   private static VarUtil instance;
 
-  public static VarUtil v() {
+  public static synchronized VarUtil v() {
     if (instance == null) {
       instance = new VarUtil();
     }
@@ -17,6 +17,7 @@ import presto.android.gui.wtg.ds.WTGNode;
 
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 
 public class Path {
@@ -186,19 +187,10 @@ public class Path {
     if (1 == depth)
       return extendFeasible(wtgOutput);
     List<Path> newPaths = Lists.newArrayList();
-    List<Path> workList = Lists.newLinkedList();
-    workList.add(this);
-    depth += length();
-    while (!workList.isEmpty()) {
-      Path path = workList.remove(0);
-      if (path.length() < depth) {
-        workList.addAll(path.extendFeasible(wtgOutput));
-      } else if (path.length() == depth) {
-        newPaths.add(path);
-      } else {
-        // should never be here
-        throw new RuntimeException();
-      }
+    // extensions are enumerated depth first, without intermediate paths
+    Iterator<List<WTGEdge>> extensions = wtgOutput.streamFeasibleExtensions(edges, depth).iterator();
+    while (extensions.hasNext()) {
+      newPaths.add(new Path(extensions.next()));
     }
     return newPaths;
   }
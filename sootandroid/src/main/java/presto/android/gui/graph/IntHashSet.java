@@ -0,0 +1,164 @@
+/*
+ * IntHashSet.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui.graph;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash set of positive ints (node ids). Unlike a
+ * HashSet<Integer>, it does not allocate per element. Slots hold 0 when empty
+ * and -1 when the element has been removed.
+ * <p>
+ * Iterate with capacity()/slot(i), skipping non-positive slots.
+ */
+public class IntHashSet {
+  private static final int EMPTY = 0;
+  private static final int REMOVED = -1;
+
+  private int[] table;
+  private int size;
+  // size + number of REMOVED slots
+  private int used;
+
+  public IntHashSet() {
+    this(8);
+  }
+
+  public IntHashSet(int expectedSize) {
+    int capacity = 8;
+    while (capacity < expectedSize * 2) {
+      capacity <<= 1;
+    }
+    table = new int[capacity];
+  }
+
+  private static int hash(int value) {
+    int h = value * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  public boolean contains(int value) {
+    int mask = table.length - 1;
+    int i = hash(value) & mask;
+    while (true) {
+      int v = table[i];
+      if (v == value) {
+        return true;
+      }
+      if (v == EMPTY) {
+        return false;
+      }
+      i = (i + 1) & mask;
+    }
+  }
+
+  public boolean add(int value) {
+    if (value <= 0) {
+      throw new IllegalArgumentException("Only positive values are supported: " + value);
+    }
+    if ((used + 1) * 2 > table.length) {
+      rehash(size * 2 + 2 > table.length ? table.length << 1 : table.length);
+    }
+    int mask = table.length - 1;
+    int i = hash(value) & mask;
+    int firstRemoved = -1;
+    while (true) {
+      int v = table[i];
+      if (v == value) {
+        return false;
+      }
+      if (v == EMPTY) {
+        break;
+      }
+      if (v == REMOVED && firstRemoved < 0) {
+        firstRemoved = i;
+      }
+      i = (i + 1) & mask;
+    }
+    if (firstRemoved >= 0) {
+      table[firstRemoved] = value;
+    } else {
+      table[i] = value;
+      used++;
+    }
+    size++;
+    return true;
+  }
+
+  public boolean remove(int value) {
+    int mask = table.length - 1;
+    int i = hash(value) & mask;
+    while (true) {
+      int v = table[i];
+      if (v == value) {
+        table[i] = REMOVED;
+        size--;
+        return true;
+      }
+      if (v == EMPTY) {
+        return false;
+      }
+      i = (i + 1) & mask;
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    Arrays.fill(table, EMPTY);
+    size = 0;
+    used = 0;
+  }
+
+  public int capacity() {
+    return table.length;
+  }
+
+  // Returns the element in slot i, or a non-positive value for an empty slot.
+  public int slot(int i) {
+    return table[i];
+  }
+
+  // Removes the element in slot i. Used by iterators.
+  void removeSlot(int i) {
+    if (table[i] > 0) {
+      table[i] = REMOVED;
+      size--;
+    }
+  }
+
+  public int[] toArray() {
+    int[] result = new int[size];
+    int k = 0;
+    for (int v : table) {
+      if (v > 0) {
+        result[k++] = v;
+      }
+    }
+    return result;
+  }
+
+  private void rehash(int newCapacity) {
+    int[] old = table;
+    table = new int[newCapacity];
+    size = 0;
+    used = 0;
+    for (int v : old) {
+      if (v > 0) {
+        add(v);
+      }
+    }
+  }
+}
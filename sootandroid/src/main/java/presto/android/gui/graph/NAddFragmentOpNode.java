@@ -47,13 +47,13 @@ public class NAddFragmentOpNode extends NOpNode {
 
     @Override
     public NVarNode getReceiver() {
-        return (NVarNode) this.pred.get(0);
+        return (NVarNode) this.predecessor(0);
     }
 
     @Override
     //get fragment local
     public NNode getParameter() {
-        return (NNode) this.pred.get(2);
+        return (NNode) this.predecessor(2);
     }
 
     public SootClass getFragmentClass() {
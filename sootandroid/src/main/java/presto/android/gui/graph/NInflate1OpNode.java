@@ -30,7 +30,7 @@ public class NInflate1OpNode extends NOpNode {
 
   @Override
   public NNode getParameter() {
-    return this.pred.get(0);
+    return this.predecessor(0);
   }
 
   @Override
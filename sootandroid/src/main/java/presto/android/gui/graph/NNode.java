@@ -14,11 +14,15 @@ import presto.android.Logger;
 import soot.jimple.Stmt;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class NNode implements Comparable<NNode> {
+  private static final String TAG = NNode.class.getSimpleName();
   public static boolean verbose = false;
   private static int nextId = 0;
   public static int numberOfEdges = 0;
+  // Incremented whenever an edge is added or removed
+  private static final AtomicLong graphVersion = new AtomicLong();
   public int id;
 
   // The flow graph node representing the widget id - could be NWidgetIdNode,
@@ -32,20 +36,42 @@ public abstract class NNode implements Comparable<NNode> {
   // The displayed hint for GUI object.
   private Set<NNode> hintNodes;
 
+  // Registry from id to node, so that adjacency can be stored as ids.
+  private static NNode[] nodesById = new NNode[1024];
+
   public NNode() {
+    id = register(this);
+  }
+
+  private static synchronized int register(NNode node) {
     nextId++;
-    id = nextId;
+    if (nextId >= nodesById.length) {
+      nodesById = Arrays.copyOf(nodesById, nodesById.length * 2);
+    }
+    nodesById[nextId] = node;
+    return nextId;
+  }
+
+  public static NNode byId(int id) {
+    return nodesById[id];
+  }
+
+  // Largest id handed out so far
+  public static int maxId() {
+    return nextId;
   }
 
   // NOTE(tony): "alias" nodes/paths
-  protected ArrayList<NNode> succ;
-  protected ArrayList<NNode> pred;
+  protected NNodeIdList succ;
+  protected NNodeIdList pred;
 
   // Anyone whose 'parent' is this obj. Used only in
   // NViewAllocNode, NInflNode, and NActivityNode
   protected Set<NNode> children;
   protected Set<NNode> parents;
 
+  // Returns a copy of the successors. Prefer successors() or successorIds()
+  // in loops; they do not copy.
   public synchronized Collection<NNode> getSuccessors() {
     if (succ == null || succ.isEmpty()) {
       return Collections.emptyList();
@@ -59,7 +85,7 @@ public abstract class NNode implements Comparable<NNode> {
   }
 
   public synchronized NNode getSuccessor(int index) {
-    return succ.get(index);
+    return succ.getNode(index);
   }
 
   public synchronized Collection<NNode> getPredecessors() {
@@ -75,9 +101,38 @@ public abstract class NNode implements Comparable<NNode> {
   }
 
   public synchronized NNode getPredecessor(int index) {
-    return pred.get(index);
+    return pred.getNode(index);
   }
 
+  // Non-copying, unsynchronized views of the adjacency. They must not be used
+  // while another thread adds or removes edges of this node.
+  public NNodeIdList successorIds() {
+    return (succ == null ? EMPTY_IDS : succ);
+  }
+
+  public NNodeIdList predecessorIds() {
+    return (pred == null ? EMPTY_IDS : pred);
+  }
+
+  public Iterable<NNode> successors() {
+    return successorIds();
+  }
+
+  public Iterable<NNode> predecessors() {
+    return predecessorIds();
+  }
+
+  // Used by op nodes to find receiver, parameter and lhs by position.
+  protected NNode predecessor(int index) {
+    return pred.getNode(index);
+  }
+
+  protected NNode successor(int index) {
+    return succ.getNode(index);
+  }
+
+  private static final NNodeIdList EMPTY_IDS = new NNodeIdList();
+
   public synchronized boolean hasChild(NNode child) {
     if (children == null) {
       return false;
@@ -101,20 +156,30 @@ public abstract class NNode implements Comparable<NNode> {
     }
   }
 
+  /**
+   * Changes whenever an edge is added to or removed from the flowgraph.
+   * Results computed from the graph are stale if it differs from the value
+   * read before computing them.
+   */
+  public static long getGraphVersion() {
+    return graphVersion.get();
+  }
+
   public synchronized void removeEdgeTo(NNode target) {
-    if (succ != null && succ.contains(target)) {
-      succ.remove(target);
+    if (succ != null && succ.contains(target.id)) {
+      succ.remove(target.id);
       numberOfEdges--;
+      graphVersion.incrementAndGet();
     } else {
-      if (target.pred != null && target.pred.contains(this)) {
+      if (target.pred != null && target.pred.contains(id)) {
         throw new RuntimeException("Broken edge " + this + "===>" + target);
       }
       return;
     }
-    if (target.pred == null || !target.pred.contains(this)) {
+    if (target.pred == null || !target.pred.contains(id)) {
       throw new RuntimeException("Broken edge " + this + "===>" + target);
     }
-    target.pred.remove(this);
+    target.pred.remove(id);
   }
 
   public synchronized void addEdgeTo(NNode x) {
@@ -123,29 +188,53 @@ public abstract class NNode implements Comparable<NNode> {
 
   public synchronized void addEdgeTo(NNode x, Stmt s) {
     if (succ == null) {
-      succ = Lists.newArrayListWithCapacity(4);
+      succ = new NNodeIdList();
     }
-    if (!succ.contains(x)) {
-      succ.add(x);
+    if (!succ.contains(x.id)) {
+      succ.add(x.id);
       numberOfEdges++;
+      graphVersion.incrementAndGet();
     } else {
       return;
     }
 
     if (s == null) {
-      Logger.trace(this.getClass().getSimpleName(), this + " ==> " + x);
+      Logger.trace(TAG, "{} ==> {}", this, x);
     } else {
-      Logger.trace(this.getClass().getSimpleName(), this + " ==> " + x + " [" + s + "]");
+      Logger.trace(TAG, "{} ==> {} [{}]", this, x, s);
     }
 
     // predecessors
     if (x.pred == null) {
-      x.pred = Lists.newArrayListWithCapacity(4);
+      x.pred = new NNodeIdList();
     }
-    if (x.pred.contains(this)) {
+    if (x.pred.contains(id)) {
       throw new RuntimeException();
     }
-    x.pred.add(this);
+    x.pred.add(id);
+  }
+
+  /**
+   * Replaces the successors and predecessors of this node, in the given
+   * order. Used when a flowgraph snapshot is loaded: edges must be restored
+   * at both of their ends.
+   */
+  public synchronized void restoreEdges(int[] succIds, int[] predIds) {
+    numberOfEdges += succIds.length - (succ == null ? 0 : succ.size());
+    succ = toIdList(succIds);
+    pred = toIdList(predIds);
+    graphVersion.incrementAndGet();
+  }
+
+  private static NNodeIdList toIdList(int[] ids) {
+    if (ids.length == 0) {
+      return null;
+    }
+    NNodeIdList list = new NNodeIdList();
+    for (int id : ids) {
+      list.add(id);
+    }
+    return list;
   }
 
   public synchronized void addParent(NNode p) {
@@ -159,7 +248,7 @@ public abstract class NNode implements Comparable<NNode> {
       parents = Sets.newHashSetWithExpectedSize(1);
     }
     parents.add(p);
-    Logger.trace(this.getClass().getSimpleName(), this + " [p]==> " + p);
+    Logger.trace(TAG, "{} [p]==> {}", this, p);
 
     if (p.children == null) {
       p.children = Sets.newHashSet();
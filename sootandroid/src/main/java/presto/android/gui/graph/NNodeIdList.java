@@ -0,0 +1,124 @@
+/*
+ * NNodeIdList.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui.graph;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Adjacency list of a flowgraph node, stored as node ids. The order of
+ * insertion is preserved because op nodes find their receiver and parameter
+ * by position among their predecessors. Once the list grows beyond a few
+ * elements, an IntHashSet index makes contains() O(1).
+ * <p>
+ * Reading methods are public and do not copy; mutation is reserved to NNode.
+ */
+public class NNodeIdList implements Iterable<NNode> {
+  private static final int INDEX_THRESHOLD = 8;
+
+  private int[] ids;
+  private int size;
+  private IntHashSet index;
+
+  NNodeIdList() {
+    ids = new int[4];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  // Id of the i-th node
+  public int get(int i) {
+    if (i >= size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+    return ids[i];
+  }
+
+  // The i-th node
+  public NNode getNode(int i) {
+    return NNode.byId(get(i));
+  }
+
+  public boolean contains(int id) {
+    if (index != null) {
+      return index.contains(id);
+    }
+    for (int i = 0; i < size; i++) {
+      if (ids[i] == id) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Appends id; duplicates are allowed (see NSetListenerOpNode).
+  void add(int id) {
+    if (size == ids.length) {
+      ids = Arrays.copyOf(ids, size * 2);
+    }
+    ids[size++] = id;
+    if (index != null) {
+      index.add(id);
+    } else if (size > INDEX_THRESHOLD) {
+      index = new IntHashSet(size * 2);
+      for (int i = 0; i < size; i++) {
+        index.add(ids[i]);
+      }
+    }
+  }
+
+  // Removes the first occurrence of id.
+  boolean remove(int id) {
+    for (int i = 0; i < size; i++) {
+      if (ids[i] == id) {
+        System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+        size--;
+        if (index != null) {
+          index.remove(id);
+          // Keep duplicates in the index
+          for (int j = 0; j < size; j++) {
+            if (ids[j] == id) {
+              index.add(id);
+              break;
+            }
+          }
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public Iterator<NNode> iterator() {
+    return new Iterator<NNode>() {
+      int i = 0;
+
+      @Override
+      public boolean hasNext() {
+        return i < size;
+      }
+
+      @Override
+      public NNode next() {
+        if (i >= size) {
+          throw new NoSuchElementException();
+        }
+        return NNode.byId(ids[i++]);
+      }
+    };
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * NNodeIdSet.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui.graph;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of flowgraph nodes stored as their ids in an IntHashSet. Membership
+ * tests are O(1) and the set costs a few bytes per element, which makes it
+ * a good fit for the large, short-lived reachability results of GraphUtil.
+ */
+public class NNodeIdSet extends AbstractSet<NNode> {
+  private final IntHashSet ids;
+
+  public NNodeIdSet() {
+    ids = new IntHashSet();
+  }
+
+  public NNodeIdSet(int expectedSize) {
+    ids = new IntHashSet(expectedSize);
+  }
+
+  public boolean containsId(int id) {
+    return ids.contains(id);
+  }
+
+  public boolean addId(int id) {
+    return ids.add(id);
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return (o instanceof NNode) && ids.contains(((NNode) o).id);
+  }
+
+  @Override
+  public boolean add(NNode n) {
+    return ids.add(n.id);
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    return (o instanceof NNode) && ids.remove(((NNode) o).id);
+  }
+
+  @Override
+  public int size() {
+    return ids.size();
+  }
+
+  @Override
+  public void clear() {
+    ids.clear();
+  }
+
+  @Override
+  public Iterator<NNode> iterator() {
+    return new Iterator<NNode>() {
+      int next = advance(0);
+      int last = -1;
+
+      int advance(int from) {
+        int capacity = ids.capacity();
+        while (from < capacity && ids.slot(from) <= 0) {
+          from++;
+        }
+        return from;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return next < ids.capacity();
+      }
+
+      @Override
+      public NNode next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        last = next;
+        next = advance(next + 1);
+        return NNode.byId(ids.slot(last));
+      }
+
+      @Override
+      public void remove() {
+        if (last < 0) {
+          throw new IllegalStateException();
+        }
+        ids.removeSlot(last);
+        last = -1;
+      }
+    };
+  }
+}
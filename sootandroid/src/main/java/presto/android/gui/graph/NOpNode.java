@@ -153,14 +153,19 @@ public abstract class NOpNode extends NNode {
     this(artificial);
     this.opType = this.getClass().getSimpleName();
     this.callSite = callSite;
-    Set<NOpNode> nodes = opNodes.get(opType);
+    record(this);
+  }
+
+  // Op nodes may be created by concurrent analyses.
+  private static synchronized void record(NOpNode node) {
+    Set<NOpNode> nodes = opNodes.get(node.opType);
     if (nodes == null) {
       nodes = Sets.newHashSet();
-      opNodes.put(opType, nodes);
+      opNodes.put(node.opType, nodes);
     }
-    nodes.add(this);
-    if (callSite != null) {
-      stmtAndNodes.put(callSite.getO1(), this);
+    nodes.add(node);
+    if (node.callSite != null) {
+      stmtAndNodes.put(node.callSite.getO1(), node);
     }
   }
 
@@ -189,7 +194,7 @@ public abstract class NOpNode extends NNode {
     return result;
   }
 
-  public static NOpNode lookupByStmt(Stmt s) {
+  public static synchronized NOpNode lookupByStmt(Stmt s) {
     return stmtAndNodes.get(s);
   }
 
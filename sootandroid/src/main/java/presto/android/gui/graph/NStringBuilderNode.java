@@ -29,6 +29,10 @@ public class NStringBuilderNode extends NAllocNode {
     this.possibleValues.add("");
   }
 
+  public Stmt getStmt() {
+    return stmt;
+  }
+
   @Override
   public String toString() {
     String vals = String.join(",", possibleValues);
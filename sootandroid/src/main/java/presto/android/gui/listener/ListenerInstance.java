@@ -46,6 +46,25 @@ public class ListenerInstance {
     return eventType;
   }
 
+  public Set<SootMethod> getHandlerPrototypes() {
+    if (handlerPrototypes == null) {
+      return Collections.emptySet();
+    }
+    return Collections.unmodifiableSet(handlerPrototypes);
+  }
+
+  public Set<SootMethod> getEventHandlers() {
+    return Collections.unmodifiableSet(eventHandlerMethods);
+  }
+
+  public Set<SootMethod> getInlineEventHandlers() {
+    return Collections.unmodifiableSet(inlineEventHandlerMethods);
+  }
+
+  public void recordEventHandlers(Set<SootMethod> methods) {
+    this.eventHandlerMethods.addAll(methods);
+  }
+
   public Set<SootMethod> computeConcreteHandlers(SootClass listenerClass) {
     Set<SootClass> listenerTypes = Collections.unmodifiableSet(Hierarchy.v().getSubtypes(listenerClass));
     Set<SootMethod> handlersFromInterface = computeConcreteHandlers(handlerPrototypes, listenerTypes);
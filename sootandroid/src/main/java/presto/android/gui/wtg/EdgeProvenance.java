@@ -0,0 +1,100 @@
+/*
+ * EdgeProvenance.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui.wtg;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import presto.android.gui.wtg.ds.WTGEdge;
+import presto.android.gui.wtg.ds.WTGEdge.WTGEdgeSig;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Links the edges built by each WTG stage to the edges of the previous
+ * stage they were built from, by edge id. A stage is kept as int arrays
+ * instead of its Multimap<WTGEdgeSig, WTGEdge> output, so that the output
+ * can be released as soon as the next stage has consumed it.
+ */
+public class EdgeProvenance {
+  // per stage: ids of its edges
+  private final List<int[]> stageEdges = Lists.newArrayList();
+  // per stage: the parents of edge j are parents[starts[j]] ... parents[starts[j + 1] - 1]
+  private final List<int[]> stageParentStarts = Lists.newArrayList();
+  private final List<int[]> stageParents = Lists.newArrayList();
+
+  /**
+   * Records the output of the next stage, i.e., a map from its edges back
+   * to the edges of the previous stage.
+   */
+  public void addStage(Multimap<WTGEdgeSig, WTGEdge> stage) {
+    int size = stage.keySet().size();
+    int[] edges = new int[size];
+    int[] starts = new int[size + 1];
+    int[] parents = new int[stage.size()];
+    int j = 0, k = 0;
+    for (WTGEdgeSig sig : stage.keySet()) {
+      edges[j] = sig.getEdge().getId();
+      starts[j] = k;
+      for (WTGEdge parent : stage.get(sig)) {
+        // edges of the first stage have no parent
+        if (parent != null) {
+          parents[k++] = parent.getId();
+        }
+      }
+      j++;
+    }
+    starts[size] = k;
+    stageEdges.add(edges);
+    stageParentStarts.add(starts);
+    stageParents.add(k == parents.length ? parents : Arrays.copyOf(parents, k));
+  }
+
+  public int getStageCount() {
+    return stageEdges.size();
+  }
+
+  public int getStageSize(int stage) {
+    return stageEdges.get(stage).length;
+  }
+
+  /**
+   * Finds the edges of every stage that the given edges of the last stage
+   * were built from, in one sweep from the last stage back to the first.
+   * Returns, per stage, the number of such edges.
+   */
+  public int[] countAliveEdges(Collection<WTGEdge> finalEdges) {
+    Preconditions.checkState(!stageEdges.isEmpty(), "[Error]: no stage is recorded");
+    BitSet alive = new BitSet();
+    for (WTGEdge edge : finalEdges) {
+      alive.set(edge.getId());
+    }
+    int[] aliveCounts = new int[stageEdges.size()];
+    for (int i = stageEdges.size() - 1; i >= 0; i--) {
+      int[] edges = stageEdges.get(i);
+      int[] starts = stageParentStarts.get(i);
+      int[] parents = stageParents.get(i);
+      BitSet nextAlive = new BitSet();
+      for (int j = 0; j < edges.length; j++) {
+        if (!alive.get(edges[j])) {
+          continue;
+        }
+        aliveCounts[i]++;
+        for (int k = starts[j]; k < starts[j + 1]; k++) {
+          nextAlive.set(parents[k]);
+        }
+      }
+      alive = nextAlive;
+    }
+    return aliveCounts;
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * ImmutableWindowStack.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui.wtg;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.collect.Maps;
+import presto.android.gui.graph.NObjectNode;
+import presto.android.gui.wtg.ds.WTGEdge;
+
+import java.util.Map;
+import java.util.Stack;
+
+/**
+ * A window stack as an immutable list of cells, where push and pop are
+ * O(1) and stacks share their tails. Stacks are hash-consed: two equal
+ * stacks are the same object, so they can be compared with == and used
+ * as cheap keys of hash maps. A stack also caches, for each edge applied
+ * to it, the stack it leads to.
+ */
+public final class ImmutableWindowStack {
+  // canonical stacks; a stack is dropped once it is not referenced anymore
+  private static final Interner<ImmutableWindowStack> interner = Interners.newWeakInterner();
+
+  public static final ImmutableWindowStack EMPTY = new ImmutableWindowStack(null, null);
+
+  private final NObjectNode top;
+  private final ImmutableWindowStack rest;
+  private final int size;
+  private final int hash;
+  // cached results of applyFeasible, guarded by this
+  private Map<WTGEdge, ImmutableWindowStack> transitions;
+
+  private ImmutableWindowStack(NObjectNode top, ImmutableWindowStack rest) {
+    this.top = top;
+    this.rest = rest;
+    this.size = rest == null ? 0 : rest.size + 1;
+    this.hash = rest == null ? 0 : 31 * rest.hash + top.hashCode();
+  }
+
+  public static ImmutableWindowStack of(NObjectNode window) {
+    return EMPTY.push(window);
+  }
+
+  public ImmutableWindowStack push(NObjectNode window) {
+    Preconditions.checkNotNull(window, "[Error]: pushed window shouldn't be null");
+    return interner.intern(new ImmutableWindowStack(window, this));
+  }
+
+  public ImmutableWindowStack pop() {
+    return isEmpty() ? this : rest;
+  }
+
+  public NObjectNode peek() {
+    return top;
+  }
+
+  public boolean isEmpty() {
+    return rest == null;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Applies the stack operations of the edge. A pop operation pops windows
+   * until it pops its own window; if the window is not on the stack, the
+   * stack becomes empty and the remaining operations are ignored.
+   */
+  public ImmutableWindowStack apply(WTGEdge edge) {
+    Preconditions.checkNotNull(edge, "[Error]: edge to be processed shouldn't be null");
+    ImmutableWindowStack stack = this;
+    for (StackOperation stackOp : edge.getStackOps()) {
+      NObjectNode opWindow = stackOp.getWindow();
+      if (stackOp.isPushOp()) {
+        stack = stack.push(opWindow);
+      } else {
+        while (!stack.isEmpty() && stack.top != opWindow) {
+          stack = stack.rest;
+        }
+        if (stack.isEmpty()) {
+          return stack;
+        }
+        stack = stack.rest;
+      }
+    }
+    return stack;
+  }
+
+  /**
+   * Returns the stack after the edge, or null if the edge is infeasible,
+   * i.e., the top of the resulting stack is not the target of the edge.
+   */
+  public ImmutableWindowStack applyFeasible(WTGEdge edge) {
+    synchronized (this) {
+      if (transitions != null && transitions.containsKey(edge)) {
+        return transitions.get(edge);
+      }
+    }
+    ImmutableWindowStack stack = apply(edge);
+    if (stack.isEmpty() || stack.top != edge.getTargetNode().getWindow()) {
+      stack = null;
+    }
+    synchronized (this) {
+      if (transitions == null) {
+        transitions = Maps.newHashMapWithExpectedSize(4);
+      }
+      transitions.put(edge, stack);
+    }
+    return stack;
+  }
+
+  public Stack<NObjectNode> toStack() {
+    NObjectNode[] windows = new NObjectNode[size];
+    ImmutableWindowStack stack = this;
+    for (int i = size - 1; i >= 0; i--) {
+      windows[i] = stack.top;
+      stack = stack.rest;
+    }
+    Stack<NObjectNode> newStack = new Stack<NObjectNode>();
+    for (NObjectNode window : windows) {
+      newStack.push(window);
+    }
+    return newStack;
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ImmutableWindowStack)) {
+      return false;
+    }
+    ImmutableWindowStack another = (ImmutableWindowStack) o;
+    // tails are canonical, so they are compared by reference
+    return hash == another.hash && top == another.top && rest == another.rest;
+  }
+
+  @Override
+  public String toString() {
+    return toStack().toString();
+  }
+}
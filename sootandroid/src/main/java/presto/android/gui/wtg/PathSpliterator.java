@@ -0,0 +1,165 @@
+/*
+ * PathSpliterator.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui.wtg;
+
+import com.google.common.collect.Lists;
+import presto.android.gui.wtg.ds.WTGEdge;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Enumerates the paths of a given length lazily, by a depth first search
+ * that is resumed on every tryAdvance. A path is a fixed prefix followed by
+ * one of the root edges and its extensions. Only the current path is kept
+ * in memory, each emitted path is a new list.
+ * <p>
+ * The filter, if any, is evaluated whenever an edge is appended: if it
+ * rejects the path, no extension of the path is explored. The spliterator
+ * is split by root edges, before its traversal starts.
+ */
+class PathSpliterator implements Spliterator<List<WTGEdge>> {
+  private final List<WTGEdge> prefix;
+  private final WindowStack prefixStack;
+  private final List<WTGEdge> roots;
+  private int nextRoot;
+  private final int endRoot;
+  private final int length;
+  private final boolean feasibilityCheck;
+  private final boolean allowLoop;
+  private final Predicate<List<WTGEdge>> filter;
+
+  // the current path, and, with the feasibility check, its window stacks
+  private final List<WTGEdge> path;
+  private final List<WTGEdge> pathView;
+  private final Deque<WindowStack> stacks = new ArrayDeque<>();
+  // remaining out edges at each position of the path after the root
+  private final Deque<Iterator<WTGEdge>> frontier = new ArrayDeque<>();
+
+  PathSpliterator(
+          List<WTGEdge> prefix,
+          List<WTGEdge> roots,
+          int length,
+          boolean feasibilityCheck,
+          boolean allowLoop,
+          Predicate<List<WTGEdge>> filter) {
+    this(prefix, feasibilityCheck && !prefix.isEmpty() ? new WindowStack(prefix) : null,
+            roots, 0, roots.size(), length, feasibilityCheck, allowLoop, filter);
+  }
+
+  private PathSpliterator(
+          List<WTGEdge> prefix,
+          WindowStack prefixStack,
+          List<WTGEdge> roots,
+          int nextRoot,
+          int endRoot,
+          int length,
+          boolean feasibilityCheck,
+          boolean allowLoop,
+          Predicate<List<WTGEdge>> filter) {
+    this.prefix = prefix;
+    this.prefixStack = prefixStack;
+    this.roots = roots;
+    this.nextRoot = nextRoot;
+    this.endRoot = endRoot;
+    this.length = length;
+    this.feasibilityCheck = feasibilityCheck;
+    this.allowLoop = allowLoop;
+    this.filter = filter;
+    this.path = Lists.newArrayList(prefix);
+    this.pathView = Collections.unmodifiableList(path);
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super List<WTGEdge>> action) {
+    while (true) {
+      WTGEdge edge;
+      WindowStack stack = null;
+      if (frontier.isEmpty()) {
+        if (nextRoot >= endRoot) {
+          return false;
+        }
+        edge = roots.get(nextRoot++);
+        if (feasibilityCheck) {
+          stack = prefixStack == null
+                  ? new WindowStack(Collections.singletonList(edge)) : prefixStack.extend(edge);
+          if (stack == null) {
+            continue;
+          }
+        }
+      } else {
+        Iterator<WTGEdge> outEdges = frontier.peek();
+        if (!outEdges.hasNext()) {
+          frontier.pop();
+          removeLastEdge();
+          continue;
+        }
+        edge = outEdges.next();
+        if (!allowLoop && path.subList(prefix.size(), path.size()).contains(edge)) {
+          continue;
+        }
+        if (feasibilityCheck) {
+          stack = stacks.peek().extend(edge);
+        }
+      }
+      path.add(edge);
+      if (feasibilityCheck) {
+        stacks.push(stack);
+      }
+      if ((filter != null && !filter.test(pathView)) || path.size() > length) {
+        removeLastEdge();
+      } else if (path.size() == length) {
+        action.accept(Lists.newArrayList(path));
+        removeLastEdge();
+        return true;
+      } else {
+        frontier.push(feasibilityCheck
+                ? stack.expandFeasibleEdge().iterator()
+                : edge.getTargetNode().getOutEdges().iterator());
+      }
+    }
+  }
+
+  private void removeLastEdge() {
+    path.remove(path.size() - 1);
+    if (feasibilityCheck) {
+      stacks.pop();
+    }
+  }
+
+  @Override
+  public Spliterator<List<WTGEdge>> trySplit() {
+    // roots are only split off before the exploration of a root starts,
+    // to keep the encounter order
+    if (!frontier.isEmpty() || endRoot - nextRoot < 2) {
+      return null;
+    }
+    int mid = (nextRoot + endRoot) >>> 1;
+    PathSpliterator split = new PathSpliterator(prefix, prefixStack, roots, nextRoot, mid,
+            length, feasibilityCheck, allowLoop, filter);
+    nextRoot = mid;
+    return split;
+  }
+
+  @Override
+  public long estimateSize() {
+    return Long.MAX_VALUE;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL;
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * ShortestPathSearch.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui.wtg;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import presto.android.gui.wtg.ds.WTGEdge;
+import presto.android.gui.wtg.ds.WTGNode;
+import presto.android.gui.wtg.parallel.TaskExecutor;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Breadth first search for the shortest paths from a source node. With the
+ * feasibility check, a state of the search is a node together with the
+ * window stack after reaching it, otherwise it is the node only. Every
+ * state is expanded once: the paths are recovered from the predecessors
+ * recorded for each state, which are the states one step closer to the
+ * source.
+ */
+public class ShortestPathSearch {
+  private final boolean feasibilityCheck;
+
+  public ShortestPathSearch(boolean feasibilityCheck) {
+    this.feasibilityCheck = feasibilityCheck;
+  }
+
+  /**
+   * Searches the shortest paths from source to each of the targets, or to
+   * every node if targets is null. The search stops when all the targets
+   * are reached, or at paths of maxLength edges. Note that with the
+   * feasibility check, the number of states is unbounded if windows can be
+   * pushed in a cycle: maxLength bounds the search for unreachable targets.
+   */
+  public ShortestPaths search(WTGNode source, Collection<WTGNode> targets, int maxLength) {
+    Preconditions.checkNotNull(source, "[Error]: source node is null");
+    Preconditions.checkArgument(maxLength > 0, "[Error]: max path length should be > 0");
+    ShortestPaths paths = new ShortestPaths(targets == null ? null : ImmutableSet.copyOf(targets));
+    ImmutableWindowStack initStack = feasibilityCheck
+            ? ImmutableWindowStack.of(source.getWindow()) : ImmutableWindowStack.EMPTY;
+    // the source is not a state itself, so that it is also reached again
+    // if there is a cycle through it
+    paths.expand(null, source, initStack, 0);
+    while (!paths.frontier.isEmpty()) {
+      State state = paths.frontier.poll();
+      int depth = paths.depths.get(state);
+      if (depth >= maxLength || paths.isDone(depth)) {
+        break;
+      }
+      paths.expand(state, state.node, state.stack, depth);
+    }
+    paths.frontier.clear();
+    return paths;
+  }
+
+  /**
+   * Searches the shortest paths from each source, in parallel.
+   */
+  public Map<WTGNode, ShortestPaths> searchAll(
+          Collection<WTGNode> sources, final Collection<WTGNode> targets, final int maxLength) {
+    return TaskExecutor.invokeAll(getClass().getSimpleName(), ImmutableSet.copyOf(sources),
+            new TaskExecutor.Task<WTGNode, ShortestPaths>() {
+              @Override
+              public ShortestPaths run(WTGNode source) {
+                return search(source, targets, maxLength);
+              }
+            });
+  }
+
+  /**
+   * The result of a single source search.
+   */
+  public class ShortestPaths {
+    private final Set<WTGNode> targets;
+    private final Deque<State> frontier = new ArrayDeque<>();
+    // length of the shortest paths to each state
+    private final Map<State, Integer> depths = Maps.newHashMap();
+    // last step of the shortest paths to each state
+    private final ListMultimap<State, Step> predecessors = ArrayListMultimap.create();
+    // length of the shortest paths to each node, and the states at that length
+    private final Map<WTGNode, Integer> distances = Maps.newHashMap();
+    private final ListMultimap<WTGNode, State> closestStates = ArrayListMultimap.create();
+    private int maxTargetDistance = 0;
+
+    private ShortestPaths(Set<WTGNode> targets) {
+      this.targets = targets;
+    }
+
+    private void expand(State from, WTGNode node, ImmutableWindowStack stack, int depth) {
+      for (WTGEdge outEdge : node.getOutEdges()) {
+        ImmutableWindowStack newStack = stack;
+        if (feasibilityCheck) {
+          newStack = stack.applyFeasible(outEdge);
+          if (newStack == null) {
+            continue;
+          }
+        }
+        State next = new State(outEdge.getTargetNode(), newStack);
+        Integer nextDepth = depths.get(next);
+        if (nextDepth == null) {
+          depths.put(next, depth + 1);
+          frontier.add(next);
+          reach(next, depth + 1);
+        } else if (nextDepth != depth + 1) {
+          continue;
+        }
+        predecessors.put(next, new Step(from, outEdge));
+      }
+    }
+
+    private void reach(State state, int depth) {
+      Integer distance = distances.get(state.node);
+      if (distance == null) {
+        distances.put(state.node, depth);
+        if (targets != null && targets.contains(state.node)) {
+          maxTargetDistance = Math.max(maxTargetDistance, depth);
+        }
+      } else if (distance != depth) {
+        return;
+      }
+      closestStates.put(state.node, state);
+    }
+
+    // the states at the distance of the farthest target are all known
+    // once states of that depth are expanded
+    private boolean isDone(int depth) {
+      return targets != null && distances.keySet().containsAll(targets)
+              && depth >= maxTargetDistance;
+    }
+
+    public boolean isReachable(WTGNode dest) {
+      return distances.containsKey(dest);
+    }
+
+    /**
+     * Returns the number of edges of the shortest paths to dest, or -1 if
+     * dest is not reached.
+     */
+    public int getLength(WTGNode dest) {
+      Integer distance = distances.get(dest);
+      return distance == null ? -1 : distance;
+    }
+
+    /**
+     * Returns all the shortest paths to dest.
+     */
+    public List<List<WTGEdge>> getPaths(WTGNode dest) {
+      List<List<WTGEdge>> paths = Lists.newArrayList();
+      for (State state : closestStates.get(dest)) {
+        WTGEdge[] path = new WTGEdge[depths.get(state)];
+        collectPaths(state, path, path.length - 1, paths);
+      }
+      return paths;
+    }
+
+    private void collectPaths(State state, WTGEdge[] path, int index, List<List<WTGEdge>> paths) {
+      for (Step step : predecessors.get(state)) {
+        path[index] = step.edge;
+        if (step.from == null) {
+          paths.add(Lists.newArrayList(path));
+        } else {
+          collectPaths(step.from, path, index - 1, paths);
+        }
+      }
+    }
+  }
+
+  private static class State {
+    final WTGNode node;
+    final ImmutableWindowStack stack;
+
+    State(WTGNode node, ImmutableWindowStack stack) {
+      this.node = node;
+      this.stack = stack;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * node.hashCode() + stack.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof State)) {
+        return false;
+      }
+      State another = (State) o;
+      // stacks are hash-consed
+      return node == another.node && stack == another.stack;
+    }
+  }
+
+  private static class Step {
+    // null for the source
+    final State from;
+    final WTGEdge edge;
+
+    Step(State from, WTGEdge edge) {
+      this.from = from;
+      this.edge = edge;
+    }
+  }
+}
@@ -19,7 +19,14 @@ import presto.android.gui.wtg.flowgraph.FlowgraphRebuilder;
 import presto.android.gui.wtg.flowgraph.NLauncherNode;
 import presto.android.gui.wtg.intent.IntentAnalysis;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class WTGAnalysisOutput {
   private WTG wtg;
@@ -61,139 +68,84 @@ public class WTGAnalysisOutput {
 
   public List<List<WTGEdge>> explorePaths(
           WTGNode n, int k, boolean feasibilityCheck, boolean allowLoop) {
-    List<List<WTGEdge>> paths = Lists.newArrayList();
-    if (feasibilityCheck) {
-      for (WTGEdge outEdge : n.getOutEdges()) {
-        List<WTGEdge> path = Lists.newArrayList(outEdge);
-        WindowStack windowStack = new WindowStack(path);
-        paths.addAll(exploreFeasiblePaths(windowStack, k, allowLoop));
-      }
-    } else {
-      for (WTGEdge outEdge : n.getOutEdges()) {
-        List<WTGEdge> path = Lists.newArrayList(outEdge);
-        paths.addAll(exploreInfeasiblePaths(path, k, allowLoop));
-      }
-    }
-    return paths;
-  }
-
-  private List<List<WTGEdge>> exploreFeasiblePaths(WindowStack path, int length, boolean allowLoop) {
-    List<List<WTGEdge>> paths = Lists.newArrayList();
-    if (isLauncherToLauncher(path.getPath().get(0))) {
-      // don't allow the case where first edge is launcher to
-      // launcher
-      return paths;
-    } else if (path.getPath().size() == length) {
-      List<WTGEdge> copy = Lists.newArrayList(path.getPath());
-      paths.add(copy);
-      return paths;
-    } else if (path.getPath().size() > length) {
-      return paths;
-    }
-    for (WTGEdge outEdge : path.expandFeasibleEdge()) {
-      if (isLauncherToLauncher(outEdge)) {
-        // don't allow the case where the last edge is launcher to
-        // launcher
-        continue;
-      } else if (!allowLoop && path.getPath().contains(outEdge)) {
-        continue;
-      }
-      WindowStack copy = path.copy();
-      copy.addEdge(outEdge);
-      paths.addAll(exploreFeasiblePaths(copy, length, allowLoop));
-    }
-    return paths;
+    return streamPaths(n, k, feasibilityCheck, allowLoop).collect(Collectors.<List<WTGEdge>>toList());
   }
 
-  private List<List<WTGEdge>> exploreInfeasiblePaths(List<WTGEdge> path, int length, boolean allowLoop) {
-    List<List<WTGEdge>> paths = Lists.newArrayList();
-    if (isLauncherToLauncher(path.get(0))) {
-      // don't allow the case where first edge is launcher to
-      // launcher
-      return paths;
-    }
-    if (path.size() == length) {
-      List<WTGEdge> copy = Lists.newArrayList(path);
-      paths.add(copy);
-      return paths;
-    } else if (path.size() > length) {
-      return paths;
-    }
-    WTGEdge lastEdge = path.get(path.size() - 1);
-    for (WTGEdge outEdge : lastEdge.getTargetNode().getOutEdges()) {
-      if (isLauncherToLauncher(outEdge)) {
-        // don't allow the case where the last edge is launcher to
-        // launcher
-        continue;
-      } else if (!allowLoop && path.contains(outEdge)) {
-        continue;
+  /**
+   * Enumerates the paths of length k from n lazily, in the order of
+   * explorePaths. Use it instead of explorePaths to process the paths one
+   * by one, or to stop early.
+   */
+  public Stream<List<WTGEdge>> streamPaths(
+          WTGNode n, int k, boolean feasibilityCheck, boolean allowLoop) {
+    return streamPaths(n, k, feasibilityCheck, allowLoop, null, false);
+  }
+
+  /**
+   * Enumerates the paths of length k from n lazily. The filter, if any, is
+   * called on every path as it is generated, i.e., on every prefix of the
+   * paths; the extensions of a rejected path are not explored. The filter
+   * must not keep or modify the path it is given. A parallel stream splits
+   * the paths by their first edge, so the filter must be thread safe then.
+   */
+  public Stream<List<WTGEdge>> streamPaths(
+          WTGNode n, int k, boolean feasibilityCheck, boolean allowLoop,
+          final Predicate<List<WTGEdge>> filter, boolean parallel) {
+    Preconditions.checkNotNull(n);
+    Predicate<List<WTGEdge>> pathFilter = new Predicate<List<WTGEdge>>() {
+      @Override
+      public boolean test(List<WTGEdge> path) {
+        // don't allow the case where an edge, including the first one,
+        // is launcher to launcher
+        return !isLauncherToLauncher(path.get(path.size() - 1))
+                && (filter == null || filter.test(path));
       }
-      path.add(outEdge);
-      paths.addAll(exploreInfeasiblePaths(path, length, allowLoop));
-      path.remove(path.size() - 1);
-    }
-    return paths;
+    };
+    PathSpliterator paths = new PathSpliterator(Collections.<WTGEdge>emptyList(),
+            Lists.newArrayList(n.getOutEdges()), k, feasibilityCheck, allowLoop, pathFilter);
+    return StreamSupport.stream(paths, parallel);
+  }
+
+  /**
+   * Enumerates lazily the feasible extensions of path by depth edges.
+   */
+  public Stream<List<WTGEdge>> streamFeasibleExtensions(List<WTGEdge> path, int depth) {
+    Preconditions.checkNotNull(path);
+    List<WTGEdge> prefix = Lists.newArrayList(path);
+    List<WTGEdge> roots = new WindowStack(prefix).expandFeasibleEdge();
+    PathSpliterator paths = new PathSpliterator(prefix, roots, prefix.size() + depth,
+            true, true, null);
+    return StreamSupport.stream(paths, false);
   }
 
   public List<List<WTGEdge>> getShortestFeasiblePath(
           WTGNode source, WTGNode dest, boolean feasibilityCheck) {
     Preconditions.checkNotNull(source);
     Preconditions.checkNotNull(dest);
-    List<List<WTGEdge>> feasiblePaths = Lists.newArrayList();
-    if (feasibilityCheck) {
-      // add feasible paths only
-      List<WindowStack> stacks = Lists.newArrayList();
-      for (WTGEdge outEdge : source.getOutEdges()) {
-        WindowStack initStack = new WindowStack(Lists.newArrayList(outEdge));
-        stacks.add(initStack);
-      }
-      int length = -1;
-      while (!stacks.isEmpty()) {
-        WindowStack stack = stacks.remove(0);
-        for (WTGEdge feasibleEdge : stack.expandFeasibleEdge()) {
-          WindowStack newStack = stack.copy();
-          newStack.addEdge(feasibleEdge);
-          if (length != -1 && newStack.getPath().size() > length) {
-            continue;
-          }
-          if (feasibleEdge.getTargetNode() == dest) {
-            // find target
-            List<WTGEdge> newPath = newStack.getPath();
-            feasiblePaths.add(newPath);
-            length = newPath.size();
-          } else {
-            stacks.add(newStack);
-          }
-        }
-      }
-    } else {
-      // add (in)feasible paths
-      List<List<WTGEdge>> paths = Lists.newArrayList();
-      for (WTGEdge outEdge : source.getOutEdges()) {
-        List<WTGEdge> initPath = Lists.newArrayList(outEdge);
-        paths.add(initPath);
-      }
-      int length = -1;
-      while (!paths.isEmpty()) {
-        List<WTGEdge> path = paths.remove(0);
-        WTGNode lastNode = path.get(path.size() - 1).getTargetNode();
-        for (WTGEdge edge : lastNode.getOutEdges()) {
-          List<WTGEdge> newPath = Lists.newArrayList(path);
-          newPath.add(edge);
-          if (length != -1 && newPath.size() > length) {
-            continue;
-          }
-          if (edge.getTargetNode() == dest) {
-            // find target
-            feasiblePaths.add(newPath);
-            length = newPath.size();
-          } else {
-            paths.add(newPath);
-          }
-        }
-      }
-    }
-    return feasiblePaths;
+    // if feasibilityCheck is set, add feasible paths only
+    return new ShortestPathSearch(feasibilityCheck)
+            .search(source, Collections.singleton(dest), Integer.MAX_VALUE)
+            .getPaths(dest);
+  }
+
+  /**
+   * Searches the shortest paths from source to all nodes at once, for
+   * paths of at most maxLength edges.
+   */
+  public ShortestPathSearch.ShortestPaths getShortestFeasiblePaths(
+          WTGNode source, boolean feasibilityCheck, int maxLength) {
+    Preconditions.checkNotNull(source);
+    return new ShortestPathSearch(feasibilityCheck).search(source, null, maxLength);
+  }
+
+  /**
+   * Searches the shortest paths from each source to all nodes, in parallel.
+   * Pass all the nodes of the wtg as sources for all pairs queries.
+   */
+  public Map<WTGNode, ShortestPathSearch.ShortestPaths> getShortestFeasiblePaths(
+          Collection<WTGNode> sources, boolean feasibilityCheck, int maxLength) {
+    Preconditions.checkNotNull(sources);
+    return new ShortestPathSearch(feasibilityCheck).searchAll(sources, null, maxLength);
   }
 
   public List<StackOperation> getPushPopOperations(WTGEdge e) {
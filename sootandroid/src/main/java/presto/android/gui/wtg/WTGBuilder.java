@@ -12,22 +12,26 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Sets;
 import presto.android.Configs;
 import presto.android.Debug;
+import presto.android.Instrumentation;
 import presto.android.Logger;
 import presto.android.gui.GUIAnalysisOutput;
+import presto.android.gui.VariableValueCache;
 import presto.android.gui.graph.NActivityNode;
 import presto.android.gui.wtg.algo.*;
 import presto.android.gui.wtg.analyzer.CFGAnalyzer;
+import presto.android.gui.wtg.analyzer.CFGCache;
 import presto.android.gui.wtg.ds.WTG;
 import presto.android.gui.wtg.ds.WTGEdge;
 import presto.android.gui.wtg.ds.WTGEdge.WTGEdgeSig;
 import presto.android.gui.wtg.ds.WTGNode;
 import presto.android.gui.wtg.flowgraph.FlowgraphRebuilder;
+import presto.android.gui.wtg.parallel.CFGScheduler;
+import presto.android.gui.wtg.util.Filter;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.Set;
 
 public class WTGBuilder {
   private final String TAG = getClass().getSimpleName();
@@ -39,10 +43,17 @@ public class WTGBuilder {
   // wtg edge analyzer
   @SuppressWarnings("unused")
   private CFGAnalyzer cfgAnalyzer;
+  // callback analyses, shared by the stages
+  private CFGScheduler cfgScheduler;
   // wtg
   private WTG wtg;
-  // output of each stage
-  private List<Multimap<WTGEdgeSig, WTGEdge>> stageOutput;
+  // the output of the last stage; it is only kept until the next stage
+  // has consumed it, its provenance is recorded as edge ids
+  private Multimap<WTGEdgeSig, WTGEdge> edges;
+  // links the edges of each stage to the edges they were built from
+  private EdgeProvenance provenance;
+  // per stage, number of edges that lead to edges of the wtg
+  private int[] aliveEdgeCounts;
 
   public void build(GUIAnalysisOutput output) {
     preBuild(output);
@@ -52,7 +63,7 @@ public class WTGBuilder {
 
   public WTGBuilder() {
     wtg = new WTG();
-    stageOutput = Lists.newArrayList();
+    provenance = new EdgeProvenance();
   }
 
   WTG getWTG() {
@@ -60,41 +71,71 @@ public class WTGBuilder {
   }
 
   private void building() {
+    long peakHeapBefore = Instrumentation.peakHeapBytes();
     Multimap<WTGNode, NActivityNode> ownership = HashMultimap.create();
-    Multimap<WTGEdgeSig, WTGEdge> stage1 = new ExplicitForwardEdgeBuilder(guiOutput, flowgraphRebuilder)
-            .buildEdges(wtg);
+    Instrumentation.run("stage1:ExplicitForwardEdgeBuilder", () ->
+            edges = new ExplicitForwardEdgeBuilder(guiOutput, flowgraphRebuilder, cfgScheduler)
+                    .buildEdges(wtg));
+    provenance.addStage(edges);
     Logger.verb(TAG, "stage 1 finishes");
-    Multimap<WTGEdgeSig, WTGEdge> stage2 = new LifecycleForwardEdgeBuilder(guiOutput, flowgraphRebuilder)
-            .buildEdges(wtg, stage1, ownership);
+    Instrumentation.run("stage2:LifecycleForwardEdgeBuilder", () ->
+            edges = new LifecycleForwardEdgeBuilder(guiOutput, flowgraphRebuilder, cfgScheduler)
+                    .buildEdges(wtg, edges, ownership));
+    provenance.addStage(edges);
     Logger.verb(TAG, "stage 2 finishes");
-    Multimap<WTGEdgeSig, WTGEdge> stage3 = new CloseWindowEdgeBuilder(guiOutput, flowgraphRebuilder)
-            .buildEdges(wtg, stage2, ownership);
-    Logger.verb(TAG, "stage 3 finishes");
-    Multimap<WTGEdgeSig, WTGEdge> stage4 = new CallbackSequenceBuilder(guiOutput, flowgraphRebuilder)
-            .buildEdges(wtg, stage3, ownership);
-    Logger.verb(TAG, "stage 4 finishes");
-    Multimap<WTGEdgeSig, WTGEdge> stage5 = new BackEdgeBuilder(guiOutput, flowgraphRebuilder)
-            .buildEdges(wtg, stage4, ownership);
+    if (Configs.pipelineStages) {
+      // stage 4 builds each edge on its own, so it consumes the edges of
+      // stage 3 as they are produced. The other stages need their complete
+      // input: stage 2 computes ownership from all its edges, stage 3 needs
+      // the ownership, and stages 5 and 6 index the incoming edges of nodes.
+      Instrumentation.run("stage3+4:CloseWindowEdgeBuilder>CallbackSequenceBuilder", () -> {
+        CloseWindowEdgeBuilder closeWindowEdgeBuilder =
+                new CloseWindowEdgeBuilder(guiOutput, flowgraphRebuilder, cfgScheduler);
+        StagePipeline pipeline = new StagePipeline(Configs.pipelineQueueSize);
+        pipeline.run(closeWindowEdgeBuilder.createInputs(wtg, edges, ownership),
+                new CallbackSequenceBuilder(guiOutput, flowgraphRebuilder), wtg, ownership);
+        provenance.addStage(pipeline.getProducerEdges());
+        edges = pipeline.getConsumerEdges();
+      });
+      provenance.addStage(edges);
+      Logger.verb(TAG, "stage 3 and 4 finish");
+    } else {
+      Instrumentation.run("stage3:CloseWindowEdgeBuilder", () ->
+              edges = new CloseWindowEdgeBuilder(guiOutput, flowgraphRebuilder, cfgScheduler)
+                      .buildEdges(wtg, edges, ownership));
+      provenance.addStage(edges);
+      Logger.verb(TAG, "stage 3 finishes");
+      Instrumentation.run("stage4:CallbackSequenceBuilder", () ->
+              edges = new CallbackSequenceBuilder(guiOutput, flowgraphRebuilder)
+                      .buildEdges(wtg, edges, ownership));
+      provenance.addStage(edges);
+      Logger.verb(TAG, "stage 4 finishes");
+    }
+    Instrumentation.run("stage5:BackEdgeBuilder", () ->
+            edges = new BackEdgeBuilder(guiOutput, flowgraphRebuilder)
+                    .buildEdges(wtg, edges, ownership));
+    provenance.addStage(edges);
     Logger.verb(TAG, "stage 5 finishes");
-    Multimap<WTGEdgeSig, WTGEdge> stage6 = new LifecycleCloseEdgeBuilder(guiOutput, flowgraphRebuilder)
-            .buildEdges(wtg, stage5, ownership);
+    Instrumentation.run("stage6:LifecycleCloseEdgeBuilder", () ->
+            edges = new LifecycleCloseEdgeBuilder(guiOutput, flowgraphRebuilder, cfgScheduler)
+                    .buildEdges(wtg, edges, ownership));
+    provenance.addStage(edges);
     Logger.verb(TAG, "stage 6 finishes");
+    Logger.stat(VariableValueCache.v().getStatistics());
+    Logger.stat(CFGCache.v().getStatistics());
 
-    // store the result for all stages
-    stageOutput.add(stage1);
-    stageOutput.add(stage2);
-    stageOutput.add(stage3);
-    stageOutput.add(stage4);
-    stageOutput.add(stage5);
-    stageOutput.add(stage6);
     // construct wtg
-    Multimap<WTGEdgeSig, WTGEdge> finalStage = stageOutput.get(stageOutput.size() - 1);
-    for (WTGEdgeSig sig : finalStage.keySet()) {
+    List<WTGEdge> finalEdges = Lists.newArrayListWithCapacity(edges.keySet().size());
+    for (WTGEdgeSig sig : edges.keySet()) {
       WTGEdge edge = sig.getEdge();
       wtg.addEdge(edge);
+      finalEdges.add(edge);
     }
     // resurrect the edges
-    ignoreEdges(stageOutput);
+    ignoreEdges(finalEdges);
+    edges = null;
+    Logger.stat(String.format("WTG construction: peak heap %d MB, %d MB before",
+            Instrumentation.peakHeapBytes() >> 20, peakHeapBefore >> 20));
   }
 
   // do initialisation stuff, e.g., rebuild flow graph
@@ -103,9 +144,15 @@ public class WTGBuilder {
     // init
     guiOutput = output;
     // rebuild flowgraph
-    flowgraphRebuilder = FlowgraphRebuilder.v(guiOutput);
+    flowgraphRebuilder = Instrumentation.call("FlowgraphRebuilder", () -> FlowgraphRebuilder.v(guiOutput));
     // initialize wtg edge builder
     cfgAnalyzer = new CFGAnalyzer(guiOutput, flowgraphRebuilder);
+    // event handlers are also checked for closing windows in stage 3, and
+    // activity onCreate in stage 6: evaluate these filters in the traversal
+    // that serves stage 1 and 2
+    cfgScheduler = new CFGScheduler(guiOutput, flowgraphRebuilder, Lists.newArrayList(
+            Filter.closeActivityStmtFilter, Filter.closeDialogStmtFilter,
+            Filter.closeActivitySystemStmtFilter));
   }
 
   // post build
@@ -115,35 +162,14 @@ public class WTGBuilder {
     }
   }
 
-  private void ignoreEdges(List<Multimap<WTGEdgeSig, WTGEdge>> stageOutput) {
-    if (stageOutput.isEmpty()) {
+  private void ignoreEdges(Collection<WTGEdge> finalEdges) {
+    if (provenance.getStageCount() == 0) {
       return;
     }
-    Set<WTGEdge> aliveEdges = Sets.newHashSet();
-    Multimap<WTGEdgeSig, WTGEdge> finalStage = stageOutput.get(stageOutput.size() - 1);
-    for (WTGEdgeSig newEdge : finalStage.keySet()) {
-      aliveEdges.add(newEdge.getEdge());
-    }
-
-    Set<WTGEdge> nextAliveEdges = Sets.newHashSet();
-    for (int i = stageOutput.size() - 1; i >= 0; i--) {
-      Set<WTGEdgeSig> deadEdges = Sets.newHashSet();
-      Multimap<WTGEdgeSig, WTGEdge> stage = stageOutput.get(i);
-      for (WTGEdgeSig newEdge : stage.keySet()) {
-        if (aliveEdges.contains(newEdge.getEdge())) {
-          nextAliveEdges.addAll(stage.get(newEdge));
-        } else {
-          deadEdges.add(newEdge);
-        }
-      }
-      for (WTGEdgeSig deadEdge : deadEdges) {
-        stage.removeAll(deadEdge);
-      }
-
-      aliveEdges.clear();
-      Set<WTGEdge> tmp = nextAliveEdges;
-      nextAliveEdges = aliveEdges;
-      aliveEdges = tmp;
+    aliveEdgeCounts = provenance.countAliveEdges(finalEdges);
+    for (int i = 0; i < aliveEdgeCounts.length; i++) {
+      Logger.trace(TAG, "stage {}: {} edges, {} alive", i + 1,
+              provenance.getStageSize(i), aliveEdgeCounts[i]);
     }
   }
 
@@ -163,97 +189,20 @@ public class WTGBuilder {
     // 1'st stage described in the paper is associated with micro stages 1 and 2
     // 2'nd stage in the paper corresponds to micro stages 3 and 4
     // 3'rd stage is represented by micro stages 5 and 6
-    Multimap<WTGEdgeSig, WTGEdge> stage2 = wtgBuilder.getStageOutput(2);
-    Multimap<WTGEdgeSig, WTGEdge> stage4 = wtgBuilder.getStageOutput(4);
-    Multimap<WTGEdgeSig, WTGEdge> stage6 = wtgBuilder.getStageOutput(6);
+    // only the provenance of each stage is kept, so the diff between the
+    // stages is given as the number of their edges that reach the wtg
+    EdgeProvenance provenance = wtgBuilder.provenance;
+    int[] alive = wtgBuilder.aliveEdgeCounts;
     // print the numbers for Table II in the paper with k is specified through "-succDepth" command line
     Logger.verb(TAG,
             "\\texttt{" + Configs.benchmarkName
                     + "}\t& nodes: " + numOfNodes
-                    + "\t& stage2: " + stage2.size()
-                    + "\t& stage4: " + stage4.size()
-                    + "(" + diffPartialEdge(stage2, stage4) + ")"
-                    + "\t& stage6: " + stage6.size()
-                    + "(" + diffFullEdge(stage4, stage6) + ")"
+                    + "\t& stage2: " + provenance.getStageSize(1)
+                    + "\t& stage4: " + provenance.getStageSize(3)
+                    + "(alive: " + alive[3] + ")"
+                    + "\t& stage6: " + provenance.getStageSize(5)
+                    + "(alive: " + alive[5] + ")"
                     + "\t& " + Configs.sDepth
                     + "\t& " + execTime);
   }
-
-  private Multimap<WTGEdgeSig, WTGEdge> getStageOutput(int index) {
-    return stageOutput.get(index - 1);
-  }
-
-  // diff the signatures of two sets of edges, by comparing all their attributes, including
-  // source, target, push/pop label sequence and etc.
-  private String diffFullEdge(
-          Multimap<WTGEdgeSig, WTGEdge> first, Multimap<WTGEdgeSig, WTGEdge> second) {
-    int adds = 0, removes = 0;
-    for (WTGEdgeSig sig : first.keySet()) {
-      if (!second.containsKey(sig)) {
-        removes++;
-      }
-    }
-    for (WTGEdgeSig sig : second.keySet()) {
-      if (!first.containsKey(sig)) {
-        adds++;
-      }
-    }
-    if (first.size() - removes + adds != second.size()) {
-      Logger.err(TAG, "edges don't match");
-    } else if (adds < removes) {
-      Logger.err(TAG, "removes: " + removes + " is larger than adds: " + adds);
-    }
-    return "-" + removes + "/" + "+" + adds;
-  }
-
-  // diff the signatures of two sets of edges, by comparing only part of their attributes, e.g., source,
-  // target and event handling callbacks. The reason it is needed because edges generated from stage 1
-  // (defined in the paper) do not contain push/pop labels, but edges generated in stage 2 do have such
-  // labels. Thus, to compare these two sets of edges, we choose to do partial diff
-  private String diffPartialEdge(
-          Multimap<WTGEdgeSig, WTGEdge> first, Multimap<WTGEdgeSig, WTGEdge> second) {
-    int adds = 0;
-    {
-      Set<WTGEdgeSig> newSigs = Sets.newHashSet();
-      for (WTGEdgeSig oldSig : first.keySet()) {
-        boolean match = false;
-        for (WTGEdgeSig newSig : second.keySet()) {
-          if (oldSig.getSourceNode() == newSig.getSourceNode()
-                  && oldSig.getTargetNode() == newSig.getTargetNode()
-                  && oldSig.getWTGHandlers().equals(newSig.getWTGHandlers())
-                  && !newSigs.contains(newSig)) {
-            match = true;
-            newSigs.add(newSig);
-            break;
-          }
-        }
-        if (!match) {
-          Logger.err(TAG, "edges shouldn't be removed");
-        }
-      }
-    }
-    {
-      Set<WTGEdgeSig> oldSigs = Sets.newHashSet();
-      for (WTGEdgeSig newSig : second.keySet()) {
-        boolean match = false;
-        for (WTGEdgeSig oldSig : first.keySet()) {
-          if (oldSig.getSourceNode() == newSig.getSourceNode()
-                  && oldSig.getTargetNode() == newSig.getTargetNode()
-                  && oldSig.getWTGHandlers().equals(newSig.getWTGHandlers())
-                  && !oldSigs.contains(oldSig)) {
-            match = true;
-            oldSigs.add(oldSig);
-            break;
-          }
-        }
-        if (!match) {
-          adds++;
-        }
-      }
-    }
-    if (first.size() + adds != second.size()) {
-      Logger.err(TAG, "edges don't match");
-    }
-    return "-" + 0 + "/" + "+" + adds;
-  }
 }
@@ -17,23 +17,56 @@ import presto.android.gui.wtg.ds.WTGNode;
 import java.util.List;
 import java.util.Stack;
 
+/**
+ * A path together with the window stack it leads to. The path is a list of
+ * immutable cells shared with the window stacks it was extended from, and
+ * the stack is an ImmutableWindowStack: copy() and extend() are O(1) and
+ * don't copy the path or the stack.
+ */
 public class WindowStack {
-  private Stack<NObjectNode> stack;
-  private List<WTGEdge> path;
+  // last cell of the path, null if the path is empty
+  private PathCell last;
 
   public WindowStack(List<WTGEdge> path) {
-    this.path = Lists.newArrayList(path);
-    this.stack = simulateWindowStack(this.path);
+    this.last = simulateWindowStack(path);
+  }
+
+  private WindowStack(PathCell last) {
+    this.last = last;
   }
 
   public List<WTGEdge> getPath() {
-    return Lists.newArrayList(path);
+    return Lists.newArrayList(toArray());
+  }
+
+  public int getPathLength() {
+    return last == null ? 0 : last.length;
+  }
+
+  public WTGEdge getFirstEdge() {
+    Preconditions.checkState(last != null, "[Error]: path is empty");
+    return last.first;
+  }
+
+  public WTGEdge getLastEdge() {
+    return last == null ? null : last.edge;
+  }
+
+  public boolean containsEdge(WTGEdge e) {
+    for (PathCell cell = last; cell != null; cell = cell.prev) {
+      if (cell.edge == e) {
+        return true;
+      }
+    }
+    return false;
   }
 
   public Stack<NObjectNode> getWindowStack() {
-    Stack<NObjectNode> newStack = new Stack<NObjectNode>();
-    newStack.addAll(this.stack);
-    return newStack;
+    return getImmutableWindowStack().toStack();
+  }
+
+  public ImmutableWindowStack getImmutableWindowStack() {
+    return last == null ? ImmutableWindowStack.EMPTY : last.stack;
   }
 
   /**
@@ -53,22 +86,13 @@ public class WindowStack {
    */
   public List<WTGEdge> expandFeasibleEdge() {
     List<WTGEdge> feasibleEdges = Lists.newArrayList();
-    if (path.isEmpty()) {
-      return feasibleEdges;
-    }
-    Stack<NObjectNode> windowStack = this.stack;
-    if (windowStack.isEmpty()) {
+    if (last == null || last.stack.isEmpty()) {
       // invalid path to the node
       return feasibleEdges;
     }
-    WTGEdge lastEdge = path.get(path.size() - 1);
-    WTGNode lastNode = lastEdge.getTargetNode();
+    WTGNode lastNode = last.edge.getTargetNode();
     for (WTGEdge outEdge : lastNode.getOutEdges()) {
-      Stack<NObjectNode> newStack = new Stack<NObjectNode>();
-      newStack.addAll(windowStack);
-      newStack = processEdge(newStack, outEdge);
-      NObjectNode targetWindow = outEdge.getTargetNode().getWindow();
-      if (!newStack.isEmpty() && newStack.peek() == targetWindow) {
+      if (last.stack.applyFeasible(outEdge) != null) {
         feasibleEdges.add(outEdge);
       }
     }
@@ -76,76 +100,96 @@ public class WindowStack {
   }
 
   public boolean isFeasibleEdge(WTGEdge e) {
-    Stack<NObjectNode> windowStack = this.stack;
+    ImmutableWindowStack windowStack = getImmutableWindowStack();
     if (windowStack.isEmpty()) {
       // invalid path to the node
       return false;
     }
-    Stack<NObjectNode> newStack = new Stack<NObjectNode>();
-    newStack.addAll(windowStack);
-    newStack = processEdge(newStack, e);
-    NObjectNode targetWindow = e.getTargetNode().getWindow();
-    return !newStack.isEmpty() && newStack.peek() == targetWindow;
+    return windowStack.applyFeasible(e) != null;
   }
 
   public void addEdge(WTGEdge e) {
-    if (!isFeasibleEdge(e)) {
-      return;
+    WindowStack extended = extend(e);
+    if (extended != null) {
+      this.last = extended.last;
     }
-    Stack<NObjectNode> windowStack = this.stack;
-    windowStack = processEdge(windowStack, e);
-    this.path.add(e);
   }
 
+  /**
+   * Returns a new window stack for the path extended by the edge, sharing
+   * this path, or null if the edge is infeasible.
+   */
+  public WindowStack extend(WTGEdge e) {
+    if (last == null || last.stack.isEmpty()) {
+      return null;
+    }
+    ImmutableWindowStack newStack = last.stack.applyFeasible(e);
+    if (newStack == null) {
+      return null;
+    }
+    return new WindowStack(new PathCell(e, last, newStack));
+  }
+
+  /**
+   * Removes the last edge of the path, and restores the window stack
+   * before that edge.
+   */
   public void removeLastEdge() {
-    if (path.isEmpty()) {
+    if (last == null) {
       return;
     }
-    path.remove(path.size() - 1);
+    last = last.prev;
   }
 
   public WindowStack copy() {
-    return new WindowStack(this.path);
+    return new WindowStack(this.last);
   }
 
-  private Stack<NObjectNode> simulateWindowStack(List<WTGEdge> trace) {
-    Stack<NObjectNode> windowStack = new Stack<NObjectNode>();
+  private WTGEdge[] toArray() {
+    WTGEdge[] edges = new WTGEdge[getPathLength()];
+    for (PathCell cell = last; cell != null; cell = cell.prev) {
+      edges[cell.length - 1] = cell.edge;
+    }
+    return edges;
+  }
+
+  private static PathCell simulateWindowStack(List<WTGEdge> trace) {
+    PathCell cell = null;
+    if (trace.isEmpty()) {
+      return cell;
+    }
     // assuming the very beginning node already exists in the stack
-    windowStack.push(trace.get(0).getSourceNode().getWindow());
+    ImmutableWindowStack windowStack = ImmutableWindowStack.of(trace.get(0).getSourceNode().getWindow());
     for (WTGEdge staticEdge : trace) {
-      windowStack = processEdge(windowStack, staticEdge);
-      if (windowStack.isEmpty() || windowStack.peek() != staticEdge.getTargetNode().getWindow()) {
-        windowStack.clear();
-        return windowStack;
-      }
-    }
-    return windowStack;
-  }
-
-  private Stack<NObjectNode> processEdge(
-          Stack<NObjectNode> windowStack, WTGEdge staticEdge) {
-    Preconditions.checkNotNull(windowStack,
-            "[Error]: initial window stack shouldn't be null");
-    Preconditions.checkNotNull(staticEdge,
-            "[Error]: edge to be processed shouldn't be null");
-    for (StackOperation stackOp : staticEdge.getStackOps()) {
-      NObjectNode opWindow = stackOp.getWindow();
-      if (stackOp.isPushOp()) {
-        windowStack.push(opWindow);
-      } else {
-        boolean found = false;
-        while (!windowStack.isEmpty()) {
-          NObjectNode topWindow = windowStack.pop();
-          if (topWindow == opWindow) {
-            found = true;
-            break;
-          }
-        }
-        if (!found) {
-          return windowStack;
+      Preconditions.checkNotNull(staticEdge,
+              "[Error]: edge to be processed shouldn't be null");
+      if (!windowStack.isEmpty()) {
+        windowStack = windowStack.applyFeasible(staticEdge);
+        if (windowStack == null) {
+          // the path is infeasible: the stacks of this edge and its
+          // successors are empty
+          windowStack = ImmutableWindowStack.EMPTY;
         }
       }
+      cell = new PathCell(staticEdge, cell, windowStack);
+    }
+    return cell;
+  }
+
+  private static class PathCell {
+    final WTGEdge edge;
+    final WTGEdge first;
+    final PathCell prev;
+    final int length;
+    // the window stack after edge
+    final ImmutableWindowStack stack;
+
+    PathCell(WTGEdge edge, PathCell prev, ImmutableWindowStack stack) {
+      this.edge = edge;
+      this.prev = prev;
+      this.first = prev == null ? edge : prev.first;
+      this.length = prev == null ? 1 : prev.length + 1;
+      this.stack = stack;
     }
-    return windowStack;
   }
 }
@@ -37,7 +37,7 @@ import java.util.Set;
  * leaving back edges as well as cyclic whose target are unknown
  * to later stages
  */
-public class CallbackSequenceBuilder implements Algorithm {
+public class CallbackSequenceBuilder implements StreamingAlgorithm {
   private WTGHelper helper = WTGHelper.v();
 
   @SuppressWarnings("unused")
@@ -58,8 +58,7 @@ public class CallbackSequenceBuilder implements Algorithm {
     Set<AlgorithmInput> inputSet = Sets.newHashSet();
     for (WTGEdgeSig sig : existEdges.keySet()) {
       WTGEdge existEdge = sig.getEdge();
-      AlgorithmInput input = new AlgorithmInput(wtg, existEdge, this, ownership);
-      inputSet.add(input);
+      inputSet.add(createInput(wtg, existEdge, ownership));
     }
     Map<AlgorithmInput, AlgorithmOutput> outputs = new BuildScheduler().schedule(inputSet);
     for (AlgorithmInput input : outputs.keySet()) {
@@ -69,6 +68,11 @@ public class CallbackSequenceBuilder implements Algorithm {
     return newEdges;
   }
 
+  @Override
+  public AlgorithmInput createInput(WTG wtg, WTGEdge existEdge, Multimap<WTGNode, NActivityNode> ownership) {
+    return new AlgorithmInput(wtg, existEdge, this, ownership);
+  }
+
   @Override
   public AlgorithmOutput execute(AlgorithmInput input) {
     return buildEdge(input.wtg, input.edge, input.ownership);
@@ -45,27 +45,45 @@ public class CloseWindowEdgeBuilder implements Algorithm {
 
   private GUIAnalysisOutput guiOutput;
   private FlowgraphRebuilder flowgraphRebuilder;
+  // shared by the WTG stages
+  private CFGScheduler cfgScheduler;
 
-  public CloseWindowEdgeBuilder(GUIAnalysisOutput guiOutput, FlowgraphRebuilder flowgraphRebuilder) {
+  public CloseWindowEdgeBuilder(GUIAnalysisOutput guiOutput, FlowgraphRebuilder flowgraphRebuilder,
+                                CFGScheduler cfgScheduler) {
     this.guiOutput = guiOutput;
     this.flowgraphRebuilder = flowgraphRebuilder;
+    this.cfgScheduler = cfgScheduler;
   }
 
   public Multimap<WTGEdgeSig, WTGEdge> buildEdges(WTG wtg, Multimap<WTGEdgeSig, WTGEdge> existEdges,
                                                   Multimap<WTGNode, NActivityNode> ownership) {
     // map from new edges back to original edges 
     Multimap<WTGEdgeSig, WTGEdge> newEdges = HashMultimap.create();
+    Set<AlgorithmInput> inputSet = createInputs(wtg, existEdges, ownership);
+    Map<AlgorithmInput, AlgorithmOutput> outputs = new BuildScheduler().schedule(inputSet);
+    for (AlgorithmInput input : outputs.keySet()) {
+      AlgorithmOutput output = outputs.get(input);
+      newEdges.putAll(output.newEdges);
+    }
+    return newEdges;
+  }
+
+  // analyze the event handlers, and create one input per existing edge
+  public Set<AlgorithmInput> createInputs(WTG wtg, Multimap<WTGEdgeSig, WTGEdge> existEdges,
+                                          Multimap<WTGNode, NActivityNode> ownership) {
+    // analyze each event handler once for both self and owner close
+    Map<CFGAnalyzerInput, CFGAnalyzerOutput> analyzeOutput = analyzeEventHandlers(existEdges);
     // identify may/must-self-close edges
     Set<WTGEdgeSig> mustSelfCloseEdges = Sets.newHashSet();
     Set<WTGEdgeSig> maySelfCloseEdges = Sets.newHashSet();
-    createMustOrMaySelfCloseEdges(existEdges, mustSelfCloseEdges, maySelfCloseEdges);
+    createMustOrMaySelfCloseEdges(existEdges, analyzeOutput, mustSelfCloseEdges, maySelfCloseEdges);
 
     // identify may/must-owner-close edges
     Set<WTGEdgeSig> mustOwnerCloseEdges = Sets.newHashSet();
     Set<WTGEdgeSig> mayOwnerCloseEdges = Sets.newHashSet();
     Set<WTGEdgeSig> notCloseOwnerEdges = Sets.newHashSet();
-    createMustOrMayOwnerCloseEdges(wtg, existEdges, ownership, mustOwnerCloseEdges, mayOwnerCloseEdges,
-            notCloseOwnerEdges);
+    createMustOrMayOwnerCloseEdges(wtg, existEdges, analyzeOutput, ownership, mustOwnerCloseEdges,
+            mayOwnerCloseEdges, notCloseOwnerEdges);
 
     Set<AlgorithmInput> inputSet = Sets.newHashSet();
     for (WTGEdgeSig sig : existEdges.keySet()) {
@@ -74,12 +92,7 @@ public class CloseWindowEdgeBuilder implements Algorithm {
               mustOwnerCloseEdges, mayOwnerCloseEdges, notCloseOwnerEdges, mustSelfCloseEdges, maySelfCloseEdges);
       inputSet.add(input);
     }
-    Map<AlgorithmInput, AlgorithmOutput> outputs = new BuildScheduler().schedule(inputSet);
-    for (AlgorithmInput input : outputs.keySet()) {
-      AlgorithmOutput output = outputs.get(input);
-      newEdges.putAll(output.newEdges);
-    }
-    return newEdges;
+    return inputSet;
   }
 
   @Override
@@ -316,10 +329,11 @@ public class CloseWindowEdgeBuilder implements Algorithm {
     newEdges.put(forkEdge.getSig(), existEdge);
   }
 
-  private void createMustOrMaySelfCloseEdges(
-          final Multimap<WTGEdgeSig, WTGEdge> existEdges,
-          final Set<WTGEdgeSig> mustSelfCloseEdges,
-          final Set<WTGEdgeSig> maySelfCloseEdges) {
+  // inputs of self close (closeActivityStmtFilter/closeDialogStmtFilter) and
+  // owner close (closeActivitySystemStmtFilter) go into one batch, so that
+  // each event handler is traversed once for all of them
+  private Map<CFGAnalyzerInput, CFGAnalyzerOutput> analyzeEventHandlers(
+          final Multimap<WTGEdgeSig, WTGEdge> existEdges) {
     Set<CFGAnalyzerInput> inputSet = Sets.newHashSet();
     for (WTGEdgeSig sig : existEdges.keySet()) {
       WTGEdge existEdge = sig.getEdge();
@@ -331,20 +345,24 @@ public class CloseWindowEdgeBuilder implements Algorithm {
       }
       for (SootMethod eventHandler : eventHandlers) {
         if (source.getWindow() instanceof NActivityNode) {
-          CFGAnalyzerInput input = new CFGAnalyzerInput(widget, eventHandler,
-                  Filter.closeActivityStmtFilter);
-          inputSet.add(input);
+          inputSet.add(new CFGAnalyzerInput(widget, eventHandler,
+                  Filter.closeActivityStmtFilter));
         } else if (source.getWindow() instanceof NDialogNode) {
-          CFGAnalyzerInput input = new CFGAnalyzerInput(widget, eventHandler,
-                  Filter.closeDialogStmtFilter);
-          inputSet.add(input);
-        } else {
-          // ignore the other cases
+          inputSet.add(new CFGAnalyzerInput(widget, eventHandler,
+                  Filter.closeDialogStmtFilter));
         }
+        inputSet.add(new CFGAnalyzerInput(widget, eventHandler,
+                Filter.closeActivitySystemStmtFilter));
       }
     }
-    CFGScheduler scheduler = new CFGScheduler(guiOutput, flowgraphRebuilder);
-    Map<CFGAnalyzerInput, CFGAnalyzerOutput> analyzeOutput = scheduler.schedule(inputSet);
+    return cfgScheduler.schedule(inputSet);
+  }
+
+  private void createMustOrMaySelfCloseEdges(
+          final Multimap<WTGEdgeSig, WTGEdge> existEdges,
+          final Map<CFGAnalyzerInput, CFGAnalyzerOutput> analyzeOutput,
+          final Set<WTGEdgeSig> mustSelfCloseEdges,
+          final Set<WTGEdgeSig> maySelfCloseEdges) {
     for (WTGEdgeSig sig : existEdges.keySet()) {
       WTGEdge existEdge = sig.getEdge();
       WTGNode source = existEdge.getSourceNode();
@@ -388,26 +406,11 @@ public class CloseWindowEdgeBuilder implements Algorithm {
   private void createMustOrMayOwnerCloseEdges(
           final WTG wtg,
           final Multimap<WTGEdgeSig, WTGEdge> existEdges,
+          final Map<CFGAnalyzerInput, CFGAnalyzerOutput> analyzeOutput,
           final Multimap<WTGNode, NActivityNode> ownership,
           final Set<WTGEdgeSig> mustOwnerCloseEdges,
           final Set<WTGEdgeSig> mayOwnerCloseEdges,
           final Set<WTGEdgeSig> notCloseOwnerEdges) {
-    Set<CFGAnalyzerInput> inputSet = Sets.newHashSet();
-    for (WTGEdgeSig sig : existEdges.keySet()) {
-      WTGEdge existEdge = sig.getEdge();
-      NObjectNode widget = existEdge.getGUIWidget();
-      Set<SootMethod> eventHandlers = existEdge.getEventHandlers();
-      if (eventHandlers.isEmpty()) {
-        continue;
-      }
-      for (SootMethod eventHandler : eventHandlers) {
-        inputSet.add(new CFGAnalyzerInput(widget, eventHandler,
-                Filter.closeActivitySystemStmtFilter));
-      }
-    }
-    CFGScheduler scheduler = new CFGScheduler(guiOutput, flowgraphRebuilder);
-    Map<CFGAnalyzerInput, CFGAnalyzerOutput> analyzeOutput = scheduler.schedule(inputSet);
-
     for (WTGEdgeSig sig : existEdges.keySet()) {
       WTGEdge existEdge = sig.getEdge();
       WTGNode source = existEdge.getSourceNode();
@@ -61,10 +61,14 @@ public class ExplicitForwardEdgeBuilder implements Algorithm {
   private GUIAnalysisOutput guiOutput;
 
   private FlowgraphRebuilder flowgraphRebuilder;
+  // shared by the WTG stages
+  private CFGScheduler cfgScheduler;
 
-  public ExplicitForwardEdgeBuilder(GUIAnalysisOutput guiOutput, FlowgraphRebuilder flowgraphRebuilder) {
+  public ExplicitForwardEdgeBuilder(GUIAnalysisOutput guiOutput, FlowgraphRebuilder flowgraphRebuilder,
+                                    CFGScheduler cfgScheduler) {
     this.guiOutput = guiOutput;
     this.flowgraphRebuilder = flowgraphRebuilder;
+    this.cfgScheduler = cfgScheduler;
   }
 
   /**
@@ -111,7 +115,7 @@ public class ExplicitForwardEdgeBuilder implements Algorithm {
     for (NObjectNode window : guiHierarchy.keySet()) {
       if (window instanceof NActivityNode) {
         /********************** if window is activity ****************************/
-        Logger.verb("buildExplicitForwardEdges", window.toString());
+        Logger.verb("buildExplicitForwardEdges", "{}", window);
         buildActivityForwardEdges(newEdges, wtg, window, analyzeOutput,
                 guiHierarchy, viewToHandlers);
       } else if (window instanceof NDialogNode || window instanceof NMenuNode) {
@@ -174,8 +178,7 @@ public class ExplicitForwardEdgeBuilder implements Algorithm {
     }
     //Logger.verb("AnalyzeCallback", "CFGScheduler begins");
     //Logger.verb("AnalyzeCallback", "InputSet: " + inputSet.size());
-    CFGScheduler scheduler = new CFGScheduler(guiOutput, flowgraphRebuilder);
-    return scheduler.schedule(inputSet);
+    return cfgScheduler.schedule(inputSet);
   }
 
   private void buildWTGEdges(
@@ -191,7 +194,7 @@ public class ExplicitForwardEdgeBuilder implements Algorithm {
       Logger.verb("WTGEdges", "No main activity");
       return;
     }
-    Logger.verb("WTGEdges", "Main activity: "+mainClz.getName());
+    Logger.verb("WTGEdges", "Main activity: {}", mainClz.getName());
     Flowgraph flowgraph = guiOutput.getFlowgraph();
     NActivityNode mainActNode = flowgraph.allNActivityNodes.get(mainClz);
     WTGNode mainNode = wtg.getNode(mainActNode);
@@ -347,7 +350,7 @@ public class ExplicitForwardEdgeBuilder implements Algorithm {
       NObjectNode windowNode = windowNodeList.remove(0);
       // window is in the hierarchy of itself
       guiHierarchy.put(windowNode, windowNode);
-      Logger.verb(this.getClass().getSimpleName(), "Init window: " + windowNode.toString());
+      Logger.verb(this.getClass().getSimpleName(), "Init window: {}", windowNode);
       if (windowNode instanceof NActivityNode) {
         SootClass actClass = ((NActivityNode) windowNode).c;
         NOptionsMenuNode optionMenu = guiOutput.getOptionsMenu(actClass);
@@ -734,7 +737,7 @@ public class ExplicitForwardEdgeBuilder implements Algorithm {
         }
       }
       if (runnableCallbacks.isEmpty()) {
-        Logger.verb(getClass().getSimpleName(), "cannot find runnable for async operation: " + asyncStmt);
+        Logger.verb(getClass().getSimpleName(), "cannot find runnable for async operation: {}", asyncStmt);
         continue;
       }
       NNode rcvNode = flowgraphRebuilder.lookupNode(rcvLocal);
@@ -745,13 +748,13 @@ public class ExplicitForwardEdgeBuilder implements Algorithm {
         }
       }
       if (widgets.isEmpty()) {
-        Logger.verb(getClass().getSimpleName(), "cannot find receiver for async operation: " + asyncStmt);
+        Logger.verb(getClass().getSimpleName(), "cannot find receiver for async operation: {}", asyncStmt);
         continue;
       }
       for (NObjectNode widget : widgets) {
         Collection<NObjectNode> windows = reverseGUIHierarchy.get(widget);
         if (windows.isEmpty()) {
-          Logger.verb(getClass().getSimpleName(), "cannot find window for async operation: " + asyncStmt);
+          Logger.verb(getClass().getSimpleName(), "cannot find window for async operation: {}", asyncStmt);
           continue;
         }
         for (NObjectNode window : windows) {
@@ -47,10 +47,14 @@ public class LifecycleCloseEdgeBuilder implements Algorithm {
   private GUIAnalysisOutput guiOutput;
 
   private FlowgraphRebuilder flowgraphRebuilder;
+  // shared by the WTG stages
+  private CFGScheduler cfgScheduler;
 
-  public LifecycleCloseEdgeBuilder(GUIAnalysisOutput guiOutput, FlowgraphRebuilder flowgraphRebuilder) {
+  public LifecycleCloseEdgeBuilder(GUIAnalysisOutput guiOutput, FlowgraphRebuilder flowgraphRebuilder,
+                                   CFGScheduler cfgScheduler) {
     this.guiOutput = guiOutput;
     this.flowgraphRebuilder = flowgraphRebuilder;
+    this.cfgScheduler = cfgScheduler;
     this.succCache = Maps.newHashMap();
   }
 
@@ -111,8 +115,7 @@ public class LifecycleCloseEdgeBuilder implements Algorithm {
         }
       }
     }
-    CFGScheduler scheduler = new CFGScheduler(guiOutput, flowgraphRebuilder);
-    return scheduler.schedule(inputSet);
+    return cfgScheduler.schedule(inputSet);
   }
 
   private AlgorithmOutput buildEdge(
@@ -45,10 +45,14 @@ public class LifecycleForwardEdgeBuilder implements Algorithm {
   private GUIAnalysisOutput guiOutput;
 
   private FlowgraphRebuilder flowgraphRebuilder;
+  // shared by the WTG stages
+  private CFGScheduler cfgScheduler;
 
-  public LifecycleForwardEdgeBuilder(GUIAnalysisOutput guiOutput, FlowgraphRebuilder flowgraphRebuilder) {
+  public LifecycleForwardEdgeBuilder(GUIAnalysisOutput guiOutput, FlowgraphRebuilder flowgraphRebuilder,
+                                     CFGScheduler cfgScheduler) {
     this.guiOutput = guiOutput;
     this.flowgraphRebuilder = flowgraphRebuilder;
+    this.cfgScheduler = cfgScheduler;
   }
 
   public Multimap<WTGEdgeSig, WTGEdge> buildEdges(
@@ -111,8 +115,7 @@ public class LifecycleForwardEdgeBuilder implements Algorithm {
         }
       }
     }
-    CFGScheduler scheduler = new CFGScheduler(guiOutput, flowgraphRebuilder);
-    return scheduler.schedule(inputSet);
+    return cfgScheduler.schedule(inputSet);
   }
 
   private AlgorithmOutput buildEdge(
@@ -0,0 +1,144 @@
+/*
+ * StagePipeline.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui.wtg.algo;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import presto.android.gui.graph.NActivityNode;
+import presto.android.gui.wtg.ds.WTG;
+import presto.android.gui.wtg.ds.WTGEdge;
+import presto.android.gui.wtg.ds.WTGEdge.WTGEdgeSig;
+import presto.android.gui.wtg.ds.WTGNode;
+import presto.android.gui.wtg.parallel.TaskExecutor;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs two consecutive WTG stages as a pipeline: the output of every
+ * producer task is handed to the calling thread through a bounded queue,
+ * and the consumer tasks for its new edges are submitted right away. The
+ * consumer stage therefore runs while the producer stage is still building
+ * edges. A producer that finds the queue full blocks until the calling
+ * thread catches up.
+ * <p>
+ * Both stages are expected to build the same edges as when they run one
+ * after the other; an edge signature produced several times is consumed
+ * once, like a key of the materialized stage output.
+ */
+public class StagePipeline {
+  private static final String TAG = StagePipeline.class.getSimpleName();
+
+  // handed over when a producer fails, so that the consumer side finishes
+  private static final AlgorithmOutput NO_OUTPUT = new AlgorithmOutput();
+
+  static {
+    NO_OUTPUT.newEdges = HashMultimap.create();
+  }
+
+  private final int capacity;
+  // map from producer edges back to their input edges
+  private final Multimap<WTGEdgeSig, WTGEdge> producerEdges = HashMultimap.create();
+  // map from consumer edges back to the producer edges
+  private final Multimap<WTGEdgeSig, WTGEdge> consumerEdges = HashMultimap.create();
+
+  public StagePipeline(int capacity) {
+    Preconditions.checkArgument(capacity > 0, "[Error]: queue capacity should be > 0");
+    this.capacity = capacity;
+  }
+
+  public void run(
+          Set<AlgorithmInput> producerInputs,
+          StreamingAlgorithm consumer,
+          WTG wtg,
+          Multimap<WTGNode, NActivityNode> ownership) {
+    final BlockingQueue<AlgorithmOutput> queue = new ArrayBlockingQueue<>(capacity);
+    TaskExecutor.Batch<AlgorithmInput, AlgorithmOutput> producers = TaskExecutor.submitAll(
+            TAG + ":producer", producerInputs,
+            new TaskExecutor.Task<AlgorithmInput, AlgorithmOutput>() {
+              @Override
+              public AlgorithmOutput run(AlgorithmInput input) {
+                AlgorithmOutput output = NO_OUTPUT;
+                try {
+                  output = BuildScheduler.EXECUTE.run(input);
+                  return output;
+                } finally {
+                  put(queue, output);
+                }
+              }
+            });
+    TaskExecutor.Batch<AlgorithmInput, AlgorithmOutput> consumers = TaskExecutor.newBatch(
+            TAG + ":consumer", producerInputs.size());
+    for (int received = 0; received < producerInputs.size(); received++) {
+      AlgorithmOutput output = take(queue);
+      for (WTGEdgeSig sig : output.newEdges.keySet()) {
+        boolean first = !producerEdges.containsKey(sig);
+        producerEdges.putAll(sig, output.newEdges.get(sig));
+        if (first) {
+          consumers.submit(consumer.createInput(wtg, sig.getEdge(), ownership),
+                  BuildScheduler.EXECUTE);
+        }
+      }
+    }
+    // rethrows the failure of a producer, if any
+    producers.await();
+    for (AlgorithmOutput output : consumers.await().values()) {
+      consumerEdges.putAll(output.newEdges);
+    }
+  }
+
+  public Multimap<WTGEdgeSig, WTGEdge> getProducerEdges() {
+    return producerEdges;
+  }
+
+  public Multimap<WTGEdgeSig, WTGEdge> getConsumerEdges() {
+    return consumerEdges;
+  }
+
+  private static void put(final BlockingQueue<AlgorithmOutput> queue, final AlgorithmOutput output) {
+    try {
+      // let the pool compensate for a producer blocked on a full queue
+      ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+        private boolean done = false;
+
+        @Override
+        public boolean block() throws InterruptedException {
+          if (!done) {
+            queue.put(output);
+            done = true;
+          }
+          return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+          if (!done) {
+            done = queue.offer(output);
+          }
+          return done;
+        }
+      });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(TAG + ": interrupted while handing over edges", e);
+    }
+  }
+
+  private static AlgorithmOutput take(BlockingQueue<AlgorithmOutput> queue) {
+    try {
+      return queue.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(TAG + ": interrupted while waiting for edges", e);
+    }
+  }
+}
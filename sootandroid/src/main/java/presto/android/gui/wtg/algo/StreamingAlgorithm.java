@@ -0,0 +1,23 @@
+/*
+ * StreamingAlgorithm.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui.wtg.algo;
+
+import com.google.common.collect.Multimap;
+import presto.android.gui.graph.NActivityNode;
+import presto.android.gui.wtg.ds.WTG;
+import presto.android.gui.wtg.ds.WTGEdge;
+import presto.android.gui.wtg.ds.WTGNode;
+
+/**
+ * A stage algorithm that builds the new edges of an edge from that edge
+ * alone, so it can consume the edges of the previous stage one by one.
+ */
+public interface StreamingAlgorithm extends Algorithm {
+  AlgorithmInput createInput(WTG wtg, WTGEdge edge, Multimap<WTGNode, NActivityNode> ownership);
+}
@@ -28,10 +28,10 @@ import presto.android.gui.wtg.util.QueryHelper;
 import presto.android.gui.wtg.util.WTGUtil;
 import soot.*;
 import soot.jimple.*;
-import soot.toolkits.graph.UnitGraph;
 import soot.toolkits.scalar.Pair;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -62,9 +62,31 @@ public class CFGAnalyzer {
     this.intentAnalysis = new IntentAnalysis(this.guiOutput, this.rebuilder);
   }
 
+  /**
+   * Publishes the results buffered by this analyzer, e.g., the infeasible
+   * edges of constant analysis. Called by the thread that owns the analyzer
+   * once it is done with it, or after its worker pool is quiescent.
+   */
+  public void publishResults() {
+    constAnalysis.publishResults();
+  }
+
   public CFGAnalyzerOutput analyzeCallbackMethod(
           final NObjectNode guiElement, final SootMethod handler,
           final Filter<Stmt, SootMethod> filter) {
+    return analyzeCallbackMethod(guiElement, handler,
+            Collections.singletonList(filter)).get(0);
+  }
+
+  /**
+   * Analyzes the callback for several stmt filters with one constant
+   * propagation and one traversal of its ICFG. The i-th output belongs to
+   * the i-th filter and is the same as analyzing the callback with that
+   * filter alone.
+   */
+  public List<CFGAnalyzerOutput> analyzeCallbackMethod(
+          final NObjectNode guiElement, final SootMethod handler,
+          final List<Filter<Stmt, SootMethod>> filters) {
     // perform constant propagation analysis first
     HashMultimap<Stmt, Stmt> infeasibleEdges = HashMultimap.create();
     HashMultimap<Stmt, SootMethod> infeasibleCalls = HashMultimap.create();
@@ -77,186 +99,200 @@ public class CFGAnalyzer {
 //        Logger.verb("CONSTAL0",
 //              "GUI:" + guiElement + "\tinfeasibleEdges: "+ infeasibleEdges.size() + "\tinfeasibleCalls:" + infeasibleCalls.size());
     }
-    return analyzeCallbackMethod(guiElement, handler, infeasibleEdges,
-            infeasibleCalls, filter);
-  }
-
-  private CFGAnalyzerOutput analyzeCallbackMethod(
-          final NObjectNode guiWidget,
-          final SootMethod handler,
-          final HashMultimap<Stmt, Stmt> infeasibleEdges,
-          final HashMultimap<Stmt, SootMethod> infeasibleCalls,
-          final Filter<Stmt, SootMethod> stmtFilter) {
     // stmtFilter is used to specify the types of stmts we interested
-    final Set<Stmt> escapedStmts = Sets.newHashSet();
+    List<CallbackScan> scans = Lists.newArrayListWithCapacity(filters.size());
+    for (Filter<Stmt, SootMethod> stmtFilter : filters) {
+      scans.add(new CallbackScan(guiElement, handler, stmtFilter));
+    }
     final Map<Stmt, SootMethod> visitedStmts = Maps.newHashMap();
-    final Map<SootMethod, UnitGraph> methodToCFG = Maps.newHashMap();
-    final Map<Stmt, SootMethod> startActivityStmts = Maps.newHashMap();
-    final Map<Stmt, SootMethod> showDialogStmts = Maps.newHashMap();
-    final Set<Stmt> setIntentContentStmts = Sets.newHashSet();
-    final Set<Stmt> newIntentStmts = Sets.newHashSet();
-    final Multimap<NObjectNode, Pair<Stmt, SootMethod>> openMenus = HashMultimap.create();
-    final Multimap<NObjectNode, Pair<Stmt, SootMethod>> terminatedActivities = HashMultimap.create();
-    final Multimap<NObjectNode, Pair<Stmt, SootMethod>> terminatedDialogs = HashMultimap.create();
-    final Multimap<NObjectNode, Pair<Stmt, SootMethod>> targetWindows = HashMultimap.create();
-    final Multimap<NObjectNode, Pair<Stmt, SootMethod>> acquireResources = HashMultimap.create();
-    final Multimap<NObjectNode, Pair<Stmt, SootMethod>> releaseResources = HashMultimap.create();
-    final CFGAnalyzerOutput analyzeResult = new CFGAnalyzerOutput();
-    final Filter<Stmt, SootMethod> filter = new Filter<Stmt, SootMethod>() {
-      @Override
-      public boolean match(Stmt unit, SootMethod context) {
-        if (wtgUtil.isMenuItemSetIntentCall(unit)) {
-          collectTargetMenuItemSetIntent(unit);
-          return false;
-        }
+    final Map<Stmt, Integer> reachedBy = Maps.newHashMap();
+    cfgTraversal.forwardTraversal(handler, scans, visitedStmts, reachedBy,
+            null, infeasibleEdges, infeasibleCalls);
+    int reachToExit = 0;
+    for (Unit exitNode : CFGCache.v().get(handler).tails) {
+      Integer filterBits = reachedBy.get(exitNode);
+      if (filterBits != null) {
+        reachToExit |= filterBits;
+      }
+    }
 
-        if (stmtFilter.lookforAcquireResource()
-                && wtgUtil.isAcquireResourceCall(unit)) {
-          Set<NObjectNode> resourceSet = collectAcquireResource(unit);
-          for (NObjectNode acquireRes : resourceSet) {
-            acquireResources.put(acquireRes, new Pair<Stmt, SootMethod>(unit, context));
-          }
-          return false;
-        }
+//    Logger.verb("CFGAnalyzer", "End of analyzeCallbackMethod");
+    List<CFGAnalyzerOutput> analyzeResults = Lists.newArrayListWithCapacity(scans.size());
+    for (int i = 0; i < scans.size(); i++) {
+      analyzeResults.add(scans.get(i).collectResult((reachToExit & (1 << i)) != 0));
+    }
+    return analyzeResults;
+  }
 
-        if (stmtFilter.lookforReleaseResource()
-                && wtgUtil.isReleaseResourceCall(unit)) {
-          Set<NObjectNode> resourceSet = collectReleaseResource(unit);
-          for (NObjectNode releaseRes : resourceSet) {
-            releaseResources.put(releaseRes, new Pair<Stmt, SootMethod>(unit, context));
-          }
-          return false;
-        }
+  // the stmts of interest to one stmt filter, collected during a traversal
+  private class CallbackScan extends Filter<Stmt, SootMethod> {
+    private final NObjectNode guiWidget;
+    private final SootMethod handler;
+    private final Filter<Stmt, SootMethod> stmtFilter;
+    private final Map<Stmt, SootMethod> startActivityStmts = Maps.newHashMap();
+    private final Map<Stmt, SootMethod> showDialogStmts = Maps.newHashMap();
+    private final Set<Stmt> setIntentContentStmts = Sets.newHashSet();
+    private final Set<Stmt> newIntentStmts = Sets.newHashSet();
+    private final Multimap<NObjectNode, Pair<Stmt, SootMethod>> openMenus = HashMultimap.create();
+    private final Multimap<NObjectNode, Pair<Stmt, SootMethod>> terminatedActivities = HashMultimap.create();
+    private final Multimap<NObjectNode, Pair<Stmt, SootMethod>> terminatedDialogs = HashMultimap.create();
+    private final Multimap<NObjectNode, Pair<Stmt, SootMethod>> acquireResources = HashMultimap.create();
+    private final Multimap<NObjectNode, Pair<Stmt, SootMethod>> releaseResources = HashMultimap.create();
+    private boolean exitSystem;
 
-        if (stmtFilter.lookforExitSystem()
-                && wtgUtil.isExecutionExitCall(unit)) {
-          analyzeResult.exitSystem = true;
-          return stmtFilter.isDetectThenStop();
+    CallbackScan(NObjectNode guiWidget, SootMethod handler, Filter<Stmt, SootMethod> stmtFilter) {
+      this.guiWidget = guiWidget;
+      this.handler = handler;
+      this.stmtFilter = stmtFilter;
+    }
+
+    @Override
+    public boolean match(Stmt unit, SootMethod context) {
+      if (wtgUtil.isMenuItemSetIntentCall(unit)) {
+        collectTargetMenuItemSetIntent(unit);
+        return false;
+      }
+
+      if (stmtFilter.lookforAcquireResource()
+              && wtgUtil.isAcquireResourceCall(unit)) {
+        Set<NObjectNode> resourceSet = collectAcquireResource(unit);
+        for (NObjectNode acquireRes : resourceSet) {
+          acquireResources.put(acquireRes, new Pair<Stmt, SootMethod>(unit, context));
         }
+        return false;
+      }
 
-        if (stmtFilter.lookforFinishActivity()
-                && wtgUtil.isActivityFinishCall(unit)) {
-          Set<NObjectNode> finishedActivities = detectFinishWindow(unit);
-          boolean match = false;
-          if (finishedActivities != null) {
-            for (NObjectNode finishedActivity : finishedActivities) {
-              terminatedActivities.put(finishedActivity,
-                      new Pair<Stmt, SootMethod>(unit, context));
-              match = true;
-            }
-          }
-          return match && stmtFilter.isDetectThenStop();
+      if (stmtFilter.lookforReleaseResource()
+              && wtgUtil.isReleaseResourceCall(unit)) {
+        Set<NObjectNode> resourceSet = collectReleaseResource(unit);
+        for (NObjectNode releaseRes : resourceSet) {
+          releaseResources.put(releaseRes, new Pair<Stmt, SootMethod>(unit, context));
         }
+        return false;
+      }
 
-        if (stmtFilter.lookforDismissDialog()
-                && guiOutput.isDialogDismiss(unit)) {
-          Set<NDialogNode> closedDialogs = guiOutput.dialogsDismissedBy(unit);
-          boolean match = false;
-          for (NDialogNode dialog : closedDialogs) {
-            terminatedDialogs.put(dialog, new Pair<Stmt, SootMethod>(unit,
-                    context));
+      if (stmtFilter.lookforExitSystem()
+              && wtgUtil.isExecutionExitCall(unit)) {
+        exitSystem = true;
+        return stmtFilter.isDetectThenStop();
+      }
+
+      if (stmtFilter.lookforFinishActivity()
+              && wtgUtil.isActivityFinishCall(unit)) {
+        Set<NObjectNode> finishedActivities = detectFinishWindow(unit);
+        boolean match = false;
+        if (finishedActivities != null) {
+          for (NObjectNode finishedActivity : finishedActivities) {
+            terminatedActivities.put(finishedActivity,
+                    new Pair<Stmt, SootMethod>(unit, context));
             match = true;
           }
-          return match && stmtFilter.isDetectThenStop();
         }
+        return match && stmtFilter.isDetectThenStop();
+      }
 
-        if (stmtFilter.lookforOpenMenu()) {
-          if (wtgUtil.isMenuItemAddCall(unit)
-                  || wtgUtil.isMenuInflateCall(unit)) {
-            if (handler.getSubSignature().equals(MethodNames.onCreateOptionsMenu1Subsig)
-                    && collectTargetMenu(unit).contains(guiWidget)) {
-              openMenus.put(guiWidget, new Pair<Stmt, SootMethod>(unit, context));
-            } else if (handler.getSubSignature().equals(MethodNames.onCreateContextMenuSubSig)
-                    || handler.getSubSignature().equals(MethodNames.viewOnCreateContextMenuSubSig)) {
-              for (NMenuNode openMenu : collectTargetMenu(unit)) {
-                openMenus.put(openMenu, new Pair<Stmt, SootMethod>(unit, context));
-              }
-            }
-            return stmtFilter.isDetectThenStop();
-          } else if (guiOutput.isExplicitShowContextMenuCall(unit)) {
-            for (NMenuNode openMenu : guiOutput.explicitlyTriggeredContextMenus(unit)) {
+      if (stmtFilter.lookforDismissDialog()
+              && guiOutput.isDialogDismiss(unit)) {
+        Set<NDialogNode> closedDialogs = guiOutput.dialogsDismissedBy(unit);
+        boolean match = false;
+        for (NDialogNode dialog : closedDialogs) {
+          terminatedDialogs.put(dialog, new Pair<Stmt, SootMethod>(unit,
+                  context));
+          match = true;
+        }
+        return match && stmtFilter.isDetectThenStop();
+      }
+
+      if (stmtFilter.lookforOpenMenu()) {
+        if (wtgUtil.isMenuItemAddCall(unit)
+                || wtgUtil.isMenuInflateCall(unit)) {
+          if (handler.getSubSignature().equals(MethodNames.onCreateOptionsMenu1Subsig)
+                  && collectTargetMenu(unit).contains(guiWidget)) {
+            openMenus.put(guiWidget, new Pair<Stmt, SootMethod>(unit, context));
+          } else if (handler.getSubSignature().equals(MethodNames.onCreateContextMenuSubSig)
+                  || handler.getSubSignature().equals(MethodNames.viewOnCreateContextMenuSubSig)) {
+            for (NMenuNode openMenu : collectTargetMenu(unit)) {
               openMenus.put(openMenu, new Pair<Stmt, SootMethod>(unit, context));
             }
-            return stmtFilter.isDetectThenStop();
-          } else if (guiOutput.isExplicitShowOptionsMenuCall(unit)) {
-            if (guiOutput.explicitlyTriggeredOptionsMenus(unit).contains(
-                    guiWidget)) {
-              openMenus.put(guiWidget, new Pair<Stmt, SootMethod>(unit, context));
-            }
-            return stmtFilter.isDetectThenStop();
           }
-        }
-
-        if (stmtFilter.lookforShowDialog() && guiOutput.isDialogShow(unit)) {
-          showDialogStmts.put(unit, context);
+          return stmtFilter.isDetectThenStop();
+        } else if (guiOutput.isExplicitShowContextMenuCall(unit)) {
+          for (NMenuNode openMenu : guiOutput.explicitlyTriggeredContextMenus(unit)) {
+            openMenus.put(openMenu, new Pair<Stmt, SootMethod>(unit, context));
+          }
+          return stmtFilter.isDetectThenStop();
+        } else if (guiOutput.isExplicitShowOptionsMenuCall(unit)) {
+          if (guiOutput.explicitlyTriggeredOptionsMenus(unit).contains(
+                  guiWidget)) {
+            openMenus.put(guiWidget, new Pair<Stmt, SootMethod>(unit, context));
+          }
           return stmtFilter.isDetectThenStop();
         }
+      }
 
-        if (stmtFilter.lookforStartActivity()) {
-          if (wtgUtil.isStartActivityCall(unit)) {
-            startActivityStmts.put(unit, context);
-            return stmtFilter.isDetectThenStop();
-          } else if (wtgUtil.isSetIntentContentCall(unit)) {
+      if (stmtFilter.lookforShowDialog() && guiOutput.isDialogShow(unit)) {
+        showDialogStmts.put(unit, context);
+        return stmtFilter.isDetectThenStop();
+      }
+
+      if (stmtFilter.lookforStartActivity()) {
+        if (wtgUtil.isStartActivityCall(unit)) {
+          startActivityStmts.put(unit, context);
+          return stmtFilter.isDetectThenStop();
+        } else if (wtgUtil.isSetIntentContentCall(unit)) {
+          setIntentContentStmts.add(unit);
+          return false;
+        } else if (unit instanceof AssignStmt) {
+          Value rop = ((AssignStmt) unit).getRightOp();
+          if (wtgUtil.isCreateIntentCall(unit)) {
+            // this is because CreateIntentOpNode also sets intent
+            // content
             setIntentContentStmts.add(unit);
-            return false;
-          } else if (unit instanceof AssignStmt) {
-            Value rop = ((AssignStmt) unit).getRightOp();
-            if (wtgUtil.isCreateIntentCall(unit)) {
-              // this is because CreateIntentOpNode also sets intent
-              // content
-              setIntentContentStmts.add(unit);
+            newIntentStmts.add(unit);
+          } else if (rop instanceof NewExpr) {
+            SootClass c = ((NewExpr) rop).getBaseType().getSootClass();
+            if (wtgUtil.isIntentType(c)) {
               newIntentStmts.add(unit);
-            } else if (rop instanceof NewExpr) {
-              SootClass c = ((NewExpr) rop).getBaseType().getSootClass();
-              if (wtgUtil.isIntentType(c)) {
-                newIntentStmts.add(unit);
-              }
             }
-            return false;
           }
+          return false;
         }
-
-        return false;
       }
-    };
-    cfgTraversal.forwardTraversal(handler, visitedStmts, escapedStmts,
-            methodToCFG, filter, infeasibleEdges, infeasibleCalls);
-    if (stmtFilter.lookforStartActivity()) {
-      targetWindows.putAll(addStartActivityTarget(handler, guiWidget,
-              newIntentStmts, setIntentContentStmts, startActivityStmts));
-    }
-    if (stmtFilter.lookforShowDialog()) {
-      targetWindows.putAll(addShowDialogTarget(handler, guiWidget,
-              showDialogStmts));
-    }
-    if (stmtFilter.lookforOpenMenu()) {
-      targetWindows.putAll(openMenus);
-    }
-    if (stmtFilter.lookforFinishActivity()) {
-      targetWindows.putAll(terminatedActivities);
-    }
-    if (stmtFilter.lookforDismissDialog()) {
-      targetWindows.putAll(terminatedDialogs);
-    }
-    if (stmtFilter.lookforAcquireResource()) {
-      targetWindows.putAll(acquireResources);
-    }
-    if (stmtFilter.lookforReleaseResource()) {
-      targetWindows.putAll(releaseResources);
+
+      return false;
     }
-    UnitGraph handlerCFG = methodToCFG.get(handler);
-    boolean reachToExit = false;
-    for (Unit exitNode : handlerCFG.getTails()) {
-      if (visitedStmts.containsKey(exitNode)) {
-        reachToExit = true;
-        break;
+
+    CFGAnalyzerOutput collectResult(boolean reachToExit) {
+      final Multimap<NObjectNode, Pair<Stmt, SootMethod>> targetWindows = HashMultimap.create();
+      if (stmtFilter.lookforStartActivity()) {
+        targetWindows.putAll(addStartActivityTarget(handler, guiWidget,
+                newIntentStmts, setIntentContentStmts, startActivityStmts));
+      }
+      if (stmtFilter.lookforShowDialog()) {
+        targetWindows.putAll(addShowDialogTarget(handler, guiWidget,
+                showDialogStmts));
+      }
+      if (stmtFilter.lookforOpenMenu()) {
+        targetWindows.putAll(openMenus);
+      }
+      if (stmtFilter.lookforFinishActivity()) {
+        targetWindows.putAll(terminatedActivities);
+      }
+      if (stmtFilter.lookforDismissDialog()) {
+        targetWindows.putAll(terminatedDialogs);
       }
+      if (stmtFilter.lookforAcquireResource()) {
+        targetWindows.putAll(acquireResources);
+      }
+      if (stmtFilter.lookforReleaseResource()) {
+        targetWindows.putAll(releaseResources);
+      }
+      final CFGAnalyzerOutput analyzeResult = new CFGAnalyzerOutput();
+      analyzeResult.targets = targetWindows;
+      analyzeResult.avoid = reachToExit;
+      analyzeResult.exitSystem = exitSystem;
+      return analyzeResult;
     }
-
-//    Logger.verb("CFGAnalyzer", "End of analyzeCallbackMethod");
-    analyzeResult.targets = targetWindows;
-    analyzeResult.avoid = reachToExit;
-    return analyzeResult;
   }
 
   private void collectTargetMenuItemSetIntent(Stmt s) {
@@ -501,10 +537,9 @@ public class CFGAnalyzer {
     final Flowgraph fg = guiOutput.getFlowgraph();
     Map<Stmt, SootMethod> visitedStmts = Maps.newHashMap();
     Set<Stmt> escapedStmts = Sets.newHashSet();
-    Map<SootMethod, UnitGraph> methodToCFG = Maps.newHashMap();
     final Set<NDialogNode> targetDialogs = Sets.newHashSet();
     cfgTraversal.forwardTraversal(handler, visitedStmts, escapedStmts,
-            methodToCFG, new Filter<Stmt, SootMethod>() {
+            new Filter<Stmt, SootMethod>() {
               @Override
               public boolean match(Stmt unit, SootMethod context) {
                 NDialogNode dialog = fg.allNDialogNodes.get(unit);
@@ -0,0 +1,90 @@
+/*
+ * CFGCache.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui.wtg.analyzer;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import soot.SootMethod;
+import soot.Unit;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.UnitGraph;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Control flow graphs of methods, shared by all CFG traversals of all
+ * threads. Each graph is built once, the first time a traversal enters the
+ * method, and is only read afterwards.
+ */
+public class CFGCache {
+  public static class MethodCFG {
+    public final UnitGraph cfg;
+    public final List<Unit> heads;
+    // Set view of cfg.getTails(), which is a list
+    public final Set<Unit> tails;
+
+    MethodCFG(UnitGraph cfg) {
+      this.cfg = cfg;
+      this.heads = ImmutableList.copyOf(cfg.getHeads());
+      this.tails = ImmutableSet.copyOf(cfg.getTails());
+    }
+
+    public boolean isTail(Unit u) {
+      return tails.contains(u);
+    }
+  }
+
+  private static CFGCache instance;
+
+  private final ConcurrentMap<SootMethod, MethodCFG> methodToCFG = new ConcurrentHashMap<>();
+
+  // Statistics
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong builds = new AtomicLong();
+
+  public static synchronized CFGCache v() {
+    if (instance == null) {
+      instance = new CFGCache();
+    }
+    return instance;
+  }
+
+  private CFGCache() {
+  }
+
+  public MethodCFG get(SootMethod mtd) {
+    requests.incrementAndGet();
+    MethodCFG methodCFG = methodToCFG.get(mtd);
+    if (methodCFG == null) {
+      synchronized (mtd) {
+        // Another thread may have built it while we waited
+        methodCFG = methodToCFG.get(mtd);
+        if (methodCFG != null) {
+          return methodCFG;
+        }
+        methodCFG = new MethodCFG(new ExceptionalUnitGraph(mtd.retrieveActiveBody()));
+        methodToCFG.put(mtd, methodCFG);
+      }
+      builds.incrementAndGet();
+    }
+    return methodCFG;
+  }
+
+  public UnitGraph getCFG(SootMethod mtd) {
+    return get(mtd).cfg;
+  }
+
+  public String getStatistics() {
+    return "[CFGCache] requests: " + requests.get() + ", graphs built: " + builds.get();
+  }
+}
@@ -8,10 +8,11 @@
  */
 package presto.android.gui.wtg.analyzer;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
+import com.google.common.collect.Maps;
 import presto.android.Logger;
+import presto.android.gui.wtg.analyzer.CFGCache.MethodCFG;
 import presto.android.gui.wtg.flowgraph.AndroidCallGraph;
 import presto.android.gui.wtg.flowgraph.AndroidCallGraph.Edge;
 import presto.android.gui.wtg.util.Filter;
@@ -19,10 +20,10 @@ import presto.android.gui.wtg.util.WTGUtil;
 import soot.SootMethod;
 import soot.Unit;
 import soot.jimple.Stmt;
-import soot.toolkits.graph.ExceptionalUnitGraph;
 import soot.toolkits.graph.UnitGraph;
 
-import java.util.Collection;
+import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -32,6 +33,8 @@ public class CFGTraversal {
   private AndroidCallGraph cg = AndroidCallGraph.v();
   // wtg util
   private WTGUtil wtgUtil = WTGUtil.v();
+  // method CFGs, shared with all other traversals
+  private CFGCache cfgCache = CFGCache.v();
 
   private CFGTraversal() {
   }
@@ -40,150 +43,197 @@ public class CFGTraversal {
           SootMethod handler,
           Map<Stmt, SootMethod> visitedStmts,
           Set<Stmt> escapedStmts,
-          Map<SootMethod, UnitGraph> methodToCFG,
           Filter<Stmt, SootMethod> filter,
           HashMultimap<Stmt, Stmt> infeasibleEdges,
           HashMultimap<Stmt, SootMethod> infeasibleCalls) {
-    if (handler == null) {
-      Logger.err(getClass().getSimpleName(), "can not perform forward traversal since the handler is null");
-    }
-    List<Stmt> workingList = Lists.newArrayList();
-    UnitGraph handlerCFG = createOrGetCFG(methodToCFG, handler);
-    for (Unit entryNode : handlerCFG.getHeads()) {
-      propagate(visitedStmts, workingList, (Stmt) entryNode, handler);
+    List<Set<Stmt>> escapedByFilter = null;
+    if (escapedStmts != null) {
+      escapedByFilter = Collections.singletonList(escapedStmts);
     }
-    return traverse(workingList, visitedStmts, escapedStmts, methodToCFG,
-            filter, infeasibleEdges, infeasibleCalls);
+    return forwardTraversal(handler, Collections.singletonList(filter),
+            visitedStmts, Maps.<Stmt, Integer>newHashMap(), escapedByFilter,
+            infeasibleEdges, infeasibleCalls);
 //    return IfNullUtil.v().traverseWithIfFix(workingList, visitedStmts, Lists.<Stmt>newArrayList(), escapedStmts, methodToCFG,
 //            filter, infeasibleEdges, infeasibleCalls);
   }
 
-  private boolean traverse(
-          List<Stmt> workingList,
+  /**
+   * Traverses the ICFG from the handler once for several filters. Filter i
+   * owns bit i of the masks in reachedBy: a stmt carries the filters that
+   * reach it, and a filter that matches a stmt (detect-then-stop) is dropped
+   * from the successors only. The result for each filter is the same as a
+   * separate traversal with that filter. visitedStmts records the calling
+   * context of every stmt reached by any filter.
+   */
+  public boolean forwardTraversal(
+          SootMethod handler,
+          List<? extends Filter<Stmt, SootMethod>> filters,
           Map<Stmt, SootMethod> visitedStmts,
-          Set<Stmt> escapedStmts,
-          Map<SootMethod, UnitGraph> methodToCFG,
-          Filter<Stmt, SootMethod> filter,
+          Map<Stmt, Integer> reachedBy,
+          List<Set<Stmt>> escapedStmts,
           HashMultimap<Stmt, Stmt> infeasibleEdges,
           HashMultimap<Stmt, SootMethod> infeasibleCalls) {
-    boolean unexpected = false;
-    Set<SootMethod> visitedMethods = Sets.newHashSet();
-    while (!workingList.isEmpty()) {
-      Stmt currentStmt = workingList.remove(0);
-      SootMethod currentCxt = visitedStmts.get(currentStmt);
-      if (currentCxt == null) {
-        Logger.err(getClass().getSimpleName(), "can not find the calling context for stmt: "
-                + currentStmt);
-      }
-      if (wtgUtil.isIgnoredMethod(currentCxt)) {
-        continue;
-      }
-      if (filter.match(currentStmt, currentCxt)) {
-        if (escapedStmts != null) {
-          escapedStmts.add(currentStmt);
+    if (handler == null) {
+      Logger.err(getClass().getSimpleName(), "can not perform forward traversal since the handler is null");
+    }
+    Preconditions.checkArgument(!filters.isEmpty() && filters.size() <= Integer.SIZE,
+            "[Error]: can not traverse with %s filters", filters.size());
+    int allFilters = filters.size() == Integer.SIZE ? -1 : (1 << filters.size()) - 1;
+    Traversal traversal = new Traversal(filters, visitedStmts, reachedBy, escapedStmts,
+            infeasibleEdges, infeasibleCalls);
+    for (Unit entryNode : cfgCache.get(handler).heads) {
+      traversal.propagate((Stmt) entryNode, handler, allFilters);
+    }
+    return traversal.run();
+  }
+
+  // state of one (multi-filter) forward traversal
+  private class Traversal {
+    private final List<? extends Filter<Stmt, SootMethod>> filters;
+    private final Map<Stmt, SootMethod> visitedStmts;
+    private final Map<Stmt, Integer> reachedBy;
+    private final List<Set<Stmt>> escapedStmts;
+    private final HashMultimap<Stmt, Stmt> infeasibleEdges;
+    private final HashMultimap<Stmt, SootMethod> infeasibleCalls;
+    // filters that reached a stmt but were not processed there yet
+    private final Map<Stmt, Integer> pending = Maps.newHashMap();
+    private final ArrayDeque<Stmt> workingList = new ArrayDeque<>();
+    // method -> filters that reached its exit and returned to the callers
+    private final Map<SootMethod, Integer> visitedMethods = Maps.newHashMap();
+
+    Traversal(List<? extends Filter<Stmt, SootMethod>> filters,
+              Map<Stmt, SootMethod> visitedStmts,
+              Map<Stmt, Integer> reachedBy,
+              List<Set<Stmt>> escapedStmts,
+              HashMultimap<Stmt, Stmt> infeasibleEdges,
+              HashMultimap<Stmt, SootMethod> infeasibleCalls) {
+      this.filters = filters;
+      this.visitedStmts = visitedStmts;
+      this.reachedBy = reachedBy;
+      this.escapedStmts = escapedStmts;
+      this.infeasibleEdges = infeasibleEdges;
+      this.infeasibleCalls = infeasibleCalls;
+    }
+
+    boolean run() {
+      boolean unexpected = false;
+      while (!workingList.isEmpty()) {
+        Stmt currentStmt = workingList.poll();
+        int live = pending.remove(currentStmt);
+        SootMethod currentCxt = visitedStmts.get(currentStmt);
+        if (currentCxt == null) {
+          Logger.err(CFGTraversal.class.getSimpleName(), "can not find the calling context for stmt: "
+                  + currentStmt);
         }
-        continue;
-      }
-      UnitGraph currentCFG = createOrGetCFG(methodToCFG, currentCxt);
-      // switch case for 3 conditions
-      // case 1: currentStmt is not a call and not exit of cfg
-      if (!currentStmt.containsInvokeExpr()
-              && !currentCFG.getTails().contains(currentStmt)) {
-        Collection<Unit> success = currentCFG.getSuccsOf(currentStmt);
-        for (Unit succ : success) {
-          Set<Stmt> tgts = infeasibleEdges.get(currentStmt);
-          if (tgts != null && tgts.contains(succ)) {
-            continue;
-          }
-          propagate(visitedStmts, workingList, (Stmt) succ, currentCxt);
+        if (wtgUtil.isIgnoredMethod(currentCxt)) {
+          continue;
         }
-      }
-      // case 2: currentStmt is a call but not a call to
-      // startActivity/showDialog/etc.
-      else if (currentStmt.containsInvokeExpr()) {
-        Set<Edge> outgoings = cg.getEdge(currentStmt);
-        Set<SootMethod> infeasibleCallees = infeasibleCalls.get(currentStmt);
-        boolean findTarget = false;
-        for (Edge outgoing : outgoings) {
-          SootMethod target = outgoing.target;
-          if (infeasibleCallees.contains(target)) {
-            // we need to ignore analyzing callee
-            continue;
-          }
-          if (target.getDeclaringClass().isApplicationClass()
-                  && target.isConcrete()) {
-            findTarget = true;
-            UnitGraph tgtCFG = createOrGetCFG(methodToCFG, target);
-            for (Unit entryNode : tgtCFG.getHeads()) {
-              propagate(visitedStmts, workingList, (Stmt) entryNode, target);
-            }
-            if (visitedMethods.contains(target)) {
-              for (Unit succ : currentCFG.getSuccsOf(currentStmt)) {
-                Set<Stmt> tgts = infeasibleEdges.get(currentStmt);
-                if (tgts != null && tgts.contains(succ)) {
-                  continue;
-                }
-                propagate(visitedStmts, workingList, (Stmt) succ, currentCxt);
-              }
+        for (int i = 0; i < filters.size(); i++) {
+          int bit = 1 << i;
+          if ((live & bit) != 0 && filters.get(i).match(currentStmt, currentCxt)) {
+            if (escapedStmts != null) {
+              escapedStmts.get(i).add(currentStmt);
             }
+            live &= ~bit;
           }
         }
-        // if the target can not be found, then we conservatively think there is
-        // no transition
-        if (!findTarget) {
-          for (Unit succ : currentCFG.getSuccsOf(currentStmt)) {
-            Set<Stmt> tgts = infeasibleEdges.get(currentStmt);
-            if (tgts != null && tgts.contains(succ)) {
+        if (live == 0) {
+          continue;
+        }
+        MethodCFG currentMethodCFG = cfgCache.get(currentCxt);
+        UnitGraph currentCFG = currentMethodCFG.cfg;
+        // switch case for 3 conditions
+        // case 1: currentStmt is not a call and not exit of cfg
+        if (!currentStmt.containsInvokeExpr()
+                && !currentMethodCFG.isTail(currentStmt)) {
+          propagateToSuccs(currentCFG, currentStmt, currentCxt, live);
+        }
+        // case 2: currentStmt is a call but not a call to
+        // startActivity/showDialog/etc.
+        else if (currentStmt.containsInvokeExpr()) {
+          Set<Edge> outgoings = cg.getEdge(currentStmt);
+          Set<SootMethod> infeasibleCallees = infeasibleCalls.get(currentStmt);
+          boolean findTarget = false;
+          for (Edge outgoing : outgoings) {
+            SootMethod target = outgoing.target;
+            if (infeasibleCallees.contains(target)) {
+              // we need to ignore analyzing callee
               continue;
             }
-            propagate(visitedStmts, workingList, (Stmt) succ, currentCxt);
+            if (target.getDeclaringClass().isApplicationClass()
+                    && target.isConcrete()) {
+              findTarget = true;
+              for (Unit entryNode : cfgCache.get(target).heads) {
+                propagate((Stmt) entryNode, target, live);
+              }
+              int returned = live & bits(visitedMethods, target);
+              if (returned != 0) {
+                propagateToSuccs(currentCFG, currentStmt, currentCxt, returned);
+              }
+            }
+          }
+          // if the target can not be found, then we conservatively think there is
+          // no transition
+          if (!findTarget) {
+            propagateToSuccs(currentCFG, currentStmt, currentCxt, live);
           }
         }
-      }
-      // case 3: currentStmt is the exit point and callingContext is not in
-      // visitedMethods
-      else if (currentCFG.getTails().contains(currentStmt)
-              && !visitedMethods.contains(currentCxt)) {
-        visitedMethods.add(currentCxt);
-        createOrGetCFG(methodToCFG, currentCxt);
-        Set<Edge> incomings = cg.getIncomingEdges(currentCxt);
-        for (Edge e : incomings) {
-          Stmt caller = e.callSite;
-          if (visitedStmts.containsKey(caller)) {
-            SootMethod callerCxt = visitedStmts.get(caller);
-            UnitGraph callerCFG = createOrGetCFG(methodToCFG, callerCxt);
-            for (Unit succ : callerCFG.getSuccsOf(caller)) {
-              Set<Stmt> tgts = infeasibleEdges.get(caller);
-              if (tgts != null && tgts.contains(succ)) {
-                continue;
-              }
-              propagate(visitedStmts, workingList, (Stmt) succ, callerCxt);
+        // case 3: currentStmt is the exit point and callingContext is not in
+        // visitedMethods
+        else if (currentMethodCFG.isTail(currentStmt)) {
+          int returning = live & ~bits(visitedMethods, currentCxt);
+          if (returning == 0) {
+            continue;
+          }
+          visitedMethods.put(currentCxt, bits(visitedMethods, currentCxt) | returning);
+          Set<Edge> incomings = cg.getIncomingEdges(currentCxt);
+          for (Edge e : incomings) {
+            Stmt caller = e.callSite;
+            int callerFilters = returning & bits(reachedBy, caller);
+            if (callerFilters != 0) {
+              SootMethod callerCxt = visitedStmts.get(caller);
+              UnitGraph callerCFG = cfgCache.getCFG(callerCxt);
+              propagateToSuccs(callerCFG, caller, callerCxt, callerFilters);
             }
           }
         }
       }
+      return unexpected;
     }
-    return unexpected;
-  }
 
-  private void propagate(Map<Stmt, SootMethod> visitedStmts,
-                         List<Stmt> workingList, Stmt s, SootMethod cxt) {
-    if (!visitedStmts.containsKey(s)) {
-      visitedStmts.put(s, cxt);
-      workingList.add(s);
+    private void propagateToSuccs(UnitGraph cfg, Stmt s, SootMethod cxt, int filterBits) {
+      Set<Stmt> tgts = infeasibleEdges.get(s);
+      for (Unit succ : cfg.getSuccsOf(s)) {
+        if (tgts != null && tgts.contains(succ)) {
+          continue;
+        }
+        propagate((Stmt) succ, cxt, filterBits);
+      }
     }
-  }
 
-  private UnitGraph createOrGetCFG(Map<SootMethod, UnitGraph> methodToCFG,
-                                   SootMethod mtd) {
-    UnitGraph cfg = methodToCFG.get(mtd);
-    if (cfg == null) {
-      synchronized (mtd) {
-        cfg = new ExceptionalUnitGraph(mtd.retrieveActiveBody());
+    private void propagate(Stmt s, SootMethod cxt, int filterBits) {
+      int reached = bits(reachedBy, s);
+      int newBits = reached == 0 ? filterBits : 0;
+      if (newBits == 0) {
+        return;
+      }
+      reachedBy.put(s, reached | newBits);
+      if (!visitedStmts.containsKey(s)) {
+        visitedStmts.put(s, cxt);
+      }
+      Integer queued = pending.get(s);
+      if (queued == null) {
+        pending.put(s, newBits);
+        workingList.add(s);
+      } else {
+        pending.put(s, queued | newBits);
       }
-      methodToCFG.put(mtd, cfg);
     }
-    return cfg;
+  }
+
+  private static <K> int bits(Map<K, Integer> masks, K key) {
+    Integer mask = masks.get(key);
+    return mask == null ? 0 : mask;
   }
 
   public static synchronized CFGTraversal v() {
@@ -27,7 +27,6 @@ import presto.android.gui.wtg.util.QueryHelper;
 import presto.android.gui.wtg.util.WTGUtil;
 import soot.*;
 import soot.jimple.*;
-import soot.toolkits.graph.ExceptionalUnitGraph;
 import soot.toolkits.graph.UnitGraph;
 
 import java.util.*;
@@ -42,6 +41,10 @@ public class ConstantAnalysis {
   private FlowgraphRebuilder rebuilder;
   private Map<Local, Object> constSolution;
   private Multimap<Local, Local> jumpSolution; // local flow-to set
+  // results not yet published to VarUtil; see publishResults()
+  private final Map<Pair<NObjectNode, SootMethod>, HashMultimap<Stmt, Stmt>> infeasibleEdgesBuffer;
+  private final Map<Pair<NObjectNode, SootMethod>, HashMultimap<Stmt, SootMethod>> infeasibleCallsBuffer;
+  private final Set<NObjectNode> widgetBuffer;
   // utils
   private Hierarchy hier = Hierarchy.v();
   private QueryHelper queryHelper = QueryHelper.v();
@@ -54,6 +57,9 @@ public class ConstantAnalysis {
     rebuilder = r;
     constSolution = Maps.newHashMap();
     jumpSolution = HashMultimap.create();
+    infeasibleEdgesBuffer = Maps.newHashMap();
+    infeasibleCallsBuffer = Maps.newHashMap();
+    widgetBuffer = Sets.newHashSet();
   }
 
   public ConstantAnalysis(ConstantAnalysis another) {
@@ -61,6 +67,25 @@ public class ConstantAnalysis {
     rebuilder = another.rebuilder;
     constSolution = Maps.newHashMap();
     jumpSolution = HashMultimap.create();
+    // a copy is used by the thread of the original
+    infeasibleEdgesBuffer = another.infeasibleEdgesBuffer;
+    infeasibleCallsBuffer = another.infeasibleCallsBuffer;
+    widgetBuffer = another.widgetBuffer;
+  }
+
+  /**
+   * Moves the results of doAnalysis() into the VarUtil maps. An analysis is
+   * confined to one thread, so its results are buffered and published once,
+   * when the thread is done with it.
+   */
+  public void publishResults() {
+    VarUtil varUtil = VarUtil.v();
+    varUtil.widgetSet.addAll(widgetBuffer);
+    varUtil.infeasibleEdgesMap.putAll(infeasibleEdgesBuffer);
+    varUtil.infeasibleCallsMap.putAll(infeasibleCallsBuffer);
+    widgetBuffer.clear();
+    infeasibleEdgesBuffer.clear();
+    infeasibleCallsBuffer.clear();
   }
 
   // this API is provided for GUI object constant propagation
@@ -69,13 +94,13 @@ public class ConstantAnalysis {
                          HashMultimap<Stmt, SootMethod> infeasibleCalls) {
 
     //Debug begin
-    VarUtil.v().widgetSet.add(guiObject);
+    widgetBuffer.add(guiObject);
 
     //Debug end
     //New feature
     Pair<NObjectNode, SootMethod> key = new Pair<NObjectNode, SootMethod>(guiObject, handler);
-    VarUtil.v().infeasibleEdgesMap.put(key, infeasibleEdges);
-    VarUtil.v().infeasibleCallsMap.put(key, infeasibleCalls);
+    infeasibleEdgesBuffer.put(key, infeasibleEdges);
+    infeasibleCallsBuffer.put(key, infeasibleCalls);
     //End new feature
 
     reset();
@@ -335,12 +360,8 @@ public class ConstantAnalysis {
       int currentDepth = methodDepth.remove(0);
       if (currentDepth == depth)
         continue;
-      Body body = null;
-      UnitGraph cfg = null;
-      synchronized (mtd) {
-        body = mtd.retrieveActiveBody();
-        cfg = new ExceptionalUnitGraph(body);
-      }
+      UnitGraph cfg = CFGCache.v().getCFG(mtd);
+      Body body = cfg.getBody();
       Iterator<Unit> stmts = body.getUnits().iterator();
       while (stmts.hasNext()) {
         Stmt s = (Stmt) stmts.next();
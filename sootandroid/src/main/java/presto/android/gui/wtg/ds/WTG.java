@@ -24,6 +24,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -39,6 +40,8 @@ public class WTG {
   private Map<WTGNode, WTGComponent> allComponents;
   // map from forward edge to back edge
   private Multimap<WTGEdge, WTGEdge> backEdgeMap;
+  // reverse of backEdgeMap: map from back edge to forward edge
+  private Multimap<WTGEdge, WTGEdge> forwardEdgeMap;
   // map from EventHandlerSig to event handler
   private Map<EventHandlerSig, EventHandler> allHandlers;
   // map from window back to owners
@@ -50,6 +53,7 @@ public class WTG {
     allComponents = Maps.newHashMap();
     allHandlers = Maps.newHashMap();
     backEdgeMap = HashMultimap.create();
+    forwardEdgeMap = HashMultimap.create();
   }
 
   public WTGNode addNode(NObjectNode objNode) {
@@ -90,24 +94,19 @@ public class WTG {
   }
 
   public WTGEdge removeEdge(WTGEdge e) {
-    if (!allEdges.containsKey(e.getSig())) {
+    // remove this edge from edge set
+    if (allEdges.remove(e.getSig()) == null) {
       return null;
     }
-    // remove this edge from edge set
-    allEdges.remove(e.getSig());
     // remove the pair back edge
-    backEdgeMap.removeAll(e);
+    for (WTGEdge back : backEdgeMap.removeAll(e)) {
+      forwardEdgeMap.remove(back, e);
+    }
     // remove the inEdge and outEdge
     e.getSourceNode().removeOutEdge(e);
     e.getTargetNode().removeInEdge(e);
     // if it is back edge, remove the corresponding pair relationship
-    Set<WTGEdge> toRemoveForwardEdges = Sets.newHashSet();
-    for (WTGEdge forward : backEdgeMap.keySet()) {
-      if (backEdgeMap.get(forward).contains(e)) {
-        toRemoveForwardEdges.add(forward);
-      }
-    }
-    for (WTGEdge forward : toRemoveForwardEdges) {
+    for (WTGEdge forward : forwardEdgeMap.removeAll(e)) {
       backEdgeMap.remove(forward, e);
     }
     return e;
@@ -135,6 +134,7 @@ public class WTG {
     if (allEdges.containsKey(forwardEdge.getSig())
             && allEdges.containsKey(backEdge.getSig())) {
       backEdgeMap.put(forwardEdge, backEdge);
+      forwardEdgeMap.put(backEdge, forwardEdge);
     }
   }
 
@@ -142,10 +142,11 @@ public class WTG {
     Preconditions.checkNotNull(forwardEdge);
     Preconditions.checkNotNull(backEdge);
     backEdgeMap.remove(forwardEdge, backEdge);
+    forwardEdgeMap.remove(backEdge, forwardEdge);
   }
 
   public Collection<WTGEdge> getBackEdge(WTGEdge forwardEdge) {
-    return backEdgeMap.get(forwardEdge);
+    return Collections.unmodifiableCollection(backEdgeMap.get(forwardEdge));
   }
 
   public void generateComponents() {
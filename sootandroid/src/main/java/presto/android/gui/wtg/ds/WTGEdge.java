@@ -9,6 +9,7 @@
 package presto.android.gui.wtg.ds;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -23,11 +24,20 @@ import soot.SootMethod;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class WTGEdge {
+  private static final AtomicInteger nextId = new AtomicInteger();
+  // interned handler sets: edges with equal handler sets get the same id
+  private static final ConcurrentMap<Set<EventHandler>, Integer> handlerSetIds = Maps.newConcurrentMap();
+  private static final AtomicInteger nextHandlerSetId = new AtomicInteger();
+  // dense id, e.g., the index of the edge in per-edge int arrays
+  private final int id;
   private final WTGNode srcNode;
   private final WTGNode tgtNode;
   private final Set<EventHandler> handlers;
+  private final int handlerSetId;
   // show the reason why this edge is created
   // note: an edge may open/close several windows
   // field "root" only provides the most recent reason
@@ -37,6 +47,8 @@ public class WTGEdge {
   private final List<EventHandler> callbacks;
   // window stack operations
   private final List<StackOperation> stackOps;
+  // structural hash of the signature, computed once as the edge is immutable
+  private final int sigHash;
 
   public WTGEdge(
           final WTGNode srcNode,
@@ -71,7 +83,27 @@ public class WTGEdge {
     this.root = root;
     this.stackOps = Lists.newArrayList(stackOps);
     this.callbacks = Lists.newArrayList(callbacks);
+    this.handlerSetId = internHandlers(this.handlers);
+    this.sigHash = 31 * (31 * (31 * (31 * srcNode.getId() + tgtNode.getId())
+            + root.ordinal()) + handlerSetId) + this.stackOps.hashCode();
     this.sig = new WTGEdgeSig();
+    this.id = nextId.getAndIncrement();
+  }
+
+  private static int internHandlers(Set<EventHandler> handlers) {
+    Integer setId = handlerSetIds.get(handlers);
+    if (setId == null) {
+      Integer newId = nextHandlerSetId.getAndIncrement();
+      setId = handlerSetIds.putIfAbsent(ImmutableSet.copyOf(handlers), newId);
+      if (setId == null) {
+        setId = newId;
+      }
+    }
+    return setId;
+  }
+
+  public int getId() {
+    return this.id;
   }
 
   public List<EventHandler> getCallbacks() {
@@ -289,20 +321,25 @@ public class WTGEdge {
 
     @Override
     public int hashCode() {
-      return srcNode.hashCode() + tgtNode.hashCode() + root.hashCode();
+      return sigHash;
     }
 
     @Override
     public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
       if (!(o instanceof WTGEdgeSig)) {
         return false;
       }
-      WTGEdgeSig another = (WTGEdgeSig) o;
-      return srcNode == another.getSourceNode()
-              && tgtNode == another.getTargetNode()
-              && root == another.getRootTag()
-              && handlers.equals(another.getWTGHandlers())
-              && stackOps.equals(another.getStackOps());
+      WTGEdge another = ((WTGEdgeSig) o).getEdge();
+      // equal handler sets have the same interned id
+      return sigHash == another.sigHash
+              && srcNode == another.srcNode
+              && tgtNode == another.tgtNode
+              && root == another.root
+              && handlerSetId == another.handlerSetId
+              && stackOps.equals(another.stackOps);
     }
 
     @Override
@@ -9,38 +9,35 @@
 package presto.android.gui.wtg.ds;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import presto.android.gui.graph.NObjectNode;
 
 import java.util.Collection;
-import java.util.List;
+import java.util.Set;
 
 public class WTGNode {
   private static int ID_COUNT = 0;
   private final int id;
   private final NObjectNode window;
-  private List<WTGEdge> incomingEdges;
-  private List<WTGEdge> outgoingEdges;
+  // insertion ordered, with constant time lookup and removal
+  private Set<WTGEdge> incomingEdges;
+  private Set<WTGEdge> outgoingEdges;
 
   public WTGNode(final NObjectNode window) {
     this.window = window;
-    incomingEdges = Lists.newArrayList();
-    outgoingEdges = Lists.newArrayList();
+    incomingEdges = Sets.newLinkedHashSet();
+    outgoingEdges = Sets.newLinkedHashSet();
     id = ++ID_COUNT;
   }
 
   public void addOutEdge(final WTGEdge out) {
     Preconditions.checkNotNull(out);
-    if (!outgoingEdges.contains(out)) {
-      outgoingEdges.add(out);
-    }
+    outgoingEdges.add(out);
   }
 
   public void addInEdge(final WTGEdge in) {
     Preconditions.checkNotNull(in);
-    if (!incomingEdges.contains(in)) {
-      incomingEdges.add(in);
-    }
+    incomingEdges.add(in);
   }
 
   public WTGEdge removeOutEdge(final WTGEdge out) {
@@ -50,6 +50,9 @@ public class AndroidCallGraph {
   // callsite -> <callee, edge>
   private Map<Stmt, Map<SootMethod, Edge>> allEdges;
 
+  // Set once the graph is complete; it is then shared by concurrent readers
+  private volatile boolean frozen = false;
+
   private static AndroidCallGraph theInstance;
 
   private AndroidCallGraph() {
@@ -92,6 +95,7 @@ public class AndroidCallGraph {
     Preconditions.checkNotNull(source);
     Preconditions.checkNotNull(target);
     Preconditions.checkNotNull(callSite);
+    Preconditions.checkState(!frozen, "[Error]: call graph is frozen, cannot add edge at %s", callSite);
     Map<SootMethod, Edge> calleeToEdge = this.allEdges.get(callSite);
     if (calleeToEdge == null) {
       calleeToEdge = Maps.newHashMap();
@@ -118,6 +122,13 @@ public class AndroidCallGraph {
     return e;
   }
 
+  /**
+   * No edges can be added afterwards.
+   */
+  public void freeze() {
+    frozen = true;
+  }
+
   public Set<Edge> getOutgoingEdges(SootMethod source) {
     Node current = this.sm2nodeMap.get(source);
     // don't forget the boundary edge (app,library)
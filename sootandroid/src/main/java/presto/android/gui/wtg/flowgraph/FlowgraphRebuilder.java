@@ -29,6 +29,7 @@ import soot.*;
 import soot.jimple.*;
 import soot.toolkits.scalar.Pair;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -252,7 +253,7 @@ public class FlowgraphRebuilder {
       SootMethod caller = jimpleUtil.lookup(s);
       Set<NObjectNode> bindNodes = stmtToThreadEntry.getValue();
       if (bindNodes == null || bindNodes.isEmpty()) {
-        Logger.verb(getClass().getSimpleName(), "can not find thread node for stmt: " + s);
+        Logger.verb(getClass().getSimpleName(), "can not find thread node for stmt: {}", s);
         continue;
       }
       for (NObjectNode bindNode : bindNodes) {
@@ -310,7 +311,7 @@ public class FlowgraphRebuilder {
       for (Stmt src : writes) {
         Integer srcPos = wtgUtil.getWriteContainerField(src);
         if (srcPos == null) {
-          Logger.verb(getClass().getSimpleName(), "the target of write container stmt can not be found: " + src);
+          Logger.verb(getClass().getSimpleName(), "the target of write container stmt can not be found: {}", src);
           continue;
         }
         NNode sn = null;
@@ -325,7 +326,7 @@ public class FlowgraphRebuilder {
         for (Stmt tgt : reads) {
           Integer tgtPos = wtgUtil.getReadContainerField(tgt);
           if (tgtPos == null) {
-            Logger.verb(getClass().getSimpleName(), "the target of read container stmt can not be found: " + tgt);
+            Logger.verb(getClass().getSimpleName(), "the target of read container stmt can not be found: {}", tgt);
             continue;
           }
           NNode tn = null;
@@ -553,7 +554,7 @@ public class FlowgraphRebuilder {
       NNode argNode = simpleNode(arg);
       if (argNode == null) {
         if (!(arg instanceof NullConstant)) {
-          Logger.verb(getClass().getSimpleName(), "we can not find the NNode for the " + idx + "'th arg for stmt: " + s);
+          Logger.verb(getClass().getSimpleName(), "we can not find the NNode for the {}'th arg for stmt: {}", idx, s);
         }
         continue;
       }
@@ -595,7 +596,7 @@ public class FlowgraphRebuilder {
       NNode argNode = simpleNode(arg);
       if (argNode == null) {
         if (!(arg instanceof NullConstant)) {
-          Logger.verb(getClass().getSimpleName(), "we can not find the NNode for the " + idx + "'th arg for stmt: " + s);
+          Logger.verb(getClass().getSimpleName(), "we can not find the NNode for the {}'th arg for stmt: {}", idx, s);
         }
         continue;
       }
@@ -1082,6 +1083,8 @@ public class FlowgraphRebuilder {
   private void build() {
     rebuildFlow();
     postBuildFlow();
+    // the call graph is only read by the (concurrent) analyses that follow
+    callgraph.freeze();
   }
 
   private void collectAsyncRelatedStmts(SootMethod currentMethod, Stmt s) {
@@ -1106,11 +1109,11 @@ public class FlowgraphRebuilder {
   }
 
   public List<Pair<Stmt, SootMethod>> getAsyncStmts() {
-    return asyncStmts;
+    return Collections.unmodifiableList(asyncStmts);
   }
 
   public List<Pair<Stmt, SootMethod>> getHandlerInitStmts() {
-    return handlerInitStmts;
+    return Collections.unmodifiableList(handlerInitStmts);
   }
 
   public Pair<NVarNode, NVarNode> getMenuItemAndTargetAt(Stmt s) {
@@ -25,7 +25,7 @@ public class NGetClassOpNode extends NOpNode {
 
   @Override
   public NVarNode getReceiver() {
-    return (NVarNode) this.pred.get(0);
+    return (NVarNode) this.predecessor(0);
   }
 
   @Override
@@ -45,6 +45,6 @@ public class NGetClassOpNode extends NOpNode {
 
   @Override
   public NVarNode getLhs() {
-    return (NVarNode) this.succ.get(0);
+    return (NVarNode) this.successor(0);
   }
 }
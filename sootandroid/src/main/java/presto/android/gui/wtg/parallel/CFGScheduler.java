@@ -9,87 +9,126 @@
 package presto.android.gui.wtg.parallel;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import presto.android.Configs;
-import presto.android.Logger;
+import com.google.common.collect.Sets;
 import presto.android.gui.GUIAnalysisOutput;
+import presto.android.gui.graph.NObjectNode;
+import presto.android.gui.wtg.analyzer.CFGAnalyzer;
 import presto.android.gui.wtg.analyzer.CFGAnalyzerInput;
 import presto.android.gui.wtg.analyzer.CFGAnalyzerOutput;
 import presto.android.gui.wtg.flowgraph.FlowgraphRebuilder;
+import presto.android.gui.wtg.util.Filter;
+import soot.SootMethod;
+import soot.jimple.Stmt;
+import soot.toolkits.scalar.Pair;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+/**
+ * Runs the CFG analyses of callbacks on the shared TaskExecutor pool.
+ * <p>
+ * Inputs with the same (widget, handler) are analyzed by one traversal that
+ * evaluates all their filters. The outputs are kept, so a scheduler shared
+ * by several WTG stages analyzes every input once. When a callback is
+ * analyzed, the prefetch filters are evaluated in the same traversal, for
+ * the inputs later stages will ask for.
+ */
 public class CFGScheduler {
   public CFGScheduler(
           GUIAnalysisOutput guiOutput,
           FlowgraphRebuilder flowgraphRebuilder) {
+    this(guiOutput, flowgraphRebuilder, Collections.<Filter<Stmt, SootMethod>>emptyList());
+  }
+
+  public CFGScheduler(
+          GUIAnalysisOutput guiOutput,
+          FlowgraphRebuilder flowgraphRebuilder,
+          List<Filter<Stmt, SootMethod>> prefetchFilters) {
     Preconditions.checkNotNull(guiOutput, "[Error]: guiOutput initialization parameter is null");
     Preconditions.checkNotNull(flowgraphRebuilder, "[Error]: flowgraph rebuilder initialization parameter is null");
+    Preconditions.checkNotNull(prefetchFilters, "[Error]: prefetch filters initialization parameter is null");
     this.guiOutput = guiOutput;
     this.flowgraphRebuilder = flowgraphRebuilder;
-    this.workerPool = new ArrayBlockingQueue<CFGWorker>(Configs.workerNum);
-    initializeScheduler();
-    Logger.verb("CFGScheduler", "initializeScheduler");
-  }
-
-  private void initializeScheduler() {
-    for (int i = 0; i < Configs.workerNum; i++) {
-      try {
-        workerPool.put(new CFGWorker(this, guiOutput, flowgraphRebuilder));
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-      }
-    }
+    this.prefetchFilters = ImmutableList.copyOf(prefetchFilters);
   }
 
   public Map<CFGAnalyzerInput, CFGAnalyzerOutput> schedule(Set<CFGAnalyzerInput> inputs) {
     // the underline idea is to parallelise analyzeCallbackMethod
     // and leave the rest executed in sequence
+    Map<Pair<NObjectNode, SootMethod>, Set<Filter<Stmt, SootMethod>>> callbacks = Maps.newLinkedHashMap();
     for (CFGAnalyzerInput input : inputs) {
-      //Logger.verb("CFGScheduler", "Start thread for input: "+input.toString());
-      CFGWorker worker = null;
-      try {
-        worker = workerPool.take();
-      } catch (InterruptedException e) {
-        e.printStackTrace();
+      Preconditions.checkNotNull(input, "[Error]: cfg analyzer input is null");
+      if (results.containsKey(input)) {
+        continue;
       }
-      if (worker == null) {
-        Logger.err(getClass().getSimpleName(), "can not grab existing worker to do task");
+      Pair<NObjectNode, SootMethod> callback = new Pair<>(input.widget, input.handler);
+      Set<Filter<Stmt, SootMethod>> filters = callbacks.get(callback);
+      if (filters == null) {
+        filters = Sets.newLinkedHashSet();
+        callbacks.put(callback, filters);
       }
-      // set the work to do + the input data
-      worker.setTask(input);
-      // start new thread to do this job
-      new Thread(worker).start();
+      filters.add(input.stmtFilter);
     }
-    // wait every thread to finish
-    while (workerPool.size() != Configs.workerNum) {
-      try {
-        Thread.sleep(500);
-      } catch (InterruptedException e) {
-        e.printStackTrace();
+    final Map<Pair<NObjectNode, SootMethod>, List<Filter<Stmt, SootMethod>>> tasks = Maps.newLinkedHashMap();
+    for (Map.Entry<Pair<NObjectNode, SootMethod>, Set<Filter<Stmt, SootMethod>>> entry : callbacks.entrySet()) {
+      Pair<NObjectNode, SootMethod> callback = entry.getKey();
+      Set<Filter<Stmt, SootMethod>> filters = entry.getValue();
+      for (Filter<Stmt, SootMethod> prefetch : prefetchFilters) {
+        if (!results.containsKey(new CFGAnalyzerInput(callback.getO1(), callback.getO2(), prefetch))) {
+          filters.add(prefetch);
+        }
       }
+      tasks.put(callback, Lists.newArrayList(filters));
     }
-    Map<CFGAnalyzerInput, CFGAnalyzerOutput> aggregateOutput = Maps.newHashMap();
-    // aggregate the output from all the threads
-    for (CFGWorker worker : workerPool) {
-      Map<CFGAnalyzerInput, CFGAnalyzerOutput> partialOutput = worker.getOutput();
-      for (CFGAnalyzerInput input : partialOutput.keySet()) {
-        if (aggregateOutput.containsKey(input)) {
-          Logger.err(getClass().getSimpleName(), "cfg analyzer input has been processed: " + input);
-        }
-        //Logger.verb("CFGScheduler", "Get output of work for input: "+input.toString());
-        CFGAnalyzerOutput output = partialOutput.get(input);
-        aggregateOutput.put(input, output);
+    Map<Pair<NObjectNode, SootMethod>, List<CFGAnalyzerOutput>> outputs = TaskExecutor.invokeAll(
+            getClass().getSimpleName(), tasks.keySet(),
+            new TaskExecutor.Task<Pair<NObjectNode, SootMethod>, List<CFGAnalyzerOutput>>() {
+              @Override
+              public List<CFGAnalyzerOutput> run(Pair<NObjectNode, SootMethod> callback) {
+                return analyzers.get().analyzeCallbackMethod(
+                        callback.getO1(), callback.getO2(), tasks.get(callback));
+              }
+            });
+    // all workers are done: merge what the analyzers buffered
+    for (CFGAnalyzer analyzer : allAnalyzers) {
+      analyzer.publishResults();
+    }
+    for (Map.Entry<Pair<NObjectNode, SootMethod>, List<CFGAnalyzerOutput>> entry : outputs.entrySet()) {
+      Pair<NObjectNode, SootMethod> callback = entry.getKey();
+      List<Filter<Stmt, SootMethod>> filters = tasks.get(callback);
+      List<CFGAnalyzerOutput> callbackOutputs = entry.getValue();
+      for (int i = 0; i < filters.size(); i++) {
+        results.put(new CFGAnalyzerInput(callback.getO1(), callback.getO2(), filters.get(i)),
+                callbackOutputs.get(i));
       }
     }
-    return aggregateOutput;
+    Map<CFGAnalyzerInput, CFGAnalyzerOutput> requested = Maps.newHashMapWithExpectedSize(inputs.size());
+    for (CFGAnalyzerInput input : inputs) {
+      requested.put(input, results.get(input));
+    }
+    return requested;
   }
 
-  // thread pool
-  final BlockingQueue<CFGWorker> workerPool;
+  // one cfg analyzer per worker thread, as the analyzers are not thread safe
+  private final ThreadLocal<CFGAnalyzer> analyzers = new ThreadLocal<CFGAnalyzer>() {
+    @Override
+    protected CFGAnalyzer initialValue() {
+      CFGAnalyzer analyzer = new CFGAnalyzer(guiOutput, flowgraphRebuilder);
+      allAnalyzers.add(analyzer);
+      return analyzer;
+    }
+  };
+  private final Queue<CFGAnalyzer> allAnalyzers = new ConcurrentLinkedQueue<>();
+  // outputs of all scheduled (and prefetched) inputs
+  private final Map<CFGAnalyzerInput, CFGAnalyzerOutput> results = Maps.newConcurrentMap();
+  private final List<Filter<Stmt, SootMethod>> prefetchFilters;
   private final GUIAnalysisOutput guiOutput;
   private final FlowgraphRebuilder flowgraphRebuilder;
 }
@@ -0,0 +1,183 @@
+/*
+ * TaskExecutor.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui.wtg.parallel;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import presto.android.Configs;
+import presto.android.Logger;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Work-stealing execution of the independent tasks of WTG construction,
+ * e.g., one CFG analysis per callback or one edge per stage algorithm run.
+ * <p>
+ * All batches share one ForkJoinPool with Configs.workerNum threads. A task
+ * may submit and wait for a nested batch: the waiting worker runs pending
+ * tasks instead of blocking. If a task throws, the exception is reported
+ * with its input, the other tasks still run, and await() rethrows the first
+ * failure once the batch is complete.
+ */
+public class TaskExecutor {
+  private static final String TAG = TaskExecutor.class.getSimpleName();
+
+  public interface Task<I, O> {
+    O run(I input);
+  }
+
+  private static ForkJoinPool pool;
+
+  private static synchronized ForkJoinPool pool() {
+    if (pool == null) {
+      pool = new ForkJoinPool(Math.max(1, Configs.workerNum));
+    }
+    return pool;
+  }
+
+  /**
+   * Runs the task on every input and waits for all of them.
+   */
+  public static <I, O> Map<I, O> invokeAll(String name, Collection<I> inputs, Task<I, O> task) {
+    return submitAll(name, inputs, task).await();
+  }
+
+  /**
+   * Starts the task on every input. The returned batch gives the futures
+   * and progress of the individual tasks.
+   */
+  public static <I, O> Batch<I, O> submitAll(String name, Collection<I> inputs, Task<I, O> task) {
+    Batch<I, O> batch = new Batch<>(name, inputs.size());
+    for (I input : inputs) {
+      batch.submit(input, task);
+    }
+    return batch;
+  }
+
+  /**
+   * Creates an empty batch, for inputs that are only known while other
+   * tasks are running. Tasks are added with Batch.submit() by one thread.
+   */
+  public static <I, O> Batch<I, O> newBatch(String name, int expectedSize) {
+    return new Batch<>(name, expectedSize);
+  }
+
+  public static class Batch<I, O> {
+    private final String name;
+    // number of submitted tasks
+    private volatile int size;
+    private final Map<I, ForkJoinTask<O>> tasks;
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    // First failure, rethrown by await()
+    private volatile Throwable failure;
+
+    private Batch(String name, int expectedSize) {
+      this.name = name;
+      this.tasks = Maps.newLinkedHashMapWithExpectedSize(expectedSize);
+    }
+
+    public void submit(final I input, final Task<I, O> task) {
+      ForkJoinTask<O> fjTask = new ForkJoinTask<O>() {
+        private O result;
+
+        @Override
+        public O getRawResult() {
+          return result;
+        }
+
+        @Override
+        protected void setRawResult(O value) {
+          result = value;
+        }
+
+        @Override
+        protected boolean exec() {
+          try {
+            result = task.run(input);
+          } catch (RuntimeException | Error e) {
+            failed(input, e);
+            throw e;
+          } finally {
+            progress();
+          }
+          return true;
+        }
+      };
+      if (tasks.put(input, fjTask) != null) {
+        Logger.err(TAG, name + ": input submitted twice: " + input);
+      }
+      size++;
+      if (ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool()) {
+        fjTask.fork();
+      } else {
+        pool().execute(fjTask);
+      }
+    }
+
+    private void failed(I input, Throwable e) {
+      failed.incrementAndGet();
+      synchronized (this) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+      Logger.err(TAG, name + ": task failed for " + input + ": " + e);
+    }
+
+    private void progress() {
+      int done = completed.incrementAndGet();
+      int step = Math.max(1, size / 10);
+      if (done % step == 0 || done == size) {
+        Logger.trace(TAG, "{}: {}/{} tasks", name, done, size);
+      }
+    }
+
+    public Future<O> future(I input) {
+      return tasks.get(input);
+    }
+
+    public int getSize() {
+      return size;
+    }
+
+    public int getCompleted() {
+      return completed.get();
+    }
+
+    public int getFailed() {
+      return failed.get();
+    }
+
+    /**
+     * Waits for all tasks and returns their results, in submission order.
+     */
+    public Map<I, O> await() {
+      List<Map.Entry<I, ForkJoinTask<O>>> entries = Lists.newArrayList(tasks.entrySet());
+      for (Map.Entry<I, ForkJoinTask<O>> entry : entries) {
+        // join() helps with pending tasks when called by a worker
+        entry.getValue().quietlyJoin();
+      }
+      if (failure != null) {
+        throw new RuntimeException(name + ": " + failed.get() + " of " + size + " tasks failed", failure);
+      }
+      Map<I, O> results = Maps.newLinkedHashMapWithExpectedSize(size);
+      for (Map.Entry<I, ForkJoinTask<O>> entry : entries) {
+        results.put(entry.getKey(), entry.getValue().getRawResult());
+      }
+      return results;
+    }
+  }
+}
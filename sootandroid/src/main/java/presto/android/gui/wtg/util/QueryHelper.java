@@ -12,6 +12,8 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import presto.android.gui.FixpointSolver;
 import presto.android.gui.GUIAnalysis;
+import presto.android.gui.SolutionIndex;
+import presto.android.gui.VariableValueCache;
 import presto.android.gui.graph.NNode;
 import presto.android.gui.graph.NObjectNode;
 import presto.android.gui.graph.NOpNode;
@@ -19,7 +21,6 @@ import presto.android.gui.graph.NVarNode;
 
 import java.util.Collections;
 import java.util.LinkedList;
-import java.util.Map;
 import java.util.Set;
 
 public class QueryHelper {
@@ -57,33 +58,17 @@ public class QueryHelper {
       }
     }
     // fixpoint results
-    extractFixpointSolution(solver.solutionParameters,
-            parameterExtractor, refNodes, localNodes);
-    extractFixpointSolution(solver.solutionReceivers,
-            receiverExtractor, refNodes, localNodes);
-    extractFixpointSolution(solver.solutionResults,
-            resultExtractor, refNodes, localNodes);
-    extractFixpointSolution(solver.solutionListeners,
-            parameterExtractor, refNodes, localNodes);
+    SolutionIndex index = solver.getSolutionIndex();
+    index.addSolutions(SolutionIndex.Kind.PARAMETER, localNodes, refNodes);
+    index.addSolutions(SolutionIndex.Kind.RECEIVER, localNodes, refNodes);
+    index.addSolutions(SolutionIndex.Kind.RESULT, localNodes, refNodes);
+    index.addSolutions(SolutionIndex.Kind.LISTENER, localNodes, refNodes);
     // merge them together
     otherNodes.addAll(refNodes);
     otherNodes.addAll(localNodes);
     return otherNodes;
   }
 
-  private void extractFixpointSolution(Map<NOpNode, Set<NNode>> solutionMap,
-                                       VarExtractor extractor, Set<NObjectNode> resultSet, Set<NVarNode> locals) {
-    for (Map.Entry<NOpNode, Set<NNode>> entry : solutionMap.entrySet()) {
-      NOpNode opNode = entry.getKey();
-      NVarNode local = extractor.extract(opNode);
-      if (locals.contains(local)) {
-        for (NNode resultNode : entry.getValue()) {
-          resultSet.add((NObjectNode) resultNode);
-        }
-      }
-    }
-  }
-
   // this method will help find all possible back reachable NNode
   // it will not stop traversing even it reaches NOpNode
   private Set<NNode> backwardReachableNodes(NNode n) {
@@ -116,31 +101,15 @@ public class QueryHelper {
   }
 
   public Set<NNode> allVariableValues(NNode n) {
-    return allValueSetFor(n);
-  }
-
-  private interface VarExtractor {
-    NVarNode extract(NOpNode opNode);
-  }
-
-  private final VarExtractor parameterExtractor = new VarExtractor() {
-    @Override
-    public NVarNode extract(NOpNode opNode) {
-      return (NVarNode) opNode.getParameter();
-    }
-  };
-
-  private final VarExtractor resultExtractor = new VarExtractor() {
-    @Override
-    public NVarNode extract(NOpNode opNode) {
-      return opNode.getLhs();
+    if (n == null) {
+      return Collections.emptySet();
     }
-  };
-
-  private final VarExtractor receiverExtractor = new VarExtractor() {
-    @Override
-    public NVarNode extract(NOpNode opNode) {
-      return opNode.getReceiver();
+    VariableValueCache cache = VariableValueCache.v();
+    Set<NNode> values = cache.get(VariableValueCache.Kind.ALL_VALUES, n);
+    if (values == null) {
+      long version = NNode.getGraphVersion();
+      values = cache.put(VariableValueCache.Kind.ALL_VALUES, n, allValueSetFor(n), version);
     }
-  };
+    return values;
+  }
 }
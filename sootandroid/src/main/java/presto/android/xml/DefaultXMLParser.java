@@ -8,14 +8,15 @@
  */
 package presto.android.xml;
 
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.w3c.dom.*;
-import org.xml.sax.SAXException;
 import presto.android.Configs;
 import presto.android.Logger;
 import presto.android.gui.PropertyManager;
+import presto.android.gui.wtg.parallel.TaskExecutor;
 import presto.android.gui.wtg.intent.IntentFilter;
 import presto.android.gui.wtg.intent.IntentFilterManager;
 import presto.android.gui.wtg.util.PatternMatcher;
@@ -27,10 +28,15 @@ import soot.toolkits.scalar.Pair;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 
 /*
@@ -194,6 +200,8 @@ public class DefaultXMLParser extends AbstractXMLParser {
     invRGeneralIdMap = Maps.newHashMap();
     sysRGeneralIdMap = Maps.newHashMap();
     invSysRGeneralIdMap = Maps.newHashMap();
+    // the platform R ids and strings of a previous run, if any
+    platformCache = PlatformCache.load();
 
     readManifest();
 
@@ -207,6 +215,10 @@ public class DefaultXMLParser extends AbstractXMLParser {
 
     // Strings must be read first
     readStrings();
+    if (Configs.platformCache && platformCache == null) {
+      new PlatformCache(sysRGeneralIdMap, invSysRGeneralIdMap, sysIntAndStringValues,
+              sysRStringAndStringValues).save();
+    }
 
     // Then, layout and menu. Later, we may need to read preference as well.
     readLayout();
@@ -558,19 +570,23 @@ public class DefaultXMLParser extends AbstractXMLParser {
 
   // <int const val, string val in xml>
   public HashMap<Integer, String> intAndStringValues;
-  public HashMap<Integer, ArrayList<String>> intAndMultiLangStringValues;
+  // read-only views of the localized strings, see MultiLangStringTable
+  public Map<Integer, ArrayList<String>> intAndMultiLangStringValues;
   // <R.string field, its string val>
   private HashMap<String, String> rStringAndStringValues;
-  private HashMap<String, ArrayList<String>> rStringAndMultiLangStringValues;
+  private Map<String, ArrayList<String>> rStringAndMultiLangStringValues;
 
   public final HashMap<Integer, String> sysIntAndStringValues = Maps.newHashMap();
   private final HashMap<String, String> sysRStringAndStringValues = Maps.newHashMap();
 
-  public final HashMap<Integer, ArrayList<String>> sysIntAndMultiLangStringValues = Maps.newHashMap();
-  private final HashMap<String, ArrayList<String>> sysRStringAndMultiLangStringValues = Maps.newHashMap();
+  public Map<Integer, ArrayList<String>> sysIntAndMultiLangStringValues;
+  private Map<String, ArrayList<String>> sysRStringAndMultiLangStringValues;
 
   private HashMap<Integer, AndroidView> extraId2ViewMap = Maps.newHashMap();
 
+  // platform side of the tables above, loaded instead of being read again
+  private PlatformCache platformCache;
+
   public void feedIdIntoGeneralMap(String type, String name, Integer value, boolean isSys) {
     assert type != null;
     assert name != null;
@@ -637,6 +653,9 @@ public class DefaultXMLParser extends AbstractXMLParser {
         //Logger.verb("RFile", "matched app R " + type);
         readIntConstFields(cls.getName(), type, false);
       }
+      if (platformCache != null) {
+        continue;
+      }
       //Read android.R$
       if (cls.getName().startsWith("android.R$")) {
         int idx = cls.getName().indexOf("$");
@@ -655,6 +674,11 @@ public class DefaultXMLParser extends AbstractXMLParser {
       }
     }
 
+    if (platformCache != null) {
+      sysRGeneralIdMap.putAll(platformCache.sysRGeneralIdMap);
+      invSysRGeneralIdMap.putAll(platformCache.invSysRGeneralIdMap);
+      return;
+    }
     final String internalSysRIdClass = "com.android.internal.R$id";
     //We are not going to rely on android.jar built from AOSP.
     //So read our own internal const files.
@@ -829,14 +853,17 @@ public class DefaultXMLParser extends AbstractXMLParser {
 //    boolean isSys = (invSysRLayoutMap == in);
 //    assert Configs.project.equals(proj) ^ isSys;
 
+    // the files are found and parsed in parallel, the views are built in
+    // order, since they assign ids and collect string literals
+    Map<String, ResourceFile> files = parseResourceFiles(resRoot, in.values(), isSys, false);
     for (Map.Entry<Integer, String> entry : in.entrySet()) {
       Integer layoutFileId = entry.getKey();
       String layoutFileName = entry.getValue();
       AndroidView root = new AndroidView();
       out.put(layoutFileId, root);
 
-      String file = getLayoutFilePath(resRoot, layoutFileName, isSys);
-      if (file == null) {
+      ResourceFile resourceFile = files.get(layoutFileName);
+      if (resourceFile.file == null) {
 
         Logger.warn(this.getClass().getSimpleName(),
                 "Cannot find " + layoutFileName
@@ -845,7 +872,7 @@ public class DefaultXMLParser extends AbstractXMLParser {
         continue;
       }
 
-      readLayout(file, root, isSys);
+      readLayout(resourceFile, root, isSys);
     }
   }
 
@@ -876,51 +903,39 @@ public class DefaultXMLParser extends AbstractXMLParser {
   }
 
   private void readLayout(String file, AndroidView root, boolean isSys) {
-    Document doc;
-    try {
-      DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-      dbFactory.setNamespaceAware(true);
-      DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-      doc = dBuilder.parse(file);
-    } catch (SAXException e) {
-      Logger.err(getClass().getSimpleName(), "invalid xml file. Error message: " + e.getMessage()
-              + " File name: " + file);
+    readLayout(parseResourceFile(file), root, isSys);
+  }
+
+  private void readLayout(ResourceFile resourceFile, AndroidView root, boolean isSys) {
+    String file = resourceFile.file;
+    if (resourceFile.error != null) {
+      Logger.err(getClass().getSimpleName(), "invalid xml file. Error message: "
+              + resourceFile.error.getMessage() + " File name: " + file);
       return;
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    } catch (ParserConfigurationException e) {
-      throw new RuntimeException(e);
     }
 
-    Logger.verb("DefaultXMLParser",String.format("Readlayout: %s",file));
-    Element rootElement = doc.getDocumentElement();
+    Logger.trace("DefaultXMLParser", "Readlayout: {}", file);
+    XMLElement rootElement = resourceFile.element;
     // In older versions, Preference could be put in layout folder and we do
     // not support Prefernce yet.
-    if (rootElement.getTagName().equals("PreferenceScreen")) {
+    if (rootElement.getName().equals("PreferenceScreen")) {
       return;
     }
 
-    LinkedList<Pair<Node, AndroidView>> work = Lists.newLinkedList();
-    work.add(new Pair<Node, AndroidView>(rootElement, root));
+    LinkedList<Pair<XMLElement, AndroidView>> work = Lists.newLinkedList();
+    work.add(new Pair<XMLElement, AndroidView>(rootElement, root));
     while (!work.isEmpty()) {
-      Pair<Node, AndroidView> p = work.removeFirst();
-      Node node = p.getO1();
+      Pair<XMLElement, AndroidView> p = work.removeFirst();
+      XMLElement node = p.getO1();
       AndroidView view = p.getO2();
       view.setOrigin(file);
 
-      NamedNodeMap attrMap = node.getAttributes();
-      if (attrMap == null) {
-        Logger.verb(this.getClass().getSimpleName(), file + "!!!" + node.getClass() + "!!!"
-                + node.toString() + "!!!" + node.getTextContent());
-      }
       // Retrieve view id (android:id)
-      //Node idNode = attrMap.getNamedItem(ID_ATTR);
-      Node idNode = attrMap.getNamedItemNS(ANDROID_NS, "id");
+      String idTxt = node.getAttributeNS(ANDROID_NS, "id");
       int guiId = -1;
       String id = null;
-      if (idNode != null) {
-        String txt = idNode.getTextContent();
-        Pair<String, Integer> pair = parseAndroidId(txt, isSys);
+      if (idTxt != null) {
+        Pair<String, Integer> pair = parseAndroidId(idTxt, isSys);
         id = pair.getO1();
         Integer guiIdObj = pair.getO2();
         if (guiIdObj == null) {
@@ -938,13 +953,13 @@ public class DefaultXMLParser extends AbstractXMLParser {
       }
 
       // Retrieve view type
-      String guiName = node.getNodeName();
+      String guiName = node.getName();
       if ("view".equals(guiName)) {
         // view without class attribute.
         // It does happen.
-        if (attrMap.getNamedItem("class") == null)
+        if (node.getAttribute("class") == null)
           continue;
-        guiName = attrMap.getNamedItem("class").getTextContent();
+        guiName = node.getAttribute("class");
       } else if (guiName.equals("MenuItemView")) {
         // FIXME(tony): this is an "approximation".
         guiName = "android.view.MenuItem";
@@ -955,36 +970,27 @@ public class DefaultXMLParser extends AbstractXMLParser {
       }
 
       //Retrieve callback (android:onClick)
-      String callback = readAndroidCallback(attrMap, "onClick");
+      String callback = readAndroidCallback(node, "onClick");
       if (callback != null) {
         view.setInlineClickHandler(callback);
       }
 
       // Retrieve text (android:text)
-      String text = readAndroidTextOrTitle(attrMap, "text");
+      String text = readAndroidTextOrTitle(node, "text");
       // hailong: add hint support
       // Retrieve hint (android:hint)
-      String hint = readAndroidTextOrTitle(attrMap, "hint");
+      String hint = readAndroidTextOrTitle(node, "hint");
 
-      String autofillHints = readAndroidTextOrTitle(attrMap, "autofillHints");
+      String autofillHints = readAndroidTextOrTitle(node, "autofillHints");
 
       if (hint != null && autofillHints != null) hint += PropertyManager.SEPARATOR + autofillHints;
       else if (autofillHints != null) hint = autofillHints;
 
       view.save(guiId, text, hint, guiName);
 
-      NodeList children = node.getChildNodes();
-      for (int i = 0; i < children.getLength(); i++) {
-        Node newNode = children.item(i);
-        String nodeName = newNode.getNodeName();
-        if ("#comment".equals(nodeName)) {
-          continue;
-        }
-        if ("#text".equals(nodeName)) {
-          // possible for XML files created on a different operating system
-          // than the one our analysis is run on
-          continue;
-        }
+      // text and comments are not kept by the parser
+      for (XMLElement newNode : node.getChildren()) {
+        String nodeName = newNode.getName();
         if (nodeName.equals("requestFocus")) {
           continue;
         }
@@ -992,34 +998,25 @@ public class DefaultXMLParser extends AbstractXMLParser {
                 && !"View".equals(nodeName)) {
           Logger.warn(this.getClass().getSimpleName(),
                   "no attribute node "
-                  + newNode.getNodeName());
+                  + nodeName);
           continue;
         }
 
-        if (newNode.getNodeName().equals("include") ||newNode.getNodeName().equals("fragment") ) {
-          Logger.verb("XML", String.format("fragment node"));
-          attrMap = newNode.getAttributes();
+        if (nodeName.equals("include") || nodeName.equals("fragment")) {
+          Logger.trace("XML", "fragment node");
           String layoutTxt;
-          if (newNode.getNodeName().equals("include")) {
-            if (attrMap.getNamedItem("layout") == null) {
-              Logger.warn("XML", "layout not exist in include");
-              for (int j = 0; j < attrMap.getLength(); j++) {
-                Logger.trace("XML", attrMap.item(j).getNodeName());
-              }
-              Logger.trace("XML", "filename" + file);
-              continue;
-            }
-             layoutTxt = attrMap.getNamedItem("layout").getTextContent();
+          if (nodeName.equals("include")) {
+            layoutTxt = newNode.getAttribute("layout");
           } else {
-            if (attrMap.getNamedItemNS(ANDROID_NS, "layout") == null) {
-              Logger.warn("XML", "layout not exist in include");
-              for (int j = 0; j < attrMap.getLength(); j++) {
-                Logger.trace("XML", attrMap.item(j).getNodeName());
-              }
-              Logger.trace("XML", "filename" + file);
-              continue;
+            layoutTxt = newNode.getAttributeNS(ANDROID_NS, "layout");
+          }
+          if (layoutTxt == null) {
+            Logger.warn("XML", "layout not exist in include");
+            for (int j = 0; j < newNode.getAttributeCount(); j++) {
+              Logger.trace("XML", newNode.getAttributeName(j));
             }
-             layoutTxt = attrMap.getNamedItemNS(ANDROID_NS, "layout").getTextContent();
+            Logger.trace("XML", "filename" + file);
+            continue;
           }
 
           String layoutId = null;
@@ -1036,10 +1033,9 @@ public class DefaultXMLParser extends AbstractXMLParser {
           }
           Integer includeeId = null;
           id = null;
-          idNode = attrMap.getNamedItemNS(ANDROID_NS, "id");
-          if (idNode != null) {
-            String txt = idNode.getTextContent();
-            Pair<String, Integer> pair = parseAndroidId(txt, isSys);
+          idTxt = newNode.getAttributeNS(ANDROID_NS, "id");
+          if (idTxt != null) {
+            Pair<String, Integer> pair = parseAndroidId(idTxt, isSys);
             id = pair.getO1();
             Integer guiIdObj = pair.getO2();
             if (guiIdObj == null) {
@@ -1054,13 +1050,13 @@ public class DefaultXMLParser extends AbstractXMLParser {
           }
 
           // view.saveInclude(layoutId, includeeId);
-          Logger.verb("XML", String.format("Include layout %s into %s",layoutId,includeeId));
+          Logger.trace("XML", "Include layout {} into {}", layoutId, includeeId);
           IncludeAndroidView iav = new IncludeAndroidView(layoutId, includeeId);
           iav.setParent(view);
         } else {
           AndroidView newView = new AndroidView();
           newView.setParent(view);
-          work.add(new Pair<Node, AndroidView>(newNode, newView));
+          work.add(new Pair<XMLElement, AndroidView>(newNode, newView));
         }
       }
     }
@@ -1110,12 +1106,11 @@ public class DefaultXMLParser extends AbstractXMLParser {
     return null;
   }
 
-  private String readAndroidCallback(NamedNodeMap attrMap, String callback) {
-    Node node = attrMap.getNamedItemNS(ANDROID_NS, callback);
-    if (node == null) {
+  private String readAndroidCallback(XMLElement node, String callback) {
+    String refOrValue = node.getAttributeNS(ANDROID_NS, callback);
+    if (refOrValue == null) {
       return null;
     }
-    String refOrValue = node.getTextContent();
     if (debug) {
       Logger.verb(this.getClass().getSimpleName(), "  * `" + refOrValue + "' -> `" + refOrValue + "'");
     }
@@ -1273,25 +1268,26 @@ public class DefaultXMLParser extends AbstractXMLParser {
 //    boolean isSys = (map == invSysRMenuMap);
 //    assert proj.equals(Configs.project) ^ isSys;
 
+    Map<String, ResourceFile> files = parseResourceFiles(resRoot, map.values(), isSys, true);
     for (Map.Entry<Integer, String> e : map.entrySet()) {
       Integer val = e.getKey();
       String name = e.getValue();
       AndroidView root = new AndroidView();
       viewMap.put(val, root);
-      String file = getMenuFilePath(resRoot, name, isSys);
-      if (file == null) {
+      ResourceFile resourceFile = files.get(name);
+      if (resourceFile.file == null) {
 
         Logger.warn(this.getClass().getSimpleName(),
                 "Unknown menu " + name + " for " + resRoot);
 
         continue;
       }
-      root.setOrigin(file);
+      root.setOrigin(resourceFile.file);
       if (debug) {
-        Logger.verb(this.getClass().getSimpleName(), "--- reading " + file);
+        Logger.verb(this.getClass().getSimpleName(), "--- reading " + resourceFile.file);
       }
 
-      readMenu(file, root, isSys);
+      readMenu(resourceFile, root, isSys);
     }
   }
 
@@ -1320,29 +1316,26 @@ public class DefaultXMLParser extends AbstractXMLParser {
   }
 
   private void readMenu(String file, AndroidView root, boolean isSys) {
-    Document doc;
-    try {
-      DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-      dbFactory.setNamespaceAware(true);
-      DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-      doc = dBuilder.parse(file);
-    } catch (Exception ex) {
-      throw new RuntimeException(ex);
+    readMenu(parseResourceFile(file), root, isSys);
+  }
+
+  private void readMenu(ResourceFile resourceFile, AndroidView root, boolean isSys) {
+    String file = resourceFile.file;
+    if (resourceFile.error != null) {
+      throw new RuntimeException(resourceFile.error);
     }
 
-    LinkedList<Pair<Node, AndroidView>> worklist = Lists.newLinkedList();
-    worklist.add(new Pair<Node, AndroidView>(doc.getDocumentElement(), root));
+    LinkedList<Pair<XMLElement, AndroidView>> worklist = Lists.newLinkedList();
+    worklist.add(new Pair<XMLElement, AndroidView>(resourceFile.element, root));
     root = null;
     while (!worklist.isEmpty()) {
-      Pair<Node, AndroidView> pair = worklist.remove();
-      Node node = pair.getO1();
+      Pair<XMLElement, AndroidView> pair = worklist.remove();
+      XMLElement node = pair.getO1();
       AndroidView view = pair.getO2();
-      NamedNodeMap attrMap = node.getAttributes();
-      Node idNode = attrMap.getNamedItemNS(ANDROID_NS, "id");
+      String txt = node.getAttributeNS(ANDROID_NS, "id");
       int guiId = -1;
       String id = null;
-      if (idNode != null) {
-        String txt = idNode.getTextContent();
+      if (txt != null) {
         Pair<String, Integer> p = parseAndroidId(txt, isSys);
         id = p.getO1();
         Integer guiIdObj = p.getO2();
@@ -1368,7 +1361,7 @@ public class DefaultXMLParser extends AbstractXMLParser {
       }
 
       // FIXME(tony): this is an "approximation"
-      String guiName = node.getNodeName();
+      String guiName = node.getName();
       if (guiName.equals("menu")) {
         guiName = "android.view.Menu";
       } else if (guiName.equals("item")) {
@@ -1389,46 +1382,33 @@ public class DefaultXMLParser extends AbstractXMLParser {
       if (debug) {
         Logger.verb(this.getClass().getSimpleName(), guiName + " (" + guiId + ", " + id + ")");
       }
-      String text = readAndroidTextOrTitle(attrMap, "text");
+      String text = readAndroidTextOrTitle(node, "text");
 
       // hailong: add hint support
-      String hint = readAndroidTextOrTitle(attrMap, "hint");
-      String autofillHints = readAndroidTextOrTitle(attrMap, "autofillHints");
+      String hint = readAndroidTextOrTitle(node, "hint");
+      String autofillHints = readAndroidTextOrTitle(node, "autofillHints");
 
       if (hint != null && autofillHints != null) hint += PropertyManager.SEPARATOR + autofillHints;
       else if (autofillHints != null) hint = autofillHints;
 
       view.save(guiId, text, hint, guiName);
 
-      NodeList children = node.getChildNodes();
-      for (int i = 0; i < children.getLength(); i++) {
-        Node newNode = children.item(i);
-        String nodeName = newNode.getNodeName();
-        if ("#comment".equals(nodeName)) {
-          continue;
-        }
-        if ("#text".equals(nodeName)) {
-          // possible for XML files created on a different operating system
-          // than the one our analysis is run on
-          continue;
-        }
-
+      // text and comments are not kept by the parser
+      for (XMLElement newNode : node.getChildren()) {
         AndroidView newView = new AndroidView();
         // FIXME: we assume that every node has attributes, may be wrong
         if (!newNode.hasAttributes()) {
-          Logger.verb("WARNING", "xml node " + newNode + " has no attributes");
+          Logger.verb("WARNING", "xml node " + newNode.getName() + " has no attributes");
           continue;
         } else {
-          NamedNodeMap attrs = newNode.getAttributes();
-          for (int idx = 0; idx < attrs.getLength(); idx += 1) {
-            Node attr = attrs.item(idx);
-            String name = attr.getNodeName();
-            String value = attr.getNodeValue();
+          for (int idx = 0; idx < newNode.getAttributeCount(); idx += 1) {
+            String name = newNode.getAttributeName(idx);
+            String value = newNode.getAttributeValue(idx);
             newView.addAttr(name, value);
           }
         }
         newView.setParent(view);
-        worklist.add(new Pair<Node, AndroidView>(newNode, newView));
+        worklist.add(new Pair<XMLElement, AndroidView>(newNode, newView));
       }
     }
   }
@@ -1461,28 +1441,39 @@ public class DefaultXMLParser extends AbstractXMLParser {
   private void readStrings() {
     intAndStringValues = Maps.newHashMap();
     rStringAndStringValues = Maps.newHashMap();
-    for (String file : getStringXMLFilePaths(Configs.resourceLocation, false)) {
-      readStrings(file, intAndStringValues, rStringAndStringValues, rGeneralIdMap.get("string"));
-    }
-
-    for (String file : getStringXMLFilePaths(Configs.sysProj + "/res", true)) {
-      readStrings(file, sysIntAndStringValues, sysRStringAndStringValues, sysRGeneralIdMap.get
-              ("string"));
+    List<String> appFiles = getStringXMLFilePaths(Configs.resourceLocation, false);
+    List<String> sysFiles = Collections.emptyList();
+    if (platformCache == null) {
+      sysFiles = getStringXMLFilePaths(Configs.sysProj + "/res", true);
     }
+    // the files are parsed in parallel, their strings are added in the
+    // order of the files, since later files override earlier ones
+    Map<String, List<Pair<String, String>>> strings = parseStringFiles(
+            Iterables.concat(appFiles, sysFiles));
 
-    //Read Multilanguage values
-    intAndMultiLangStringValues = Maps.newHashMap();
-    rStringAndMultiLangStringValues = Maps.newHashMap();
-    for (String file : getMultiLangStringXMLFilePaths(Configs.resourceLocation, false)) {
-      readMultilanguageStrings(file, intAndMultiLangStringValues, rStringAndMultiLangStringValues, rGeneralIdMap.get("string"));
+    for (String file : appFiles) {
+      readStrings(file, strings.get(file), intAndStringValues, rStringAndStringValues, rGeneralIdMap.get("string"));
     }
 
-    for (String file : getMultiLangStringXMLFilePaths(Configs.sysProj + "/res", true)) {
-      readMultilanguageStrings(file, sysIntAndMultiLangStringValues, sysRStringAndMultiLangStringValues, sysRGeneralIdMap.get
-              ("string"));
+    if (platformCache != null) {
+      sysIntAndStringValues.putAll(platformCache.sysIntAndStringValues);
+      sysRStringAndStringValues.putAll(platformCache.sysRStringAndStringValues);
+    } else {
+      for (String file : sysFiles) {
+        readStrings(file, strings.get(file), sysIntAndStringValues, sysRStringAndStringValues, sysRGeneralIdMap.get
+                ("string"));
+      }
     }
 
-
+    // Multilanguage values are only read when they are looked up
+    MultiLangStringTable multiLangStrings = new MultiLangStringTable(
+            getMultiLangStringXMLFilePaths(Configs.resourceLocation, false), rGeneralIdMap.get("string"));
+    intAndMultiLangStringValues = multiLangStrings.byId();
+    rStringAndMultiLangStringValues = multiLangStrings.byName();
+    MultiLangStringTable sysMultiLangStrings = new MultiLangStringTable(
+            getMultiLangStringXMLFilePaths(Configs.sysProj + "/res", true), sysRGeneralIdMap.get("string"));
+    sysIntAndMultiLangStringValues = sysMultiLangStrings.byId();
+    sysRStringAndMultiLangStringValues = sysMultiLangStrings.byName();
   }
 
   final static String SYS_ANDROID_STRING_REF = "@android:string/";
@@ -1560,11 +1551,10 @@ public class DefaultXMLParser extends AbstractXMLParser {
       return result;
     }
   }
-  String readAndroidTextOrTitle(NamedNodeMap attrMap, String attributeName) {
-    Node textNode = attrMap.getNamedItemNS(ANDROID_NS, attributeName);
+  String readAndroidTextOrTitle(XMLElement node, String attributeName) {
+    String refOrValue = node.getAttributeNS(ANDROID_NS, attributeName);
     String text = null;
-    if (textNode != null) {
-      String refOrValue = textNode.getTextContent();
+    if (refOrValue != null) {
       text = convertAndroidTextToString(refOrValue);
       Logger.trace("XMLParser", "  * `" + refOrValue + "' -> `" + text + "'");
     }
@@ -1573,44 +1563,19 @@ public class DefaultXMLParser extends AbstractXMLParser {
     return text;
   }
 
-  private void readStrings(String file, HashMap<Integer, String> idAndStrings,
+  private void readStrings(String file, List<Pair<String, String>> strings,
+                           HashMap<Integer, String> idAndStrings,
                            HashMap<String, String> stringFieldAndStrings,
                            HashMap<String, Integer> stringFieldAndIds) {
-    Document doc;
-    try {
-      DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-      DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-      doc = dBuilder.parse(file);
-    } catch (SAXException e) {
-      Logger.err(getClass().getSimpleName(), "invalid xml file. Error message: " + e.getMessage()
-              + " File name: " + file);
+    if (strings == null) {
+      // invalid xml file
       return;
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    } catch (ParserConfigurationException e) {
-      throw new RuntimeException(e);
     }
-
     Logger.trace(this.getClass().getSimpleName(), "--- Reading " + file);
 
-    NodeList nodes = doc.getElementsByTagName("string");
-    if (nodes == null) {
-      return;
-    }
-    for (int i = 0; i < nodes.getLength(); i++) {
-      Node n = nodes.item(i);
-      if (!"string".equals(n.getNodeName())) {
-        throw new RuntimeException();
-      }
-      NamedNodeMap attrs = n.getAttributes();
-      String stringName = attrs.getNamedItem("name").getTextContent();
-      NodeList childNodes = n.getChildNodes();
-      String stringValue;
-      if (childNodes.getLength() == 0) {
-        stringValue = "";
-      } else {
-        stringValue = eliminateQuotes(childNodes.item(0).getTextContent());
-      }
+    for (Pair<String, String> string : strings) {
+      String stringName = string.getO1();
+      String stringValue = string.getO2();
       stringFieldAndStrings.put(stringName, stringValue);
 
       Integer idValueObj = stringFieldAndIds.get(stringName);
@@ -1625,63 +1590,166 @@ public class DefaultXMLParser extends AbstractXMLParser {
     }
   }
 
-  private void readMultilanguageStrings(String file, HashMap<Integer, ArrayList<String>> idAndStrings,
-                           HashMap<String, ArrayList<String>> stringFieldAndStrings,
-                           HashMap<String, Integer> stringFieldAndIds) {
-    Document doc;
-    try {
-      DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-      DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-      doc = dBuilder.parse(file);
-    } catch (SAXException e) {
-      Logger.err(getClass().getSimpleName(), "invalid xml file. Error message: " + e.getMessage()
+  private Map<String, List<Pair<String, String>>> parseStringFiles(Iterable<String> files) {
+    return TaskExecutor.invokeAll("DefaultXMLParser.readStrings", Sets.newLinkedHashSet(files),
+            new TaskExecutor.Task<String, List<Pair<String, String>>>() {
+              @Override
+              public List<Pair<String, String>> run(String file) {
+                return parseStrings(file);
+              }
+            });
+  }
+
+  /*
+   * Returns the name and value of the <string> elements of the file, in
+   * document order, or null if the file is not valid xml. A value is the
+   * text of the first child node of the element, as it is with a DOM.
+   */
+  static List<Pair<String, String>> parseStrings(String file) {
+    List<Pair<String, String>> strings = Lists.newArrayList();
+    try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+      XMLStreamReader reader = XMLElement.newReader(file, in, false);
+      try {
+        while (reader.hasNext()) {
+          if (reader.next() != XMLStreamConstants.START_ELEMENT
+                  || !"string".equals(XMLElement.qualifiedName(reader.getPrefix(), reader.getLocalName()))) {
+            continue;
+          }
+          String stringName = null;
+          for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if ("name".equals(XMLElement.qualifiedName(
+                    reader.getAttributePrefix(i), reader.getAttributeLocalName(i)))) {
+              stringName = reader.getAttributeValue(i);
+            }
+          }
+          String stringValue = eliminateQuotes(readFirstChildText(reader));
+          if (stringName == null) {
+            Logger.warn("DefaultXMLParser", "string without name in " + file);
+            continue;
+          }
+          strings.add(new Pair<String, String>(stringName, stringValue));
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      Logger.err("DefaultXMLParser", "invalid xml file. Error message: " + e.getMessage()
               + " File name: " + file);
-      return;
+      return null;
     } catch (IOException e) {
       throw new RuntimeException(e);
-    } catch (ParserConfigurationException e) {
-      throw new RuntimeException(e);
     }
+    return strings;
+  }
 
-    Logger.trace(this.getClass().getSimpleName(), "--- Reading " + file);
+  /*
+   * Reads the current element up to its end, and returns the text of its
+   * first child node: the text up to the first nested element, comment or
+   * processing instruction, or the text in the first nested element, or
+   * the first comment. Returns "" if the element is empty.
+   */
+  static String readFirstChildText(XMLStreamReader reader) throws XMLStreamException {
+    final int none = 0, text = 1, element = 2, other = 3;
+    StringBuilder result = new StringBuilder();
+    int first = none;
+    boolean done = false;
+    int depth = 0;
+    while (true) {
+      int event = reader.next();
+      switch (event) {
+        case XMLStreamConstants.START_ELEMENT:
+          if (depth == 0) {
+            if (first == none) {
+              first = element;
+            } else {
+              done = true;
+            }
+          }
+          depth++;
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          if (depth == 0) {
+            return result.toString();
+          }
+          depth--;
+          if (depth == 0 && first == element) {
+            done = true;
+          }
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          if (depth == 0 && first == none) {
+            first = text;
+          }
+          if (!done && (first == text ? depth == 0 : first == element)) {
+            result.append(reader.getText());
+          }
+          break;
+        case XMLStreamConstants.COMMENT:
+        case XMLStreamConstants.PROCESSING_INSTRUCTION:
+          if (depth == 0) {
+            if (first == none) {
+              first = other;
+              String data = event == XMLStreamConstants.COMMENT ? reader.getText() : reader.getPIData();
+              result.append(data == null ? "" : data);
+            }
+            done = true;
+          }
+          break;
+        default:
+          break;
+      }
+    }
+  }
 
-    NodeList nodes = doc.getElementsByTagName("string");
-    if (nodes == null) {
-      return;
+  /*
+   * A layout or menu file, parsed. file is null if the file is not found,
+   * and error is set if it is not valid xml.
+   */
+  private static class ResourceFile {
+    final String file;
+    final XMLElement element;
+    final XMLStreamException error;
+
+    ResourceFile(String file, XMLElement element, XMLStreamException error) {
+      this.file = file;
+      this.element = element;
+      this.error = error;
     }
-    for (int i = 0; i < nodes.getLength(); i++) {
-      Node n = nodes.item(i);
-      if (!"string".equals(n.getNodeName())) {
-        throw new RuntimeException();
-      }
-      NamedNodeMap attrs = n.getAttributes();
-      String stringName = attrs.getNamedItem("name").getTextContent();
-      NodeList childNodes = n.getChildNodes();
-      String stringValue;
-      if (childNodes.getLength() == 0) {
-        stringValue = "";
-      } else {
-        stringValue = eliminateQuotes(childNodes.item(0).getTextContent());
-      }
-      if(!stringFieldAndStrings.containsKey(stringName))
-        stringFieldAndStrings.put(stringName,new ArrayList<>());
-      stringFieldAndStrings.get(stringName).add(stringValue);
+  }
 
-      Integer idValueObj = stringFieldAndIds.get(stringName);
-      if (idValueObj == null) {
-        if (debug) {
-          throw new RuntimeException("Unknown string node " + stringName
-                  + " defined in " + file);
-        }
-      } else {
-        if (!idAndStrings.containsKey(idValueObj))
-          idAndStrings.put(idValueObj,new ArrayList<>());
-        idAndStrings.get(idValueObj).add(stringValue);
-      }
+  private static ResourceFile parseResourceFile(String file) {
+    if (file == null) {
+      return new ResourceFile(null, null, null);
+    }
+    try {
+      return new ResourceFile(file, XMLElement.parse(file), null);
+    } catch (XMLStreamException e) {
+      return new ResourceFile(file, null, e);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
     }
   }
 
-  private String eliminateQuotes(String s) {
+  /*
+   * Finds and parses the layout or menu files of the given names, in
+   * parallel.
+   */
+  private Map<String, ResourceFile> parseResourceFiles(
+          final String resRoot, Collection<String> names, final boolean isSys, final boolean isMenu) {
+    return TaskExecutor.invokeAll("DefaultXMLParser." + (isMenu ? "readMenu" : "readLayout"),
+            Sets.newLinkedHashSet(names), new TaskExecutor.Task<String, ResourceFile>() {
+              @Override
+              public ResourceFile run(String name) {
+                String file = isMenu
+                        ? getMenuFilePath(resRoot, name, isSys) : getLayoutFilePath(resRoot, name, isSys);
+                return parseResourceFile(file);
+              }
+            });
+  }
+
+  static String eliminateQuotes(String s) {
     int len = s.length();
     if (len > 1 && s.charAt(0) == '"' && s.charAt(len - 1) == '"') {
       return s.substring(1, len - 1);
@@ -0,0 +1,458 @@
+/*
+ * MultiLangStringTable.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.xml;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import presto.android.Logger;
+import presto.android.gui.wtg.parallel.TaskExecutor;
+import soot.toolkits.scalar.Pair;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The localized strings of values-xx/strings*.xml files, by R.string field
+ * name and by id. Nothing is read when the table is created. The first
+ * lookup scans the files, in parallel, for the position of each <string>
+ * element; a string is decoded from its file when it is first looked up.
+ * Decoded strings are shared through a pool, as many locales repeat the
+ * same values.
+ * <p>
+ * byName() and byId() are read-only map views with the content of the
+ * eager maps they replace: the values of a key are in file order.
+ */
+class MultiLangStringTable {
+  private static final Interner<String> pool = Interners.newWeakInterner();
+
+  private static final byte[] STRING_START = bytes("<string");
+  private static final byte[] STRING_END = bytes("</string");
+  private static final byte[] COMMENT_START = bytes("<!--");
+  private static final byte[] COMMENT_END = bytes("-->");
+  private static final byte[] CDATA_START = bytes("<![CDATA[");
+  private static final byte[] CDATA_END = bytes("]]>");
+  private static final byte[] PI_START = bytes("<?");
+  private static final byte[] PI_END = bytes("?>");
+  private static final byte[] DECLARATION_START = bytes("<!");
+
+  private final List<String> files;
+  private final Map<String, Integer> stringFieldAndIds;
+
+  // built by the first lookup; entries are numbered in file order
+  private boolean indexed;
+  private int[] entryFiles;
+  private int[] entryStarts;
+  private int[] entryEnds;
+  private int[] fileFirstEntries;
+  private final ListMultimap<String, Integer> entriesByName = ArrayListMultimap.create();
+  private final ListMultimap<Integer, Integer> entriesById = ArrayListMultimap.create();
+  // decoded strings, or all the strings of files that can't be indexed
+  private String[] values;
+
+  MultiLangStringTable(List<String> files, Map<String, Integer> stringFieldAndIds) {
+    this.files = files;
+    this.stringFieldAndIds = stringFieldAndIds;
+  }
+
+  Map<String, ArrayList<String>> byName() {
+    return new View<String>(entriesByName);
+  }
+
+  Map<Integer, ArrayList<String>> byId() {
+    return new View<Integer>(entriesById);
+  }
+
+  private synchronized void index() {
+    if (indexed) {
+      return;
+    }
+    List<Integer> fileIds = Lists.newArrayList();
+    for (int i = 0; i < files.size(); i++) {
+      fileIds.add(i);
+    }
+    Map<Integer, FileIndex> fileIndexes = TaskExecutor.invokeAll(
+            "MultiLangStringTable.index", fileIds, new TaskExecutor.Task<Integer, FileIndex>() {
+              @Override
+              public FileIndex run(Integer fileId) {
+                return indexFile(files.get(fileId));
+              }
+            });
+    int size = 0;
+    for (FileIndex fileIndex : fileIndexes.values()) {
+      size += fileIndex.names.size();
+    }
+    entryFiles = new int[size];
+    entryStarts = new int[size];
+    entryEnds = new int[size];
+    fileFirstEntries = new int[files.size()];
+    values = new String[size];
+    int entry = 0;
+    for (int fileId = 0; fileId < files.size(); fileId++) {
+      FileIndex fileIndex = fileIndexes.get(fileId);
+      fileFirstEntries[fileId] = entry;
+      for (int i = 0; i < fileIndex.names.size(); i++, entry++) {
+        String name = fileIndex.names.get(i);
+        entryFiles[entry] = fileId;
+        if (fileIndex.values != null) {
+          values[entry] = fileIndex.values.get(i);
+        } else {
+          entryStarts[entry] = fileIndex.starts.get(i);
+          entryEnds[entry] = fileIndex.ends.get(i);
+        }
+        entriesByName.put(name, entry);
+        Integer id = stringFieldAndIds.get(name);
+        if (id != null) {
+          entriesById.put(id, entry);
+        }
+      }
+    }
+    Logger.trace("MultiLangStringTable", "{} strings in {} files", size, files.size());
+    indexed = true;
+  }
+
+  private synchronized String value(int entry) {
+    if (values[entry] == null) {
+      values[entry] = pool.intern(decode(entry));
+    }
+    return values[entry];
+  }
+
+  private String decode(int entry) {
+    String file = files.get(entryFiles[entry]);
+    byte[] element = new byte[entryEnds[entry] - entryStarts[entry]];
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      raf.seek(entryStarts[entry]);
+      raf.readFully(element);
+      XMLStreamReader reader = XMLElement.newReader(file, new ByteArrayInputStream(element), false);
+      try {
+        while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+        }
+        return DefaultXMLParser.eliminateQuotes(DefaultXMLParser.readFirstChildText(reader));
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      // e.g., an entity declared in the file: decode it with the whole file
+      List<Pair<String, String>> strings = DefaultXMLParser.parseStrings(file);
+      int ordinal = entry - fileFirstEntries[entryFiles[entry]];
+      if (strings != null && ordinal < strings.size()) {
+        return strings.get(ordinal).getO2();
+      }
+      Logger.warn("MultiLangStringTable", "cannot decode string " + ordinal + " of " + file);
+      return "";
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static class FileIndex {
+    final List<String> names = Lists.newArrayList();
+    final List<Integer> starts = Lists.newArrayList();
+    final List<Integer> ends = Lists.newArrayList();
+    // all the strings, for the files that are parsed instead of scanned
+    List<String> values;
+  }
+
+  /*
+   * Finds the byte range of each <string> element of the file, skipping
+   * comments, CDATA sections and processing instructions. Files that are
+   * not UTF-8, or that have a DTD, are parsed instead.
+   */
+  private static FileIndex indexFile(String file) {
+    byte[] bytes;
+    try {
+      bytes = Files.readAllBytes(new File(file).toPath());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    FileIndex index = new FileIndex();
+    if (!isUtf8(bytes)) {
+      return parseFile(file);
+    }
+    int i = 0;
+    while (true) {
+      int lt = indexOf(bytes, (byte) '<', i);
+      if (lt < 0) {
+        return index;
+      }
+      if (startsWith(bytes, lt, COMMENT_START)) {
+        i = skipPast(bytes, lt, COMMENT_END);
+      } else if (startsWith(bytes, lt, CDATA_START)) {
+        i = skipPast(bytes, lt, CDATA_END);
+      } else if (startsWith(bytes, lt, PI_START)) {
+        i = skipPast(bytes, lt, PI_END);
+      } else if (startsWith(bytes, lt, DECLARATION_START)) {
+        // a DOCTYPE may declare entities
+        return parseFile(file);
+      } else if (isTag(bytes, lt, STRING_START)) {
+        int tagEnd = findTagEnd(bytes, lt);
+        int end = Math.min(bytes.length,
+                bytes[tagEnd - 1] == '/' ? tagEnd + 1 : findElementEnd(bytes, tagEnd + 1));
+        String name = readNameAttribute(bytes, lt + STRING_START.length, tagEnd);
+        if (name != null) {
+          index.names.add(pool.intern(name));
+          index.starts.add(lt);
+          index.ends.add(end);
+        }
+        i = end;
+      } else {
+        i = lt + 1;
+      }
+      if (i < 0 || i >= bytes.length) {
+        // end of file, or truncated file
+        return index;
+      }
+    }
+  }
+
+  private static FileIndex parseFile(String file) {
+    FileIndex index = new FileIndex();
+    index.values = Lists.newArrayList();
+    List<Pair<String, String>> strings = DefaultXMLParser.parseStrings(file);
+    if (strings != null) {
+      for (Pair<String, String> string : strings) {
+        index.names.add(pool.intern(string.getO1()));
+        index.values.add(pool.intern(string.getO2()));
+      }
+    }
+    return index;
+  }
+
+  private static boolean isUtf8(byte[] bytes) {
+    if (bytes.length >= 2 && ((bytes[0] == (byte) 0xFE && bytes[1] == (byte) 0xFF)
+            || (bytes[0] == (byte) 0xFF && bytes[1] == (byte) 0xFE))) {
+      return false;
+    }
+    int start = bytes.length >= 3 && bytes[0] == (byte) 0xEF && bytes[1] == (byte) 0xBB
+            && bytes[2] == (byte) 0xBF ? 3 : 0;
+    if (!startsWith(bytes, start, bytes("<?xml"))) {
+      return true;
+    }
+    int end = indexOf(bytes, PI_END, start);
+    if (end < 0) {
+      return false;
+    }
+    String prolog = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    int encoding = prolog.indexOf("encoding");
+    return encoding < 0 || prolog.substring(encoding).toLowerCase().matches("encoding\\s*=\\s*[\"']utf-8[\"'].*");
+  }
+
+  // <string followed by a delimiter
+  private static boolean isTag(byte[] bytes, int offset, byte[] tag) {
+    if (!startsWith(bytes, offset, tag) || offset + tag.length >= bytes.length) {
+      return false;
+    }
+    byte next = bytes[offset + tag.length];
+    return next == '>' || next == '/' || next == ' ' || next == '\t' || next == '\r' || next == '\n';
+  }
+
+  // offset of the '>' ending the tag at offset
+  private static int findTagEnd(byte[] bytes, int offset) {
+    byte quote = 0;
+    for (int i = offset; i < bytes.length; i++) {
+      byte b = bytes[i];
+      if (quote != 0) {
+        if (b == quote) {
+          quote = 0;
+        }
+      } else if (b == '"' || b == '\'') {
+        quote = b;
+      } else if (b == '>') {
+        return i;
+      }
+    }
+    return bytes.length;
+  }
+
+  // offset after the </string> closing the element whose content starts at offset
+  private static int findElementEnd(byte[] bytes, int offset) {
+    int depth = 0;
+    int i = offset;
+    while (i < bytes.length) {
+      int lt = indexOf(bytes, (byte) '<', i);
+      if (lt < 0) {
+        return bytes.length;
+      }
+      if (startsWith(bytes, lt, COMMENT_START)) {
+        i = skipPast(bytes, lt, COMMENT_END);
+      } else if (startsWith(bytes, lt, CDATA_START)) {
+        i = skipPast(bytes, lt, CDATA_END);
+      } else if (isTag(bytes, lt, STRING_START)) {
+        int tagEnd = findTagEnd(bytes, lt);
+        if (bytes[tagEnd - 1] != '/') {
+          depth++;
+        }
+        i = tagEnd + 1;
+      } else if (isTag(bytes, lt, STRING_END)) {
+        i = findTagEnd(bytes, lt) + 1;
+        if (depth-- == 0) {
+          return Math.min(i, bytes.length);
+        }
+      } else {
+        i = lt + 1;
+      }
+      if (i < 0) {
+        return bytes.length;
+      }
+    }
+    return bytes.length;
+  }
+
+  // the value of the name attribute in bytes[from, to)
+  private static String readNameAttribute(byte[] bytes, int from, int to) {
+    String tag = new String(bytes, from, Math.min(to, bytes.length) - from, StandardCharsets.UTF_8);
+    int i = 0;
+    while (i < tag.length()) {
+      int eq = tag.indexOf('=', i);
+      if (eq < 0) {
+        return null;
+      }
+      String attribute = tag.substring(i, eq).trim();
+      int open = eq + 1;
+      while (open < tag.length() && Character.isWhitespace(tag.charAt(open))) {
+        open++;
+      }
+      if (open >= tag.length()) {
+        return null;
+      }
+      int close = tag.indexOf(tag.charAt(open), open + 1);
+      if (close < 0) {
+        return null;
+      }
+      if (attribute.equals("name")) {
+        return tag.substring(open + 1, close);
+      }
+      i = close + 1;
+    }
+    return null;
+  }
+
+  private static int skipPast(byte[] bytes, int from, byte[] end) {
+    int i = indexOf(bytes, end, from);
+    return i < 0 ? -1 : i + end.length;
+  }
+
+  private static boolean startsWith(byte[] bytes, int offset, byte[] prefix) {
+    if (offset + prefix.length > bytes.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (bytes[offset + i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int indexOf(byte[] bytes, byte b, int from) {
+    for (int i = from; i < bytes.length; i++) {
+      if (bytes[i] == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int indexOf(byte[] bytes, byte[] target, int from) {
+    for (int i = from; i <= bytes.length - target.length; i++) {
+      if (startsWith(bytes, i, target)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /*
+   * A read-only map from names or ids to their strings, each value being
+   * a new list.
+   */
+  private class View<K> extends AbstractMap<K, ArrayList<String>> {
+    private final ListMultimap<K, Integer> entries;
+
+    View(ListMultimap<K, Integer> entries) {
+      this.entries = entries;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ArrayList<String> get(Object key) {
+      index();
+      List<Integer> keyEntries = entries.get((K) key);
+      if (keyEntries.isEmpty()) {
+        return null;
+      }
+      ArrayList<String> strings = Lists.newArrayListWithCapacity(keyEntries.size());
+      for (int entry : keyEntries) {
+        strings.add(value(entry));
+      }
+      return strings;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      index();
+      return entries.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+      index();
+      return entries.keySet().size();
+    }
+
+    @Override
+    public Set<Entry<K, ArrayList<String>>> entrySet() {
+      index();
+      return new AbstractSet<Entry<K, ArrayList<String>>>() {
+        @Override
+        public Iterator<Entry<K, ArrayList<String>>> iterator() {
+          final Iterator<K> keys = entries.keySet().iterator();
+          return new Iterator<Entry<K, ArrayList<String>>>() {
+            @Override
+            public boolean hasNext() {
+              return keys.hasNext();
+            }
+
+            @Override
+            public Entry<K, ArrayList<String>> next() {
+              K key = keys.next();
+              return new SimpleImmutableEntry<K, ArrayList<String>>(key, get(key));
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return entries.keySet().size();
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * PlatformCache.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.xml;
+
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import presto.android.Configs;
+import presto.android.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * On-disk cache of the platform side of the resource tables: the R ids of
+ * android.R and com.android.internal.R, and the strings of the platform
+ * res/values. Localized strings are not cached: they are only read when
+ * they are looked up, see MultiLangStringTable. These only depend on the API level and the spec files, and
+ * are the same for every app analysed against that platform.
+ * <p>
+ * A cache file is named after the API level and a hash of its inputs, so
+ * a change of android.jar, of the internal R constants or of the spec
+ * files gives a new file. The file is a versioned binary dump, mapped in
+ * memory when it is loaded.
+ */
+class PlatformCache {
+  private static final int MAGIC = 0x47415452;
+  // bump when the layout of the file or the content of the tables changes
+  private static final int VERSION = 2;
+
+  // type -> name -> value, and type -> value -> name
+  final HashMap<String, HashMap<String, Integer>> sysRGeneralIdMap;
+  final HashMap<String, HashMap<Integer, String>> invSysRGeneralIdMap;
+  final HashMap<Integer, String> sysIntAndStringValues;
+  final HashMap<String, String> sysRStringAndStringValues;
+
+  PlatformCache(
+          HashMap<String, HashMap<String, Integer>> sysRGeneralIdMap,
+          HashMap<String, HashMap<Integer, String>> invSysRGeneralIdMap,
+          HashMap<Integer, String> sysIntAndStringValues,
+          HashMap<String, String> sysRStringAndStringValues) {
+    this.sysRGeneralIdMap = sysRGeneralIdMap;
+    this.invSysRGeneralIdMap = invSysRGeneralIdMap;
+    this.sysIntAndStringValues = sysIntAndStringValues;
+    this.sysRStringAndStringValues = sysRStringAndStringValues;
+  }
+
+  /**
+   * Returns the cache of the current platform, or null if the cache is
+   * disabled, or there is no valid cache file yet.
+   */
+  static PlatformCache load() {
+    if (!Configs.platformCache) {
+      return null;
+    }
+    File file = getCacheFile();
+    if (!file.exists()) {
+      Logger.verb("PlatformCache", "no cache for " + Configs.apiLevel + " at " + file);
+      return null;
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+         FileChannel channel = raf.getChannel()) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        Logger.verb("PlatformCache", "ignore stale cache " + file);
+        return null;
+      }
+      HashMap<String, HashMap<String, Integer>> ids = Maps.newHashMap();
+      HashMap<String, HashMap<Integer, String>> invIds = Maps.newHashMap();
+      int types = buffer.getInt();
+      for (int i = 0; i < types; i++) {
+        String type = readString(buffer);
+        HashMap<String, Integer> names = Maps.newHashMap();
+        int size = buffer.getInt();
+        for (int j = 0; j < size; j++) {
+          String name = readString(buffer);
+          names.put(name, buffer.getInt());
+        }
+        HashMap<Integer, String> values = Maps.newHashMap();
+        size = buffer.getInt();
+        for (int j = 0; j < size; j++) {
+          int value = buffer.getInt();
+          values.put(value, readString(buffer));
+        }
+        ids.put(type, names);
+        invIds.put(type, values);
+      }
+      HashMap<Integer, String> intAndStrings = Maps.newHashMap();
+      int size = buffer.getInt();
+      for (int i = 0; i < size; i++) {
+        int value = buffer.getInt();
+        intAndStrings.put(value, readString(buffer));
+      }
+      HashMap<String, String> rStringAndStrings = Maps.newHashMap();
+      size = buffer.getInt();
+      for (int i = 0; i < size; i++) {
+        String name = readString(buffer);
+        rStringAndStrings.put(name, readString(buffer));
+      }
+      Logger.verb("PlatformCache", "loaded " + file);
+      return new PlatformCache(ids, invIds, intAndStrings, rStringAndStrings);
+    } catch (IOException | RuntimeException e) {
+      // a truncated or corrupted file is rebuilt
+      Logger.verb("PlatformCache", "ignore unreadable cache " + file + ": " + e);
+      return null;
+    }
+  }
+
+  /**
+   * Writes the cache file of the current platform. The file is written
+   * aside and then moved, so concurrent runs never read a partial file.
+   */
+  void save() {
+    if (!Configs.platformCache) {
+      return;
+    }
+    File file = getCacheFile();
+    File dir = file.getParentFile();
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      Logger.warn("PlatformCache", "cannot create " + dir);
+      return;
+    }
+    File tmp = null;
+    try {
+      tmp = File.createTempFile(file.getName(), ".tmp", dir);
+      try (DataOutputStream out = new DataOutputStream(
+              new BufferedOutputStream(new FileOutputStream(tmp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(sysRGeneralIdMap.size());
+        for (Map.Entry<String, HashMap<String, Integer>> type : sysRGeneralIdMap.entrySet()) {
+          writeString(out, type.getKey());
+          out.writeInt(type.getValue().size());
+          for (Map.Entry<String, Integer> e : type.getValue().entrySet()) {
+            writeString(out, e.getKey());
+            out.writeInt(e.getValue());
+          }
+          HashMap<Integer, String> values = invSysRGeneralIdMap.get(type.getKey());
+          if (values == null) {
+            values = Maps.newHashMap();
+          }
+          out.writeInt(values.size());
+          for (Map.Entry<Integer, String> e : values.entrySet()) {
+            out.writeInt(e.getKey());
+            writeString(out, e.getValue());
+          }
+        }
+        out.writeInt(sysIntAndStringValues.size());
+        for (Map.Entry<Integer, String> e : sysIntAndStringValues.entrySet()) {
+          out.writeInt(e.getKey());
+          writeString(out, e.getValue());
+        }
+        out.writeInt(sysRStringAndStringValues.size());
+        for (Map.Entry<String, String> e : sysRStringAndStringValues.entrySet()) {
+          writeString(out, e.getKey());
+          writeString(out, e.getValue());
+        }
+      }
+      java.nio.file.Files.move(tmp.toPath(), file.toPath(),
+              StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      Logger.verb("PlatformCache", "saved " + file);
+    } catch (IOException e) {
+      Logger.warn("PlatformCache", "cannot write " + file + ": " + e);
+      if (tmp != null) {
+        tmp.delete();
+      }
+    }
+  }
+
+  /**
+   * The cache file of the current API level and inputs.
+   */
+  static File getCacheFile() {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putInt(VERSION);
+    hashFile(hasher, Configs.android);
+    hashFile(hasher, ResourceConstantHelper.getCompatibleAPILevelFile(Configs.numericApiLevel));
+    hashFile(hasher, Configs.listenerSpecFile);
+    hashFile(hasher, Configs.wtgSpecFile);
+    String name = Configs.apiLevel + "-" + hasher.hash().toString().substring(0, 16) + ".bin";
+    return new File(Configs.sootAndroidDir + "/platform-cache", name);
+  }
+
+  private static void hashFile(Hasher hasher, String fileName) {
+    File file = fileName == null ? null : new File(fileName);
+    if (file == null || !file.isFile()) {
+      hasher.putInt(-1);
+      return;
+    }
+    hasher.putString(file.getAbsolutePath(), StandardCharsets.UTF_8);
+    if (file.length() > 16 * 1024 * 1024) {
+      // android.jar is too large to be read on every run
+      hasher.putLong(file.length()).putLong(file.lastModified());
+      return;
+    }
+    try {
+      hasher.putBytes(Files.asByteSource(file).read());
+    } catch (IOException e) {
+      hasher.putLong(file.length()).putLong(file.lastModified());
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    if (s == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(MappedByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
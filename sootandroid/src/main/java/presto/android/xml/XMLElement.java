@@ -0,0 +1,196 @@
+/*
+ * XMLElement.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.xml;
+
+import com.google.common.collect.Lists;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * An element of a resource file read by a streaming (StAX) parser: its
+ * name, attributes and child elements. Names and attributes are the ones
+ * of a namespace aware DOM: names are qualified, and namespace
+ * declarations are attributes. Text, comments and processing instructions
+ * are dropped, as layouts and menus don't use them.
+ */
+final class XMLElement {
+  // parsers are reused by each thread
+  private static final ThreadLocal<XMLInputFactory> namespaceAwareFactories =
+          new ThreadLocal<XMLInputFactory>() {
+            @Override
+            protected XMLInputFactory initialValue() {
+              return newFactory(true);
+            }
+          };
+  private static final ThreadLocal<XMLInputFactory> plainFactories =
+          new ThreadLocal<XMLInputFactory>() {
+            @Override
+            protected XMLInputFactory initialValue() {
+              return newFactory(false);
+            }
+          };
+
+  private final String name;
+  // namespace, local name, qualified name and value of each attribute
+  private final String[] attributes;
+  private List<XMLElement> children = Collections.emptyList();
+
+  private XMLElement(String name, String[] attributes) {
+    this.name = name;
+    this.attributes = attributes;
+  }
+
+  /**
+   * The qualified name, as Node.getNodeName().
+   */
+  String getName() {
+    return name;
+  }
+
+  boolean hasAttributes() {
+    return attributes.length > 0;
+  }
+
+  int getAttributeCount() {
+    return attributes.length / 4;
+  }
+
+  String getAttributeName(int i) {
+    return attributes[4 * i + 2];
+  }
+
+  String getAttributeValue(int i) {
+    return attributes[4 * i + 3];
+  }
+
+  /**
+   * The value of the attribute of the given qualified name, or null.
+   */
+  String getAttribute(String qName) {
+    for (int i = 0; i < attributes.length; i += 4) {
+      if (qName.equals(attributes[i + 2])) {
+        return attributes[i + 3];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The value of the attribute of the given namespace and local name, or
+   * null.
+   */
+  String getAttributeNS(String namespace, String localName) {
+    for (int i = 0; i < attributes.length; i += 4) {
+      if (namespace.equals(attributes[i]) && localName.equals(attributes[i + 1])) {
+        return attributes[i + 3];
+      }
+    }
+    return null;
+  }
+
+  List<XMLElement> getChildren() {
+    return children;
+  }
+
+  /**
+   * Parses the file and returns its document element.
+   */
+  static XMLElement parse(String file) throws XMLStreamException, IOException {
+    try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+      XMLStreamReader reader = newReader(file, in, true);
+      try {
+        Deque<XMLElement> open = new ArrayDeque<>();
+        XMLElement root = null;
+        while (reader.hasNext()) {
+          int event = reader.next();
+          if (event == XMLStreamConstants.START_ELEMENT) {
+            XMLElement element = new XMLElement(
+                    qualifiedName(reader.getPrefix(), reader.getLocalName()), readAttributes(reader));
+            if (open.isEmpty()) {
+              root = element;
+            } else {
+              XMLElement parent = open.peek();
+              if (parent.children.isEmpty()) {
+                parent.children = Lists.newArrayListWithCapacity(4);
+              }
+              parent.children.add(element);
+            }
+            open.push(element);
+          } else if (event == XMLStreamConstants.END_ELEMENT) {
+            open.pop();
+          }
+        }
+        return root;
+      } finally {
+        reader.close();
+      }
+    }
+  }
+
+  /**
+   * A reader of the file, created by the factory of the current thread.
+   * Element and attribute names are qualified names if it is not
+   * namespace aware.
+   */
+  static XMLStreamReader newReader(String file, InputStream in, boolean namespaceAware)
+          throws XMLStreamException {
+    XMLInputFactory factory = namespaceAware ? namespaceAwareFactories.get() : plainFactories.get();
+    return factory.createXMLStreamReader(file, in);
+  }
+
+  static String qualifiedName(String prefix, String localName) {
+    return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+  }
+
+  private static String[] readAttributes(XMLStreamReader reader) {
+    int namespaces = reader.getNamespaceCount();
+    int count = reader.getAttributeCount();
+    if (namespaces + count == 0) {
+      return new String[0];
+    }
+    String[] attributes = new String[4 * (namespaces + count)];
+    int j = 0;
+    for (int i = 0; i < namespaces; i++) {
+      String prefix = reader.getNamespacePrefix(i);
+      boolean isDefault = prefix == null || prefix.isEmpty();
+      attributes[j++] = XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+      attributes[j++] = isDefault ? XMLConstants.XMLNS_ATTRIBUTE : prefix;
+      attributes[j++] = isDefault
+              ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix;
+      attributes[j++] = reader.getNamespaceURI(i);
+    }
+    for (int i = 0; i < count; i++) {
+      String namespace = reader.getAttributeNamespace(i);
+      String localName = reader.getAttributeLocalName(i);
+      attributes[j++] = namespace == null ? "" : namespace;
+      attributes[j++] = localName;
+      attributes[j++] = qualifiedName(reader.getAttributePrefix(i), localName);
+      attributes[j++] = reader.getAttributeValue(i);
+    }
+    return attributes;
+  }
+
+  private static XMLInputFactory newFactory(boolean namespaceAware) {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, namespaceAware);
+    return factory;
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * HierarchyTest.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+
+package presto.android;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.collect.SetMultimap;
+import org.junit.Test;
+import presto.android.gui.AppFixture;
+import soot.Scene;
+import soot.SootClass;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the interval numbering and the bitsets of Hierarchy against the
+ * transitive closures the hierarchy used to build by walking up from every
+ * class of the Scene.
+ */
+public class HierarchyTest {
+  // the closures, as built by the walk
+  private final SetMultimap<SootClass, SootClass> subtypes = HashMultimap.create();
+  private final SetMultimap<SootClass, SootClass> supertypes = HashMultimap.create();
+  private final SetMultimap<SootClass, SootClass> concreteSubtypes = HashMultimap.create();
+
+  private int checkedPairs = 0;
+
+  @Test
+  public void testAgainstSubclassWalk() {
+    AppFixture.analyze(new Runnable() {
+      @Override
+      public void run() {
+        check(Hierarchy.v());
+      }
+    });
+    assertTrue(checkedPairs > 0);
+  }
+
+  private void check(Hierarchy hier) {
+    // the classes of the Scene when the hierarchy was built; Soot adds
+    // phantom classes later on
+    List<SootClass> classes = Lists.newArrayList();
+    for (SootClass c : Scene.v().getClasses()) {
+      if (hier.getSubtypes(c) != null) {
+        classes.add(c);
+      }
+    }
+    for (SootClass c : classes) {
+      traverse(c, c);
+    }
+    for (SootClass c : classes) {
+      assertEquals("subtypes of " + c, subtypes.get(c), Sets.newHashSet(hier.getSubtypes(c)));
+      assertEquals("supertypes of " + c, supertypes.get(c), Sets.newHashSet(hier.getSupertypes(c)));
+      assertEquals("concrete subtypes of " + c, concreteSubtypes.get(c),
+              Sets.newHashSet(hier.getConcreteSubtypes(c)));
+      assertEquals("number of subtypes of " + c, subtypes.get(c).size(), hier.getSubtypes(c).size());
+    }
+
+    // subclass tests of the application classes against every class, and
+    // of every class against the classes the analysis asks about most
+    List<SootClass> parents = Lists.newArrayList();
+    for (String name : new String[]{
+            "java.lang.Object",
+            "java.lang.Iterable",
+            "java.util.Collection",
+            "android.app.Activity",
+            "android.app.Dialog",
+            "android.view.View",
+            "android.view.ViewGroup",
+            "android.view.View$OnClickListener",
+            "android.view.MenuItem",
+            "android.widget.AdapterView$OnItemClickListener",
+    }) {
+      if (Scene.v().containsClass(name)) {
+        parents.add(Scene.v().getSootClass(name));
+      }
+    }
+    for (SootClass c : classes) {
+      List<SootClass> candidates = c.isApplicationClass() ? classes : parents;
+      for (SootClass parent : candidates) {
+        boolean expected = supertypes.containsEntry(c, parent);
+        assertEquals(c + " <: " + parent, expected, hier.isSubclassOf(c, parent));
+        assertEquals(parent + " has subtype " + c, expected, hier.getSubtypes(parent).contains(c));
+        assertEquals(parent + " has concrete subtype " + c,
+                expected && c.isConcrete(), hier.getConcreteSubtypes(parent).contains(c));
+        checkedPairs++;
+      }
+    }
+  }
+
+  // sub is a subtype of supr (or possibly supr == sub)
+  private void traverse(SootClass sub, SootClass supr) {
+    subtypes.put(supr, sub);
+    supertypes.put(sub, supr);
+    if (sub.isConcrete()) {
+      concreteSubtypes.put(supr, sub);
+    }
+    if (supr.hasSuperclass()) {
+      traverse(sub, supr.getSuperclass());
+    }
+    for (SootClass i : supr.getInterfaces()) {
+      traverse(sub, i);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * AppFixture.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+
+package presto.android.gui;
+
+import org.junit.Assume;
+import presto.android.Configs;
+import presto.android.Main;
+import presto.android.PrerunEntrypoint;
+import soot.PackManager;
+import soot.SceneTransformer;
+import soot.Transform;
+import soot.options.Options;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * Runs Soot on the app given by the gator.* properties, for the tests that
+ * need a loaded Scene or the GUI analysis of an app. The tests are skipped
+ * when the app or the SDK is missing. Soot and the analysis keep their
+ * state in singletons, so the app can only be analyzed once per JVM.
+ */
+public class AppFixture {
+  private static boolean analyzed = false;
+
+  /**
+   * Analyzes the app with Soot, and runs the phase once the Scene is
+   * loaded and the call graph is built. The phase is run by the whole
+   * program pack, as AnalysisEntrypoint exits when it is done.
+   */
+  public static synchronized void analyze(final Runnable phase) {
+    String home = System.getProperty("user.home");
+    String sdk = System.getProperty("gator.sdk", home + "/Android/Sdk");
+    String apiLevel = System.getProperty("gator.apiLevel", "android-27");
+    // an apk, and the directory apktool decoded it to
+    String apk = System.getProperty("gator.apk",
+            home + "/workspace/android/Simplest/app/build/outputs/apk/debug/app-debug.apk");
+    String resDir = System.getProperty("gator.resDir",
+            home + "/workspace/android/Simplest/app/build/outputs/apk/debug/app-debug");
+    String android = sdk + "/platforms/" + apiLevel + "/android.jar";
+    Assume.assumeTrue("no app at " + apk,
+            new File(apk).isFile() && new File(resDir).isDirectory() && new File(android).isFile());
+    if (analyzed) {
+      throw new IllegalStateException("[Error]: the app can only be analyzed once per JVM");
+    }
+    analyzed = true;
+
+    Main.parseArgs(new String[]{
+            "-project", apk,
+            "-apiLevel", apiLevel,
+            "-manifestFile", resDir + "/AndroidManifest.xml",
+            "-resourcePath", resDir + "/res",
+            "-guiAnalysis",
+            "-sootandroidDir", System.getProperty("user.dir"),
+            "-benchmarkName", new File(apk).getName(),
+            "-sdkDir", sdk,
+            "-android", android,
+            "-listenerSpecFile", "listeners.xml",
+            "-wtgSpecFile", "wtg.xml",
+    });
+    PrerunEntrypoint.v().run();
+    PackManager.v().getPack("wjtp").add(new Transform("wjtp.test", new SceneTransformer() {
+      @Override
+      protected void internalTransform(String phaseName, Map<String, String> options) {
+        phase.run();
+      }
+    }));
+    Options.v().set_whole_program(true);
+    soot.Main.main(new String[]{
+            "-w",
+            "-p", "cg", "all-reachable:true",
+            "-p", "cg.cha", "enabled:true",
+            "-p", "wjtp.test", "enabled:true",
+            "-f", "n",
+            "-keep-line-number",
+            "-process-multiple-dex",
+            "-allow-phantom-refs",
+            "-process-dir", Configs.bytecodes,
+            "-cp", Configs.android + ":" + Configs.jre,
+    });
+  }
+
+  /**
+   * Builds and solves the flowgraph of the app, as GUIAnalysis.run() does,
+   * and returns the output the clients are given. Called from the phase.
+   */
+  public static GUIAnalysisOutput solve() {
+    GUIAnalysis analysis = GUIAnalysis.v();
+    analysis.populateIDContainers();
+    analysis.flowgraph = new Flowgraph(analysis.hier, analysis.allLayoutIds,
+            analysis.allMenuIds, analysis.allWidgetIds, analysis.allStringIds);
+    analysis.flowgraph.build();
+    analysis.fixpointSolver = new FixpointSolver(analysis.flowgraph);
+    analysis.fixpointSolver.solve();
+    analysis.variableValueQueryInterface =
+            DemandVariableValueQuery.v(analysis.flowgraph, analysis.fixpointSolver);
+    return new DefaultGUIAnalysisOutput(analysis);
+  }
+}
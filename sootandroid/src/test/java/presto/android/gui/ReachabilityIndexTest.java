@@ -0,0 +1,77 @@
+/*
+ * ReachabilityIndexTest.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+
+package presto.android.gui;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+import presto.android.gui.graph.NAddView2OpNode;
+import presto.android.gui.graph.NNode;
+import presto.android.gui.graph.NOpNode;
+import presto.android.gui.graph.NSetListenerOpNode;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the nodes the reachability index reports for each path source
+ * against a search of the flowgraph from that source, i.e., against
+ * GraphUtil.reachableNodes(), restricted to the nodes the path computation
+ * looks for.
+ */
+public class ReachabilityIndexTest {
+  private int checkedSources = 0;
+
+  @Test
+  public void testAgainstSearch() {
+    AppFixture.analyze(new Runnable() {
+      @Override
+      public void run() {
+        GUIAnalysisOutput output = AppFixture.solve();
+        check(output.getSolver());
+      }
+    });
+    assertTrue(checkedSources > 0);
+  }
+
+  private void check(FixpointSolver solver) {
+    // op nodes, and the receivers and parameters of the op nodes that
+    // consume them
+    Set<NNode> targets = Sets.newHashSet();
+    List<NNode> sources = Lists.newArrayList();
+    for (NNode n : solver.flowgraph.allNNodes) {
+      if (n instanceof NOpNode) {
+        targets.add(n);
+        if (n instanceof NAddView2OpNode || n instanceof NSetListenerOpNode) {
+          targets.add(((NOpNode) n).getParameter());
+          targets.add(((NOpNode) n).getReceiver());
+        }
+      }
+      if (FixpointComputationOptimized.isPathSource(solver, n)) {
+        sources.add(n);
+      }
+    }
+    ReachabilityIndex index = new ReachabilityIndex(sources);
+    for (NNode source : sources) {
+      Set<NNode> expected = Sets.newHashSet(solver.graphUtil.reachableNodes(source));
+      expected.retainAll(targets);
+      Set<NNode> reachables = Sets.newHashSet(index.reachables(source));
+      assertEquals("reachable from " + source, expected, reachables);
+      assertEquals("size of reachable from " + source, expected.size(), index.reachables(source).size());
+      for (NNode n : expected) {
+        assertTrue(source + " reaches " + n, index.reachables(source).contains(n));
+      }
+      checkedSources++;
+    }
+  }
+}
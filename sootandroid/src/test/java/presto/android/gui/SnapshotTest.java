@@ -0,0 +1,183 @@
+/*
+ * SnapshotTest.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+
+package presto.android.gui;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+import presto.android.gui.graph.NNode;
+import soot.Local;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Solves the flowgraph of an app, saves it to a snapshot and loads it back,
+ * and checks that the loaded flowgraph has the same nodes, edges and
+ * solution.
+ */
+public class SnapshotTest {
+  private final List<Object> saved = Lists.newArrayList();
+  private final List<Object> loaded = Lists.newArrayList();
+
+  @Test
+  public void testSaveAndLoad() throws Exception {
+    final File snapshot = File.createTempFile("gator", ".snapshot");
+    snapshot.deleteOnExit();
+    AppFixture.analyze(new Runnable() {
+      @Override
+      public void run() {
+        saveAndLoad(snapshot);
+      }
+    });
+
+    assertTrue(saved.size() > 3);
+    for (int i = 0; i < saved.size(); i++) {
+      assertEquals("state " + i, saved.get(i), loaded.get(i));
+    }
+  }
+
+  private void saveAndLoad(File snapshot) {
+    GUIAnalysis analysis = GUIAnalysis.v();
+    analysis.populateIDContainers();
+    Flowgraph flowgraph = new Flowgraph(analysis.hier, analysis.allLayoutIds,
+            analysis.allMenuIds, analysis.allWidgetIds, analysis.allStringIds);
+    flowgraph.build();
+    FixpointSolver solver = new FixpointSolver(flowgraph);
+    solver.solve();
+
+    // the writer numbers the nodes in the order of their ids
+    List<NNode> nodes = Lists.newArrayList();
+    for (int id = 1; id <= NNode.maxId(); id++) {
+      if (NNode.byId(id) != null) {
+        nodes.add(NNode.byId(id));
+      }
+    }
+    Map<NNode, Integer> savedIndexes = Maps.newHashMap();
+    for (NNode node : nodes) {
+      savedIndexes.put(node, savedIndexes.size());
+    }
+    try {
+      new SnapshotWriter(flowgraph, solver).write(snapshot);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+
+    Flowgraph loadedFlowgraph = new Flowgraph(analysis.hier, analysis.allLayoutIds,
+            analysis.allMenuIds, analysis.allWidgetIds, analysis.allStringIds);
+    FixpointSolver loadedSolver = new FixpointSolver(loadedFlowgraph);
+    loadedSolver.preSolveInit();
+    // preSolveInit() adds the set listener nodes of the first flowgraph,
+    // which are still registered here; a run that loads has none
+    loadedSolver.solutionListeners.clear();
+    SnapshotReader reader = new SnapshotReader(loadedFlowgraph, loadedSolver);
+    try {
+      reader.read(snapshot);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+    Map<NNode, Integer> loadedIndexes = Maps.newHashMap();
+    for (int i = 0; i < nodes.size(); i++) {
+      loadedIndexes.put(reader.node(i), i);
+    }
+
+    saved.add(flowgraph.allNNodes.size());
+    loaded.add(loadedFlowgraph.allNNodes.size());
+    saved.add(solver.nodeCount + "/" + solver.edgeCount);
+    loaded.add(loadedSolver.nodeCount + "/" + loadedSolver.edgeCount);
+    saved.add(edges(nodes, savedIndexes));
+    List<NNode> loadedNodes = Lists.newArrayList();
+    for (int i = 0; i < nodes.size(); i++) {
+      loadedNodes.add(reader.node(i));
+    }
+    loaded.add(edges(loadedNodes, loadedIndexes));
+    for (Object state : AnalysisSnapshot.state(flowgraph, solver)) {
+      saved.add(translate(state, savedIndexes));
+    }
+    for (Object state : AnalysisSnapshot.state(loadedFlowgraph, loadedSolver)) {
+      loaded.add(translate(state, loadedIndexes));
+    }
+  }
+
+  // The successors of each node, by position in the snapshot
+  private static List<Object> edges(List<NNode> nodes, Map<NNode, Integer> indexes) {
+    List<Object> edges = Lists.newArrayList();
+    int count = 0;
+    for (NNode node : nodes) {
+      edges.add(translate(Sets.newHashSet(node.getSuccessors()), indexes));
+      count += node.getNumberOfSuccessors();
+    }
+    edges.add(count);
+    return edges;
+  }
+
+  // Replaces the nodes by their position in the snapshot, and Soot objects
+  // by their names or text, so that states of the two flowgraphs can be
+  // compared. The listener classes, locals and expressions made up by the
+  // flowgraph are created again when the snapshot is loaded.
+  private static Object translate(Object value, Map<NNode, Integer> indexes) {
+    if (value instanceof NNode) {
+      return "node " + indexes.get(value);
+    }
+    if (value instanceof SootClass) {
+      return ((SootClass) value).getName();
+    }
+    if (value instanceof SootMethod) {
+      return ((SootMethod) value).getSignature();
+    }
+    if (value instanceof Local) {
+      return ((Local) value).getName() + ":" + ((Local) value).getType();
+    }
+    if (value instanceof Value || value instanceof Unit) {
+      return value.toString();
+    }
+    if (value instanceof Multimap) {
+      return translate(((Multimap<?, ?>) value).asMap(), indexes);
+    }
+    if (value instanceof Map) {
+      // locals of different methods may share a name
+      Multiset<Object> entries = HashMultiset.create();
+      for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+        entries.add(Arrays.asList(translate(e.getKey(), indexes), translate(e.getValue(), indexes)));
+      }
+      return entries;
+    }
+    if (value instanceof Set) {
+      Multiset<Object> set = HashMultiset.create();
+      for (Object o : (Set<?>) value) {
+        set.add(translate(o, indexes));
+      }
+      return set;
+    }
+    if (value instanceof Collection) {
+      List<Object> list = Lists.newArrayList();
+      for (Object o : (Collection<?>) value) {
+        list.add(translate(o, indexes));
+      }
+      return list;
+    }
+    return value;
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * BaselineCFGTraversal.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui.wtg.analyzer;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import presto.android.gui.wtg.flowgraph.AndroidCallGraph;
+import presto.android.gui.wtg.flowgraph.AndroidCallGraph.Edge;
+import presto.android.gui.wtg.util.Filter;
+import presto.android.gui.wtg.util.WTGUtil;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.UnitGraph;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The forward traversal as CFGTraversal used to do it: one filter at a
+ * time, with the CFGs of the methods built again for each traversal and a
+ * list as the worklist. The tests check CFGTraversal against it.
+ */
+class BaselineCFGTraversal {
+  private AndroidCallGraph cg = AndroidCallGraph.v();
+  private WTGUtil wtgUtil = WTGUtil.v();
+  private Map<SootMethod, UnitGraph> methodToCFG = Maps.newHashMap();
+
+  boolean forwardTraversal(
+          SootMethod handler,
+          Map<Stmt, SootMethod> visitedStmts,
+          Set<Stmt> escapedStmts,
+          Filter<Stmt, SootMethod> filter,
+          HashMultimap<Stmt, Stmt> infeasibleEdges,
+          HashMultimap<Stmt, SootMethod> infeasibleCalls) {
+    List<Stmt> workingList = Lists.newArrayList();
+    UnitGraph handlerCFG = createOrGetCFG(handler);
+    for (Unit entryNode : handlerCFG.getHeads()) {
+      propagate(visitedStmts, workingList, (Stmt) entryNode, handler);
+    }
+    return traverse(workingList, visitedStmts, escapedStmts, filter,
+            infeasibleEdges, infeasibleCalls);
+  }
+
+  private boolean traverse(
+          List<Stmt> workingList,
+          Map<Stmt, SootMethod> visitedStmts,
+          Set<Stmt> escapedStmts,
+          Filter<Stmt, SootMethod> filter,
+          HashMultimap<Stmt, Stmt> infeasibleEdges,
+          HashMultimap<Stmt, SootMethod> infeasibleCalls) {
+    Set<SootMethod> visitedMethods = Sets.newHashSet();
+    while (!workingList.isEmpty()) {
+      Stmt currentStmt = workingList.remove(0);
+      SootMethod currentCxt = visitedStmts.get(currentStmt);
+      if (wtgUtil.isIgnoredMethod(currentCxt)) {
+        continue;
+      }
+      if (filter.match(currentStmt, currentCxt)) {
+        if (escapedStmts != null) {
+          escapedStmts.add(currentStmt);
+        }
+        continue;
+      }
+      UnitGraph currentCFG = createOrGetCFG(currentCxt);
+      // case 1: currentStmt is not a call and not exit of cfg
+      if (!currentStmt.containsInvokeExpr()
+              && !currentCFG.getTails().contains(currentStmt)) {
+        Collection<Unit> success = currentCFG.getSuccsOf(currentStmt);
+        for (Unit succ : success) {
+          Set<Stmt> tgts = infeasibleEdges.get(currentStmt);
+          if (tgts != null && tgts.contains(succ)) {
+            continue;
+          }
+          propagate(visitedStmts, workingList, (Stmt) succ, currentCxt);
+        }
+      }
+      // case 2: currentStmt is a call
+      else if (currentStmt.containsInvokeExpr()) {
+        Set<Edge> outgoings = cg.getEdge(currentStmt);
+        Set<SootMethod> infeasibleCallees = infeasibleCalls.get(currentStmt);
+        boolean findTarget = false;
+        for (Edge outgoing : outgoings) {
+          SootMethod target = outgoing.target;
+          if (infeasibleCallees.contains(target)) {
+            continue;
+          }
+          if (target.getDeclaringClass().isApplicationClass()
+                  && target.isConcrete()) {
+            findTarget = true;
+            UnitGraph tgtCFG = createOrGetCFG(target);
+            for (Unit entryNode : tgtCFG.getHeads()) {
+              propagate(visitedStmts, workingList, (Stmt) entryNode, target);
+            }
+            if (visitedMethods.contains(target)) {
+              for (Unit succ : currentCFG.getSuccsOf(currentStmt)) {
+                Set<Stmt> tgts = infeasibleEdges.get(currentStmt);
+                if (tgts != null && tgts.contains(succ)) {
+                  continue;
+                }
+                propagate(visitedStmts, workingList, (Stmt) succ, currentCxt);
+              }
+            }
+          }
+        }
+        if (!findTarget) {
+          for (Unit succ : currentCFG.getSuccsOf(currentStmt)) {
+            Set<Stmt> tgts = infeasibleEdges.get(currentStmt);
+            if (tgts != null && tgts.contains(succ)) {
+              continue;
+            }
+            propagate(visitedStmts, workingList, (Stmt) succ, currentCxt);
+          }
+        }
+      }
+      // case 3: currentStmt is the exit point and callingContext is not in
+      // visitedMethods
+      else if (currentCFG.getTails().contains(currentStmt)
+              && !visitedMethods.contains(currentCxt)) {
+        visitedMethods.add(currentCxt);
+        Set<Edge> incomings = cg.getIncomingEdges(currentCxt);
+        for (Edge e : incomings) {
+          Stmt caller = e.callSite;
+          if (visitedStmts.containsKey(caller)) {
+            SootMethod callerCxt = visitedStmts.get(caller);
+            UnitGraph callerCFG = createOrGetCFG(callerCxt);
+            for (Unit succ : callerCFG.getSuccsOf(caller)) {
+              Set<Stmt> tgts = infeasibleEdges.get(caller);
+              if (tgts != null && tgts.contains(succ)) {
+                continue;
+              }
+              propagate(visitedStmts, workingList, (Stmt) succ, callerCxt);
+            }
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private void propagate(Map<Stmt, SootMethod> visitedStmts,
+                         List<Stmt> workingList, Stmt s, SootMethod cxt) {
+    if (!visitedStmts.containsKey(s)) {
+      visitedStmts.put(s, cxt);
+      workingList.add(s);
+    }
+  }
+
+  private UnitGraph createOrGetCFG(SootMethod mtd) {
+    UnitGraph cfg = methodToCFG.get(mtd);
+    if (cfg == null) {
+      cfg = new ExceptionalUnitGraph(mtd.retrieveActiveBody());
+      methodToCFG.put(mtd, cfg);
+    }
+    return cfg;
+  }
+}
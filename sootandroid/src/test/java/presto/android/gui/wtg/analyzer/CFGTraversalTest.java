@@ -0,0 +1,187 @@
+/*
+ * CFGTraversalTest.java - part of the GATOR project
+ *
+ * Copyright (c) 2019 The Ohio State University
+ *
+ * This file is distributed under the terms described in LICENSE in the
+ * root directory.
+ */
+package presto.android.gui.wtg.analyzer;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+import presto.android.gui.AppFixture;
+import presto.android.gui.GUIAnalysisOutput;
+import presto.android.gui.graph.NObjectNode;
+import presto.android.gui.wtg.EventHandler;
+import presto.android.gui.wtg.WTGAnalysisOutput;
+import presto.android.gui.wtg.WTGBuilder;
+import presto.android.gui.wtg.ds.WTGEdge;
+import presto.android.gui.wtg.flowgraph.FlowgraphRebuilder;
+import presto.android.gui.wtg.util.Filter;
+import presto.android.gui.wtg.util.WTGUtil;
+import soot.SootMethod;
+import soot.jimple.Stmt;
+import soot.toolkits.scalar.Pair;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the traversals of CFGTraversal, which share the CFGs of
+ * CFGCache, against the traversal it used to do, for the callbacks of the
+ * WTG of the app and filters that stop at the stmts the WTG builders look
+ * for. A traversal with all filters at once is checked against the
+ * traversals with one filter each, and so is the analysis of a callback by
+ * CFGAnalyzer with the filters of the WTG builders.
+ */
+public class CFGTraversalTest {
+  // the filters the WTG builders analyze callbacks with
+  private static final List<Filter<Stmt, SootMethod>> BUILDER_FILTERS = Lists.newArrayList(
+          Filter.openWindowStmtFilter,
+          Filter.openActivityDialogStmtFilter,
+          Filter.closeActivityStmtFilter,
+          Filter.closeDialogStmtFilter,
+          Filter.closeActivitySystemStmtFilter,
+          Filter.closeWindowStmtFilter);
+
+  private int checkedTraversals = 0;
+
+  @Test
+  public void testAgainstBaselineTraversal() {
+    AppFixture.analyze(new Runnable() {
+      @Override
+      public void run() {
+        GUIAnalysisOutput output = AppFixture.solve();
+        WTGBuilder builder = new WTGBuilder();
+        builder.build(output);
+        WTGAnalysisOutput wtgOutput = new WTGAnalysisOutput(output, builder);
+        check(output, wtgOutput);
+      }
+    });
+    assertTrue(checkedTraversals > 0);
+  }
+
+  private void check(GUIAnalysisOutput output, WTGAnalysisOutput wtgOutput) {
+    FlowgraphRebuilder rebuilder = FlowgraphRebuilder.v(output);
+    ConstantAnalysis constAnalysis = new ConstantAnalysis(output, rebuilder);
+    CFGAnalyzer analyzer = new CFGAnalyzer(output, rebuilder);
+    List<Filter<Stmt, SootMethod>> filters = filters(output);
+    for (Pair<NObjectNode, SootMethod> callback : callbacks(wtgOutput)) {
+      SootMethod handler = callback.getO2();
+      HashMultimap<Stmt, Stmt> infeasibleEdges = HashMultimap.create();
+      HashMultimap<Stmt, SootMethod> infeasibleCalls = HashMultimap.create();
+      constAnalysis.doAnalysis(callback.getO1(), handler, infeasibleEdges, infeasibleCalls);
+
+      // one traversal for all filters
+      Map<Stmt, SootMethod> allVisited = Maps.newHashMap();
+      Map<Stmt, Integer> reachedBy = Maps.newHashMap();
+      List<Set<Stmt>> allEscaped = Lists.newArrayList();
+      for (int i = 0; i < filters.size(); i++) {
+        allEscaped.add(Sets.<Stmt>newHashSet());
+      }
+      CFGTraversal.v().forwardTraversal(handler, filters, allVisited, reachedBy, allEscaped,
+              infeasibleEdges, infeasibleCalls);
+
+      Map<Stmt, SootMethod> expectedAllVisited = Maps.newHashMap();
+      for (int i = 0; i < filters.size(); i++) {
+        Map<Stmt, SootMethod> expectedVisited = Maps.newHashMap();
+        Set<Stmt> expectedEscaped = Sets.newHashSet();
+        new BaselineCFGTraversal().forwardTraversal(handler, expectedVisited, expectedEscaped,
+                filters.get(i), infeasibleEdges, infeasibleCalls);
+        expectedAllVisited.putAll(expectedVisited);
+
+        Map<Stmt, SootMethod> visited = Maps.newHashMap();
+        Set<Stmt> escaped = Sets.newHashSet();
+        CFGTraversal.v().forwardTraversal(handler, visited, escaped,
+                filters.get(i), infeasibleEdges, infeasibleCalls);
+        String what = "filter " + i + " from " + handler;
+        assertEquals("visited stmts of " + what, expectedVisited, visited);
+        assertEquals("escaped stmts of " + what, expectedEscaped, escaped);
+
+        Set<Stmt> reached = Sets.newHashSet();
+        for (Map.Entry<Stmt, Integer> entry : reachedBy.entrySet()) {
+          if ((entry.getValue() & (1 << i)) != 0) {
+            reached.add(entry.getKey());
+          }
+        }
+        assertEquals("stmts reached by " + what, expectedVisited.keySet(), reached);
+        assertEquals("escaped stmts of " + what + " in one traversal", expectedEscaped,
+                allEscaped.get(i));
+        checkedTraversals++;
+      }
+      assertEquals("visited stmts of all filters from " + handler, expectedAllVisited, allVisited);
+
+      // one analysis for all filters of the WTG builders
+      List<CFGAnalyzerOutput> allOutputs = analyzer.analyzeCallbackMethod(callback.getO1(), handler,
+              BUILDER_FILTERS);
+      for (int i = 0; i < BUILDER_FILTERS.size(); i++) {
+        CFGAnalyzerOutput expected = analyzer.analyzeCallbackMethod(callback.getO1(), handler,
+                BUILDER_FILTERS.get(i));
+        String what = "filter " + i + " of " + callback;
+        assertEquals("targets of " + what, expected.targets, allOutputs.get(i).targets);
+        assertEquals("avoid of " + what, expected.avoid, allOutputs.get(i).avoid);
+        assertEquals("exitSystem of " + what, expected.exitSystem, allOutputs.get(i).exitSystem);
+      }
+    }
+  }
+
+  // the (widget, handler) pairs of the callbacks of the WTG edges
+  static Set<Pair<NObjectNode, SootMethod>> callbacks(WTGAnalysisOutput wtgOutput) {
+    Set<Pair<NObjectNode, SootMethod>> callbacks = Sets.newLinkedHashSet();
+    for (WTGEdge e : wtgOutput.getWTG().getEdges()) {
+      for (EventHandler callback : e.getCallbacks()) {
+        callbacks.add(new Pair<NObjectNode, SootMethod>(callback.getWidget(),
+                callback.getEventHandler()));
+      }
+    }
+    return callbacks;
+  }
+
+  // filters that stop at the stmts the WTG builders look for, and one that
+  // traverses everything
+  static List<Filter<Stmt, SootMethod>> filters(final GUIAnalysisOutput output) {
+    final WTGUtil wtgUtil = WTGUtil.v();
+    List<Filter<Stmt, SootMethod>> filters = Lists.newArrayList();
+    filters.add(new Filter<Stmt, SootMethod>() {
+    });
+    filters.add(new Filter<Stmt, SootMethod>() {
+      @Override
+      public boolean match(Stmt s, SootMethod context) {
+        return wtgUtil.isStartActivityCall(s);
+      }
+    });
+    filters.add(new Filter<Stmt, SootMethod>() {
+      @Override
+      public boolean match(Stmt s, SootMethod context) {
+        return output.isDialogShow(s);
+      }
+    });
+    filters.add(new Filter<Stmt, SootMethod>() {
+      @Override
+      public boolean match(Stmt s, SootMethod context) {
+        return wtgUtil.isActivityFinishCall(s) || wtgUtil.isExecutionExitCall(s);
+      }
+    });
+    filters.add(new Filter<Stmt, SootMethod>() {
+      @Override
+      public boolean match(Stmt s, SootMethod context) {
+        return output.isDialogDismiss(s);
+      }
+    });
+    filters.add(new Filter<Stmt, SootMethod>() {
+      @Override
+      public boolean match(Stmt s, SootMethod context) {
+        return wtgUtil.isMenuItemAddCall(s) || wtgUtil.isMenuInflateCall(s);
+      }
+    });
+    return filters;
+  }
+}